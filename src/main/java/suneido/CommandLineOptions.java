@@ -27,6 +27,15 @@ public class CommandLineOptions {
 	public int timeoutMin = DEFAULT_TIMEOUT;
 	public int max_update_tran_sec = 0;
 	public int max_writes_per_tran = 0;
+	public int temp_index_budget_mb = 0;
+	public int max_threads = 0;
+	public int slow_query_ms = 0;
+	public int session_max_trans = -1;
+	public int session_max_cursors = -1;
+	public int session_max_rps = -1;
+	public int session_temp_index_mb = -1;
+	public boolean compress = false;
+	public String code_cache = null;
 	public boolean unattended = false;
 
 	public static CommandLineOptions parse(String... args) {
@@ -102,6 +111,24 @@ public class CommandLineOptions {
 				max_update_tran_sec = getIntArg();
 			else if (arg.equals("-mw"))
 				max_writes_per_tran = getIntArg();
+			else if (arg.equals("-tb"))
+				temp_index_budget_mb = getIntArg();
+			else if (arg.equals("-mt"))
+				max_threads = getIntArg();
+			else if (arg.equals("-qt"))
+				session_max_trans = getIntArg();
+			else if (arg.equals("-qc"))
+				session_max_cursors = getIntArg();
+			else if (arg.equals("-qr"))
+				session_max_rps = getIntArg();
+			else if (arg.equals("-qm"))
+				session_temp_index_mb = getIntArg();
+			else if (arg.equals("-sq"))
+				slow_query_ms = getIntArg();
+			else if (arg.equals("-codecache") || arg.equals("-cc"))
+				code_cache = getArg();
+			else if (arg.equals("-compress") || arg.equals("-z"))
+				compress = true;
 			else if (arg.equals("-unattended") || arg.equals("-u"))
 				unattended = true;
 			else
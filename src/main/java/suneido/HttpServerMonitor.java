@@ -6,6 +6,8 @@ package suneido;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
 import java.net.InetSocketAddress;
 import java.util.Arrays;
 import java.util.Collections;
@@ -18,8 +20,15 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
+import suneido.compiler.AstInline;
+import suneido.compiler.ClassGen;
+import suneido.database.query.TempIndex;
+import suneido.database.server.DbmsServer;
+import suneido.database.server.DeflateChannel;
+import suneido.database.server.ServerExecutor;
 import suneido.runtime.builtin.SuThread;
 import suneido.util.Errlog;
+import suneido.util.Metrics;
 
 public class HttpServerMonitor {
 	private final static int STARTING = 0;
@@ -38,6 +47,8 @@ public class HttpServerMonitor {
 			return;
 		}
 		server.createContext("/", new MyHandler());
+		server.createContext("/metrics", new MetricsHandler());
+		registerMetrics();
 		server.setExecutor(null); // null creates a default executor
 		server.start();
 		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
@@ -66,6 +77,75 @@ public class HttpServerMonitor {
 		mode.set(CORRUPT);
 	}
 
+	private static void registerMetrics() {
+		Metrics.gauge("suneido_transactions_active",
+				"Outstanding database transactions",
+				() -> TheDbms.dbms().transactions().size());
+		Metrics.gauge("suneido_transactions_final",
+				"Committed transactions still needed for conflict checking",
+				() -> TheDbms.dbms().finalSize());
+		Metrics.gauge("suneido_cursors", "Open cursors",
+				() -> TheDbms.dbms().cursors());
+		Metrics.gauge("suneido_mmap_bytes",
+				"Database size i.e. bytes memory mapped",
+				() -> TheDbms.dbms().size());
+		Metrics.gauge("suneido_connections", "Client connections",
+				() -> Suneido.server.connections().size());
+		Metrics.gauge("suneido_heap_bytes", "JVM heap size",
+				() -> Runtime.getRuntime().totalMemory());
+		Metrics.gauge("suneido_metaspace_bytes",
+				"JVM metaspace used e.g. by classes for compiled code",
+				HttpServerMonitor::metaspace);
+		Metrics.gauge("suneido_classes_loaded", "JVM classes currently loaded",
+				() -> ManagementFactory.getClassLoadingMXBean()
+						.getLoadedClassCount());
+		Metrics.gauge("suneido_classes_unloaded_total",
+				"JVM classes unloaded e.g. from replaced compiled code",
+				() -> ManagementFactory.getClassLoadingMXBean()
+						.getUnloadedClassCount());
+		Metrics.gauge("suneido_generated_classes_total",
+				"Classes generated for compiled code",
+				ClassGen::generatedClasses);
+		Metrics.gauge("suneido_inlined_calls_total",
+				"Global function calls compiled inline", AstInline::count);
+		Metrics.gauge("suneido_generated_class_loaders",
+				"Class loaders for compiled code not yet collected",
+				ClassGen::classLoaders);
+		Metrics.gauge("suneido_temp_index_spills_total",
+				"Temp indexes spilled to disk", TempIndex::totalSpills);
+		Metrics.gauge("suneido_temp_index_spill_bytes_total",
+				"Bytes spilled to disk by temp indexes",
+				TempIndex::totalSpillBytes);
+		Metrics.gauge("suneido_compression_bytes_total",
+				"Client-server bytes before (raw) and after (sent) compression",
+				DeflateChannel::rawBytes, "stage", "raw");
+		Metrics.gauge("suneido_compression_bytes_total",
+				"Client-server bytes before (raw) and after (sent) compression",
+				DeflateChannel::sentBytes, "stage", "sent");
+		DbmsServer.executor(); // registers its metrics
+	}
+
+	private static long metaspace() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getName().equals("Metaspace"))
+				return pool.getUsage().getUsed();
+		return 0;
+	}
+
+	/** Serves {@link Metrics} in Prometheus text format */
+	private static class MetricsHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange t) throws IOException {
+			byte[] response = Metrics.prometheus().getBytes();
+			t.getResponseHeaders().set("Content-Type",
+					"text/plain; version=0.0.4");
+			t.sendResponseHeaders(200, response.length);
+			try (OutputStream os = t.getResponseBody()) {
+				os.write(response);
+			}
+		}
+	}
+
 	private static class MyHandler implements HttpHandler {
 		@Override
 		public void handle(HttpExchange t) throws IOException {
@@ -133,6 +213,19 @@ public class HttpServerMonitor {
 			Joiner.on(", ").appendTo(sb, conns);
 			sb.append("</p>\r\n");
 
+			ServerExecutor executor = DbmsServer.executor();
+			sb.append("<p>Requests: active ")
+					.append(executor.active())
+					.append(", queued ")
+					.append(executor.queued())
+					.append(", workers ")
+					.append(executor.threads())
+					.append("</p>\r\n");
+
+			sb.append("<p>Compression saved: ")
+					.append(mb(DeflateChannel.rawBytes() - DeflateChannel.sentBytes()))
+					.append("mb</p>\r\n");
+
 			sb.append("<p>Threads: (")
 					.append(Suneido.threadGroup.activeCount())
 					.append(") ")
@@ -25,39 +25,252 @@ import suneido.util.PairStack;
 import suneido.util.Util;
 
 //TODO detect the same modification-during-iteration as cSuneido (see ObjectsTest)
-//TODO resolve concurrency issues flagged below
 
 /**
  * Suneido's single container type.
  * Combines an extendible array plus a hash map.
+ * <p>
+ * Most containers are only used by one thread so by default they don't lock.
+ * Containers that are shared between threads must be made concurrent
+ * (see {@link #setConcurrent}) before they are shared.
+ * Concurrent containers synchronize on themselves (as do subclasses)
+ * except for reads of readonly containers since they can't change.
  */
 public class SuContainer extends SuValue
 		implements Comparable<SuContainer>, Iterable<Object>, Showable {
 	public final List<Object> vec;
 	private final Map<Object,Object> map;
 	protected Object defval = null;
-	private boolean readonly = false;
+	private volatile boolean readonly = false;
+	/** not volatile, it is set before the container is shared */
+	private boolean concurrent = false;
 	public final static SuContainer EMPTY = empty();
 
-	@SuppressWarnings("serial")
-	private static class CanonicalMap extends HashMap<Object, Object> {
+	/**
+	 * Converts keys with {@link #canonical}.
+	 * Most containers only have a few named members
+	 * so up to SMALL members are kept in arrays and searched linearly.
+	 * This avoids allocating a hash table and an entry per member.
+	 * Larger maps switch to a HashMap.
+	 * Small maps iterate in insertion order.
+	 */
+	private static final class CanonicalMap extends AbstractMap<Object, Object> {
+		private static final int SMALL = 8;
+		private int[] hashes;
+		private Object[] keys;
+		private Object[] values;
+		private int n = 0;
+		private HashMap<Object, Object> big = null;
+		private int modCount = 0;
+
+		CanonicalMap() {
+		}
+
+		CanonicalMap(Map<Object, Object> other) {
+			if (other instanceof CanonicalMap) {
+				CanonicalMap cm = (CanonicalMap) other;
+				if (cm.big != null)
+					big = new HashMap<>(cm.big);
+				else if (cm.n > 0) {
+					n = cm.n;
+					hashes = Arrays.copyOf(cm.hashes, n);
+					keys = Arrays.copyOf(cm.keys, n);
+					values = Arrays.copyOf(cm.values, n);
+				}
+			} else
+				putAll(other);
+		}
+
+		private int indexOf(Object key, int h) {
+			for (int i = 0; i < n; ++i) {
+				Object k = keys[i];
+				if (k == key || (hashes[i] == h && k.equals(key)))
+					return i;
+			}
+			return -1;
+		}
+
 		@Override
 		public Object get(Object key) {
-			return super.get(canonical(key));
+			key = canonical(key);
+			if (big != null)
+				return big.get(key);
+			if (n == 0)
+				return null;
+			int i = indexOf(key, key.hashCode());
+			return i < 0 ? null : values[i];
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null; // values are never null
 		}
+
 		@Override
 		public Object put(Object key, Object value) {
 			assert key != null;
 			assert value != null;
-			return super.put(canonical(key), value);
+			key = canonical(key);
+			if (big != null)
+				return put2(key, value);
+			int h = key.hashCode();
+			int i = indexOf(key, h);
+			if (i >= 0) {
+				Object old = values[i];
+				values[i] = value;
+				return old;
+			}
+			++modCount;
+			if (n >= SMALL) {
+				big = new HashMap<>(4 * SMALL);
+				for (i = 0; i < n; ++i)
+					big.put(keys[i], values[i]);
+				hashes = null;
+				keys = values = null;
+				n = 0;
+				return big.put(key, value);
+			}
+			if (keys == null) {
+				hashes = new int[4];
+				keys = new Object[4];
+				values = new Object[4];
+			} else if (n >= keys.length) {
+				hashes = Arrays.copyOf(hashes, SMALL);
+				keys = Arrays.copyOf(keys, SMALL);
+				values = Arrays.copyOf(values, SMALL);
+			}
+			hashes[n] = h;
+			keys[n] = key;
+			values[n] = value;
+			++n;
+			return null;
 		}
+
+		private Object put2(Object key, Object value) {
+			int size = big.size();
+			Object old = big.put(key, value);
+			if (big.size() != size)
+				++modCount;
+			return old;
+		}
+
 		@Override
 		public Object remove(Object key) {
-			return super.remove(canonical(key));
+			key = canonical(key);
+			if (big != null) {
+				Object old = big.remove(key);
+				if (old != null)
+					++modCount;
+				return old;
+			}
+			if (n == 0)
+				return null;
+			int i = indexOf(key, key.hashCode());
+			if (i < 0)
+				return null;
+			Object old = values[i];
+			removeAt(i);
+			return old;
+		}
+
+		private void removeAt(int i) {
+			++modCount;
+			--n;
+			System.arraycopy(hashes, i + 1, hashes, i, n - i);
+			System.arraycopy(keys, i + 1, keys, i, n - i);
+			System.arraycopy(values, i + 1, values, i, n - i);
+			keys[n] = values[n] = null;
 		}
+
 		@Override
-		public boolean containsKey(Object key) {
-			return super.containsKey(canonical(key));
+		public int size() {
+			return big != null ? big.size() : n;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return big != null ? big.isEmpty() : n == 0;
+		}
+
+		@Override
+		public void clear() {
+			++modCount;
+			big = null;
+			hashes = null;
+			keys = values = null;
+			n = 0;
+		}
+
+		@Override
+		public Set<Map.Entry<Object, Object>> entrySet() {
+			return big != null ? big.entrySet() : new SmallEntrySet();
+		}
+
+		private final class SmallEntrySet
+				extends AbstractSet<Map.Entry<Object, Object>> {
+			@Override
+			public int size() {
+				return n;
+			}
+
+			@Override
+			public Iterator<Map.Entry<Object, Object>> iterator() {
+				return new SmallIter();
+			}
+		}
+
+		private final class SmallIter implements Iterator<Map.Entry<Object, Object>> {
+			private int i = 0;
+			private int expectedModCount = modCount;
+
+			@Override
+			public boolean hasNext() {
+				return i < n;
+			}
+
+			@Override
+			public Map.Entry<Object, Object> next() {
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+				if (i >= n)
+					throw new NoSuchElementException();
+				return new SmallEntry(i++);
+			}
+
+			@Override
+			public void remove() {
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+				if (i == 0)
+					throw new IllegalStateException();
+				removeAt(--i);
+				expectedModCount = modCount;
+			}
+		}
+
+		private final class SmallEntry implements Map.Entry<Object, Object> {
+			private final int i;
+			private final Object key;
+
+			SmallEntry(int i) {
+				this.i = i;
+				this.key = keys[i];
+			}
+
+			@Override
+			public Object getKey() {
+				return key;
+			}
+
+			@Override
+			public Object getValue() {
+				return keys != null && i < n && keys[i] == key ? values[i] : get(key);
+			}
+
+			@Override
+			public Object setValue(Object value) {
+				return put(key, value);
+			}
 		}
 	}
 
@@ -77,9 +290,15 @@ public class SuContainer extends SuValue
 	}
 
 	public SuContainer(SuContainer other) {
-		this(other.vecSize());
-		vec.addAll(other.vec);
-		map.putAll(other.map);
+		if (other.lockReads())
+			synchronized (other) {
+				vec = new ArrayList<>(other.vec);
+				map = new CanonicalMap(other.map);
+			}
+		else {
+			vec = new ArrayList<>(other.vec);
+			map = new CanonicalMap(other.map);
+		}
 		defval = other.defval;
 	}
 
@@ -104,27 +323,95 @@ public class SuContainer extends SuValue
 		return new SuContainer(Lists.newArrayList(values));
 	}
 
-	public synchronized Object vecGet(int i) {
+	/** @return Whether reads need to lock, see {@link #setConcurrent} */
+	private boolean lockReads() {
+		return concurrent && ! readonly;
+	}
+
+	/**
+	 * Makes this container, and the containers it contains,
+	 * lock so they can be shared between threads.
+	 * Containers added to a concurrent container are also made concurrent,
+	 * as are the members of instances.
+	 * Used for values that are shared e.g. the Suneido global object,
+	 * {@link ConcurrentValue}, and the variables of blocks passed to Thread.
+	 */
+	public SuContainer setConcurrent() {
+		if (concurrent)
+			return this;
+		synchronized (this) {
+			concurrent = true;
+			for (Object x : vec)
+				setConcurrent(x);
+			for (Object x : map.values())
+				setConcurrent(x);
+		}
+		return this;
+	}
+
+	/**
+	 * Makes x concurrent if it is a container, see {@link #setConcurrent}
+	 * or the values of its members if it is an instance,
+	 * see {@link SuInstance#setConcurrent}
+	 */
+	public static void setConcurrent(Object x) {
+		if (x instanceof SuContainer)
+			((SuContainer) x).setConcurrent();
+		else if (x instanceof SuInstance)
+			((SuInstance) x).setConcurrent();
+	}
+
+	public boolean isConcurrent() {
+		return concurrent;
+	}
+
+	public Object vecGet(int i) {
+		if (lockReads())
+			synchronized (this) {
+				return vec.get(i);
+			}
 		return vec.get(i);
 	}
-	public synchronized Object mapGet(Object key) {
+	public Object mapGet(Object key) {
+		if (lockReads())
+			synchronized (this) {
+				return map.get(key);
+			}
 		return map.get(key);
 	}
-	public synchronized Set<Map.Entry<Object, Object>> mapEntrySet() {
+	public Set<Map.Entry<Object, Object>> mapEntrySet() {
 		return map.entrySet();
 	}
-	public synchronized Set<Object> mapKeySet() {
+	public Set<Object> mapKeySet() {
 		return map.keySet();
 	}
 
-	public synchronized void add(Object value) {
+	public void add(Object value) {
+		if (concurrent)
+			synchronized (this) {
+				add2(value);
+			}
+		else
+			add2(value);
+	}
+
+	private void add2(Object value) {
 		checkReadonly();
+		if (concurrent)
+			setConcurrent(value);
 		vec.add(value);
 		migrate();
 	}
 
-	public synchronized void addAll(Iterable<?> iterable) {
-		Iterables.addAll(vec, iterable);
+	public void addAll(Iterable<?> iterable) {
+		if (concurrent)
+			synchronized (this) {
+				for (Object x : iterable)
+					setConcurrent(x);
+				Iterables.addAll(vec, iterable);
+			}
+		else
+			Iterables.addAll(vec, iterable);
 	}
 
 	private void checkReadonly() {
@@ -133,40 +420,82 @@ public class SuContainer extends SuValue
 	}
 
 	private void migrate() {
+		if (map.isEmpty())
+			return;
 		Object x;
 		while (null != (x = map.remove(vec.size())))
 			vec.add(x);
 	}
 
-	public synchronized void insert(int at, Object value) {
+	public void insert(int at, Object value) {
+		if (concurrent)
+			synchronized (this) {
+				insert2(at, value);
+			}
+		else
+			insert2(at, value);
+	}
+
+	private void insert2(int at, Object value) {
 		checkReadonly();
 		if (0 <= at && at <= vec.size()) {
+			if (concurrent)
+				setConcurrent(value);
 			vec.add(at, value);
 			migrate();
 		} else
 			put(at, value);
 	}
 
-	public synchronized void merge(SuContainer c) {
+	public void merge(SuContainer c) {
+		if (concurrent)
+			synchronized (this) {
+				merge2(c);
+			}
+		else
+			merge2(c);
+	}
+
+	private void merge2(SuContainer c) {
+		if (concurrent) {
+			for (Object x : c.vec)
+				setConcurrent(x);
+			for (Object x : c.map.values())
+				setConcurrent(x);
+		}
 		vec.addAll(c.vec);
 		map.putAll(c.map);
 		migrate();
 	}
 
 	@Override
-	public synchronized void put(Object key, Object value) {
+	public void put(Object key, Object value) {
 		preset(key, value);
 	}
 
-	public synchronized void preset(Object key, Object value) {
+	public void preset(Object key, Object value) {
+		if (concurrent)
+			synchronized (this) {
+				preset2(key, value);
+			}
+		else
+			preset2(key, value);
+	}
+
+	private void preset2(Object key, Object value) {
 		checkReadonly();
 		int i = intOrMin(key);
-		if (0 <= i && i < vec.size())
+		if (0 <= i && i < vec.size()) {
+			if (concurrent)
+				setConcurrent(value);
 			vec.set(i, value);
-		else if (i == vec.size())
-			add(value);
-		else
+		} else if (i == vec.size())
+			add2(value);
+		else {
+			if (concurrent)
+				setConcurrent(value);
 			map.put(key, value);
+		}
 	}
 
 	/** used by CallRule, bypasses readonly */
@@ -175,7 +504,7 @@ public class SuContainer extends SuValue
 	}
 
 	@Override
-	public synchronized Object get(Object key) {
+	public Object get(Object key) {
 		return getDefault(key, defval);
 	}
 
@@ -189,12 +518,20 @@ public class SuContainer extends SuValue
 	 * @see #getDefault(int, Object)
 	 * @see #getIfPresent(int)
 	 */
-	public synchronized Object get(int at) {
+	public Object get(int at) {
 		return getDefault(at, defval);
 	}
 
-	public synchronized Object getDefault(Object key, Object defval) {
-		Object x = getIfPresent(key);
+	public Object getDefault(Object key, Object defval) {
+		if (lockReads())
+			synchronized (this) {
+				return getDefault2(key, defval);
+			}
+		return getDefault2(key, defval);
+	}
+
+	private Object getDefault2(Object key, Object defval) {
+		Object x = getIfPresent2(key);
 		if (x != null)
 			return x;
 		if (defval instanceof SuContainer) {
@@ -217,8 +554,16 @@ public class SuContainer extends SuValue
 	 * @see #get(int)
 	 * @see #getIfPresent(int)
 	 */
-	public synchronized Object getDefault(int at, Object defval) {
-		Object x = getIfPresent(at);
+	public Object getDefault(int at, Object defval) {
+		if (lockReads())
+			synchronized (this) {
+				return getDefault2(at, defval);
+			}
+		return getDefault2(at, defval);
+	}
+
+	private Object getDefault2(int at, Object defval) {
+		Object x = getIfPresent2(at);
 		if (x != null)
 			return x;
 		if (defval instanceof SuContainer) {
@@ -230,7 +575,15 @@ public class SuContainer extends SuValue
 		return defval;
 	}
 
-	public synchronized Object getIfPresent(Object key) {
+	public Object getIfPresent(Object key) {
+		if (lockReads())
+			synchronized (this) {
+				return getIfPresent2(key);
+			}
+		return getIfPresent2(key);
+	}
+
+	private Object getIfPresent2(Object key) {
 		int i = intOrMin(key);
 		return (0 <= i && i < vec.size()) ? vec.get(i) : map.get(key);
 	}
@@ -245,41 +598,79 @@ public class SuContainer extends SuValue
 	 * @see #get(int)
 	 * @see #getDefault(int, Object)
 	 */
-	public synchronized Object getIfPresent(int at) {
-		synchronized (vec) {
-			if (0 <= at && at < vec.size())
-				return vec.get(at);
-		}
+	public Object getIfPresent(int at) {
+		if (lockReads())
+			synchronized (this) {
+				return getIfPresent2(at);
+			}
+		return getIfPresent2(at);
+	}
+
+	private Object getIfPresent2(int at) {
+		if (0 <= at && at < vec.size())
+			return vec.get(at);
 		return map.isEmpty() ? null : map.get(at);
 	}
 
 	@Override
-	public synchronized Object rangeTo(int i, int j) {
+	public Object rangeTo(int i, int j) {
+		if (lockReads())
+			synchronized (this) {
+				return rangeTo2(i, j);
+			}
+		return rangeTo2(i, j);
+	}
+
+	private Object rangeTo2(int i, int j) {
 		int size = vec.size();
 		int f = Range.prepFrom(i, size);
 		int t = Range.prepTo(f, j, size);
-		return subList(f, t);
+		return subList2(f, t);
 	}
 
 	@Override
-	public synchronized Object rangeLen(int i, int n) {
+	public Object rangeLen(int i, int n) {
+		if (lockReads())
+			synchronized (this) {
+				return rangeLen2(i, n);
+			}
+		return rangeLen2(i, n);
+	}
+
+	private Object rangeLen2(int i, int n) {
 		int size = vec.size();
 		int f = Range.prepFrom(i, size);
 		int t = f + Range.prepLen(n, size - f);
-		return subList(f, t);
+		return subList2(f, t);
+	}
+
+	public boolean containsKey(Object key) {
+		if (lockReads())
+			synchronized (this) {
+				return containsKey2(key);
+			}
+		return containsKey2(key);
 	}
 
-	public synchronized boolean containsKey(Object key) {
+	private boolean containsKey2(Object key) {
 		int i = intOrMin(key);
 		return (0 <= i && i < vec.size()) || map.containsKey(key);
 	}
 
-	public synchronized int size() {
+	public int size() {
+		if (lockReads())
+			synchronized (this) {
+				return vec.size() + map.size();
+			}
 		return vec.size() + map.size();
 	}
 
 	@Override
-	public synchronized String toString() {
+	public String toString() {
+		if (lockReads())
+			synchronized (this) {
+				return toString("#(", ")");
+			}
 		return toString("#(", ")");
 	}
 
@@ -333,7 +724,15 @@ public class SuContainer extends SuValue
 	}
 
 	@Override
-	public synchronized int hashCode() {
+	public int hashCode() {
+		if (lockReads())
+			synchronized (this) {
+				return hashCode2();
+			}
+		return hashCode2();
+	}
+
+	private int hashCode2() {
 		int h = hashCodeContrib();
 		// The nice thing about vectors: they have a canonical ordering, so
 		// we know we can satisfy the hashCode() contract by just looking at
@@ -345,16 +744,26 @@ public class SuContainer extends SuValue
 		if (map.size() <= 5) {
 			// The nasty thing about hash maps: no canonical ordering.
 			// If we look at any members, we have to look at all of them.
-			for (Map.Entry<Object, Object> entry : map.entrySet()) {
-				h = 31 * h + Ops.hashCodeContrib(entry.getKey())
+			// And combine them so the order doesn't matter.
+			int mh = 0;
+			for (Map.Entry<Object, Object> entry : map.entrySet())
+				mh += Ops.hashCodeContrib(entry.getKey())
 						^ Ops.hashCodeContrib(entry.getValue());
-			}
+			h = 31 * h + mh;
 		}
 		return h;
 	}
 
 	@Override
-	public synchronized int hashCodeContrib() {
+	public int hashCodeContrib() {
+		if (lockReads())
+			synchronized (this) {
+				return hashCodeContrib2();
+			}
+		return hashCodeContrib2();
+	}
+
+	private int hashCodeContrib2() {
 		return 31 * 31 * vec.size() + 31 * map.size()
 				+ SuContainer.class.hashCode();
 	}
@@ -365,6 +774,8 @@ public class SuContainer extends SuValue
 	 * CharSequence (String, Concat, SuException) is converted to String
 	 */
 	static Object canonical(Object x) {
+		if (x instanceof String || x instanceof Integer)
+			return x; // fast path for the common cases
 		if (x instanceof CharSequence)
 			return x.toString();
 		if (x instanceof Integer)
@@ -378,9 +789,13 @@ public class SuContainer extends SuValue
 	}
 
 	@Override
-	public synchronized boolean equals(Object value) {
+	public boolean equals(Object value) {
 		if (value == this)
 			return true;
+		if (lockReads())
+			synchronized (this) {
+				return equals2(this, value, null);
+			}
 		return equals2(this, value, null);
 	}
 
@@ -410,7 +825,7 @@ public class SuContainer extends SuValue
 	}
 
 	// public since also called by SuInstance.equals2
-	public synchronized static boolean equals3(Object x, Object y, PairStack stack) {
+	public static boolean equals3(Object x, Object y, PairStack stack) {
 		if (x == y)
 			return true;
 		if (x instanceof SuInstance && y instanceof SuInstance)
@@ -420,9 +835,13 @@ public class SuContainer extends SuValue
 	}
 
 	@Override
-	public synchronized int compareTo(SuContainer that) {
+	public int compareTo(SuContainer that) {
 		if (this == that)
 			return 0;
+		if (lockReads())
+			synchronized (this) {
+				return compare2(that, new PairStack());
+			}
 		return compare2(that, new PairStack());
 	}
 
@@ -447,7 +866,15 @@ public class SuContainer extends SuValue
 		return (cy == null) ? Ops.cmp(x, y) : cx.compare2(cy, stack);
 	}
 
-	public synchronized boolean delete(Object key) {
+	public boolean delete(Object key) {
+		if (concurrent)
+			synchronized (this) {
+				return delete2(key);
+			}
+		return delete2(key);
+	}
+
+	private boolean delete2(Object key) {
 		checkReadonly();
 		if (null != map.remove(key))
 			return true;
@@ -459,7 +886,15 @@ public class SuContainer extends SuValue
 			return false;
 	}
 
-	public synchronized boolean erase(Object key) {
+	public boolean erase(Object key) {
+		if (concurrent)
+			synchronized (this) {
+				return erase2(key);
+			}
+		return erase2(key);
+	}
+
+	private boolean erase2(Object key) {
 		checkReadonly();
 		if (null != map.remove(key))
 			return true;
@@ -475,21 +910,46 @@ public class SuContainer extends SuValue
 		return true;
 	}
 
-	public synchronized void deleteAll() {
+	public void deleteAll() {
+		if (concurrent)
+			synchronized (this) {
+				deleteAll2();
+			}
+		else
+			deleteAll2();
+	}
+
+	private void deleteAll2() {
 		checkReadonly();
 		vec.clear();
 		map.clear();
 	}
 
-	public synchronized int vecSize() {
+	public int vecSize() {
+		if (lockReads())
+			synchronized (this) {
+				return vec.size();
+			}
 		return vec.size();
 	}
-	public synchronized int mapSize() {
+	public int mapSize() {
+		if (lockReads())
+			synchronized (this) {
+				return map.size();
+			}
 		return map.size();
 	}
 
 	@Override
-	public synchronized int packSize(int nest) {
+	public int packSize(int nest) {
+		if (lockReads())
+			synchronized (this) {
+				return packSize2(nest);
+			}
+		return packSize2(nest);
+	}
+
+	private int packSize2(int nest) {
 		checkNest(++nest);
 		int ps = 1;
 		if (size() == 0)
@@ -516,7 +976,16 @@ public class SuContainer extends SuValue
 	}
 
 	@Override
-	public synchronized void pack(ByteBuffer buf) {
+	public void pack(ByteBuffer buf) {
+		if (lockReads())
+			synchronized (this) {
+				pack2(buf);
+			}
+		else
+			pack2(buf);
+	}
+
+	private void pack2(ByteBuffer buf) {
 		pack(buf, Pack.Tag.OBJECT);
 	}
 
@@ -568,7 +1037,15 @@ public class SuContainer extends SuValue
 		return Pack.unpack(buf2);
 	}
 
-	public synchronized SuContainer setReadonly() {
+	public SuContainer setReadonly() {
+		if (concurrent)
+			synchronized (this) {
+				return setReadonly2();
+			}
+		return setReadonly2();
+	}
+
+	private SuContainer setReadonly2() {
 		if (readonly)
 			return this;
 		readonly = true;
@@ -582,11 +1059,19 @@ public class SuContainer extends SuValue
 		return this;
 	}
 
-	public synchronized boolean getReadonly() {
+	public boolean getReadonly() {
 		return readonly;
 	}
 
-	public synchronized Object slice(int i) {
+	public Object slice(int i) {
+		if (lockReads())
+			synchronized (this) {
+				return slice2(i);
+			}
+		return slice2(i);
+	}
+
+	private Object slice2(int i) {
 		SuContainer c = new SuContainer();
 		c.vec.addAll(vec.subList(i, vec.size()));
 		c.map.putAll(map);
@@ -596,19 +1081,19 @@ public class SuContainer extends SuValue
 	public enum IterWhich { LIST, NAMED, ALL }
 
 	@Override
-	public synchronized Iterator<Object> iterator() {
+	public Iterator<Object> iterator() {
 		return iterator(IterWhich.ALL, IterResult.VALUE);
 	}
 
 	@SuppressWarnings("unchecked")
-	public synchronized Iterator<Object> iterator(IterWhich iterWhich, IterResult iterResult) {
+	public Iterator<Object> iterator(IterWhich iterWhich, IterResult iterResult) {
 		return new Iter(
 				iterWhich == IterWhich.NAMED ? nullIter : vec.iterator(),
 				iterWhich == IterWhich.LIST ? nullIter : map.entrySet().iterator(),
 				iterResult);
 	}
 
-	public synchronized Iterable<Object> iterable(IterWhich iterWhich, IterResult iterResult) {
+	public Iterable<Object> iterable(IterWhich iterWhich, IterResult iterResult) {
 		if (iterWhich == IterWhich.ALL && iterResult == IterResult.VALUE)
 			return this;
 		else
@@ -684,7 +1169,15 @@ public class SuContainer extends SuValue
 		}
 	}
 
-	public synchronized Object find(Object value) {
+	public Object find(Object value) {
+		if (lockReads())
+			synchronized (this) {
+				return find2(value);
+			}
+		return find2(value);
+	}
+
+	private Object find2(Object value) {
 		for (int i = 0; i < vec.size(); ++i)
 			if (Ops.is_(value, vec.get(i)))
 				return i;
@@ -694,12 +1187,30 @@ public class SuContainer extends SuValue
 		return null;
 	}
 
-	public synchronized void reverse() {
+	public void reverse() {
+		if (concurrent)
+			synchronized (this) {
+				reverse2();
+			}
+		else
+			reverse2();
+	}
+
+	private void reverse2() {
 		checkReadonly();
 		Collections.reverse(vec);
 	}
 
-	public synchronized void sort(final Object fn) {
+	public void sort(final Object fn) {
+		if (concurrent)
+			synchronized (this) {
+				sort2(fn);
+			}
+		else
+			sort2(fn);
+	}
+
+	private void sort2(final Object fn) {
 		checkReadonly();
 		if (fn == Boolean.FALSE)
 			Collections.sort(vec, Ops.comp);
@@ -709,7 +1220,16 @@ public class SuContainer extends SuValue
 							: Ops.call(fn, y, x) == Boolean.TRUE ? 1 : 0);
 	}
 
-	public synchronized void unique() {
+	public void unique() {
+		if (concurrent)
+			synchronized (this) {
+				unique2();
+			}
+		else
+			unique2();
+	}
+
+	private void unique2() {
 		int dst = 1;
 		for (int src = 1; src < vec.size(); ++src) {
 			if (Ops.is_(vec.get(src), vec.get(src - 1)))
@@ -722,7 +1242,15 @@ public class SuContainer extends SuValue
 			vec.remove(vec.size() - 1);
 	}
 
-	public synchronized int lowerBound(Object value, final Object fn) {
+	public int lowerBound(Object value, final Object fn) {
+		if (lockReads())
+			synchronized (this) {
+				return lowerBound2(value, fn);
+			}
+		return lowerBound2(value, fn);
+	}
+
+	private int lowerBound2(Object value, final Object fn) {
 		if (fn == Boolean.FALSE)
 			return Util.lowerBound(vec, value, Ops.comp);
 		else
@@ -730,7 +1258,15 @@ public class SuContainer extends SuValue
 					Ops.call(fn, x, y) == Boolean.TRUE ? -1 : 1);
 	}
 
-	public synchronized int upperBound(Object value, final Object fn) {
+	public int upperBound(Object value, final Object fn) {
+		if (lockReads())
+			synchronized (this) {
+				return upperBound2(value, fn);
+			}
+		return upperBound2(value, fn);
+	}
+
+	private int upperBound2(Object value, final Object fn) {
 		if (fn == Boolean.FALSE)
 			return Util.upperBound(vec, value, Ops.comp);
 		else
@@ -738,7 +1274,15 @@ public class SuContainer extends SuValue
 					Ops.call(fn, x, y) == Boolean.TRUE ? -1 : 1);
 	}
 
-	public synchronized Util.Range equalRange(Object value, final Object fn) {
+	public Util.Range equalRange(Object value, final Object fn) {
+		if (lockReads())
+			synchronized (this) {
+				return equalRange2(value, fn);
+			}
+		return equalRange2(value, fn);
+	}
+
+	private Util.Range equalRange2(Object value, final Object fn) {
 		if (fn == Boolean.FALSE)
 			return Util.equalRange(vec, value, Ops.comp);
 		else
@@ -746,7 +1290,15 @@ public class SuContainer extends SuValue
 					Ops.call(fn, x, y) == Boolean.TRUE ? -1 : 1);
 	}
 
-	public synchronized Record toDbRecord(Header hdr) {
+	public Record toDbRecord(Header hdr) {
+		if (concurrent)
+			synchronized (this) {
+				return toDbRecord2(hdr);
+			}
+		return toDbRecord2(hdr);
+	}
+
+	private Record toDbRecord2(Header hdr) {
 		RecordBuilder rec = new RecordBuilder();
 		Object x;
 		String ts = hdr.timestamp_field();
@@ -765,7 +1317,7 @@ public class SuContainer extends SuValue
 		return rec.build();
 	}
 
-	public synchronized void setDefault(Object value) {
+	public void setDefault(Object value) {
 		defval = value;
 	}
 
@@ -779,7 +1331,11 @@ public class SuContainer extends SuValue
 		return "Object";
 	}
 
-	public synchronized boolean isEmpty() {
+	public boolean isEmpty() {
+		if (lockReads())
+			synchronized (this) {
+				return vec.isEmpty() && map.isEmpty();
+			}
 		return vec.isEmpty() && map.isEmpty();
 	}
 
@@ -788,7 +1344,15 @@ public class SuContainer extends SuValue
 		return ContainerMethods.lookup(method);
 	}
 
-	public synchronized SuContainer subList(int from, int to) {
+	public SuContainer subList(int from, int to) {
+		if (lockReads())
+			synchronized (this) {
+				return subList2(from, to);
+			}
+		return subList2(from, to);
+	}
+
+	private SuContainer subList2(int from, int to) {
 		return new SuContainer(new ArrayList<Object>(vec.subList(from, to)));
 	}
 
@@ -8,6 +8,7 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.concurrent.Executors;
@@ -17,11 +18,16 @@ import java.util.concurrent.TimeUnit;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import suneido.compiler.CodeCache;
 import suneido.compiler.Compiler;
 import suneido.database.immudb.Database;
 import suneido.database.immudb.Dbpkg;
 import suneido.database.immudb.Dump;
+import suneido.database.query.TempIndex;
+import suneido.database.server.DbmsClient;
 import suneido.database.server.DbmsServer;
+import suneido.database.server.ServerData;
+import suneido.database.server.ServerExecutor;
 import suneido.runtime.ContextLayered;
 import suneido.runtime.Contexts;
 import suneido.util.Errlog;
@@ -59,6 +65,24 @@ public class Suneido {
 			Dbpkg.setOption("max_update_tran_sec", cmdlineoptions.max_update_tran_sec);
 		if (cmdlineoptions.max_writes_per_tran != 0)
 			Dbpkg.setOption("max_writes_per_tran", cmdlineoptions.max_writes_per_tran);
+		if (cmdlineoptions.temp_index_budget_mb > 0)
+			Dbpkg.setOption("temp_index_budget_mb", cmdlineoptions.temp_index_budget_mb);
+		if (cmdlineoptions.slow_query_ms > 0)
+			Dbpkg.setOption("slow_query_ms", cmdlineoptions.slow_query_ms);
+		if (cmdlineoptions.session_max_trans >= 0)
+			ServerData.MAX_TRANSACTIONS = cmdlineoptions.session_max_trans;
+		if (cmdlineoptions.session_max_cursors >= 0)
+			ServerData.MAX_CURSORS = cmdlineoptions.session_max_cursors;
+		if (cmdlineoptions.session_max_rps >= 0)
+			ServerData.MAX_REQUESTS_PER_SEC = cmdlineoptions.session_max_rps;
+		if (cmdlineoptions.session_temp_index_mb >= 0)
+			ServerData.MAX_TEMP_INDEX_MEMORY =
+					cmdlineoptions.session_temp_index_mb * 1024L * 1024;
+		if (cmdlineoptions.max_threads > 0)
+			ServerExecutor.MAX_THREADS = cmdlineoptions.max_threads;
+		DbmsClient.compress = cmdlineoptions.compress;
+		if (cmdlineoptions.code_cache != null)
+			CodeCache.enable(Paths.get(cmdlineoptions.code_cache));
 		try {
 			doAction();
 		} catch (Throwable e) {
@@ -176,6 +200,7 @@ public class Suneido {
 				Errlog.fatal("could not open database after rebuild");
 		}
 		TheDbms.set(db);
+		TempIndex.deleteLeftovers();
 		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
 			exiting = true;
 			Suneido.db.close();
@@ -209,6 +234,15 @@ public class Suneido {
 		System.out.println("-t[ime]o[ut] #            time out in minutes for idle clients (default is 240)");
 		System.out.println("-ut #                     set max update tran duration in seconds (default 10)");
 		System.out.println("-mw #                     set max writes per update transaction (default 10000)");
+		System.out.println("-tb #                     set temp index memory in mb before spilling to disk (default 64)");
+		System.out.println("-mt #                     set max server worker threads (default 256)");
+		System.out.println("-qt #                     max transactions per session, 0 for no limit (default 50)");
+		System.out.println("-qc #                     max cursors per session, 0 for no limit (default 100)");
+		System.out.println("-qr #                     max requests per second per session, 0 for no limit (default 0)");
+		System.out.println("-qm #                     temp index memory mb per session, 0 for no limit (default 256)");
+		System.out.println("-sq #                     log queries slower than # ms to slowquery.log");
+		System.out.println("-z or -compress           client compresses its connection if server allows");
+		System.out.println("-c[ode]c[ache] <dir>      cache compiled library code in dir for faster startup");
 		System.out.println("-u[nattended]             redirect stdout and stderr to output.log and error.log");
 		System.out.println("-dbdump                   output database structure (for debugging)");
 		System.out.println("-h[elp] or -?             print this message");
@@ -8,6 +8,7 @@ import static suneido.compiler.ClassGen.javify;
 
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -38,9 +39,13 @@ public class AstCompile {
 	private static final AtomicInteger nextFnId = new AtomicInteger();
 	private int fnId = -1;
 	private final ContextLayered context;
+	/** all the classes from one compile share a loader, see ClassGen.Loader */
+	private final ClassGen.Loader loader = new ClassGen.Loader();
 	@SuppressWarnings("unused")
 	private final SuContainer warnings;
 	private final boolean wantLineNumbers;
+	/** the parameters of an inline function, see inlineCall */
+	private Map<String, Integer> inlineTemps = null;
 
 	public static Object fold(String library, String globalName, String src,
 			PrintWriter pw, ContextLayered context, SuContainer warnings,
@@ -63,6 +68,14 @@ public class AstCompile {
 		this.wantLineNumbers = wantLineNumbers;
 	}
 
+	/**
+	 * Function ids are used to match block returns to their function
+	 * so they must be unique. See also CodeCache
+	 */
+	static int newFnId() {
+		return nextFnId.incrementAndGet();
+	}
+
 	private Object fold(AstNode ast) {
 		return fold(null, ast);
 	}
@@ -162,7 +175,9 @@ public class AstCompile {
 		for (var e : members.entrySet())
 			if (e.getValue() instanceof AstNode) {
 				var name = e.getKey();
-				members.put(e.getKey(), fold(name, (AstNode) e.getValue()));
+				var member = (AstNode) e.getValue();
+				members.put(name, isLazy(member)
+						? new LazyMethod(name, member) : fold(name, member));
 			}
 		suClassName = prevSuClassName;
 		suClass = prevSuClass;
@@ -170,10 +185,63 @@ public class AstCompile {
 		return c;
 	}
 
+	/**
+	 * Methods are compiled on first use, see SuClass.Lazy,
+	 * except when the generated code is wanted (pw)
+	 * or they reference overloaded globals (see AstUsesOverload)
+	 */
+	private boolean isLazy(AstNode ast) {
+		return ast.token == Token.METHOD && pw == null &&
+				! AstUsesOverload.check(ast);
+	}
+
+	/**
+	 * Saves the compile state for the method's class.
+	 * Checks that don't need code generation are still done immediately.
+	 */
+	private class LazyMethod extends SuClass.Lazy {
+		private final String name;
+		private AstNode ast;
+		private final String className = curName;
+		private final SuClass lazySuClass = suClass;
+		private final String lazySuClassName = suClassName;
+
+		LazyMethod(String name, AstNode ast) {
+			this.name = name;
+			this.ast = ast;
+			nameBegin(name, null);
+			List<AstNode> statements = ast.second().children;
+			for (int i = 0; i < statements.size(); ++i)
+				superChecks(i, statements.get(i));
+			nameEnd();
+		}
+
+		@Override
+		protected Object compile() {
+			synchronized (AstCompile.this) {
+				String prevCurName = curName;
+				SuClass prevSuClass = suClass;
+				String prevSuClassName = suClassName;
+				curName = className;
+				suClass = lazySuClass;
+				suClassName = lazySuClassName;
+				try {
+					Object fn = foldFunction(name, ast, CallableType.METHOD);
+					ast = null;
+					return fn;
+				} finally {
+					curName = prevCurName;
+					suClass = prevSuClass;
+					suClassName = prevSuClassName;
+				}
+			}
+		}
+	}
+
 	private SuCompiledCallable foldFunction(String name, AstNode ast,
 			CallableType callableType) {
 		int prevFnId = fnId;
-		fnId = nextFnId.incrementAndGet();
+		fnId = newFnId();
 		boolean prevInMethod = inMethod;
 		inMethod = CallableType.METHOD == callableType;
 		SuCompiledCallable fn = function(name, ast, callableType);
@@ -237,7 +305,7 @@ public class AstCompile {
 	private SuCompiledCallable javaClass(AstNode ast, BaseClassSet baseClassSet,
 			CallableType callableType, List<String> locals) {
 		List<AstNode> params = ast.first().children;
-		ClassGen cg = new ClassGen(context, baseClassSet, curName, locals,
+		ClassGen cg = new ClassGen(context, loader, baseClassSet, curName, locals,
 				useArgsArray(ast, callableType, params), callableType,
 				params.size(), fnId, sourceFile, pw);
 		putLineNumber(cg, ast);
@@ -248,6 +316,8 @@ public class AstCompile {
 
 		superInit(cg, ast);
 
+		if (AstUsesDynamic.check(ast))
+			cg.hoistDynamicEnv();
 		if (AstSetsDynamic.check(ast))
 			cg.addDynamicPushPop();
 
@@ -678,6 +748,24 @@ public class AstCompile {
 		INTBOOL, VALUE
 	}
 
+	/**
+	 * Arithmetic with an integer literal on the right e.g. i + 1 or n *= 10
+	 * can pass the literal unboxed to Ops.addInt etc.
+	 */
+	private static boolean isIntArith(Token op, AstNode right) {
+		switch (op) {
+		case ADD:
+		case SUB:
+		case MUL:
+		case ADDEQ:
+		case SUBEQ:
+		case MULEQ:
+			return right.token == Token.VALUE && right.value instanceof Integer;
+		default:
+			return false;
+		}
+	}
+
 	/** leaves a value on the stack unless ExprOption.POP */
 	private ExprType expression(ClassGen cg, AstNode ast, ExprOption option) {
 		Object folded = fold(ast);
@@ -700,7 +788,7 @@ public class AstCompile {
 			break;
 		case MEMBER:
 			member(cg, ast);
-			cg.memberLoad();
+			cg.memberLoad(memberName(ast));
 			break;
 		case SUBSCRIPT:
 			expression(cg, ast.first());
@@ -740,8 +828,12 @@ public class AstCompile {
 			break;
 		case BINARYOP:
 			expression(cg, ast.second());
-			expression(cg, ast.third());
-			cg.binaryOp(ast.first().token, option == ExprOption.INTBOOL);
+			if (isIntArith(ast.first().token, ast.third()))
+				cg.binaryOpInt(ast.first().token, (int) ast.third().value);
+			else {
+				expression(cg, ast.third());
+				cg.binaryOp(ast.first().token, option == ExprOption.INTBOOL);
+			}
 			if (option == ExprOption.INTBOOL
 					&& ast.first().token.resultType == TokenResultType.B)
 				resultType = ExprType.INTBOOL;
@@ -752,37 +844,41 @@ public class AstCompile {
 			addNullCheck(cg, ast.second());
 			if (option != ExprOption.POP)
 				cg.dupUnderLvalue(ref);
-			store(cg, ref);
+			store(cg, ref, memberName(ast.first()));
 			return ExprType.VALUE; // skip pop handling below
 		case ASSIGNOP:
 			ref = lvalue(cg, ast.second());
 			cg.dupLvalue(ref);
-			load(cg, ref);
-			expression(cg, ast.third());
-			cg.binaryOp(ast.first().token, false);
+			load(cg, ref, memberName(ast.second()));
+			if (isIntArith(ast.first().token, ast.third()))
+				cg.binaryOpInt(ast.first().token, (int) ast.third().value);
+			else {
+				expression(cg, ast.third());
+				cg.binaryOp(ast.first().token, false);
+			}
 			if (option != ExprOption.POP)
 				cg.dupUnderLvalue(ref);
-			store(cg, ref);
+			store(cg, ref, memberName(ast.second()));
 			return ExprType.VALUE; // skip pop handling below
 		case PREINCDEC:
 			ref = lvalue(cg, ast.second());
 			cg.dupLvalue(ref);
-			load(cg, ref);
+			load(cg, ref, memberName(ast.second()));
 			cg.unaryOp(ast.first().token == Token.INC ? "add1" : "sub1",
 					"Number");
 			if (option != ExprOption.POP)
 				cg.dupUnderLvalue(ref);
-			store(cg, ref);
+			store(cg, ref, memberName(ast.second()));
 			return ExprType.VALUE; // skip pop handling below
 		case POSTINCDEC:
 			ref = lvalue(cg, ast.second());
 			cg.dupLvalue(ref);
-			load(cg, ref);
+			load(cg, ref, memberName(ast.second()));
 			if (option != ExprOption.POP)
 				cg.dupUnderLvalue(ref); // original value
 			cg.unaryOp(ast.first().token == Token.INC ? "add1" : "sub1",
 					"Number");
-			store(cg, ref);
+			store(cg, ref, memberName(ast.second()));
 			return ExprType.VALUE; // skip pop handling below
 		case CALL:
 			callExpression(cg, ast);
@@ -824,10 +920,12 @@ public class AstCompile {
 	private void identifier(ClassGen cg, AstNode ast, ExprOption option) {
 		putLineNumber(cg, ast);
 		String name = ast.strval();
-		if (isOverload(name))
+		if (inlineTemps != null)
+			cg.loadTemp(inlineTemps.get(name));
+		else if (isOverload(name))
 			cg.constant(context.get(context.slotForName(name.substring(1))));
 		else if (isGlobal(name))
-			cg.globalLoad(context.slotForName(name));
+			cg.globalLoad(name);
 		else if (isDynamic(name))
 			cg.dynamicLoad(name);
 		else
@@ -850,6 +948,12 @@ public class AstCompile {
 		cg.constant(privatizeRef(ast.first(), ast.strval()));
 	}
 
+	/** @return The member name for x.name, otherwise null */
+	private String memberName(AstNode ast) {
+		return ast.token == Token.MEMBER
+				? privatizeRef(ast.first(), ast.strval()) : null;
+	}
+
 	// privatize .name member references in code
 	private String privatizeRef(AstNode ast, String name) {
 		if (inMethod && ast.token == Token.SELFREF &&
@@ -928,17 +1032,19 @@ public class AstCompile {
 		if (fn.token == Token.MEMBER) {
 			if ("New".equals(fn.strval()))
 				throw new SuException("cannot explicitly call New method");
-			member(cg, fn);
+			expression(cg, fn.first());
+			putLineNumber(cg, fn);
+			String method = privatizeRef(fn.first(), fn.strval());
 			if (args.token != Token.AT
 					&& args.children.size() <= MAX_DIRECT_ARGS
 					&& !hasNamed(args)) {
 				directArguments(cg, args);
 				putLineNumber(cg, ast);
-				cg.invokeMethod(args.children.size());
+				cg.invokeMethod(method, args.children.size());
 			} else {
 				callArguments(cg, args);
 				putLineNumber(cg, ast);
-				cg.invokeMethod();
+				cg.invokeMethod(method);
 			}
 		} else if (fn.token == Token.SUBSCRIPT) {
 			expression(cg, fn.first());
@@ -967,19 +1073,11 @@ public class AstCompile {
 			putLineNumber(cg, ast);
 			cg.invokeDirect(fn.strval());
 		} else if (isGlobal(fn)) {
-			cg.pushThis();
-			cg.iconst(context.slotForName(fn.strval()));
-			if (args.token != Token.AT
-					&& args.children.size() <= MAX_DIRECT_ARGS
-					&& !hasNamed(args)) {
-				directArguments(cg, args);
-				putLineNumber(cg, ast);
-				cg.invokeGlobal(args.children.size());
-			} else {
-				callArguments(cg, args);
-				putLineNumber(cg, ast);
-				cg.invokeGlobal();
-			}
+			AstInline.Function inline = inlinable(fn, args);
+			if (inline != null)
+				inlineCall(cg, ast, inline);
+			else
+				globalCall(cg, ast);
 		} else {
 			expression(cg, fn);
 			if (args.token != Token.AT
@@ -996,6 +1094,70 @@ public class AstCompile {
 		}
 	}
 
+	private void globalCall(ClassGen cg, AstNode ast) {
+		AstNode args = ast.second();
+		cg.pushThis();
+		String name = ast.first().strval();
+		if (args.token != Token.AT
+				&& args.children.size() <= MAX_DIRECT_ARGS
+				&& !hasNamed(args)) {
+			directArguments(cg, args);
+			putLineNumber(cg, ast);
+			cg.invokeGlobal(name, args.children.size());
+		} else {
+			callArguments(cg, args);
+			putLineNumber(cg, ast);
+			cg.invokeGlobal(name);
+		}
+	}
+
+	/**
+	 * Only globals that have already been loaded are inlined,
+	 * the compiler doesn't load them.
+	 */
+	private AstInline.Function inlinable(AstNode fn, AstNode args) {
+		if (args.token == Token.AT || hasNamed(args) ||
+				args.children.size() > AstInline.MAX_PARAMS)
+			return null;
+		AstInline.Function f = AstInline.inlinable(context.peek(fn.strval()));
+		return f != null && f.params.length == args.children.size() ? f : null;
+	}
+
+	/**
+	 * The arguments are evaluated into temporaries.
+	 * Then if the guard passes, the inline code uses the temporaries
+	 * in place of the parameters,
+	 * otherwise it does a normal call with them.
+	 */
+	private void inlineCall(ClassGen cg, AstNode ast, AstInline.Function f) {
+		String name = ast.first().strval();
+		List<AstNode> args = ast.second().children;
+		int[] temps = new int[args.size()];
+		for (int i = 0; i < temps.length; ++i) {
+			AstNode expr = args.get(i).second();
+			expression(cg, expr);
+			addNullCheck(cg, expr);
+			temps[i] = cg.storeTemp();
+		}
+		putLineNumber(cg, ast);
+		Label slow = cg.label();
+		cg.inlineGuard(name, f.source);
+		cg.ifFalse(slow);
+		inlineTemps = new HashMap<>();
+		for (int i = 0; i < temps.length; ++i)
+			inlineTemps.put(f.params[i], temps[i]);
+		expression(cg, f.body);
+		inlineTemps = null;
+		Label end = cg.jump();
+		cg.placeLabel(slow);
+		cg.pushThis();
+		for (int temp : temps)
+			cg.loadTemp(temp);
+		cg.invokeGlobal(name, temps.length);
+		cg.placeLabel(end);
+		AstInline.inlined();
+	}
+
 	/** Helper calls to Object and Record */
 	private static boolean isDirect(AstNode fn) {
 		return fn.token == Token.IDENTIFIER
@@ -1252,8 +1414,11 @@ public class AstCompile {
 		return Character.isUpperCase(name.charAt(i));
 	}
 
-	private static void store(ClassGen cg, int ref) {
-		if (ref == ClassGen.MEMBER_REF)
+	/** member is the constant member name for x.name lvalues, otherwise null */
+	private static void store(ClassGen cg, int ref, String member) {
+		if (ref == ClassGen.MEMBER_REF && member != null)
+			cg.memberStore(member);
+		else if (ref == ClassGen.MEMBER_REF)
 			cg.memberStore();
 		else if (ref == ClassGen.DYNAMIC_REF)
 			cg.dynamicStore();
@@ -1262,8 +1427,10 @@ public class AstCompile {
 	}
 
 	/** lvalue is already on stack */
-	private static void load(ClassGen cg, int ref) {
-		if (ref == ClassGen.MEMBER_REF)
+	private static void load(ClassGen cg, int ref, String member) {
+		if (ref == ClassGen.MEMBER_REF && member != null)
+			cg.memberLoad(member);
+		else if (ref == ClassGen.MEMBER_REF)
 			cg.memberLoad();
 		else if (ref == ClassGen.DYNAMIC_REF)
 			cg.dynamicLoad();
@@ -1282,7 +1449,7 @@ public class AstCompile {
 	}
 
 	private void putLineNumber(ClassGen cg, AstNode ast) {
-		if (wantLineNumbers) {
+		if (wantLineNumbers && inlineTemps == null) {
 			cg.putLineNumber(ast.lineNumber);
 		}
 	}
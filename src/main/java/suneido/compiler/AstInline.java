@@ -0,0 +1,146 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.compiler;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.cache.CacheBuilder;
+
+import suneido.SuException;
+import suneido.runtime.CallableType;
+import suneido.runtime.SuCallable;
+import suneido.runtime.SuCompiledCallable;
+
+/**
+ * Determines which global functions {@link AstCompile} can compile inline
+ * e.g. Max(x, y) or Abs(x).
+ * <p>
+ * Inlinable functions have up to {@link #MAX_PARAMS} plain parameters
+ * (no defaults, @args, _dynamic, or .member)
+ * and a body that is a single small expression (optionally with return)
+ * using only the parameters, constants, and operators.
+ * So they are pure and non-recursive.
+ * <p>
+ * The inline code is guarded (see {@link suneido.runtime.CallSites#inlined})
+ * so it falls back to a normal call if the global is changed
+ * e.g. by LibraryOverride.
+ */
+public class AstInline {
+	static final int MAX_PARAMS = 4;
+	private static final int MAX_NODES = 24;
+	/** the source is a bootstrap argument so it must fit in the constant pool */
+	private static final int MAX_SOURCE = 8000;
+	private static final ConcurrentMap<Object, Optional<Function>> cache =
+			CacheBuilder.newBuilder().weakKeys()
+					.<Object, Optional<Function>>build().asMap();
+	private static final LongAdder ninlined = new LongAdder();
+
+	static class Function {
+		final String source;
+		final String[] params;
+		final AstNode body;
+
+		Function(String source, String[] params, AstNode body) {
+			this.source = source;
+			this.params = params;
+			this.body = body;
+		}
+	}
+
+	/** @return The function to inline or null if f is not inlinable */
+	static Function inlinable(Object f) {
+		if (! (f instanceof SuCompiledCallable) ||
+				((SuCallable) f).callableType() != CallableType.FUNCTION)
+			return null;
+		return cache.computeIfAbsent(f, k ->
+				Optional.ofNullable(check(((SuCallable) k).sourceCode())))
+				.orElse(null);
+	}
+
+	private static Function check(String src) {
+		if (src == null || src.length() > MAX_SOURCE)
+			return null;
+		AstNode ast;
+		try {
+			ast = Compiler.parse(src);
+		} catch (SuException e) {
+			return null;
+		}
+		if (ast.token != Token.FUNCTION)
+			return null;
+		List<AstNode> params = ast.first().children;
+		if (params.size() > MAX_PARAMS)
+			return null;
+		String[] names = new String[params.size()];
+		for (int i = 0; i < names.length; ++i) {
+			AstNode param = params.get(i);
+			names[i] = param.strval();
+			if (param.first() != null ||
+					! Character.isLowerCase(names[i].charAt(0)))
+				return null;
+		}
+		List<AstNode> statements = ast.second().children;
+		if (statements.size() != 1)
+			return null;
+		AstNode body = statements.get(0);
+		if (body.token == Token.RETURN)
+			body = body.first();
+		if (body == null || size(body) > MAX_NODES ||
+				! pure(body, new HashSet<>(Arrays.asList(names))))
+			return null;
+		return new Function(src, names, body);
+	}
+
+	private static boolean pure(AstNode ast, Set<String> params) {
+		switch (ast.token) {
+		case VALUE:
+			return true;
+		case IDENTIFIER:
+			return params.contains(ast.strval());
+		case BINARYOP: // first is the operator
+			return pure(ast.second(), params) && pure(ast.third(), params);
+		case SUB:
+		case ADD:
+		case NOT:
+		case BITNOT:
+		case RVALUE:
+			return pure(ast.first(), params);
+		case AND:
+		case OR:
+		case Q_MARK:
+			for (AstNode x : ast.children)
+				if (! pure(x, params))
+					return false;
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static int size(AstNode ast) {
+		int n = 1;
+		if (ast.children != null)
+			for (AstNode x : ast.children)
+				if (x != null)
+					n += size(x);
+		return n;
+	}
+
+	static void inlined() {
+		ninlined.increment();
+	}
+
+	/** @return The number of call sites that have been compiled inline */
+	public static long count() {
+		return ninlined.sum();
+	}
+
+}
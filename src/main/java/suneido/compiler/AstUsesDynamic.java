@@ -0,0 +1,51 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.compiler;
+
+/**
+ * Whether a function or block gets or sets dynamic variables,
+ * not counting nested functions, classes, or blocks.
+ * Used to hoist getting the Dynamic.Env.
+ *
+ * @see AstSetsDynamic
+ */
+public class AstUsesDynamic {
+
+	public static boolean check(AstNode ast) {
+		Visitor v = new Visitor(ast);
+		ast.depthFirst(v);
+		return v.usesDynamic;
+	}
+
+	private static class Visitor extends AstNode.Visitor {
+		private final AstNode root;
+		public boolean usesDynamic = false;
+
+		Visitor(AstNode root) {
+			this.root = root;
+		}
+
+		@Override
+		boolean topDown(AstNode ast) {
+			switch (ast.token) {
+			// don't process nested classes or functions
+			case CLASS:
+				return false;
+			case BLOCK:
+			case FUNCTION:
+				return ast == root;
+			case IDENTIFIER:
+				String name = ast.strval();
+				if (AstCompile.isDynamic(name) && ! AstCompile.isOverload(name))
+					usesDynamic = true;
+				break;
+			default:
+			}
+			return usesDynamic == false;
+		}
+
+	}
+
+}
@@ -0,0 +1,62 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.compiler;
+
+import java.util.Map;
+
+import suneido.SuContainer;
+
+/**
+ * Whether an ast references an overloaded global (_Name)
+ * including in nested functions, blocks, classes, and object constants.
+ * These are resolved at compile time to the previous library's definition,
+ * which is only available while the definition is being loaded.
+ * So methods that use them can't be compiled lazily (see AstCompile.isLazy)
+ */
+public class AstUsesOverload {
+
+	public static boolean check(AstNode ast) {
+		Visitor v = new Visitor();
+		ast.depthFirst(v);
+		return v.usesOverload;
+	}
+
+	private static class Visitor extends AstNode.Visitor {
+		public boolean usesOverload = false;
+
+		@Override
+		boolean topDown(AstNode ast) {
+			switch (ast.token) {
+			case IDENTIFIER:
+				if (AstCompile.isOverload(ast.strval()))
+					usesOverload = true;
+				break;
+			case CLASS:
+				if (ast.first() != null && ast.first().strval().startsWith("_"))
+					usesOverload = true;
+				else
+					for (Object x : ((Map<?, ?>) ast.second().value).values())
+						value(x);
+				break;
+			case OBJECT:
+				SuContainer c = (SuContainer) ast.value;
+				for (Object x : c.vec)
+					value(x);
+				for (Object x : c.mapEntrySet())
+					value(((Map.Entry<?, ?>) x).getValue());
+				break;
+			default:
+			}
+			return usesOverload == false;
+		}
+
+		private void value(Object x) {
+			if (x instanceof AstNode && ! usesOverload)
+				((AstNode) x).depthFirst(this);
+		}
+
+	}
+
+}
@@ -7,9 +7,14 @@ package suneido.compiler;
 import static org.objectweb.asm.Opcodes.*;
 
 import java.io.PrintWriter;
+import java.lang.ref.Cleaner;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.objectweb.asm.*;
 import org.objectweb.asm.commons.TryCatchBlockSorter;
@@ -36,7 +41,10 @@ public class ClassGen {
 	private static final String COMPILED_CODE_PACKAGE_DOTS = COMPILED_CODE_PACKAGE_SLASHES.replace('/', '.');
 	private static final String CLASS_GEN_INTERNAL_NAME = Type.getInternalName(ClassGen.class);
 	private static final String OPS_INTERNAL_NAME = Type.getInternalName(Ops.class);
+	private static final String CALL_SITES_INTERNAL_NAME = Type.getInternalName(CallSites.class);
 	private static final String DYNAMIC_INTERNAL_NAME = Type.getInternalName(Dynamic.class);
+	private static final String DYNAMIC_ENV_INTERNAL_NAME = Type.getInternalName(Dynamic.Env.class);
+	private static final String DYNAMIC_ENV_DESCRIPTOR = Type.getDescriptor(Dynamic.Env.class);
 	private static final String EXCEPT_DESCRIPTOR = Type.getDescriptor(Except.class);
 	private static final String BLOCK_RETURN_EXCEPTION_INTERNAL_NAME = Type.getInternalName(BlockReturnException.class);
 	private static final String BLOCK_RETURN_EXCEPTION_DESCRIPTOR = Type.getDescriptor(BlockReturnException.class);
@@ -53,7 +61,9 @@ public class ClassGen {
 	private static final String ARGS_VAR_NAME = "_args_";
 	public static final String SELF_VAR_NAME = "_self_";
 	private final ContextLayered context;
+	private final Loader loader;
 	private final String name;
+	private final String javaName;
 	private final String base;
 	private final String className;
 	private final ClassWriter cw;
@@ -71,6 +81,7 @@ public class ClassGen {
 	private int nextJavaLocal;
 	private TryCatch blockReturnCatcher = null;
 	private TryCatch dynamicFinally = null;
+	private int dynamicEnv = -1; // java local, see hoistDynamicEnv
 	final boolean useArgsArray;
 	final CallableType callableType;
 	final int parentId;
@@ -78,16 +89,18 @@ public class ClassGen {
 	private int lastLineNumber;
 	private Label lastLabelNotUsedForLineNumber;
 
-	ClassGen(ContextLayered context, BaseClassSet baseClassSet, String name,
-			List<String> locals, boolean useArgsArray,
+	ClassGen(ContextLayered context, Loader loader, BaseClassSet baseClassSet,
+			String name, List<String> locals, boolean useArgsArray,
 			CallableType callableType, int nParams, int parentId,
 			String sourceFile, PrintWriter pw) {
 		this.context = context;
 		BaseClassSet.BaseClass baseClass = useArgsArray
 				? baseClassSet.getUnspecialized() : baseClassSet.getSpecialization(nParams);
 		this.base = baseClass.getInternalName();
+		this.loader = loader;
 		this.name = name;
-		this.className = makeInternalName(name);
+		this.javaName = loader.uniqueName(name);
+		this.className = makeInternalName(javaName);
 		this.locals = locals == null ? new ArrayList<String>() : locals;
 		this.useArgsArray = useArgsArray;
 		this.callableType = callableType;
@@ -136,7 +149,7 @@ public class ClassGen {
 		if (pw != null)
 			cv = new TraceClassVisitor(cw, pw);
 		cv = new CheckClassAdapter(cv, false);
-		cv.visit(V1_5, ACC_PUBLIC + ACC_SUPER, className, null, base, null);
+		cv.visit(V1_7, ACC_PUBLIC + ACC_SUPER, className, null, base, null);
 		cv.visitSource(sourceFile, null);
 		return cv;
 	}
@@ -181,7 +194,7 @@ public class ClassGen {
 			// parameter value
 			localLoad(name);
 			// .name = name
-			memberStore();
+			memberStore(prefix + afterPrefix);
 		}
 		if (dynParam)
 			dynParams.add(name);
@@ -289,6 +302,13 @@ public class ClassGen {
 				"(Ljava/lang/Object;Ljava/lang/Object;)" + op.resultType.type, false);
 	}
 
+	/** @see AstCompile#isIntArith */
+	void binaryOpInt(Token op, int y) {
+		iconst(y);
+		mv.visitMethodInsn(INVOKESTATIC, OPS_INTERNAL_NAME, op.method + "Int",
+				"(Ljava/lang/Object;I)Ljava/lang/Number;", false);
+	}
+
 	void rangeTo() {
 		mv.visitMethodInsn(INVOKESTATIC, OPS_INTERNAL_NAME, "rangeTo",
 				"(Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;)"
@@ -360,11 +380,23 @@ public class ClassGen {
 		return name.replace("?", "_Q_").replace("!", "_X_");
 	}
 
-	void globalLoad(int slot) {
+	void globalLoad(String name) {
 		mv.visitVarInsn(ALOAD, THIS);
-		iconst(slot);
-		mv.visitMethodInsn(INVOKESPECIAL, SUCALLABLE_INTERNAL_NAME,
-				"contextGet", "(I)Ljava/lang/Object;", false);
+		mv.visitInvokeDynamicInsn("get",
+				"(L" + SUCALLABLE_INTERNAL_NAME + ";)Ljava/lang/Object;",
+				GLOBAL_BOOTSTRAP, name);
+	}
+
+	/**
+	 * Leaves an int bool on the stack,
+	 * whether global is still the function with source
+	 * @see CallSites#inlined
+	 */
+	void inlineGuard(String global, String source) {
+		mv.visitVarInsn(ALOAD, THIS);
+		mv.visitInvokeDynamicInsn("inlined",
+				"(L" + SUCALLABLE_INTERNAL_NAME + ";)Z",
+				INLINED_BOOTSTRAP, global, source);
 	}
 
 	void memberLoad() {
@@ -377,25 +409,66 @@ public class ClassGen {
 				"(Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;)V", false);
 	}
 
+	/** object and member must be on the stack, member is a constant */
+	void memberLoad(String member) {
+		mv.visitInvokeDynamicInsn("get",
+				"(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;",
+				MEMBER_BOOTSTRAP, member);
+	}
+
+	/** object, member, and value must be on the stack, member is a constant */
+	void memberStore(String member) {
+		mv.visitInvokeDynamicInsn("put",
+				"(Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;)V",
+				MEMBER_BOOTSTRAP, member);
+	}
+
+	/** A dynamic lvalue is the Dynamic.Env and the slot */
 	int dynamicRef(String name) {
-		mv.visitLdcInsn(name);
+		dynamicEnv();
+		dynamicSlot(name);
 		return DYNAMIC_REF;
 	}
 
 	void dynamicLoad(String name) {
-		mv.visitLdcInsn(name);
+		dynamicEnv();
+		dynamicSlot(name);
 		dynamicLoad();
 	}
 
 	void dynamicLoad() {
-		mv.visitMethodInsn(INVOKESTATIC, DYNAMIC_INTERNAL_NAME,
-				"get", "(Ljava/lang/String;)Ljava/lang/Object;", false);
+		mv.visitMethodInsn(INVOKEVIRTUAL, DYNAMIC_ENV_INTERNAL_NAME,
+				"get", "(I)Ljava/lang/Object;", false);
 	}
 
-	/** name and value should be on the stack already */
+	/** env, slot, and value should be on the stack already */
 	void dynamicStore() {
-		mv.visitMethodInsn(INVOKESTATIC, DYNAMIC_INTERNAL_NAME,
-				"put", "(Ljava/lang/String;Ljava/lang/Object;)V", false);
+		mv.visitMethodInsn(INVOKEVIRTUAL, DYNAMIC_ENV_INTERNAL_NAME,
+				"put", "(ILjava/lang/Object;)V", false);
+	}
+
+	private void dynamicSlot(String name) {
+		mv.visitInvokeDynamicInsn("slot", "()I", DYNAMIC_BOOTSTRAP, name);
+	}
+
+	/**
+	 * Get the thread's Dynamic.Env once at the start of the call
+	 * rather than for every use of a dynamic variable.
+	 * Must be called before any dynamic variable code is generated.
+	 */
+	void hoistDynamicEnv() {
+		mv.visitMethodInsn(INVOKESTATIC, DYNAMIC_INTERNAL_NAME, "env",
+				"()" + DYNAMIC_ENV_DESCRIPTOR, false);
+		dynamicEnv = nextJavaLocal++;
+		mv.visitVarInsn(ASTORE, dynamicEnv);
+	}
+
+	private void dynamicEnv() {
+		if (dynamicEnv >= 0)
+			mv.visitVarInsn(ALOAD, dynamicEnv);
+		else
+			mv.visitMethodInsn(INVOKESTATIC, DYNAMIC_INTERNAL_NAME, "env",
+					"()" + DYNAMIC_ENV_DESCRIPTOR, false);
 	}
 
 	void dup() {
@@ -403,9 +476,7 @@ public class ClassGen {
 	}
 
 	void dupLvalue(int ref) {
-		if (ref == DYNAMIC_REF)
-			mv.visitInsn(DUP);
-		else if (ref < 0)
+		if (ref < 0)
 			mv.visitInsn(DUP2);
 		// else lvalue is java local
 		// 		nothing to dup
@@ -414,8 +485,6 @@ public class ClassGen {
 	void dupUnderLvalue(int ref) {
 		if (ref >= 0) // lvalue is java local
 			mv.visitInsn(DUP);
-		else if (ref == DYNAMIC_REF)
-			mv.visitInsn(DUP_X1);
 		else
 			mv.visitInsn(DUP_X2);
 	}
@@ -443,17 +512,59 @@ public class ClassGen {
 				"(" + directArgs[nargs + 1] + ")Ljava/lang/Object;", false);
 	}
 
-	void invokeGlobal() {
-		mv.visitMethodInsn(INVOKESPECIAL,
-				SUCALLABLE_INTERNAL_NAME, "invoke",
-				"(I[Ljava/lang/Object;)Ljava/lang/Object;", false);
-	}
-
-	void invokeGlobal(int nargs) {
-		mv.visitMethodInsn(INVOKESPECIAL,
-				SUCALLABLE_INTERNAL_NAME, "invoke" + nargs, "(I"
-						+ directArgs[nargs] + ")Ljava/lang/Object;", false);
-	}
+	/**
+	 * this and args array must be on the stack.
+	 * Globals are referenced by name rather than slot
+	 * so the code does not depend on the context (see CodeCache)
+	 */
+	void invokeGlobal(String name) {
+		mv.visitInvokeDynamicInsn("call",
+				"(L" + SUCALLABLE_INTERNAL_NAME +
+						";[Ljava/lang/Object;)Ljava/lang/Object;",
+				GLOBAL_BOOTSTRAP, name);
+	}
+
+	/** this and nargs args must be on the stack */
+	void invokeGlobal(String name, int nargs) {
+		mv.visitInvokeDynamicInsn("call",
+				"(L" + SUCALLABLE_INTERNAL_NAME + ";" + directArgs[nargs] +
+						")Ljava/lang/Object;",
+				GLOBAL_BOOTSTRAP, name);
+	}
+
+	/** object and args array must be on the stack */
+	void invokeMethod(String method) {
+		mv.visitInvokeDynamicInsn("method",
+				"(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;",
+				METHOD_BOOTSTRAP, method);
+	}
+
+	/** object and nargs args must be on the stack */
+	void invokeMethod(String method, int nargs) {
+		mv.visitInvokeDynamicInsn("method",
+				"(Ljava/lang/Object;" + directArgs[nargs] + ")Ljava/lang/Object;",
+				METHOD_BOOTSTRAP, method);
+	}
+
+	private static final String BOOTSTRAP_DESCRIPTOR_PREFIX =
+			"(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;" +
+			"Ljava/lang/invoke/MethodType;";
+	private static final Handle METHOD_BOOTSTRAP = new Handle(H_INVOKESTATIC,
+			CALL_SITES_INTERNAL_NAME, "method", BOOTSTRAP_DESCRIPTOR_PREFIX +
+			"Ljava/lang/String;)Ljava/lang/invoke/CallSite;", false);
+	private static final Handle MEMBER_BOOTSTRAP = new Handle(H_INVOKESTATIC,
+			CALL_SITES_INTERNAL_NAME, "member", BOOTSTRAP_DESCRIPTOR_PREFIX +
+			"Ljava/lang/String;)Ljava/lang/invoke/CallSite;", false);
+	private static final Handle INLINED_BOOTSTRAP = new Handle(H_INVOKESTATIC,
+			CALL_SITES_INTERNAL_NAME, "inlined", BOOTSTRAP_DESCRIPTOR_PREFIX +
+			"Ljava/lang/String;Ljava/lang/String;)Ljava/lang/invoke/CallSite;",
+			false);
+	private static final Handle DYNAMIC_BOOTSTRAP = new Handle(H_INVOKESTATIC,
+			CALL_SITES_INTERNAL_NAME, "dynamic", BOOTSTRAP_DESCRIPTOR_PREFIX +
+			"Ljava/lang/String;)Ljava/lang/invoke/CallSite;", false);
+	private static final Handle GLOBAL_BOOTSTRAP = new Handle(H_INVOKESTATIC,
+			CALL_SITES_INTERNAL_NAME, "global", BOOTSTRAP_DESCRIPTOR_PREFIX +
+			"Ljava/lang/String;)Ljava/lang/invoke/CallSite;", false);
 
 	void invokeMethod() {
 		mv.visitMethodInsn(INVOKESTATIC, OPS_INTERNAL_NAME, "invoke",
@@ -720,8 +831,9 @@ public class ClassGen {
 	}
 
 	private void dynamicPush() {
-		mv.visitMethodInsn(INVOKESTATIC, DYNAMIC_INTERNAL_NAME, "push", "()V",
-				false);
+		dynamicEnv();
+		mv.visitMethodInsn(INVOKEVIRTUAL, DYNAMIC_ENV_INTERNAL_NAME, "push",
+				"()V", false);
 	}
 
 	/** catcher that just pops and rethrows */
@@ -733,8 +845,9 @@ public class ClassGen {
 	}
 
 	private void dynamicPop() {
-		mv.visitMethodInsn(INVOKESTATIC, DYNAMIC_INTERNAL_NAME, "pop", "()V",
-				false);
+		dynamicEnv();
+		mv.visitMethodInsn(INVOKEVIRTUAL, DYNAMIC_ENV_INTERNAL_NAME, "pop",
+				"()V", false);
 	}
 
 	SuCompiledCallable end(SuClass suClass) {
@@ -762,10 +875,7 @@ public class ClassGen {
 		shareConstants.set(constants);
 		final byte[] byteCode = cw.toByteArray();
 		try {
-			// FIXME: Is it a good idea to have a separate new ClassLoader for
-			//        each of potentially thousands of new classes?
-			Loader loader = new Loader();
-			Class<?> sc = loader.defineClass(COMPILED_CODE_PACKAGE_DOTS + name,
+			Class<?> sc = loader.defineClass(COMPILED_CODE_PACKAGE_DOTS + javaName,
 					byteCode);
 			try {
 				callable = (SuCompiledCallable) sc.getDeclaredConstructor().newInstance();
@@ -838,12 +948,51 @@ public class ClassGen {
 		return a;
 	}
 
+	/**
+	 * Defines the classes for one definition,
+	 * e.g. a function or a class along with its methods and blocks.
+	 * A loader per class was expensive in metaspace
+	 * while a single loader would never allow classes to be unloaded.
+	 * With a loader per definition, replacing or clearing the definition
+	 * allows all its classes to be unloaded together.
+	 * <p>
+	 * Class names must be unique within a loader
+	 * so {@link #uniqueName} adds a suffix to duplicates e.g. sibling blocks.
+	 */
 	static class Loader extends ClassLoader {
+		private static final Cleaner cleaner = Cleaner.create();
+		private static final LongAdder nclasses = new LongAdder();
+		private static final AtomicInteger nloaders = new AtomicInteger();
+		private final Set<String> names = new HashSet<>();
+
+		Loader() {
+			nloaders.incrementAndGet();
+			cleaner.register(this, nloaders::decrementAndGet);
+		}
+
+		String uniqueName(String name) {
+			String s = name;
+			for (int i = 2; ! names.add(s); ++i)
+				s = name + "$" + i;
+			return s;
+		}
+
 		public Class<?> defineClass(String name, byte[] b) {
+			nclasses.increment();
 			return defineClass(name, b, 0, b.length);
 		}
 	}
 
+	/** @return The total number of classes that have been generated */
+	public static long generatedClasses() {
+		return Loader.nclasses.sum();
+	}
+
+	/** @return The number of class loaders that have not been collected */
+	public static int classLoaders() {
+		return Loader.nloaders.get();
+	}
+
 	public static ThreadLocal<List<Object>> shareConstants =
 			new ThreadLocal<>();
 
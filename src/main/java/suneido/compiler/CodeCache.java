@@ -0,0 +1,512 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.compiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import com.google.common.hash.Hashing;
+
+import suneido.SuContainer;
+import suneido.SuException;
+import suneido.Suneido;
+import suneido.runtime.ArgsArraySpec;
+import suneido.runtime.BlockSpec;
+import suneido.runtime.CallableType;
+import suneido.runtime.ContextLayered;
+import suneido.runtime.FunctionSpec;
+import suneido.runtime.Ops;
+import suneido.runtime.Pack;
+import suneido.runtime.SuClass;
+import suneido.runtime.SuCompiledCallable;
+import suneido.util.Errlog;
+import suneido.util.ThreadSafe;
+
+/**
+ * An on disk cache of compiled library definitions
+ * so startup doesn't have to parse and compile them again.
+ * Enabled by the -codecache command line option.
+ * <p>
+ * Entries are keyed by a hash of {@link #VERSION}, the build,
+ * the library, the name, and the source.
+ * So changed source or a new build is simply a miss and is recompiled.
+ * Old entries are not removed, the directory can be deleted at any time.
+ * Entries are written to a temporary file and then renamed
+ * so multiple processes can share a directory.
+ * <p>
+ * An entry is the tree of values from compiling the definition -
+ * classes, and the generated code, {@link FunctionSpec}, and constants
+ * for each function, method, and block.
+ * Other values are stored with {@link Pack}.
+ * The generated code references globals by name (see CallSites)
+ * so it does not depend on the context.
+ * Function ids (used for block returns) must be unique
+ * so they are reassigned as the code is loaded.
+ * <p>
+ * Definitions that reference overloaded globals (_Name) are not cached
+ * since they depend on other definitions.
+ * Neither are values that can't be stored e.g. objects containing functions.
+ */
+@ThreadSafe
+public class CodeCache {
+	/** increment this when the generated code or the format changes */
+	private static final int VERSION = 3;
+	private static final int MAGIC = 0x53754343; // SuCC
+	private static volatile CodeCache instance = null;
+	private static final Pattern overload = Pattern.compile("\\b_[A-Z]");
+	private final Path dir;
+	final AtomicInteger hits = new AtomicInteger();
+	final AtomicInteger misses = new AtomicInteger();
+
+	CodeCache(Path dir) {
+		this.dir = dir;
+	}
+
+	/** Use the cache for library definitions from now on */
+	public static void enable(Path dir) {
+		try {
+			Files.createDirectories(dir);
+		} catch (IOException e) {
+			throw new SuException("codecache: can't create " + dir, e);
+		}
+		instance = new CodeCache(dir);
+	}
+
+	/**
+	 * Used by {@link ContextLayered} to load library definitions.
+	 * @return The result of {@link Compiler#compile}, from the cache if possible
+	 */
+	public static Object compile(String library, String name, String src,
+			ContextLayered context) {
+		CodeCache cc = instance;
+		return cc == null
+				? Compiler.compile(library, name, src, context)
+				: cc.get(library, name, src, context);
+	}
+
+	Object get(String library, String name, String src,
+			ContextLayered context) {
+		if (overload.matcher(src).find())
+			return Compiler.compile(library, name, src, context);
+		Path file = dir.resolve(key(library, name, src));
+		Object x = read(file, library, name, src, context);
+		if (x != null) {
+			hits.incrementAndGet();
+			return x;
+		}
+		misses.incrementAndGet();
+		x = Compiler.compile(library, name, src, context);
+		write(file, x);
+		return x;
+	}
+
+	private static String key(String library, String name, String src) {
+		return Hashing.sha256().newHasher()
+				.putInt(VERSION)
+				.putString(Suneido.built, StandardCharsets.UTF_8)
+				.putString(library, StandardCharsets.UTF_8).putByte((byte) 0)
+				.putString(name, StandardCharsets.UTF_8).putByte((byte) 0)
+				.putString(src, StandardCharsets.UTF_8)
+				.hash().toString();
+	}
+
+	/** @return The loaded value, or null if not in the cache */
+	private static Object read(Path file, String library, String name,
+			String src, ContextLayered context) {
+		byte[] data;
+		try {
+			data = Files.readAllBytes(file);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			Errlog.warn("codecache: can't read " + file + ": " + e);
+			return null;
+		}
+		try {
+			return new Reader(data, library, name, src, context).read();
+		} catch (IOException | RuntimeException | LinkageError e) {
+			// corrupt or incompatible, it will be replaced
+			Errlog.warn("codecache: bad entry for " + name + ": " + e);
+			return null;
+		}
+	}
+
+	private static void write(Path file, Object x) {
+		byte[] data;
+		try {
+			data = new Writer().write(x);
+		} catch (IOException | RuntimeException e) {
+			return; // not cacheable
+		}
+		try {
+			Path tmp = Files.createTempFile(file.getParent(), null, ".tmp");
+			Files.write(tmp, data);
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Errlog.warn("codecache: can't write " + file + ": " + e);
+		}
+	}
+
+	// format ------------------------------------------------------------------
+
+	private static final byte NULL = 0;
+	private static final byte REF = 1; // to a previous class or callable
+	private static final byte CLASS = 2;
+	private static final byte CALLABLE = 3;
+	private static final byte PACKED = 4;
+
+	private static final byte FUNCTION_SPEC = 0;
+	private static final byte ARGS_ARRAY_SPEC = 1;
+	private static final byte BLOCK_SPEC = 2;
+
+	private static class Writer {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final Map<Object, Integer> ids = new IdentityHashMap<>();
+
+		byte[] write(Object x) throws IOException {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			value(x);
+			out.flush();
+			return bytes.toByteArray();
+		}
+
+		private void value(Object x) throws IOException {
+			Integer id = ids.get(x);
+			if (x == null)
+				out.writeByte(NULL);
+			else if (id != null) {
+				out.writeByte(REF);
+				out.writeInt(id);
+			} else if (x.getClass() == SuClass.class)
+				suClass((SuClass) x);
+			else if (x instanceof SuCompiledCallable &&
+					x.getClass().getClassLoader() instanceof ClassGen.Loader)
+				callable((SuCompiledCallable) x);
+			else {
+				ByteBuffer buf = Pack.pack(x); // throws if not packable
+				out.writeByte(PACKED);
+				out.writeBoolean(x instanceof SuContainer &&
+						((SuContainer) x).getReadonly());
+				out.writeInt(buf.remaining());
+				out.write(buf.array(), buf.arrayOffset() + buf.position(),
+						buf.remaining());
+			}
+		}
+
+		private void suClass(SuClass c) throws IOException {
+			String base = c.baseGlobal();
+			if (base != null && ! Character.isLetter(base.charAt(0)))
+				throw new SuException("overloaded base"); // e.g. 0_Name
+			ids.put(c, ids.size());
+			out.writeByte(CLASS);
+			out.writeUTF(c.library());
+			out.writeUTF(c.internalName());
+			string(base);
+			Map<String, Object> members = c.members();
+			out.writeInt(members.size());
+			for (Map.Entry<String, Object> e : members.entrySet()) {
+				out.writeUTF(e.getKey());
+				value(e.getValue());
+			}
+		}
+
+		private void callable(SuCompiledCallable f) throws IOException {
+			ids.put(f, ids.size());
+			out.writeByte(CALLABLE);
+			out.writeUTF(f.getClass().getName());
+			byte[] code = f.byteCode();
+			out.writeInt(code.length);
+			out.write(code);
+			out.writeUTF(f.callableType().name());
+			value(f.suClass());
+			spec(f.getParams());
+			List<Object> constants = constants(f.getClass());
+			out.writeInt(constants.size());
+			for (Object x : constants)
+				value(x);
+		}
+
+		/** @return The values of the const0, const1, ... fields */
+		private static List<Object> constants(Class<?> c) {
+			List<Object> constants = new ArrayList<>();
+			try {
+				for (int i = 0; ; ++i) {
+					Field f = c.getDeclaredField("const" + i);
+					f.setAccessible(true);
+					constants.add(f.get(null));
+				}
+			} catch (NoSuchFieldException e) {
+				return constants;
+			} catch (IllegalAccessException e) {
+				throw new SuException("codecache: can't get constants", e);
+			}
+		}
+
+		private void spec(FunctionSpec fs) throws IOException {
+			out.writeByte(fs instanceof BlockSpec ? BLOCK_SPEC
+					: fs instanceof ArgsArraySpec ? ARGS_ARRAY_SPEC
+					: FUNCTION_SPEC);
+			String[] params = new String[fs.getParamCount()];
+			for (int i = 0; i < params.length; ++i)
+				params[i] = fs.getParamName(i);
+			strings(params);
+			out.writeBoolean(fs.isAtParam());
+			if (fs instanceof BlockSpec) {
+				BlockSpec bs = (BlockSpec) fs;
+				strings(locals(bs));
+				String[] upvalues = new String[bs.getUpvalueCount()];
+				for (int i = 0; i < upvalues.length; ++i)
+					upvalues[i] = bs.getUpvalueName(i);
+				strings(upvalues);
+				return;
+			}
+			Object[] defaults = fs.getDefaults();
+			out.writeInt(defaults.length);
+			for (Object x : defaults)
+				value(x);
+			String[] dyn = fs.getDynParams();
+			out.writeBoolean(dyn != null);
+			if (dyn != null)
+				strings(dyn);
+			if (fs instanceof ArgsArraySpec)
+				strings(locals((ArgsArraySpec) fs));
+		}
+
+		private static String[] locals(ArgsArraySpec fs) {
+			String[] locals = new String[fs.getLocalCount()];
+			for (int i = 0; i < locals.length; ++i)
+				locals[i] = fs.getLocalName(i);
+			return locals;
+		}
+
+		private void strings(String[] a) throws IOException {
+			out.writeInt(a.length);
+			for (String s : a)
+				out.writeUTF(s);
+		}
+
+		private void string(String s) throws IOException {
+			out.writeBoolean(s != null);
+			if (s != null)
+				out.writeUTF(s);
+		}
+	}
+
+	private static class Reader {
+		private final DataInputStream in;
+		private final String library;
+		private final String name;
+		private final String src;
+		private final ContextLayered context;
+		private final List<Object> objects = new ArrayList<>();
+		/** from the function ids in the cached code to new ones */
+		private final Map<Integer, Integer> fnIds = new HashMap<>();
+		/** like AstCompile, one loader for all the classes of a definition */
+		private final ClassGen.Loader loader = new ClassGen.Loader();
+
+		Reader(byte[] data, String library, String name, String src,
+				ContextLayered context) {
+			this.in = new DataInputStream(new ByteArrayInputStream(data));
+			this.library = library;
+			this.name = name;
+			this.src = src;
+			this.context = context;
+		}
+
+		Object read() throws IOException {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new SuException("wrong version");
+			return value();
+		}
+
+		private Object value() throws IOException {
+			byte tag = in.readByte();
+			switch (tag) {
+			case NULL:
+				return null;
+			case REF:
+				return objects.get(in.readInt());
+			case CLASS:
+				return suClass();
+			case CALLABLE:
+				return callable();
+			case PACKED:
+				boolean readonly = in.readBoolean();
+				byte[] buf = new byte[in.readInt()];
+				in.readFully(buf);
+				Object x = Pack.unpack(ByteBuffer.wrap(buf));
+				if (readonly)
+					((SuContainer) x).setReadonly();
+				return x;
+			default:
+				throw new SuException("bad tag " + tag);
+			}
+		}
+
+		private SuClass suClass() throws IOException {
+			String lib = in.readUTF();
+			String className = in.readUTF();
+			String base = string();
+			// members are added after so methods can reference the class
+			Map<String, Object> members = new HashMap<>();
+			SuClass c = new SuClass(lib, className, base, members);
+			objects.add(c);
+			for (int n = in.readInt(); n > 0; --n) {
+				String member = in.readUTF();
+				members.put(member, value());
+			}
+			return c;
+		}
+
+		private SuCompiledCallable callable() throws IOException {
+			int id = objects.size();
+			objects.add(null); // reserve the id
+			String className = in.readUTF();
+			byte[] code = new byte[in.readInt()];
+			in.readFully(code);
+			CallableType type = CallableType.valueOf(in.readUTF());
+			SuClass myClass = (SuClass) value();
+			FunctionSpec spec = spec();
+			List<Object> constants = new ArrayList<>();
+			for (int n = in.readInt(); n > 0; --n)
+				constants.add(value());
+			code = remapFnIds(code);
+			SuCompiledCallable f;
+			ClassGen.shareConstants.set(constants);
+			try {
+				Class<?> c = loader.defineClass(className, code);
+				f = (SuCompiledCallable) c.getDeclaredConstructor().newInstance();
+			} catch (InstantiationException | IllegalAccessException |
+					NoSuchMethodException | InvocationTargetException e) {
+				throw new SuException("newInstance error: " + e);
+			} finally {
+				ClassGen.shareConstants.set(null);
+			}
+			f.finishInit(myClass, spec, context, type, code)
+					.setSource(library, name, src);
+			objects.set(id, f);
+			return f;
+		}
+
+		private FunctionSpec spec() throws IOException {
+			byte kind = in.readByte();
+			String[] params = strings();
+			boolean atParam = in.readBoolean();
+			if (kind == BLOCK_SPEC) {
+				String[] locals = strings();
+				return new BlockSpec(name, params, atParam, locals, strings());
+			}
+			Object[] defaults = new Object[in.readInt()];
+			for (int i = 0; i < defaults.length; ++i)
+				defaults[i] = value();
+			String[] dyn = in.readBoolean() ? strings() : null;
+			return kind == ARGS_ARRAY_SPEC
+					? new ArgsArraySpec(params, defaults, atParam, dyn, strings())
+					: new FunctionSpec(params, defaults, atParam, dyn);
+		}
+
+		private String[] strings() throws IOException {
+			String[] a = new String[in.readInt()];
+			for (int i = 0; i < a.length; ++i)
+				a[i] = in.readUTF();
+			return a;
+		}
+
+		private String string() throws IOException {
+			return in.readBoolean() ? in.readUTF() : null;
+		}
+
+		/**
+		 * Replace the function id arguments to
+		 * Ops.blockReturnException and Ops.blockReturnHandler
+		 * with new ids that are unique in this process.
+		 * The same old id gets the same new id across the whole definition.
+		 */
+		private byte[] remapFnIds(byte[] code) {
+			ClassNode cn = new ClassNode();
+			new ClassReader(code).accept(cn, 0);
+			boolean changed = false;
+			for (MethodNode mn : cn.methods)
+				for (AbstractInsnNode insn : mn.instructions.toArray())
+					if (isBlockReturnCall(insn)) {
+						AbstractInsnNode prev = insn.getPrevious();
+						int newId = fnIds.computeIfAbsent(intValue(prev),
+								k -> AstCompile.newFnId());
+						mn.instructions.set(prev, intInsn(newId));
+						changed = true;
+					}
+			if (! changed)
+				return code;
+			ClassWriter cw = new ClassWriter(0);
+			cn.accept(cw);
+			return cw.toByteArray();
+		}
+
+		private static final String OPS = Ops.class.getName().replace('.', '/');
+
+		private static boolean isBlockReturnCall(AbstractInsnNode insn) {
+			if (insn.getOpcode() != Opcodes.INVOKESTATIC)
+				return false;
+			MethodInsnNode m = (MethodInsnNode) insn;
+			return m.owner.equals(OPS) &&
+					(m.name.equals("blockReturnException") ||
+					m.name.equals("blockReturnHandler"));
+		}
+
+		private static int intValue(AbstractInsnNode insn) {
+			int op = insn.getOpcode();
+			if (Opcodes.ICONST_M1 <= op && op <= Opcodes.ICONST_5)
+				return op - Opcodes.ICONST_0;
+			if (op == Opcodes.BIPUSH || op == Opcodes.SIPUSH)
+				return ((IntInsnNode) insn).operand;
+			if (op == Opcodes.LDC)
+				return (Integer) ((LdcInsnNode) insn).cst;
+			throw new SuException("expected function id");
+		}
+
+		private static AbstractInsnNode intInsn(int i) {
+			if (-1 <= i && i <= 5)
+				return new InsnNode(Opcodes.ICONST_0 + i);
+			if (Byte.MIN_VALUE <= i && i <= Byte.MAX_VALUE)
+				return new IntInsnNode(Opcodes.BIPUSH, i);
+			if (Short.MIN_VALUE <= i && i <= Short.MAX_VALUE)
+				return new IntInsnNode(Opcodes.SIPUSH, i);
+			return new LdcInsnNode(i);
+		}
+	}
+
+}
@@ -54,6 +54,11 @@ public abstract class Generator<T> {
 
 	public abstract T in(T expression, T list);
 
+	/** A $n placeholder in a prepared query */
+	public T parameter(int n) {
+		return null;
+	}
+
 	public T returnStatement(T expression, Object context, int lineNumber) {
 		return null;
 	}
@@ -296,12 +296,33 @@ public class ParseExpression<T, G extends Generator<T>> extends Parse<T, G> {
 			}
 		case IDENTIFIER:
 			return primaryIdentifier();
+		case CAT:
+			if (inQuery)
+				return parameter();
+			syntaxError();
+			return null; // unreachable
 		default:
 			syntaxError();
 			return null; // unreachable
 		}
 	}
 
+	/** $1, $2, ... in prepared queries */
+	private T parameter() {
+		match(CAT);
+		if (token != NUMBER)
+			syntaxError("expected parameter number after $");
+		int n;
+		try {
+			n = Integer.parseInt(lexer.getValue());
+		} catch (NumberFormatException e) {
+			n = 0;
+		}
+		if (n < 1)
+			syntaxError("invalid parameter $" + lexer.getValue());
+		return matchReturn(NUMBER, generator.parameter(n));
+	}
+
 	private T primaryIdentifier() {
 		switch (lexer.getKeyword()) {
 		case FUNCTION:
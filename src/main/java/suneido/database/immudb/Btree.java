@@ -11,6 +11,10 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.Lists;
@@ -741,6 +745,46 @@ class Btree implements TranIndex {
 		return fracs;
 	}
 
+	/**
+	 * Used to partition an index into ranges for parallel scanning.
+	 * Candidate keys are taken from the tree (non-leaf) nodes,
+	 * going down levels until there are enough of them.
+	 * They are then chosen using rangefrac
+	 * so the ranges are roughly equal in size.
+	 * @return Up to nparts - 1 ascending keys, empty if there is only one leaf
+	 */
+	@Override
+	public List<Record> splitKeys(int nparts) {
+		TreeSet<Record> candidates = new TreeSet<>();
+		List<BtreeNode> nodes = Collections.singletonList(rootNode);
+		for (int level = treeLevels; level > 0; --level) {
+			// leftmost tree keys are minimized so skip them
+			for (BtreeNode node : nodes)
+				for (int i = 1; i < node.size(); ++i)
+					candidates.add(node.get(i).key);
+			if (level == 1 || candidates.size() >= 4 * nparts)
+				break;
+			List<BtreeNode> children = new ArrayList<>();
+			for (BtreeNode node : nodes)
+				for (int i = 0; i < node.size(); ++i)
+					children.add(childNode(node, i));
+			nodes = children;
+		}
+		List<Record> splits = new ArrayList<>();
+		Iterator<Record> iter = candidates.iterator();
+		for (int part = 1; part < nparts; ++part) {
+			float target = (float) part / nparts;
+			while (iter.hasNext()) {
+				Record key = iter.next();
+				if (rangefrac(MIN_RECORD, key) >= target) {
+					splits.add(key);
+					break;
+				}
+			}
+		}
+		return splits;
+	}
+
 //	void trace(String s) {
 //		suneido.database.query.Table.trace(s);
 //	}
@@ -328,6 +328,17 @@ public class Database implements AutoCloseable {
 		return dstor.sizeFrom(0) + istor.sizeFrom(0);
 	}
 
+	/**
+	 * Used to validate caches of table contents.
+	 * @return An object that is replaced (i.e. compare by identity)
+	 * whenever a commit modifies the table, or null if no such table
+	 */
+	public Object tableVersion(String tableName) {
+		State st = state;
+		Table tbl = st.schema.get(tableName);
+		return tbl == null ? null : st.dbinfo.get(tbl.num);
+	}
+
 	public String getSchema(String tableName) {
 		ReadTransaction t = readTransaction();
 		try {
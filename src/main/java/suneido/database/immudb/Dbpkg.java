@@ -9,6 +9,8 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 
+import suneido.database.query.SlowQueryLog;
+import suneido.database.query.TempIndex;
 import suneido.util.FileUtils;
 
 /**
@@ -99,6 +101,10 @@ public class Dbpkg {
 			Transactions.MAX_UPDATE_TRAN_DURATION_SEC = (Integer) value;
 		if (name.equals("max_writes_per_tran"))
 			UpdateTransaction.MAX_WRITES_PER_TRANSACTION = (Integer) value;
+		if (name.equals("temp_index_budget_mb"))
+			TempIndex.MEMORY_BUDGET = (Integer) value * 1024L * 1024;
+		if (name.equals("slow_query_ms"))
+			SlowQueryLog.THRESHOLD_MS = (Integer) value;
 	}
 
 	public static boolean dbExists(String dbFilename) {
@@ -5,6 +5,7 @@
 package suneido.database.immudb;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import com.google.common.collect.Lists;
 
@@ -98,6 +99,11 @@ class OverlayIndex implements TranIndex {
 		return global.rangefrac(from, to);
 	}
 
+	@Override
+	public List<Record> splitKeys(int nparts) {
+		return global.splitKeys(nparts);
+	}
+
 	@Override
 	public BtreeInfo info() {
 		throw new UnsupportedOperationException();
@@ -5,6 +5,7 @@
 package suneido.database.immudb;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeMap;
 
@@ -243,6 +244,11 @@ class ReadTransaction extends Transaction {
 		return getIndex(index).rangefrac(from, to);
 	}
 
+	@Override
+	public List<Record> splitKeys(int tblnum, String columns, int nparts) {
+		return getIndex(tblnum, columns).splitKeys(nparts);
+	}
+
 	private static boolean sameKey(Record from, Record to) {
 		if (from.size() != to.size() - 1)
 			return false;
@@ -19,6 +19,7 @@ import gnu.trove.strategy.HashingStrategy;
 import suneido.SuException;
 import suneido.database.immudb.Bootstrap.TN;
 import suneido.database.immudb.IndexedData.Mode;
+import suneido.util.Metrics;
 
 /**
  * Abstract base class for {@link UpdateTransaction} and {@link BulkTransaction}
@@ -216,7 +217,14 @@ abstract class ReadWriteTransaction extends ReadTransaction {
 	@SuppressWarnings("serial")
 	protected static class Conflict extends SuException {
 		Conflict(String explanation) {
-			super("transaction conflict: " + explanation);
+			this(explanation, "");
+		}
+
+		/** @param reason Used as the metrics label, without the detail */
+		Conflict(String reason, String detail) {
+			super("transaction conflict: " + reason + detail);
+			Metrics.counter("suneido_conflicts_total",
+					"Transaction conflicts by reason", "reason", reason).inc();
 		}
 	}
 
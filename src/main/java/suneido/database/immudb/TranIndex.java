@@ -4,6 +4,8 @@
 
 package suneido.database.immudb;
 
+import java.util.List;
+
 /**
  * Common interface for {@link Btree} and {@link OverlayIndex}
  */
@@ -28,6 +30,9 @@ interface TranIndex {
 	int totalSize();
 	float rangefrac(Record from, Record to);
 
+	/** @return Keys that split the index into roughly equal ranges */
+	List<Record> splitKeys(int nparts);
+
 	BtreeInfo info();
 
 	/**
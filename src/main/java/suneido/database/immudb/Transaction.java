@@ -4,6 +4,8 @@
 
 package suneido.database.immudb;
 
+import java.util.List;
+
 public abstract class Transaction {
 
 	public abstract boolean isReadonly();
@@ -29,6 +31,7 @@ public abstract class Transaction {
 	public abstract int indexSize(int tblnum, String columns);
 	public abstract int keySize(int tblnum, String columns);
 	public abstract float rangefrac(int tblnum, String columns, Record from, Record to);
+	public abstract List<Record> splitKeys(int tblnum, String columns, int nparts);
 
 	public abstract void abortIfNotComplete();
 
@@ -19,6 +19,9 @@ import gnu.trove.map.hash.TIntIntHashMap;
 import gnu.trove.set.hash.TIntHashSet;
 import suneido.database.immudb.DbRebuild.RebuildTransaction;
 import suneido.util.Errlog;
+import suneido.util.Metrics;
+import suneido.util.Metrics.Counter;
+import suneido.util.Metrics.Histogram;
 import suneido.util.StepTimer;
 import suneido.util.ThreadConfined;
 
@@ -204,13 +207,26 @@ class UpdateTransaction extends ReadWriteTransaction {
 
 	// commit ------------------------------------------------------------------
 
+	private static final Histogram commitLatency =
+			Metrics.histogram("suneido_commit_seconds",
+					"Update transaction commit time including lock wait");
+	private static final Histogram commitLockWait =
+			Metrics.histogram("suneido_commit_lock_wait_seconds",
+					"Time waiting for the commit lock");
+	private static final Counter commits =
+			Metrics.counter("suneido_commits_total",
+					"Update transactions committed");
+
 	@Override
 	protected void commit() {
 		checkLimits();
+		long t = System.nanoTime();
 		StepTimer st = new StepTimer("transaction commit", COMMIT_LIMIT);
 		buildReads();
 		st.step();
+		long beforeLock = System.nanoTime();
 		db.withCommitLock(() -> {
+			commitLockWait.record(System.nanoTime() - beforeLock);
 			st.step();
 			if (db.state.schema != dbstate.schema)
 				throw new Conflict("schema changed");
@@ -231,6 +247,8 @@ class UpdateTransaction extends ReadWriteTransaction {
 			}
 		});
 		st.finish();
+		commitLatency.record(System.nanoTime() - t);
+		commits.inc();
 	}
 
 	private void checkLimits() {
@@ -287,7 +305,7 @@ class UpdateTransaction extends ReadWriteTransaction {
 				continue;
 			Record key = key(r, index.colNums);
 			if (tr.contains(key))
-				throw new Conflict("read in " + table.name);
+				throw new Conflict("read", " in " + table.name);
 		}
 	}
 
@@ -4,6 +4,7 @@
 
 package suneido.database.query;
 
+import suneido.SuException;
 import suneido.compiler.Lexer;
 import suneido.compiler.ParseExpression;
 import suneido.database.immudb.Transaction;
@@ -25,11 +26,14 @@ public class CompileQuery {
 
 	public static Query query(Transaction t, ServerData serverData, String s,
 			boolean is_cursor) {
-		return parse(t, serverData, s).setup(is_cursor, t);
+		long start = System.nanoTime();
+		Query q = parse(t, serverData, s).setup(is_cursor, t);
+		SlowQueryLog.start(q, s, serverData, System.nanoTime() - start);
+		return q;
 	}
 
 	public static Query query(Transaction t, ServerData serverData, String s) {
-		return parse(t, serverData, s).setup(t);
+		return query(t, serverData, s, false);
 	}
 
 	/** for tests */
@@ -43,9 +47,18 @@ public class CompileQuery {
 	}
 
 	public static Query parse(Transaction tran, ServerData serverData, String s) {
+		TreeQueryGenerator generator = new TreeQueryGenerator(tran);
+		Query q = parse(tran, serverData, s, generator);
+		if (! generator.params().isEmpty())
+			throw new SuException("query parameters ($1) require prepare");
+		return q;
+	}
+
+	/** Used by {@link PreparedQuery} to get the parameters */
+	static Query parse(Transaction tran, ServerData serverData, String s,
+			TreeQueryGenerator generator) {
 		Lexer lexer = new Lexer(s);
 		lexer.ignoreCase();
-		TreeQueryGenerator generator = new TreeQueryGenerator(tran);
 		ParseQuery<Object, QueryGenerator<Object>> pc =
 				new ParseQuery<Object, QueryGenerator<Object>>(lexer, generator);
 		pc.serverData(serverData);
@@ -52,7 +52,7 @@ public class Difference extends Compatible {
 	}
 
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		Row row;
 		while (null != (row = source.get(dir)) && isdup(row))
 			;
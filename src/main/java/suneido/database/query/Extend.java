@@ -129,7 +129,7 @@ public class Extend extends Query1 {
 	// since Header.schema and DbmsQueryRemote.parseHeader don't handle it
 
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		if (hdr == null)
 			hdr = header();
 		Row srcrow = source.get(dir);
@@ -0,0 +1,446 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.query;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import suneido.SuException;
+import suneido.database.immudb.Dbpkg;
+import suneido.database.immudb.Record;
+import suneido.database.immudb.RecordStore;
+import suneido.util.IntMergeTree;
+
+/**
+ * Sorts the keys for {@link TempIndex} within a memory budget.
+ * <p>
+ * Keys are accumulated in a {@link RecordStore} and sorted by an
+ * {@link IntMergeTree}. If this exceeds the budget,
+ * the sorted keys are written to a temporary file as a "run"
+ * and the memory is released.
+ * Iteration is then a k-way merge of the runs,
+ * handled the same way as {@link IntMergeTree.Iter}.
+ * If nothing was spilled, iteration just uses the IntMergeTree.
+ * <p>
+ * Each run keeps every {@link #SAMPLE}'th key in memory
+ * so a seek only has to read a small part of each file.
+ */
+class ExternalSort {
+	/** per key memory over and above its packed size */
+	private static final int OVERHEAD = 8;
+	private static final int SAMPLE = 64;
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private static final String PREFIX = "sutemp";
+	private static final String SUFFIX = ".sort";
+	/** run files older than this are left over from a crash */
+	private static final long LEFTOVER_MS = TimeUnit.DAYS.toMillis(1);
+	private static final AtomicLong totalRuns = new AtomicLong();
+	private static final AtomicLong totalBytes = new AtomicLong();
+	private final long budget;
+	private RecordStore stor;
+	private IntMergeTree tree;
+	private long size;
+	private final List<Run> runs = new ArrayList<>();
+
+	ExternalSort(long budget) {
+		this.budget = budget;
+		reset();
+	}
+
+	private void reset() {
+		stor = Dbpkg.recordStore();
+		tree = new IntMergeTree((x, y) -> stor.get(x).compareTo(stor.get(y)));
+		size = 0;
+	}
+
+	void add(Record key) {
+		tree.add(stor.add(key));
+		size += key.bufSize() + OVERHEAD;
+		if (size > budget)
+			spill();
+	}
+
+	/** Write the current keys to a sorted run file */
+	private void spill() {
+		if (tree.size() == 0)
+			return;
+		Run run = new Run();
+		runs.add(run); // before writing so close() will clean up on error
+		run.write(stor, tree);
+		totalRuns.incrementAndGet();
+		totalBytes.addAndGet(run.length);
+		reset();
+	}
+
+	/** Should be called after all the keys have been added */
+	Iter iter() {
+		if (runs.isEmpty())
+			return new MemIter(stor, tree.iter());
+		spill();
+		return new MergeIter(runs);
+	}
+
+	/** @return The number of runs spilled to disk */
+	int spills() {
+		return runs.size();
+	}
+
+	/** Delete the temporary files, if any */
+	void close() {
+		for (Run run : runs)
+			run.close();
+		runs.clear();
+	}
+
+	/** @return The number of runs spilled by all temp indexes */
+	static long totalSpills() {
+		return totalRuns.get();
+	}
+
+	/** @return The number of bytes spilled by all temp indexes */
+	static long totalSpillBytes() {
+		return totalBytes.get();
+	}
+
+	/**
+	 * Runs are deleted by close, so files are only left behind
+	 * if the process crashed. (Not deleteOnExit, which keeps every path
+	 * in memory until exit.)
+	 * Only deletes old files since other processes may be sorting.
+	 */
+	static void deleteLeftovers() {
+		File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles(
+				(dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+		if (files == null)
+			return;
+		long cutoff = System.currentTimeMillis() - LEFTOVER_MS;
+		for (File f : files)
+			if (f.lastModified() < cutoff)
+				f.delete();
+	}
+
+	/**
+	 * seekFirst positions before the first key >= key,
+	 * seekLast positions after the last key <= key.
+	 * next and prev return null at the end.
+	 */
+	interface Iter {
+		void seekFirst(Record key);
+		void seekLast(Record key);
+		Record next();
+		Record prev();
+	}
+
+	private static class MemIter implements Iter {
+		private final RecordStore stor;
+		private final IntMergeTree.Iter iter;
+
+		MemIter(RecordStore stor, IntMergeTree.Iter iter) {
+			this.stor = stor;
+			this.iter = iter;
+		}
+
+		@Override
+		public void seekFirst(Record key) {
+			iter.seekFirst(stor.add(key));
+		}
+
+		@Override
+		public void seekLast(Record key) {
+			iter.seekLast(stor.add(key));
+		}
+
+		@Override
+		public Record next() {
+			return get(iter.next());
+		}
+
+		@Override
+		public Record prev() {
+			return get(iter.prev());
+		}
+
+		private Record get(int adr) {
+			return (adr == Integer.MIN_VALUE || adr == Integer.MAX_VALUE)
+					? null : stor.get(adr);
+		}
+	}
+
+	private enum Dir { NEXT, PREV }
+
+	/** The same logic as {@link IntMergeTree.Iter} */
+	private static class MergeIter implements Iter {
+		private final List<Run> runs;
+		private Dir dir = null;
+
+		MergeIter(List<Run> runs) {
+			this.runs = runs;
+		}
+
+		@Override
+		public void seekFirst(Record key) {
+			for (Run run : runs)
+				run.seekFirst(key);
+			dir = Dir.NEXT;
+		}
+
+		@Override
+		public void seekLast(Record key) {
+			for (Run run : runs)
+				run.seekLast(key);
+			dir = Dir.PREV;
+		}
+
+		@Override
+		public Record next() {
+			if (dir == null)
+				seekFirst(Dbpkg.MIN_RECORD);
+			else if (dir == Dir.PREV)
+				next2(); // have to skip when changing direction
+			return next2();
+		}
+
+		private Record next2() {
+			Run minRun = null;
+			Record min = null;
+			for (Run run : runs) {
+				Record x = run.peekNext();
+				if (x != null && (min == null || x.compareTo(min) <= 0)) {
+					min = x;
+					minRun = run;
+				}
+			}
+			if (min == null)
+				dir = Dir.PREV;
+			else {
+				dir = Dir.NEXT;
+				minRun.next();
+			}
+			return min;
+		}
+
+		@Override
+		public Record prev() {
+			if (dir == null)
+				seekLast(Dbpkg.MAX_RECORD);
+			else if (dir == Dir.NEXT)
+				prev2(); // have to skip when changing direction
+			return prev2();
+		}
+
+		private Record prev2() {
+			Run maxRun = null;
+			Record max = null;
+			for (int i = runs.size() - 1; i >= 0; --i) {
+				Record x = runs.get(i).peekPrev();
+				if (x != null && (max == null || x.compareTo(max) >= 0)) {
+					max = x;
+					maxRun = runs.get(i);
+				}
+			}
+			if (max == null)
+				dir = Dir.NEXT;
+			else {
+				dir = Dir.PREV;
+				maxRun.prev();
+			}
+			return max;
+		}
+	}
+
+	/**
+	 * A sorted run in a temporary file.
+	 * Each key is stored as length, packed record, length
+	 * so the file can be read in either direction.
+	 * pos is the file offset between the previous and next keys.
+	 */
+	private static class Run {
+		private final File file;
+		private FileChannel chan;
+		private long length;
+		private final RecordStore samples = Dbpkg.recordStore();
+		private final List<Integer> sampleKeys = new ArrayList<>();
+		private final List<Long> sampleOffsets = new ArrayList<>();
+		private long pos = 0;
+		private Record nextKey;
+		private Record prevKey;
+		private int nextLen;
+		private int prevLen;
+		private ByteBuffer block;
+		private long blockOffset;
+
+		Run() {
+			try {
+				file = File.createTempFile(PREFIX, SUFFIX);
+			} catch (IOException e) {
+				throw new SuException("temp index: can't create temp file", e);
+			}
+		}
+
+		void write(RecordStore stor, IntMergeTree tree) {
+			IntMergeTree.Iter iter = tree.iter();
+			ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE);
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(
+							new FileOutputStream(file), BLOCK_SIZE))) {
+				long offset = 0;
+				for (int i = 0, adr; Integer.MAX_VALUE != (adr = iter.next()); ++i) {
+					Record key = stor.get(adr);
+					if (i % SAMPLE == 0) {
+						sampleKeys.add(samples.add(key));
+						sampleOffsets.add(offset);
+					}
+					int n = key.bufSize();
+					if (n > buf.capacity())
+						buf = ByteBuffer.allocate(n);
+					buf.clear();
+					key.pack(buf);
+					out.writeInt(n);
+					out.write(buf.array(), 0, n);
+					out.writeInt(n);
+					offset += n + 8;
+				}
+				length = offset;
+			} catch (IOException e) {
+				throw new SuException("temp index: error writing temp file", e);
+			}
+			try {
+				chan = new RandomAccessFile(file, "r").getChannel();
+			} catch (IOException e) {
+				throw new SuException("temp index: error opening temp file", e);
+			}
+		}
+
+		void seekFirst(Record key) {
+			// start from the last sample < key
+			int lo = 0;
+			int hi = sampleKeys.size();
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (sample(mid).compareTo(key) < 0)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			setPos(lo == 0 ? 0 : sampleOffsets.get(lo - 1));
+			for (Record x; (x = peekNext()) != null && x.compareTo(key) < 0; )
+				next();
+		}
+
+		void seekLast(Record key) {
+			// start from the first sample > key
+			int lo = 0;
+			int hi = sampleKeys.size();
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (sample(mid).compareTo(key) <= 0)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+			setPos(lo == sampleKeys.size() ? length : sampleOffsets.get(lo));
+			for (Record x; (x = peekPrev()) != null && x.compareTo(key) > 0; )
+				prev();
+		}
+
+		private Record sample(int i) {
+			return samples.get(sampleKeys.get(i));
+		}
+
+		private void setPos(long pos) {
+			this.pos = pos;
+			nextKey = prevKey = null;
+		}
+
+		Record peekNext() {
+			if (nextKey == null && pos < length) {
+				nextLen = read(pos, 4, true).getInt();
+				nextKey = copy(read(pos + 4, nextLen, true));
+			}
+			return nextKey;
+		}
+
+		Record peekPrev() {
+			if (prevKey == null && pos > 0) {
+				prevLen = read(pos - 4, 4, false).getInt();
+				prevKey = copy(read(pos - 4 - prevLen, prevLen, false));
+			}
+			return prevKey;
+		}
+
+		void next() {
+			peekNext();
+			pos += nextLen + 8;
+			prevKey = nextKey;
+			prevLen = nextLen;
+			nextKey = null;
+		}
+
+		void prev() {
+			peekPrev();
+			pos -= prevLen + 8;
+			nextKey = prevKey;
+			nextLen = prevLen;
+			prevKey = null;
+		}
+
+		private static Record copy(ByteBuffer buf) {
+			ByteBuffer copy = ByteBuffer.allocate(buf.remaining());
+			copy.put(buf);
+			copy.flip();
+			return Dbpkg.record(copy);
+		}
+
+		/**
+		 * @return A buffer for n bytes at offset, from the current block if possible.
+		 * A new block is read ahead of the offset if forward, else behind it.
+		 */
+		private ByteBuffer read(long offset, int n, boolean forward) {
+			if (block == null || offset < blockOffset ||
+					offset + n > blockOffset + block.limit()) {
+				int size = Math.max(n, BLOCK_SIZE);
+				blockOffset = forward ? offset
+						: Math.max(0, offset + n - size);
+				if (block == null || block.capacity() < size)
+					block = ByteBuffer.allocate(size);
+				block.clear();
+				block.limit((int) Math.min(size, length - blockOffset));
+				try {
+					while (block.hasRemaining())
+						if (chan.read(block, blockOffset + block.position()) < 0)
+							break;
+				} catch (IOException e) {
+					throw new SuException("temp index: error reading temp file", e);
+				}
+				block.flip();
+			}
+			ByteBuffer buf = block.duplicate();
+			buf.position((int) (offset - blockOffset));
+			buf.limit(buf.position() + n);
+			return buf.slice();
+		}
+
+		void close() {
+			try {
+				if (chan != null)
+					chan.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			file.delete();
+		}
+	}
+
+}
@@ -111,7 +111,7 @@ public class History extends Query {
 	}
 
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		Record[] data = (dir == Dir.NEXT) ? iter.getNext() : iter.getPrev();
 		if (data == null)
 			return null;
@@ -87,7 +87,7 @@ public class Intersect extends Compatible {
 	}
 
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		if (disjoint != null)
 			return null;
 		Row row;
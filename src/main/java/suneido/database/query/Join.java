@@ -252,7 +252,7 @@ public class Join extends Query2 {
 	}
 
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		if (hdr1 == null) {
 			hdr1 = source.header();
 			empty2 = new Row(source2.header().size());
@@ -0,0 +1,140 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.query;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import suneido.SuException;
+import suneido.database.immudb.Transaction;
+import suneido.database.query.expr.Param;
+import suneido.database.server.ServerData;
+import suneido.util.NotThreadSafe;
+
+/**
+ * A query with parameters ($1, $2, ...) that is parsed and optimized once
+ * and then executed many times with different parameter values.
+ * Owned by a session ({@link ServerData}).
+ * <p>
+ * The plan is optimized using the parameter values of the first execution.
+ * After that only the {@link Select} key ranges are recomputed
+ * from the parameter values, see {@link Query#rebind}.
+ * The plan is remade if the schema of any of its tables has changed
+ * (e.g. an index was dropped). The schema is immutable and only replaced
+ * by schema changes, so it is compared by identity.
+ * Changes to the data do not affect the plan.
+ * If the same prepared query is executed again while it is still open
+ * (e.g. nested) an additional plan is made.
+ */
+@NotThreadSafe
+public class PreparedQuery {
+	private final String query;
+	private final int nparams;
+	/** a plan that is not in use, ready to be rebound */
+	private Plan idle;
+	private final Map<Query, Plan> inUse = new IdentityHashMap<>();
+
+	private static class Plan {
+		final Query query;
+		final List<Param> params;
+		/** the schema of each table when the plan was made, or null */
+		final Map<String, Object> schemas;
+
+		Plan(Query query, List<Param> params, Map<String, Object> schemas) {
+			this.query = query;
+			this.params = params;
+			this.schemas = schemas;
+		}
+
+		boolean isCurrent(Transaction tran) {
+			for (Map.Entry<String, Object> e : schemas.entrySet())
+				if (tran.getTable(e.getKey()) != e.getValue())
+					return false;
+			return true;
+		}
+	}
+
+	private static void bind(List<Param> params, List<Object> args) {
+		for (Param p : params)
+			p.set(args.get(p.index - 1));
+	}
+
+	/** Parses the query to validate it and count the parameters */
+	public PreparedQuery(Transaction tran, ServerData serverData, String query) {
+		if (CompileQuery.isRequest(query))
+			throw new SuException("prepare: only queries can be prepared");
+		TreeQueryGenerator generator = new TreeQueryGenerator(tran);
+		CompileQuery.parse(tran, serverData, query, generator);
+		Map<Integer, Param> params = generator.params();
+		int n = 0;
+		for (int i : params.keySet())
+			if (i != ++n)
+				throw new SuException("prepare: missing parameter $" + n);
+		this.query = query;
+		this.nparams = n;
+	}
+
+	public int nparams() {
+		return nparams;
+	}
+
+	/**
+	 * @return A query with the parameters set to args,
+	 * reusing the previous plan if possible.
+	 * Should be passed to {@link #release} when it is closed.
+	 */
+	public Query execute(Transaction tran, ServerData serverData,
+			List<Object> args) {
+		if (args.size() != nparams)
+			throw new SuException("execute: expected " + nparams +
+					" parameters, got " + args.size());
+		Plan plan = idle;
+		idle = null;
+		if (plan != null && plan.isCurrent(tran)) {
+			bind(plan.params, args);
+			plan.query.setTransaction(tran);
+			if (plan.query.rebind()) {
+				plan.query.rewind();
+				SlowQueryLog.start(plan.query, query, serverData, 0);
+				inUse.put(plan.query, plan);
+				return plan.query;
+			}
+		}
+		plan = plan(tran, serverData, args);
+		inUse.put(plan.query, plan);
+		return plan.query;
+	}
+
+	private Plan plan(Transaction tran, ServerData serverData,
+			List<Object> args) {
+		long start = System.nanoTime();
+		TreeQueryGenerator generator = new TreeQueryGenerator(tran);
+		Query q = CompileQuery.parse(tran, serverData, query, generator);
+		Map<String, Object> schemas = new HashMap<>();
+		for (String table : generator.tables())
+			schemas.put(table, tran.getTable(table));
+		List<Param> params = new ArrayList<>(generator.params().values());
+		bind(params, args); // before setup so optimize uses the values
+		q = q.setup(false, tran);
+		SlowQueryLog.start(q, query, serverData, System.nanoTime() - start);
+		return new Plan(q, params, schemas);
+	}
+
+	/** Make the plan for a closed query available for the next execute */
+	public void release(Query q) {
+		Plan plan = inUse.remove(q);
+		if (plan != null)
+			idle = plan;
+	}
+
+	@Override
+	public String toString() {
+		return query;
+	}
+
+}
@@ -93,7 +93,7 @@ public class Product extends Query2 {
 	}
 
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		Row row2 = source2.get(dir);
 		if (rewound) {
 			rewound = false;
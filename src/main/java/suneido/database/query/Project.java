@@ -317,7 +317,7 @@ public class Project extends Query1 {
 	}
 
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		if (first) {
 			first = false;
 			srcHdr = source.header();
@@ -427,6 +427,12 @@ public class Project extends Query1 {
 		rewound = true;
 	}
 
+	@Override
+	boolean rebind() {
+		first = true;
+		return super.rebind();
+	}
+
 	@Override
 	public void output(Record r) {
 		ckmodify("output");
@@ -30,6 +30,8 @@ public abstract class Query {
 	private List<String> tempindex;
 	public enum Dir { NEXT, PREV }
 	private double cost = 0; // set by setup, used by explain
+	/** only set when {@link SlowQueryLog} is enabled */
+	SlowQueryLog.Stats stats;
 
 	protected static final List<String> noFields = Collections.emptyList();
 	protected static final Set<String> noNeeds = Collections.emptySet();
@@ -69,7 +71,36 @@ public abstract class Query {
 	}
 	public abstract void rewind();
 
-	public abstract Row get(Dir dir);
+	/** Calls get1, collecting statistics if {@link #stats} is set */
+	public final Row get(Dir dir) {
+		if (stats == null)
+			return get1(dir);
+		long t = System.nanoTime();
+		Row row = get1(dir);
+		stats.add(row, System.nanoTime() - t);
+		return row;
+	}
+
+	abstract Row get1(Dir dir);
+
+	/** @return The source queries, used by {@link SlowQueryLog} */
+	List<Query> sources() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Prepare to execute the query again
+	 * after the values of its parameters have been changed.
+	 * Discards any state computed from the data.
+	 * Used by {@link PreparedQuery}, which calls rewind afterwards.
+	 * @return false if the plan can't be reused and must be redone
+	 */
+	boolean rebind() {
+		boolean ok = true;
+		for (Query src : sources())
+			ok = src.rebind() && ok;
+		return ok;
+	}
 
 	/** Originate from {@link Select} and {@link Extend} */
 	List<Fixed> fixed() {
@@ -228,6 +259,14 @@ public abstract class Query {
 	/** Used by TempIndex to optimize sorting a single database table */
 	abstract boolean singleDbTable();
 
+	/**
+	 * Tells the query that at most n rows will be read
+	 * in the direction of the first get, e.g. by QueryFirst.
+	 * Used by Sort and TempIndex, ignored by default.
+	 */
+	public void limit(int n) {
+	}
+
 	/** used for trace, e.g. slow queries in Select */
 	public abstract void close();
 
@@ -41,6 +41,11 @@ public abstract class Query1 extends Query {
 		source.setTransaction(tran);
 	}
 
+	@Override
+	List<Query> sources() {
+		return Collections.singletonList(source);
+	}
+
 	// estimated result sizes
 	@Override
 	double nrecords() {
@@ -4,6 +4,10 @@
 
 package suneido.database.query;
 
+import static java.util.Arrays.asList;
+
+import java.util.List;
+
 import suneido.database.immudb.Transaction;
 
 public abstract class Query2 extends Query1 {
@@ -38,6 +42,11 @@ public abstract class Query2 extends Query1 {
 		source2.setTransaction(tran);
 	}
 
+	@Override
+	List<Query> sources() {
+		return asList(source, source2);
+	}
+
 	@Override
 	public Header header() {
 		return new Header(source.header(), source2.header());
@@ -23,7 +23,7 @@ public abstract class QueryAction extends Query1 {
 		return super.columns();
 	}
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		throw unreachable();
 	}
 	@Override
@@ -157,7 +157,7 @@ public class Rename extends Query1 {
 	}
 
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		return source.get(dir);
 	}
 
@@ -25,10 +25,10 @@ import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableSet;
 
-import gnu.trove.set.hash.TIntHashSet;
 import suneido.SuException;
 import suneido.compiler.Token;
 import suneido.database.immudb.Dbpkg;
+import suneido.database.immudb.IndexIter;
 import suneido.database.immudb.Record;
 import suneido.database.immudb.RecordBuilder;
 import suneido.database.immudb.Transaction;
@@ -38,21 +38,29 @@ import suneido.runtime.Ops;
 import suneido.runtime.Pack;
 import suneido.util.ByteBuffers;
 import suneido.util.CommaStringBuilder;
+import suneido.util.RoaringBitmap;
 import suneido.util.Util;
 
 public class Select extends Query1 {
+	/** minimum fixed cost of a filter, to read the index and build the bitmap */
+	private static final double FILTER_COST = 1000;
 	private Multi expr;
 	private boolean optFirst = true;
 	private boolean conflicting = false;
 	private List<Fixed> fix;
 	private List<String> source_index;	// may have extra stuff on the end
 										// or be missing fields that are fixed
-	private List<List<String>> filter;
+	private List<Filter> filter;
+	private List<Filter> unions;
 	private Set<String> select_needs;
 	private Table tbl;
 	private List<String> primary;
 	private List<List<String>> theindexes;
 	private Map<String, Iselect> isels;
+	/** the comparisons the isels were built from, kept for rebind */
+	private List<Cmp> cmps;
+	/** whether any of the cmps are to a parameter */
+	private boolean hasParams = false;
 	private List<List<String>> possible;
 	private Map<String, Double> ffracs;
 	private Map<List<String>, Double> ifracs;
@@ -67,7 +75,7 @@ public class Select extends Query1 {
 	private boolean newrange = true;
 	int n_in = 0;
 	int n_out = 0;
-	private TIntHashSet filterSet;
+	private RoaringBitmap filterSet;
 	private Header hdr;
 	private Transaction tran;
 
@@ -93,8 +101,8 @@ public class Select extends Query1 {
 			sb.append("^").append(listToParens(source_index));
 		if (filter != null) {
 			sb.append("%(");
-			for (List<String> f : filter)
-				sb.add(listToParens(f));
+			for (Filter f : filter)
+				sb.add(f.toString());
 			sb.append(")");
 		}
 		if (! nil(expr.exprs))
@@ -343,6 +351,8 @@ public class Select extends Query1 {
 		double cost = choose_primary(index);
 		if (primary == null)
 			return IMPOSSIBLE;
+		if (! is_cursor && ! hasParams && useFilters()) // filters would fix the values
+			cost = choose_filter(cost);
 
 		if (!freeze)
 			return cost;
@@ -359,7 +369,7 @@ public class Select extends Query1 {
 		theindexes = tbl.indexes();
 
 		ffracs = new HashMap<>();
-		List<Cmp> cmps = extract_cmps(); // WARNING: modifies expr
+		cmps = extract_cmps(); // WARNING: modifies expr
 		cmps_to_isels(cmps);
 		if (conflicting) {
 			nrecs = 0;
@@ -370,6 +380,7 @@ public class Select extends Query1 {
 		calc_field_fracs();
 		ifracs = new HashMap<>();
 		calc_index_fracs();
+		unions = union_filters();
 
 		// TODO should be frac of complete select, not just indexes
 		nrecs = datafrac(theindexes) * tbl.nrecords();
@@ -382,21 +393,13 @@ public class Select extends Query1 {
 			if (e == Constant.FALSE)
 				conflicting = true;
 
-			if (e.isTerm(fields))
-				if (e instanceof In) {
-					In in = (In) e;
-					Identifier id = (Identifier) in.expr;
-					cmps.add(new Cmp(id.ident, in.packed));
-					continue;
-				} else if (e instanceof BinOp) {
-					BinOp binop = (BinOp) e;
-					if (binop.op != ISNT) {
-						String field = ((Identifier) binop.left).ident;
-						ByteBuffer value = ((Constant) binop.right).packed;
-						cmps.add(new Cmp(field, binop.op, value));
-						continue;
-					}
-				}
+			Cmp cmp = cmp(e, fields);
+			if (cmp != null) {
+				cmps.add(cmp);
+				if (cmp.param != null)
+					hasParams = true;
+				continue;
+			}
 
 			if (e instanceof BinOp) {
 				BinOp binop = (BinOp) e;
@@ -418,6 +421,27 @@ public class Select extends Query1 {
 		}
 		return cmps;
 	}
+
+	/** @return A Cmp if e is a comparison of a field to a constant, else null */
+	private static Cmp cmp(Expr e, List<String> fields) {
+		if (e.isTerm(fields))
+			if (e instanceof In) {
+				In in = (In) e;
+				Identifier id = (Identifier) in.expr;
+				return new Cmp(id.ident, in.packed);
+			} else if (e instanceof BinOp) {
+				BinOp binop = (BinOp) e;
+				if (binop.op != ISNT) {
+					String field = ((Identifier) binop.left).ident;
+					if (binop.right instanceof Param)
+						return new Cmp(field, binop.op, (Param) binop.right);
+					ByteBuffer value = ((Constant) binop.right).packed;
+					return new Cmp(field, binop.op, value);
+				}
+			}
+		return null;
+	}
+
 	private void cmps_to_isels(List<Cmp> cmps) {
 		if (cmps.isEmpty())
 			return ;
@@ -425,20 +449,7 @@ public class Select extends Query1 {
 		Iselect isel = new Iselect();
 		for (int cmpi = 0; cmpi < cmps.size(); ++cmpi) {
 			Cmp cmp = cmps.get(cmpi);
-			Iselect r = new Iselect();
-			if (cmp.op == null) { // IN
-				r.values = cmp.values;
-				r.type = IselType.VALUES;
-			} else
-				switch (cmp.op) {
-				case IS:	r.org.x = r.end.x = cmp.value; break;
-				case LT:	r.end.x = cmp.value; r.end.d = -1; break;
-				case LTE:	r.end.x = cmp.value; break;
-				case GT:	r.org.x = cmp.value; r.org.d = +1; break;
-				case GTE:	r.org.x = cmp.value; break;
-				default:	throw unreachable();
-				}
-			isel.and_with(r);
+			isel.and_with(iselect(cmp));
 
 			if (cmpi + 1 >= cmps.size()
 					|| !cmp.ident.equals(cmps.get(cmpi + 1).ident)) {
@@ -456,6 +467,23 @@ public class Select extends Query1 {
 			trace(SELECT, "isels: " + isels);
 	}
 
+	private static Iselect iselect(Cmp cmp) {
+		Iselect r = new Iselect();
+		if (cmp.op == null) { // IN
+			r.values = cmp.values;
+			r.type = IselType.VALUES;
+		} else
+			switch (cmp.op) {
+			case IS:	r.org.x = r.end.x = cmp.value; break;
+			case LT:	r.end.x = cmp.value; r.end.d = -1; break;
+			case LTE:	r.end.x = cmp.value; break;
+			case GT:	r.org.x = cmp.value; r.org.d = +1; break;
+			case GTE:	r.org.x = cmp.value; break;
+			default:	throw unreachable();
+			}
+		return r;
+	}
+
 
 	private void identify_possible() {
 		// possible = indexes with isels
@@ -475,14 +503,7 @@ public class Select extends Query1 {
 	}
 
 	private double field_frac(String field) {
-		List<String> best_index = null;
-		int best_size = Integer.MAX_VALUE;
-		// look for smallest index starting with field
-		for (List<String> idx : theindexes)
-			if (idx.get(0).equals(field) && tbl.indexSize(idx) < best_size) {
-				best_index = idx;
-				best_size = tbl.indexSize(idx);
-			}
+		List<String> best_index = smallest_index(field);
 		if (best_index == null)
 			return .5;
 		Iselect fsel = isels.get(field);
@@ -494,6 +515,18 @@ public class Select extends Query1 {
 		return tmp;
 	}
 
+	/** @return The smallest index starting with field, or null if none */
+	private List<String> smallest_index(String field) {
+		List<String> best_index = null;
+		int best_size = Integer.MAX_VALUE;
+		for (List<String> idx : theindexes)
+			if (idx.get(0).equals(field) && tbl.indexSize(idx) < best_size) {
+				best_index = idx;
+				best_size = tbl.indexSize(idx);
+			}
+		return best_index;
+	}
+
 	private void calc_index_fracs() {
 		// ifracs = fraction selected from each index
 		for (List<String> idx : theindexes) {
@@ -644,6 +677,109 @@ public class Select extends Query1 {
 		return index_read_cost + data_read_cost;
 	}
 
+	/**
+	 * Look for other selective indexes, or unions of indexes for "or",
+	 * whose record addresses can be intersected in a bitmap
+	 * so fewer data records are read.
+	 * Sets filter.
+	 * @return The lower of primary_cost and the cost with filters
+	 */
+	private double choose_filter(double primary_cost) {
+		List<Filter> candidates = new ArrayList<>(unions);
+		for (List<String> idx : possible)
+			if (! idx.equals(primary) && ifracs.get(idx) < 1)
+				candidates.add(new Filter(asList(new Alt(idx, iselects(idx),
+						checks(idx))), ifracs.get(idx) * tbl.indexSize(idx)));
+		candidates.sort(Comparator.comparingDouble((Filter f) -> f.cost));
+		double best_cost = primary_cost;
+		List<Filter> filters = new ArrayList<>();
+		for (Filter f : candidates) {
+			filters.add(f);
+			double cost = filtercost(filters);
+			if (cost < best_cost)
+				best_cost = cost;
+			else
+				filters.remove(filters.size() - 1);
+		}
+		filter = filters.isEmpty() ? null : filters;
+		if (filter != null && tracing(SELECT))
+			trace(SELECT, "filter " + filter + " cost " + best_cost +
+					" vs " + primary_cost);
+		return best_cost;
+	}
+
+	private double filtercost(List<Filter> filters) {
+		double cost = ifracs.get(primary) * tbl.indexSize(primary);
+		List<List<String>> idxs = new ArrayList<>();
+		idxs.add(primary);
+		double union_frac = 1;
+		for (Filter f : filters) {
+			cost += f.cost + FILTER_COST;
+			if (f.alts.size() == 1)
+				idxs.add(f.alts.get(0).index);
+			else
+				union_frac *= f.frac;
+		}
+		return cost + datafrac(idxs) * union_frac * tbl.totalSize();
+	}
+
+	/** @return The isels to check for the fields of an index */
+	private Map<String, Iselect> checks(List<String> idx) {
+		Map<String, Iselect> checks = new HashMap<>();
+		for (String fld : idx)
+			if (isels.containsKey(fld))
+				checks.put(fld, isels.get(fld));
+		return checks;
+	}
+
+	/**
+	 * Look for "or" of comparisons on fields that each have an index
+	 * e.g. where a = 1 or b = 2
+	 * which can be handled with a union of the index addresses.
+	 * The "or" expression is left in expr.
+	 */
+	private List<Filter> union_filters() {
+		List<Filter> unions = new ArrayList<>();
+		if (conflicting)
+			return unions;
+		List<String> fields = tbl.tbl.getFields();
+		for (Expr e : expr.exprs)
+			if (e instanceof Or) {
+				Filter f = union_filter((Or) e, fields);
+				if (f != null)
+					unions.add(f);
+			}
+		return unions;
+	}
+
+	private Filter union_filter(Or or, List<String> fields) {
+		List<Alt> alts = new ArrayList<>();
+		double frac = 0;
+		double cost = 0;
+		for (Expr e : or.exprs) {
+			Cmp cmp = cmp(e, fields);
+			if (cmp == null || cmp.param != null)
+				return null;
+			List<String> idx = smallest_index(cmp.ident);
+			if (idx == null)
+				return null;
+			Iselect isel = new Iselect();
+			isel.and_with(iselect(cmp));
+			if (isel.none())
+				continue;
+			Collections.sort(isel.values, ByteBuffers::bufferUcompare);
+			if (isel.all())
+				return null;
+			Map<String, Iselect> checks = new HashMap<>();
+			checks.put(cmp.ident, isel);
+			alts.add(new Alt(idx, asList(isel), checks));
+			double f = iselsize(idx, asList(isel));
+			frac += f;
+			cost += f * tbl.indexSize(idx);
+		}
+		return new Filter(alts, cost, Math.min(frac, 1));
+	}
+
 	// end of optimize ==============================================
 
 	@Override
@@ -661,7 +797,7 @@ public class Select extends Query1 {
 	// get ----------------------------------------------------------
 
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		if (conflicting)
 			return null;
 		if (getFirst) {
@@ -699,35 +835,52 @@ public class Select extends Query1 {
 	}
 
 	private void iterate_setup() {
-		processFilters();
 		hdr = source.header();
 		ranges = selects(source_index, iselects(source_index));
+		processFilters();
 		if (tracing(SELECT))
 			trace(SELECT, "ranges: " + ranges);
 	}
 
+	/**
+	 * The filter is a snapshot of the matching records,
+	 * so in an update transaction it would miss records
+	 * that are written through the query.
+	 * A plan may be optimized in one transaction and used in another
+	 * (see PreparedQuery) so this is checked again before iterating.
+	 */
+	private boolean useFilters() {
+		return tran != null && tran.isReadonly();
+	}
+
 	private void processFilters() {
-		if (nil(filter))
+		if (nil(filter) || ! useFilters()) {
+			if (tbl != null)
+				tbl.set_filter(null);
 			return;
+		}
 
-		for (List<String> ix : filter) {
-			TIntHashSet newset = new TIntHashSet();
-			tbl.set_index(ix);
-			for (Keyrange range : selects(ix, iselects(ix))) {
-				for (source.select(ix, range.org, range.end);
-						null != source.get(Dir.NEXT); )
-					if (matches(ix, tbl.iter.curKey())
-							&& (filterSet == null || filterSet.contains(tbl.iter.keyadr())))
-						newset.add(tbl.iter.keyadr());
-			}
-			filterSet = newset;
+		filterSet = null;
+		for (Filter f : filter) {
+			RoaringBitmap set = new RoaringBitmap();
+			for (Alt alt : f.alts)
+				for (Keyrange range : selects(alt.index, alt.iselects)) {
+					IndexIter iter = tran.iter(tbl.num(),
+							listToCommas(alt.index), range.org, range.end);
+					for (iter.next(); ! iter.eof(); iter.next())
+						if (alt.matches(iter.curKey()))
+							set.add(iter.keyadr());
+				}
+			filterSet = (filterSet == null) ? set : filterSet.and(set);
 		}
-		tbl.set_index(source_index); // restore primary index
+		tbl.set_filter(filterSet);
 
 		// remove filter isels - no longer needed
-		for (List<String> idx : filter)
-			for (String fld : idx)
-				isels.remove(fld);
+		// (union filters are still checked by their expression)
+		for (Filter f : filter)
+			if (f.alts.size() == 1)
+				for (String fld : f.alts.get(0).checks.keySet())
+					isels.remove(fld);
 	}
 
 	private List<Keyrange> selects(List<String> index, List<Iselect> iselects) {
@@ -796,11 +949,9 @@ public class Select extends Query1 {
 	}
 
 	private boolean matches(Row row) {
-		// first check against filter
-		if (filterSet != null && ! filterSet.contains(tbl.iter.keyadr()))
-			return false;
+		// NOTE: filterSet is handled by Table
 
-		// then check against isels
+		// check against isels
 		// PERF: check keys before data (every other one)
 		for (Map.Entry<String,Iselect> e : isels.entrySet()) {
 			Iselect isel = e.getValue();
@@ -813,13 +964,6 @@ public class Select extends Query1 {
 		return expr.eval(hdr, row) == Boolean.TRUE;
 	}
 
-	private boolean matches(List<String> idx, Record key) {
-		for (int i = 0; i < idx.size(); ++i)
-			if (!isels.get(idx.get(i)).matches(key.getRaw(i)))
-				return false;
-		return true;
-	}
-
 	// end of get ---------------------------------------------------
 
 	@Override
@@ -828,6 +972,27 @@ public class Select extends Query1 {
 		rewound = true;
 	}
 
+	/**
+	 * Rebuild the isels from the cmps with the current parameter values.
+	 * The index chosen by optimize is kept.
+	 * Also recomputes the ranges and filters on the next get
+	 * since the data may have changed.
+	 */
+	@Override
+	boolean rebind() {
+		if (cmps != null) {
+			if (source_index == null)
+				return false; // conflicting when optimized, so no index chosen
+			cmps.replaceAll(Cmp::rebind);
+			isels = new HashMap<>();
+			conflicting = false;
+			cmps_to_isels(cmps);
+		}
+		getFirst = true;
+		rewound = true;
+		return super.rebind();
+	}
+
 	@Override
 	void select(List<String> index, Record from, Record to) {
 		if (conflicting) {
@@ -898,12 +1063,28 @@ public class Select extends Query1 {
 		final Token op;
 		final ByteBuffer value;
 		final List<ByteBuffer> values;
+		/** if the value is from a parameter, else null */
+		final Param param;
 
 		Cmp(String ident, Token op, ByteBuffer value) {
 			this.ident = ident;
 			this.op = op;
 			this.value = value;
 			values = null;
+			param = null;
+		}
+
+		Cmp(String ident, Token op, Param param) {
+			this.ident = ident;
+			this.op = op;
+			this.value = param.packed();
+			values = null;
+			this.param = param;
+		}
+
+		/** @return A Cmp with the current value of the param, if any */
+		Cmp rebind() {
+			return param == null ? this : new Cmp(ident, op, param);
 		}
 
 		/** IN */
@@ -914,6 +1095,7 @@ public class Select extends Query1 {
 			values = new ArrayList<>();
 			for (ByteBuffer buf : rec)
 				values.add(buf);
+			param = null;
 		}
 
 		@Override
@@ -950,6 +1132,63 @@ public class Select extends Query1 {
 		}
 	}
 
+	// Filter -------------------------------------------------------
+
+	/**
+	 * A set of record addresses from one index,
+	 * or the union of several for an "or",
+	 * to intersect with the primary index.
+	 */
+	private static class Filter {
+		final List<Alt> alts;
+		/** the cost of reading the index entries */
+		final double cost;
+		/** the fraction of the records selected */
+		final double frac;
+
+		Filter(List<Alt> alts, double cost) {
+			this(alts, cost, 1);
+		}
+
+		Filter(List<Alt> alts, double cost, double frac) {
+			this.alts = alts;
+			this.cost = cost;
+			this.frac = frac;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			for (Alt alt : alts)
+				sb.append(sb.length() == 0 ? "" : "|")
+						.append(listToParens(alt.index));
+			return sb.toString();
+		}
+	}
+
+	private static class Alt {
+		final List<String> index;
+		final List<Iselect> iselects;
+		/** the isels that have to be checked against each key */
+		final Map<String, Iselect> checks;
+
+		Alt(List<String> index, List<Iselect> iselects,
+				Map<String, Iselect> checks) {
+			this.index = index;
+			this.iselects = iselects;
+			this.checks = checks;
+		}
+
+		boolean matches(Record key) {
+			for (int i = 0; i < index.size(); ++i) {
+				Iselect isel = checks.get(index.get(i));
+				if (isel != null && ! isel.matches(key.getRaw(i)))
+					return false;
+			}
+			return true;
+		}
+	}
+
 	// Iselect ------------------------------------------------------
 
 	enum IselType { RANGE, VALUES }
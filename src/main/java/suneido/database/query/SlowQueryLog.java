@@ -0,0 +1,222 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.query;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import suneido.database.server.ServerData;
+import suneido.util.Errlog;
+import suneido.util.GuardedBy;
+import suneido.util.ThreadSafe;
+
+/**
+ * Records queries that take longer than {@link #THRESHOLD_MS}
+ * along with their plan and the rows and time for each operation.
+ * <p>
+ * When enabled, {@link CompileQuery} attaches {@link Stats}
+ * to every node of the query so {@link Query#get} counts rows and time.
+ * When disabled, the only overhead is a null check per get.
+ * The time is the setup (parse and optimize) plus the time spent in get,
+ * not the time the query is open, which includes waiting for the client.
+ * <p>
+ * Entries are appended to {@link #FILENAME} one JSON object per line.
+ * The file is renamed to .1 when it exceeds {@link #MAX_FILE_SIZE}.
+ * The most recent entries are also kept in memory
+ * for the SlowQueries builtin.
+ */
+@ThreadSafe
+public class SlowQueryLog {
+	/** queries taking longer than this are logged, 0 disables the log */
+	public static volatile int THRESHOLD_MS = 0;
+	static String FILENAME = "slowquery.log";
+	static long MAX_FILE_SIZE = 10 * 1024 * 1024;
+	private static final int NRECENT = 100;
+	@GuardedBy("SlowQueryLog.class")
+	private static final ArrayDeque<Entry> recent = new ArrayDeque<>();
+
+	/** Per query node statistics, confined to the thread using the query */
+	static class Stats {
+		long calls;
+		long rows;
+		long nanos;
+
+		void add(Row row, long ns) {
+			++calls;
+			if (row != null)
+				++rows;
+			nanos += ns;
+		}
+	}
+
+	/** The statistics for the top level query node */
+	private static class RootStats extends Stats {
+		final String query;
+		final String session;
+		final long setupNanos;
+
+		RootStats(String query, String session, long setupNanos) {
+			this.query = query;
+			this.session = session;
+			this.setupNanos = setupNanos;
+		}
+	}
+
+	public static class Entry {
+		/** from System.currentTimeMillis */
+		public final long time;
+		public final String session;
+		public final String query;
+		public final String plan;
+		public final long nanos;
+		public final long setupNanos;
+		public final long rows;
+		/** one line per query node, indented by depth */
+		public final List<String> operations;
+
+		Entry(long time, String session, String query, String plan,
+				long nanos, long setupNanos, long rows, List<String> operations) {
+			this.time = time;
+			this.session = session;
+			this.query = query;
+			this.plan = plan;
+			this.nanos = nanos;
+			this.setupNanos = setupNanos;
+			this.rows = rows;
+			this.operations = operations;
+		}
+	}
+
+	/** Called by CompileQuery after setup to attach statistics if enabled */
+	static void start(Query q, String query, ServerData serverData,
+			long setupNanos) {
+		if (THRESHOLD_MS <= 0)
+			return;
+		attach(q);
+		q.stats = new RootStats(query, serverData.getSessionId(), setupNanos);
+	}
+
+	private static void attach(Query q) {
+		q.stats = new Stats();
+		for (Query src : q.sources())
+			attach(src);
+	}
+
+	/** Log the query if it was slow. Called when the query is closed. */
+	public static void finish(Query q) {
+		if (! (q.stats instanceof RootStats))
+			return;
+		RootStats root = (RootStats) q.stats;
+		q.stats = null; // only log once
+		long nanos = root.setupNanos + root.nanos;
+		if (THRESHOLD_MS <= 0 || nanos < THRESHOLD_MS * 1_000_000L)
+			return;
+		List<String> ops = new ArrayList<>();
+		operations(q, root, "", ops);
+		log(new Entry(System.currentTimeMillis(), root.session, root.query,
+				q.toString(), nanos, root.setupNanos, root.rows, ops));
+	}
+
+	private static void operations(Query q, Stats stats, String indent,
+			List<String> ops) {
+		long rowsIn = 0;
+		long childNanos = 0;
+		for (Query src : q.sources())
+			if (src.stats != null) {
+				rowsIn += src.stats.rows;
+				childNanos += src.stats.nanos;
+			}
+		String name = q.getClass().getSimpleName();
+		if (q instanceof Table)
+			name += " " + q;
+		ops.add(indent + name +
+				(q.sources().isEmpty() ? "" : " in " + rowsIn) +
+				" out " + stats.rows +
+				" time " + ms(stats.nanos) + "ms" +
+				" self " + ms(stats.nanos - childNanos) + "ms");
+		for (Query src : q.sources())
+			if (src.stats != null)
+				operations(src, src.stats, indent + "  ", ops);
+	}
+
+	private static String ms(long nanos) {
+		return String.valueOf(Math.round(nanos / 1e5) / 10.0);
+	}
+
+	private static synchronized void log(Entry e) {
+		recent.addLast(e);
+		if (recent.size() > NRECENT)
+			recent.removeFirst();
+		write(toJson(e));
+	}
+
+	/** @return The most recent entries, oldest first */
+	public static synchronized List<Entry> recent() {
+		return Collections.unmodifiableList(new ArrayList<>(recent));
+	}
+
+	/** for tests */
+	static synchronized void clear() {
+		recent.clear();
+	}
+
+	private static void write(String line) {
+		try {
+			Path path = Paths.get(FILENAME);
+			if (Files.exists(path) && Files.size(path) > MAX_FILE_SIZE)
+				Files.move(path, Paths.get(FILENAME + ".1"), REPLACE_EXISTING);
+			Files.write(path, (line + "\n").getBytes(UTF_8), CREATE, APPEND);
+		} catch (IOException e) {
+			Errlog.error("SlowQueryLog write failed", e);
+		}
+	}
+
+	static String toJson(Entry e) {
+		StringBuilder sb = new StringBuilder("{");
+		sb.append("\"time\":").append(e.time);
+		sb.append(",\"session\":").append(json(e.session));
+		sb.append(",\"ms\":").append(ms(e.nanos));
+		sb.append(",\"setup_ms\":").append(ms(e.setupNanos));
+		sb.append(",\"rows\":").append(e.rows);
+		sb.append(",\"query\":").append(json(e.query));
+		sb.append(",\"plan\":").append(json(e.plan));
+		sb.append(",\"operations\":[");
+		for (int i = 0; i < e.operations.size(); ++i)
+			sb.append(i == 0 ? "" : ",").append(json(e.operations.get(i)));
+		return sb.append("]}").toString();
+	}
+
+	private static String json(String s) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); ++i) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c == '\n')
+				sb.append("\\n");
+			else if (c == '\r')
+				sb.append("\\r");
+			else if (c == '\t')
+				sb.append("\\t");
+			else if (c < ' ')
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		return sb.append('"').toString();
+	}
+
+}
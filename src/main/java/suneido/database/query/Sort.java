@@ -47,10 +47,15 @@ public class Sort extends Query1 {
 	}
 
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		return source.get(reverse ? (dir == Dir.NEXT ? Dir.PREV : Dir.NEXT) : dir);
 	}
 
+	@Override
+	public void limit(int n) {
+		source.limit(n);
+	}
+
 	@Override
 	double optimize2(List<String> index, Set<String> needs,
 			Set<String> firstneeds, boolean is_cursor, boolean freeze) {
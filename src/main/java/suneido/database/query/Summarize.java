@@ -71,8 +71,8 @@ public class Summarize extends Query1 {
 		sb.append(" SUMMARIZE");
 		switch (strategy) {
 		case NONE: break;
-		case SEQ: sb.append("-SEQ"); break;
-		case MAP: sb.append("-MAP"); break;
+		case SEQ: sb.append(parallel() ? "-PAR" : "-SEQ"); break;
+		case MAP: sb.append(parallel() ? "-PAR" : "-MAP"); break;
 		case IDX: sb.append("-IDX"); break;
 		default: throw SuInternalError.unreachable();
 		}
@@ -92,6 +92,19 @@ public class Summarize extends Query1 {
 		return sb.substring(0, sb.length() - 2);
 	}
 
+	private boolean parallel() {
+		return strategyImp instanceof SummarizeStrategyPar;
+	}
+
+	/** used by {@link SummarizeStrategyPar} */
+	boolean isMap() {
+		return strategy == Strategy.MAP;
+	}
+
+	boolean isSeq() {
+		return strategy == Strategy.SEQ;
+	}
+
 	// optimize ----------------------------------------------------------------
 
 	@Override
@@ -247,13 +260,14 @@ public class Summarize extends Query1 {
 		first = false;
 		hdr = source.header();
 		strategyImp =
-				(strategy == Strategy.MAP) ? new SummarizeStrategyMap(this)
+				SummarizeStrategyPar.applies(this) ? new SummarizeStrategyPar(this)
+				: (strategy == Strategy.MAP) ? new SummarizeStrategyMap(this)
 				: (strategy == Strategy.IDX) ? new SummarizeStrategyIdx(this)
 				: new SummarizeStrategySeq(this);
 	}
 
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		if (first)
 			iterate_setup();
 		boolean wasRewound = rewound;
@@ -267,6 +281,12 @@ public class Summarize extends Query1 {
 		rewound = true;
 	}
 
+	@Override
+	boolean rebind() {
+		first = true;
+		return super.rebind();
+	}
+
 	@Override
 	void select(List<String> index, Record from, Record to) {
 		if (first)
@@ -0,0 +1,357 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.query;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import suneido.SuContainer;
+import suneido.SuInternalError;
+import suneido.database.immudb.Dbpkg;
+import suneido.database.immudb.Record;
+import suneido.database.immudb.RecordStore;
+import suneido.runtime.Numbers;
+import suneido.runtime.Ops;
+import suneido.util.Dnum;
+import suneido.util.IntMergeTree;
+
+/**
+ * Hash table of summarize groups used by {@link SummarizeStrategyMap}.
+ * <p>
+ * The "by" keys are packed into a {@link RecordStore}
+ * and the groups are numbered sequentially.
+ * Lookup is by open addressing on an int array of group numbers.
+ * Each summary function has an accumulator
+ * with a parallel (primitive where possible) array indexed by group number.
+ * This avoids the per group objects of a map of boxed summaries.
+ * <p>
+ * Groups are numbered in the order first seen,
+ * {@link #sorted} orders them by key.
+ */
+class SummarizeGroups {
+	private static final int INITIAL_CAPACITY = 64;
+	private final RecordStore stor = Dbpkg.recordStore();
+	private final Acc[] accs;
+	/** group number + 1, 0 means empty */
+	private int[] slots = new int[2 * INITIAL_CAPACITY];
+	private int[] keys = new int[INITIAL_CAPACITY];
+	private int[] hashes = new int[INITIAL_CAPACITY];
+	private int n = 0;
+
+	SummarizeGroups(List<String> funcs) {
+		accs = new Acc[funcs.size()];
+		for (int i = 0; i < accs.length; ++i) {
+			accs[i] = Acc.valueOf(funcs.get(i));
+			accs[i].grow(INITIAL_CAPACITY);
+		}
+	}
+
+	int size() {
+		return n;
+	}
+
+	Record key(int g) {
+		return stor.get(keys[g]);
+	}
+
+	Object result(int g, int i) {
+		return accs[i].result(g);
+	}
+
+	void add(int g, int i, Object x) {
+		accs[i].add(g, x);
+	}
+
+	/** @return The group number for key, adding a new group if necessary */
+	int group(Record key) {
+		int h = hash(key);
+		int mask = slots.length - 1;
+		for (int i = h & mask; ; i = (i + 1) & mask) {
+			int g = slots[i] - 1;
+			if (g < 0)
+				return insert(i, key, h);
+			if (hashes[g] == h && key(g).equals(key))
+				return g;
+		}
+	}
+
+	private int insert(int slot, Record key, int h) {
+		if (n >= keys.length) {
+			grow();
+			return group(key);
+		}
+		int g = n++;
+		keys[g] = stor.add(key);
+		hashes[g] = h;
+		slots[slot] = g + 1;
+		return g;
+	}
+
+	private void grow() {
+		int capacity = 2 * keys.length;
+		keys = Arrays.copyOf(keys, capacity);
+		hashes = Arrays.copyOf(hashes, capacity);
+		for (Acc acc : accs)
+			acc.grow(capacity);
+		slots = new int[2 * capacity];
+		int mask = slots.length - 1;
+		for (int g = 0; g < n; ++g) {
+			int i = hashes[g] & mask;
+			while (slots[i] != 0)
+				i = (i + 1) & mask;
+			slots[i] = g + 1;
+		}
+	}
+
+	/** Record.hashCode is not supported so hash the raw field values */
+	private static int hash(Record key) {
+		int h = 1;
+		for (int i = 0; i < key.size(); ++i) {
+			ByteBuffer buf = key.getRaw(i);
+			for (int j = buf.position(); j < buf.limit(); ++j)
+				h = 31 * h + buf.get(j);
+		}
+		return h ^ (h >>> 16);
+	}
+
+	/** Combine another set of groups into this one */
+	void merge(SummarizeGroups other) {
+		for (int og = 0; og < other.n; ++og) {
+			int g = group(other.key(og));
+			for (int i = 0; i < accs.length; ++i)
+				accs[i].merge(g, other.accs[i], og);
+		}
+	}
+
+	/** @return The group numbers in key order */
+	int[] sorted() {
+		IntMergeTree tree =
+				new IntMergeTree((x, y) -> key(x).compareTo(key(y)));
+		for (int g = 0; g < n; ++g)
+			tree.add(g);
+		int[] order = new int[n];
+		IntMergeTree.Iter iter = tree.iter();
+		for (int i = 0; i < n; ++i)
+			order[i] = iter.next();
+		return order;
+	}
+
+	// accumulators ------------------------------------------------------------
+
+	private abstract static class Acc {
+		abstract void grow(int capacity);
+		abstract void add(int g, Object x);
+		abstract void merge(int g, Acc other, int og);
+		abstract Object result(int g);
+
+		static Acc valueOf(String summary) {
+			switch (summary.toLowerCase()) {
+			case "count": return new Count();
+			case "total": return new Total();
+			case "average": return new Average();
+			case "max": return new Max();
+			case "min": return new Min();
+			case "list": return new ListAcc();
+			default: throw SuInternalError.unreachable();
+			}
+		}
+	}
+
+	private static class Count extends Acc {
+		int[] counts;
+
+		@Override
+		void grow(int capacity) {
+			counts = (counts == null) ? new int[capacity]
+					: Arrays.copyOf(counts, capacity);
+		}
+
+		@Override
+		void add(int g, Object x) {
+			++counts[g];
+		}
+
+		@Override
+		void merge(int g, Acc other, int og) {
+			counts[g] += ((Count) other).counts[og];
+		}
+
+		@Override
+		Object result(int g) {
+			return counts[g];
+		}
+	}
+
+	/**
+	 * Integers are summed in a long array.
+	 * Anything else, or overflow, goes into a Dnum array
+	 * that is only allocated if needed.
+	 * Like the original Ops.add, non-numeric values are ignored.
+	 */
+	private static class Total extends Acc {
+		long[] sums;
+		Dnum[] dsums;
+
+		@Override
+		void grow(int capacity) {
+			sums = (sums == null) ? new long[capacity]
+					: Arrays.copyOf(sums, capacity);
+			if (dsums != null)
+				dsums = Arrays.copyOf(dsums, capacity);
+		}
+
+		@Override
+		void add(int g, Object x) {
+			if (x instanceof Integer)
+				addLong(g, (Integer) x);
+			else
+				try {
+					addDnum(g, Numbers.toDnum(x));
+				} catch (Exception e) {
+				}
+		}
+
+		private void addLong(int g, long y) {
+			long s = sums[g];
+			long r = s + y;
+			if (((s ^ r) & (y ^ r)) < 0) // overflow
+				addDnum(g, Dnum.from(y));
+			else
+				sums[g] = r;
+		}
+
+		private void addDnum(int g, Dnum y) {
+			if (dsums == null)
+				dsums = new Dnum[sums.length];
+			dsums[g] = (dsums[g] == null) ? y : Dnum.add(dsums[g], y);
+		}
+
+		@Override
+		void merge(int g, Acc other, int og) {
+			Total t = (Total) other;
+			addLong(g, t.sums[og]);
+			if (t.dsums != null && t.dsums[og] != null)
+				addDnum(g, t.dsums[og]);
+		}
+
+		@Override
+		Object result(int g) {
+			long s = sums[g];
+			Dnum d = (dsums == null) ? null : dsums[g];
+			if (d == null)
+				return ((int) s == s) ? (Object) (int) s : Dnum.from(s);
+			return Dnum.add(d, Dnum.from(s));
+		}
+	}
+
+	private static class Average extends Total {
+		int[] counts;
+
+		@Override
+		void grow(int capacity) {
+			super.grow(capacity);
+			counts = (counts == null) ? new int[capacity]
+					: Arrays.copyOf(counts, capacity);
+		}
+
+		@Override
+		void add(int g, Object x) {
+			++counts[g];
+			super.add(g, x);
+		}
+
+		@Override
+		void merge(int g, Acc other, int og) {
+			super.merge(g, other, og);
+			counts[g] += ((Average) other).counts[og];
+		}
+
+		@Override
+		Object result(int g) {
+			return Ops.div(super.result(g), counts[g]);
+		}
+	}
+
+	private abstract static class MinMax extends Acc {
+		Object[] values;
+
+		@Override
+		void grow(int capacity) {
+			values = (values == null) ? new Object[capacity]
+					: Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		void merge(int g, Acc other, int og) {
+			Object x = ((MinMax) other).values[og];
+			if (x != null)
+				add(g, x);
+		}
+
+		@Override
+		Object result(int g) {
+			return values[g];
+		}
+	}
+
+	private static class Max extends MinMax {
+		@Override
+		void add(int g, Object x) {
+			if (values[g] == null || Ops.cmp(x, values[g]) > 0)
+				values[g] = x;
+		}
+	}
+
+	private static class Min extends MinMax {
+		@Override
+		void add(int g, Object x) {
+			if (values[g] == null || Ops.cmp(x, values[g]) < 0)
+				values[g] = x;
+		}
+	}
+
+	private static class ListAcc extends Acc {
+		HashSet<?>[] sets;
+
+		@Override
+		void grow(int capacity) {
+			sets = (sets == null) ? new HashSet<?>[capacity]
+					: Arrays.copyOf(sets, capacity);
+		}
+
+		@SuppressWarnings("unchecked")
+		private HashSet<Object> set(int g) {
+			if (sets[g] == null)
+				sets[g] = new HashSet<>();
+			return (HashSet<Object>) sets[g];
+		}
+
+		@Override
+		void add(int g, Object x) {
+			set(g).add(x);
+		}
+
+		@Override
+		void merge(int g, Acc other, int og) {
+			HashSet<?> os = ((ListAcc) other).sets[og];
+			if (os != null)
+				set(g).addAll(os);
+		}
+
+		@Override
+		Object result(int g) {
+			SuContainer list = new SuContainer();
+			if (sets[g] != null)
+				for (Object x : sets[g])
+					list.add(x);
+			if (list.size() <= 3) // to ensure consistent order for tests
+				list.sort(Boolean.FALSE);
+			return list;
+		}
+	}
+
+}
@@ -7,23 +7,26 @@ package suneido.database.query;
 import static suneido.util.Util.startsWith;
 
 import java.util.List;
-import java.util.Map;
-import java.util.NavigableMap;
-import java.util.TreeMap;
 
+import suneido.database.immudb.Dbpkg;
 import suneido.database.immudb.Record;
+import suneido.database.immudb.RecordBuilder;
 import suneido.database.query.Query.Dir;
-import suneido.database.query.Summarize.Summary;
 
 /**
- * accumulate results in memory
+ * accumulate results in memory in a hash table, see {@link SummarizeGroups}
  * doesn't require any order, can only supply in order of "by"
+ * <p>
+ * The groups are sorted once at the end
+ * rather than keeping an ordered map up to date for every row.
  */
 public class SummarizeStrategyMap extends SummarizeStrategy {
-	TreeMap<Record, List<Summary>> results = new TreeMap<>();
-	NavigableMap<Record, List<Summary>> selected;
-	Map.Entry<Record, List<Summary>> cur;
-	boolean first = true;
+	SummarizeGroups groups;
+	/** group numbers in "by" order */
+	private int[] order;
+	private int lo;
+	private int hi;
+	private int pos;
 
 	SummarizeStrategyMap(Summarize source) {
 		super(source);
@@ -31,27 +34,53 @@ public class SummarizeStrategyMap extends SummarizeStrategy {
 
 	@Override
 	Row get(Dir dir, boolean rewound) {
-		if (first) {
-			process();
-			first = false;
+		if (groups == null) {
+			groups = process();
+			order = groups.sorted();
 		}
 		if (rewound) {
-			selected = results.subMap(sel.org, true, sel.end, true);
-			if (dir == Dir.NEXT)
-				cur = selected.firstEntry();
-			else
-				cur = selected.lastEntry();
+			selectRange();
+			pos = (dir == Dir.NEXT) ? lo - 1 : hi;
 		}
-		else if (dir == Dir.NEXT)
-			cur = selected.higherEntry(cur.getKey());
+		if (dir == Dir.NEXT)
+			pos = Math.min(pos + 1, hi);
 		else // dir == PREV
-			cur = selected.lowerEntry(cur.getKey());
-		if (cur == null) {
-			rewound = true;
+			pos = Math.max(pos - 1, lo - 1);
+		if (pos < lo || pos >= hi)
 			return null;
+		return makeRow(order[pos]);
+	}
+
+	private void selectRange() {
+		if (sel.org.equals(Dbpkg.MIN_RECORD) && sel.end.equals(Dbpkg.MAX_RECORD)) {
+			lo = 0;
+			hi = order.length;
+			return;
+		}
+		lo = lowerBound(sel.org, 0);
+		hi = lowerBound(sel.end, 1);
+	}
+
+	/** @return The first position whose key compares >= key + adj */
+	private int lowerBound(Record key, int adj) {
+		int first = 0;
+		int last = order.length;
+		while (first < last) {
+			int mid = (first + last) >>> 1;
+			if (groups.key(order[mid]).compareTo(key) < adj)
+				first = mid + 1;
+			else
+				last = mid;
 		}
+		return first;
+	}
 
-		return makeRow(cur.getKey(), cur.getValue());
+	private Row makeRow(int g) {
+		RecordBuilder rb = new RecordBuilder();
+		rb.addAll(groups.key(g));
+		for (int i = 0; i < q.funcs.size(); ++i)
+			rb.add(groups.result(g, i));
+		return new Row(Dbpkg.MIN_RECORD, rb.build());
 	}
 
 	@Override
@@ -59,19 +88,20 @@ public class SummarizeStrategyMap extends SummarizeStrategy {
 		assert startsWith(q.by, index); //TODO review if we need this
 	}
 
-	void process() {
-		results.clear();
+	SummarizeGroups process() {
+		SummarizeGroups groups = new SummarizeGroups(q.funcs);
 		Row row;
-		while (null != (row = source.get(Dir.NEXT))) {
-			Record byRec = row.project(q.getHdr(), q.by);
-			List<Summary> sums = results.get(byRec);
-			if (sums == null) {
-				sums = funcSums();
-				initSums(sums);
-				results.put(byRec, sums);
-			}
-			for (int i = 0; i < sums.size(); ++i)
-				sums.get(i).add(row.getval(q.getHdr(), q.on.get(i)));
+		while (null != (row = source.get(Dir.NEXT)))
+			add(groups, row);
+		return groups;
+	}
+
+	void add(SummarizeGroups groups, Row row) {
+		Header hdr = q.getHdr();
+		int g = groups.group(row.project(hdr, q.by));
+		for (int i = 0; i < q.on.size(); ++i) {
+			String col = q.on.get(i);
+			groups.add(g, i, (col == null) ? null : row.getval(hdr, col));
 		}
 	}
 
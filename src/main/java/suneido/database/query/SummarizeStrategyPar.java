@@ -0,0 +1,78 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parallel version of {@link SummarizeStrategyMap}
+ * for large read-only summarize's directly on a database table.
+ * The table's index is split into key ranges
+ * (using {@link suneido.database.immudb.Transaction#splitKeys})
+ * which are accumulated separately on a shared fork-join pool.
+ * The partial results are then merged.
+ * <p>
+ * Only used when the "by" and "on" columns are all physical fields
+ * since rules may run arbitrary code.
+ */
+public class SummarizeStrategyPar extends SummarizeStrategyMap {
+	/** minimum number of records to summarize in parallel, 0 to disable */
+	public static int THRESHOLD = 100_000;
+	/** more ranges than threads so uneven ranges still balance */
+	private static final int RANGES_PER_THREAD = 4;
+
+	private static class InitOnce {
+		static final ForkJoinPool pool = new ForkJoinPool();
+	}
+
+	SummarizeStrategyPar(Summarize q) {
+		super(q);
+	}
+
+	static boolean applies(Summarize q) {
+		if (THRESHOLD <= 0 || q.wholeRecord)
+			return false;
+		if (! q.isMap() && ! (q.isSeq() && q.by.isEmpty()))
+			return false;
+		if (! (q.source instanceof Table))
+			return false;
+		Table tbl = (Table) q.source;
+		if (! tbl.parallelizable() || tbl.nrecords() < THRESHOLD)
+			return false;
+		List<String> fields = q.getHdr().fields();
+		if (! fields.containsAll(q.by))
+			return false;
+		for (String col : q.on)
+			if (col != null && ! fields.contains(col))
+				return false;
+		return true;
+	}
+
+	@Override
+	SummarizeGroups process() {
+		ForkJoinPool pool = InitOnce.pool;
+		List<Table.Range> ranges = ((Table) source).ranges(
+				RANGES_PER_THREAD * pool.getParallelism());
+		List<ForkJoinTask<SummarizeGroups>> tasks = new ArrayList<>();
+		for (Table.Range range : ranges)
+			tasks.add(pool.submit(() -> accumulate(range)));
+		SummarizeGroups groups = new SummarizeGroups(q.funcs);
+		for (ForkJoinTask<SummarizeGroups> task : tasks)
+			groups.merge(task.join());
+		return groups;
+	}
+
+	private SummarizeGroups accumulate(Table.Range range) {
+		SummarizeGroups partial = new SummarizeGroups(q.funcs);
+		Row row;
+		while (null != (row = range.next()))
+			add(partial, row);
+		return partial;
+	}
+
+}
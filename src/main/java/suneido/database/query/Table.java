@@ -12,6 +12,7 @@ import static suneido.Trace.Type.TABLE;
 import static suneido.util.Util.*;
 import static suneido.util.Verify.verify;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -24,9 +25,15 @@ import suneido.database.immudb.Record;
 import suneido.database.immudb.RecordBuilder;
 import suneido.database.immudb.Transaction;
 import suneido.util.CommaStringBuilder;
+import suneido.util.Metrics;
+import suneido.util.Metrics.Counter;
+import suneido.util.RoaringBitmap;
 import suneido.util.Util;
 
 public class Table extends Query {
+	private static final Counter rowsScanned =
+			Metrics.counter("suneido_query_rows_scanned_total",
+					"Records read from tables by queries");
 	private final String table;
 	final suneido.database.immudb.Table tbl;
 	private boolean first = true;
@@ -39,6 +46,8 @@ public class Table extends Query {
 	private List<String> idx = noFields;
 	private final Impl impl;
 	IndexIter iter;
+	/** if not null, only records with these addresses are read */
+	private RoaringBitmap filter;
 
 	public Table(Transaction tran, String tablename) {
 		this.tran = tran;
@@ -217,7 +226,7 @@ public class Table extends Query {
 	}
 
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		if (first) {
 			first = false;
 			iterate_setup(dir);
@@ -226,22 +235,26 @@ public class Table extends Query {
 			rewound = false;
 			iter = iter();
 		}
-		switch (dir) {
-		case NEXT :
-			iter.next();
-			break;
-		case PREV :
-			iter.prev();
-			break;
-		default:
-			throw unreachable();
-		}
+		do {
+			switch (dir) {
+			case NEXT :
+				iter.next();
+				break;
+			case PREV :
+				iter.prev();
+				break;
+			default:
+				throw unreachable();
+			}
+		} while (filter != null && ! iter.eof() &&
+				! filter.contains(iter.keyadr()));
 		if (iter.eof()) {
 			rewound = true;
 			return null;
 		}
 
 		Row row = new Row(iter.curKey(), impl.process(tran.input(iter.keyadr())));
+		rowsScanned.inc();
 
 		if (singleton && !sel.contains(row.project(hdr, idx))) {
 			rewound = true;
@@ -256,6 +269,61 @@ public class Table extends Query {
 				: tran.iter(tbl.num(), icols, sel.org, sel.end);
 	}
 
+	/**
+	 * Used by {@link SummarizeStrategyPar}
+	 * to check if this table can be scanned in parallel.
+	 * Only for read-only transactions since they only access immutable data.
+	 */
+	boolean parallelizable() {
+		return ! singleton && impl.getClass() == Impl.class &&
+				tran != null && tran.isReadonly();
+	}
+
+	/**
+	 * Used by {@link SummarizeStrategyPar}.
+	 * Splits the current index (and selection) into key ranges.
+	 * The iterators are created here, by the thread that owns the transaction,
+	 * but after that they can be used by other threads.
+	 */
+	List<Range> ranges(int nparts) {
+		if (first) {
+			first = false;
+			iterate_setup(Dir.NEXT);
+		}
+		List<Range> ranges = new ArrayList<>();
+		Record from = sel.org;
+		for (Record split : tran.splitKeys(tbl.num(), icols, nparts))
+			if (split.compareTo(from) > 0 && split.compareTo(sel.end) < 0) {
+				ranges.add(new Range(tran,
+						tran.iter(tbl.num(), icols, from, split), split));
+				from = split;
+			}
+		ranges.add(new Range(tran,
+				tran.iter(tbl.num(), icols, from, sel.end), null));
+		return ranges;
+	}
+
+	/** A key range of a table, iterated by {@link SummarizeStrategyPar} */
+	static class Range {
+		private final Transaction tran;
+		private final IndexIter iter;
+		private final Record end; // exclusive, null for the last range
+
+		Range(Transaction tran, IndexIter iter, Record end) {
+			this.tran = tran;
+			this.iter = iter;
+			this.end = end;
+		}
+
+		/** @return The next row in the range, or null at the end */
+		Row next() {
+			iter.next();
+			if (iter.eof() || (end != null && iter.curKey().compareTo(end) >= 0))
+				return null;
+			return new Row(iter.curKey(), tran.input(iter.keyadr()));
+		}
+	}
+
 	private void iterate_setup(Dir dir) {
 		hdr = header();
 		set_ix();
@@ -296,6 +364,12 @@ public class Table extends Query {
 		rewound = true;
 	}
 
+	/** Used by Select to skip records without reading them */
+	void set_filter(RoaringBitmap filter) {
+		this.filter = filter;
+		rewound = true;
+	}
+
 	@Override
 	public boolean updateable() {
 		return true;
@@ -12,31 +12,35 @@ import static suneido.util.Verify.verify;
 import java.util.List;
 
 import suneido.SuException;
-import suneido.database.immudb.Dbpkg;
 import suneido.database.immudb.Record;
-import suneido.database.immudb.RecordStore;
 import suneido.database.immudb.Transaction;
+import suneido.database.server.ServerData;
 import suneido.util.ArraysList;
-import suneido.util.IntComparator;
-import suneido.util.IntMergeTree;
 
+/**
+ * Sorts the source rows by order.
+ * The keys are sorted within {@link #MEMORY_BUDGET},
+ * or less if the session is near its ServerData temp index quota,
+ * by {@link ExternalSort}, spilling to temporary files if necessary.
+ */
 public class TempIndex extends Query1 {
+	/** memory in bytes for sorting keys before spilling to disk */
+	public static long MEMORY_BUDGET = 64L * 1024 * 1024;
 	private final List<String> order;
 	private final boolean unique;
 	private Transaction tran;
 	private boolean first = true;
 	private boolean rewound = true;
-	private RecordStore stor;
+	private ExternalSort sort;
 	private final ArraysList<Object> refs = new ArraysList<>();
-	private final IntComparator cmp = (int xi, int yi) -> {
-		Record xkey = stor.get(xi);
-		Record ykey = stor.get(yi);
-		return xkey.compareTo(ykey);
-	};
-	private final IntMergeTree index = new IntMergeTree(cmp);
-	private IntMergeTree.Iter iter;
+	private ExternalSort.Iter iter;
+	/** if > 0, at most this many rows will be read, see {@link #limit} */
+	private int limit = 0;
 	private final Keyrange sel = new Keyrange();
 	private final boolean single;
+	/** the session the memory budget was reserved from */
+	private ServerData serverData;
+	private long budget = 0;
 
 	public TempIndex(Query source, Transaction tran, List<String> order, boolean unique) {
 		super(source);
@@ -55,7 +59,12 @@ public class TempIndex extends Query1 {
 	@Override
 	public String toString() {
 		return source.toString() + " TEMPINDEX" + listToParens(order)
-				+ (unique ? " unique" : "");
+				+ (unique ? " unique" : "")
+				+ (limit > 0 ? " TOP " + limit : "")
+				+ (sort != null && sort.spills() > 0
+					? " spilled " + sort.spills() + " runs (budget " +
+						(budget >> 20) + "mb)"
+					: "");
 	}
 
 	@Override
@@ -64,7 +73,7 @@ public class TempIndex extends Query1 {
 	}
 
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		if (first) {
 			first = false;
 			iterate_setup(dir);
@@ -72,14 +81,12 @@ public class TempIndex extends Query1 {
 		if (rewound) {
 			rewound = false;
 			if (dir == Dir.NEXT)
-				iter.seekFirst(stor.add(sel.org));
+				iter.seekFirst(sel.org);
 			else // prev
-				iter.seekLast(stor.add(sel.end));
+				iter.seekLast(sel.end);
 		}
-		Record key;
-		int cur = (dir == Dir.NEXT) ? iter.next() : iter.prev();
-		if (cur == Integer.MIN_VALUE || cur == Integer.MAX_VALUE ||
-				! sel.contains(key = stor.get(cur))) {
+		Record key = (dir == Dir.NEXT) ? iter.next() : iter.prev();
+		if (key == null || ! sel.contains(key)) {
 			rewound = true;
 			return null;
 		}
@@ -90,9 +97,14 @@ public class TempIndex extends Query1 {
 	}
 
 	private void iterate_setup(Dir dir) {
-		stor = Dbpkg.recordStore();
-		index.clear();
+		if (sort != null)
+			sort.close();
+		release();
+		serverData = ServerData.forThread();
+		budget = serverData.reserveTempIndexMemory(MEMORY_BUDGET);
+		sort = new ExternalSort(budget);
 		refs.clear();
+		TopN top = (limit > 0) ? new TopN(limit, dir == Dir.PREV) : null;
 		Header srchdr = source.header();
 		Row row;
 		while (null != (row = source.get(Dir.NEXT))) {
@@ -101,9 +113,55 @@ public class TempIndex extends Query1 {
 			Record key = row.project(srchdr, order, adr);
 			if (key.bufSize() > 4000)
 				throw new SuException("temp index entry size > 4000: " + order);
-			index.add(stor.add(key));
+			if (top == null)
+				sort.add(key);
+			else if (sel.contains(key))
+				top.add(key);
 		}
-		iter = index.iter();
+		if (top != null)
+			for (Record key : top.keys())
+				sort.add(key);
+		iter = sort.iter();
+	}
+
+	/**
+	 * Only the first n rows in the direction of the first get will be read,
+	 * e.g. for QueryFirst, so only keep those instead of sorting everything.
+	 */
+	@Override
+	public void limit(int n) {
+		limit = n;
+	}
+
+	/** @return The total number of runs spilled by temp indexes */
+	public static long totalSpills() {
+		return ExternalSort.totalSpills();
+	}
+
+	/** @return The total number of bytes spilled by temp indexes */
+	public static long totalSpillBytes() {
+		return ExternalSort.totalSpillBytes();
+	}
+
+	/** Delete temporary files left by a previous crash */
+	public static void deleteLeftovers() {
+		ExternalSort.deleteLeftovers();
+	}
+
+	@Override
+	public void close() {
+		if (sort != null)
+			sort.close();
+		release();
+		super.close();
+	}
+
+	/** return the memory budget to the session */
+	private void release() {
+		if (serverData != null)
+			serverData.releaseTempIndexMemory(budget);
+		serverData = null;
+		budget = 0;
 	}
 
 	@Override
@@ -111,11 +169,23 @@ public class TempIndex extends Query1 {
 		rewound = true;
 	}
 
+	@Override
+	boolean rebind() {
+		first = true;
+		rewound = true;
+		return super.rebind();
+	}
+
 	@Override
 	void select(List<String> index, Record from, Record to) {
 		verify(startsWith(order, index));
 		sel.set(from, to);
 		rewound = true;
+		if (limit > 0 && ! first) {
+			// the kept rows depend on the selection
+			first = true;
+			source.rewind();
+		}
 	}
 
 }
@@ -0,0 +1,57 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import suneido.database.immudb.Record;
+
+/**
+ * Keeps the first n keys (or the last n if reverse) in a bounded heap.
+ * Used by {@link TempIndex} when the query is limited
+ * so it doesn't have to sort all the keys.
+ * <p>
+ * The heap is ordered with the key that would be dropped next on top.
+ */
+class TopN {
+	private final int n;
+	private final boolean reverse;
+	private final PriorityQueue<Record> heap;
+
+	TopN(int n, boolean reverse) {
+		assert n > 0;
+		this.n = n;
+		this.reverse = reverse;
+		Comparator<Record> cmp = reverse
+				? Comparator.naturalOrder() : Comparator.reverseOrder();
+		heap = new PriorityQueue<>(n + 1, cmp);
+	}
+
+	void add(Record key) {
+		if (heap.size() < n)
+			heap.add(key);
+		else if (better(key, heap.peek())) {
+			heap.poll();
+			heap.add(key);
+		}
+	}
+
+	private boolean better(Record x, Record y) {
+		int cmp = x.compareTo(y);
+		return reverse ? cmp > 0 : cmp < 0;
+	}
+
+	/** @return The kept keys in order */
+	List<Record> keys() {
+		List<Record> keys = new ArrayList<>(heap);
+		Collections.sort(keys);
+		return keys;
+	}
+
+}
@@ -8,7 +8,11 @@ import static suneido.compiler.Token.COUNT;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import suneido.SuContainer;
 import suneido.SuException;
@@ -21,6 +25,10 @@ import suneido.database.query.expr.*;
 public class TreeQueryGenerator extends QueryGenerator<Object> {
 
 	private final Transaction tran;
+	/** the placeholders in a prepared query, one Param per number */
+	private final Map<Integer, Param> params = new TreeMap<>();
+	/** the tables referenced, used to validate prepared query plans */
+	private final Set<String> tables = new LinkedHashSet<>();
 
 	public TreeQueryGenerator(Transaction tran) {
 		this.tran = tran;
@@ -149,6 +157,7 @@ public class TreeQueryGenerator extends QueryGenerator<Object> {
 
 	@Override
 	public Object table(String table) {
+		tables.add(table);
 		return new Table(tran, table);
 	}
 
@@ -292,4 +301,19 @@ public class TreeQueryGenerator extends QueryGenerator<Object> {
 		return Constant.valueOf(value);
 	}
 
+	@Override
+	public Object parameter(int n) {
+		return params.computeIfAbsent(n, Param::new);
+	}
+
+	/** @return The parameters, in order by number */
+	public Map<Integer, Param> params() {
+		return params;
+	}
+
+	/** @return The names of the tables used by the query */
+	public Set<String> tables() {
+		return tables;
+	}
+
 }
@@ -218,7 +218,7 @@ public class Union extends Compatible {
 	}
 
 	@Override
-	public Row get(Dir dir) {
+	Row get1(Dir dir) {
 		if (first) {
 			empty1 = new Row(source.header().size());
 			empty2 = new Row(source2.header().size());
@@ -32,7 +32,7 @@ public class BinOp extends Expr {
 		this.op = op;
 		this.left = left;
 		this.right = right;
-		if (left instanceof Constant && op.termop())
+		if (isValue(left) && op.termop())
 			reverse();
 	}
 
@@ -122,7 +122,16 @@ public class BinOp extends Expr {
 	private boolean isTerm2(List<String> fields) {
 		if (! op.termop())
 			return false;
-		return left.isField(fields) && right instanceof Constant;
+		return left.isField(fields) && isValue(right);
+	}
+
+	/** @return Whether e is a Constant or a Param */
+	private static boolean isValue(Expr e) {
+		return e instanceof Constant || e instanceof Param;
+	}
+
+	private static ByteBuffer packed(Expr e) {
+		return (e instanceof Param) ? ((Param) e).packed() : ((Constant) e).packed;
 	}
 
 	@Override
@@ -132,8 +141,7 @@ public class BinOp extends Expr {
 		if (isTerm && hdr.fields().equals(isTermFields)) {
 			Identifier id = (Identifier) left;
 			ByteBuffer field = row.getraw(hdr, id.ident);
-			Constant c = (Constant) right;
-			ByteBuffer value = c.packed;
+			ByteBuffer value = packed(right);
 			boolean result;
 			switch (op) {
 			case IS :	result = field.equals(value); break;
@@ -167,8 +175,8 @@ public class BinOp extends Expr {
 
 	@Override
 	public boolean cantBeNil(List<String> fields) {
-		if (! isTerm(fields))
-			return false;
+		if (! isTerm(fields) || ! (right instanceof Constant))
+			return false; // Param value could be anything
 		Constant c = (Constant) right;
 		switch (op) {
 		case IS :	return c != Constant.EMPTY;
@@ -0,0 +1,70 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.query.expr;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import suneido.database.query.Header;
+import suneido.database.query.Row;
+import suneido.runtime.Pack;
+
+/**
+ * A parameter placeholder ($1, $2, ...) in a prepared query.
+ * Acts like a {@link Constant} whose value is set before each execution,
+ * except that it is not folded and does not count as fixed,
+ * since that would bake the value into the plan.
+ */
+public class Param extends Expr {
+	/** 1 based */
+	public final int index;
+	private Object value = "";
+	private ByteBuffer packed = Pack.pack("");
+
+	public Param(int index) {
+		this.index = index;
+	}
+
+	public void set(Object value) {
+		this.value = value;
+		packed = Pack.pack(value);
+	}
+
+	public Object value() {
+		return value;
+	}
+
+	/** NOTE: duplicate before changing position */
+	public ByteBuffer packed() {
+		return packed;
+	}
+
+	@Override
+	public String toString() {
+		return "$" + index;
+	}
+
+	@Override
+	public List<String> fields() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Object eval(Header hdr, Row row) {
+		return value;
+	}
+
+	@Override
+	public Expr rename(List<String> from, List<String> to) {
+		return this;
+	}
+
+	@Override
+	public Expr replace(List<String> from, List<Expr> to) {
+		return this;
+	}
+
+}
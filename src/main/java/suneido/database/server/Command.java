@@ -7,6 +7,7 @@ package suneido.database.server;
 import static suneido.database.server.Dbms.isTran;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 import suneido.SuContainer;
@@ -21,6 +22,7 @@ import suneido.database.query.Row;
 import suneido.database.server.Dbms.HeaderAndRow;
 import suneido.database.server.Dbms.LibGet;
 import suneido.runtime.builtin.ServerEval;
+import suneido.util.Errlog;
 
 /**
  * Server side of the client-server protocol.
@@ -146,6 +148,7 @@ public enum Command {
 		@Override
 		public void execute(SuChannel io) {
 			String query = io.getString();
+			ServerData.forThread().checkCursorQuota();
 			DbmsQuery c = dbms().cursor(query);
 			int cn = ServerData.forThread().addCursor(c);
 			io.put(true).put(cn);
@@ -337,9 +340,8 @@ public enum Command {
 		public void execute(SuChannel io) {
 			String name = io.getString();
 			List<LibGet> list = dbms().libget(name);
-			io.put(true).put(list.size());
-			list.forEach((x) -> io.put(x.library).put(x.text.remaining()));
-			list.forEach((x) -> io.putBuffer(x.text));
+			io.put(true);
+			libgetResult(list, io);
 		}
 	},
 	/**
@@ -547,6 +549,7 @@ public enum Command {
 		@Override
 		public void execute(SuChannel io) {
 			boolean readwrite = io.getBool();
+			ServerData.forThread().checkTransactionQuota();
 			int tn = ServerData.forThread().addTransaction(
 					dbms().transaction(readwrite));
 			io.put(true).put(tn);
@@ -592,12 +595,208 @@ public enum Command {
 			int result = t.writeCount();
 			io.put(true).put(result);
 		}
+	},
+
+	// new commands must be added at the end so the above ordinals don't change
+
+	/**
+	 * Get a batch of records from a query or cursor.
+	 * Used by {@link DbmsClient} to avoid a round trip per record.
+	 * ({@link DbmsQuery#get})
+	 * <p>
+	 * First moves skip records (negative for previous) without returning them,
+	 * to reposition after the client discards rows it has buffered.
+	 * Then returns up to nrows records, stopping after nbytes.
+	 * <p>
+	 * '+' or '-', 0 or transaction int, cursor or query int,
+	 * skip int, nrows int, nbytes int
+	 * &rarr; n int, n x (recadr int, record buffer), eof boolean
+	 */
+	GETN {
+		@Override
+		public void execute(SuChannel io) {
+			Dir dir = (io.getByte() == '-') ? Dir.PREV : Dir.NEXT;
+			DbmsQuery q = q_or_tc(io);
+			int skip = io.getInt();
+			int nrows = Math.min(io.getInt(), MAX_ROWS);
+			int nbytes = io.getInt();
+			Dir skipdir = (skip < 0) ? Dir.PREV : Dir.NEXT;
+			for (int i = Math.abs(skip); i > 0; --i)
+				q.get(skipdir);
+			Header hdr = q.header();
+			List<Row> rows = new ArrayList<>();
+			List<Record> recs = new ArrayList<>();
+			boolean eof = false;
+			for (int size = 0; rows.size() < nrows && size < nbytes; ) {
+				Row row = q.get(dir);
+				if (row == null) {
+					eof = true;
+					break;
+				}
+				Record rec = rowToRecord(row, hdr);
+				rows.add(row);
+				recs.add(rec);
+				size += rec.bufSize();
+			}
+			io.put(true).put(rows.size());
+			for (int i = 0; i < rows.size(); ++i)
+				io.put(rows.get(i).address()).put(recs.get(i).getBuffer());
+			io.put(eof);
+		}
+	},
+	/**
+	 * Execute several independent requests in one round trip.
+	 * They are executed in order and their responses are returned in order,
+	 * each tagged with the request id from the client.
+	 * Each request and response is size prefixed
+	 * and is exactly what would be sent on its own.
+	 * Requests are executed even if earlier ones fail.
+	 * Used for bulk libget ({@link Dbms#libget(List)})
+	 * and multiple GET1 ({@link Dbms#get(Dir, List, boolean)})
+	 * <p>
+	 * n int, n x (request id int, request buffer)
+	 * &rarr; n int, n x (request id int, response buffer)
+	 */
+	PIPELINE {
+		@Override
+		public void execute(SuChannel io) {
+			int n = io.getInt();
+			int[] ids = new int[n];
+			ByteBuffer[] requests = new ByteBuffer[n];
+			for (int i = 0; i < n; ++i) {
+				ids[i] = io.getInt();
+				requests[i] = io.getOwnedBuffer();
+				if (! requests[i].hasRemaining())
+					throw new SuException("PIPELINE empty request");
+				int cmd = requests[i].get(requests[i].position());
+				if (cmd == PIPELINE.ordinal())
+					throw new SuException("PIPELINE can't be nested");
+				// the response to the pipeline would be compressed
+				if (cmd == COMPRESS.ordinal())
+					throw new SuException("PIPELINE can't contain COMPRESS");
+			}
+			io.put(true).put(n);
+			for (int i = 0; i < n; ++i) {
+				MemChannel mc = new MemChannel(requests[i]);
+				SuChannel sub = new SuChannel(mc);
+				Command cmd = values()[sub.getByte()];
+				cmd.execute(sub, "PIPELINE");
+				sub.write();
+				io.put(ids[i]).put(mc.output());
+			}
+		}
+	},
+	/**
+	 * Switch the connection to compressed ({@link DeflateChannel}).
+	 * Only sent if the server hello includes {@link DbmsServer#DEFLATE}.
+	 * The response is not compressed, everything after it is.
+	 * <p>
+	 * &rarr;
+	 */
+	COMPRESS {
+		@Override
+		public void execute(SuChannel io) {
+			ServerData.forThread().compress = true;
+			io.put(true);
+		}
+	},
+	/**
+	 * Output a batch of records to a query ({@link DbmsQuery#output(List, boolean)})
+	 * If stopOnError, the first error is returned as an exception.
+	 * Otherwise the failed records are skipped and their errors returned.
+	 * <p>
+	 * query int, stopOnError boolean, n int, n x record buffer
+	 * &rarr; n int, n x (record index int, error string)
+	 */
+	OUTPUTS {
+		@Override
+		public void execute(SuChannel io) {
+			int qn = io.getInt();
+			DbmsQuery q = ServerData.forThread().getQuery(qn);
+			boolean stopOnError = io.getBool();
+			int n = io.getInt();
+			List<Record> recs = new ArrayList<>(n);
+			for (int i = 0; i < n; ++i)
+				recs.add(getRecord(io));
+			List<String> errors = q.output(recs, stopOnError);
+			int nerrs = (int) errors.stream().filter(e -> e != null).count();
+			io.put(true).put(nerrs);
+			for (int i = 0; i < errors.size(); ++i)
+				if (errors.get(i) != null)
+					io.put(i).put(errors.get(i));
+		}
+	},
+	/**
+	 * Prepare a query with parameters ({@link Dbms#prepare})
+	 * <p>
+	 * query string &rarr; prepared int
+	 */
+	PREPARE {
+		@Override
+		public void execute(SuChannel io) {
+			String query = io.getString();
+			int pn = dbms().prepare(query);
+			io.put(true).put(pn);
+		}
+	},
+	/**
+	 * Return a new query in a transaction from a prepared query
+	 * with the parameters set to the given values ({@link DbmsTran#execute})
+	 * <p>
+	 * transaction int, prepared int, n int, n x value packed &rarr; query int
+	 */
+	EXECUTE {
+		@Override
+		public void execute(SuChannel io) {
+			int tn = io.getInt();
+			int pn = io.getInt();
+			int n = io.getInt();
+			List<Object> args = new ArrayList<>(n);
+			for (int i = 0; i < n; ++i)
+				args.add(io.getPacked());
+			DbmsQuery q = tran(tn, "EXECUTE").execute(pn, args);
+			int qn = ServerData.forThread().addQuery(tn, q);
+			io.put(true).put(qn);
+		}
+	},
+	/**
+	 * Discard a prepared query ({@link Dbms#unprepare})
+	 * <p>
+	 * prepared int &rarr;
+	 */
+	UNPREPARE {
+		@Override
+		public void execute(SuChannel io) {
+			int pn = io.getInt();
+			dbms().unprepare(pn);
+			io.put(true);
+		}
 	};
 
+	/** limit on the number of records returned by GETN */
+	static final int MAX_ROWS = 1000;
+
 	//--------------------------------------------------------------------------
 
 	public abstract void execute(SuChannel io);
 
+	/**
+	 * Execute the command, returning any exception to the client
+	 * as false followed by the exception string.
+	 * Does not write the response.
+	 */
+	void execute(SuChannel io, String from) {
+		try {
+			execute(io);
+		} catch (Throwable e) {
+			Class<? extends Throwable> c = e.getClass();
+			if (c != RuntimeException.class && c != SuException.class)
+				Errlog.error(from, e);
+			io.clear();
+			io.put(false).put(e.toString());
+		}
+	}
+
 	//--------------------------------------------------------------------------
 
 	protected DbmsQuery q_or_tc(SuChannel io) {
@@ -624,6 +823,12 @@ public enum Command {
 		io.put(rowToRecord(row, hdr).getBuffer());
 	}
 
+	private static void libgetResult(List<LibGet> list, SuChannel io) {
+		io.put(list.size());
+		list.forEach((x) -> io.put(x.library).put(x.text.remaining()));
+		list.forEach((x) -> io.putBuffer(x.text));
+	}
+
 	private static Record rowToRecord(Row row, Header hdr) {
 		if (row.size() == 1)
 			return row.firstData();
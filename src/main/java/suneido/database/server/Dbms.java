@@ -5,6 +5,7 @@
 package suneido.database.server;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 import suneido.SuContainer;
@@ -30,6 +31,14 @@ public abstract class Dbms {
 
 	public abstract DbmsQuery cursor(String s);
 
+	/**
+	 * Prepare a query with parameters ($1, $2, ...)
+	 * to be run by {@link DbmsTran#execute}
+	 * @return The prepared query number, valid for this session
+	 */
+	public abstract int prepare(String query);
+	public abstract void unprepare(int pn);
+
 	public abstract List<Integer> transactions();
 	public abstract SuDate timestamp();
 	public abstract String check();
@@ -71,6 +80,19 @@ public abstract class Dbms {
 		}
 	}
 
+	/**
+	 * get for several independent queries,
+	 * overridden by DbmsClient to send them in one PIPELINE request.
+	 * Used by QueryFirsts
+	 * @return A list with a HeaderAndRow, or null, for each query
+	 */
+	public List<HeaderAndRow> get(Dir dir, List<String> queries, boolean one) {
+		List<HeaderAndRow> results = new ArrayList<>();
+		for (String query : queries)
+			results.add(get(dir, query, one));
+		return results;
+	}
+
 	public static class LibGet {
 		public String library;
 		public ByteBuffer text;
@@ -81,6 +103,13 @@ public abstract class Dbms {
 		}
 	}
 	public abstract List<LibGet> libget(String name);
+	/** Bulk version of libget, overridden to avoid a request per name */
+	public List<List<LibGet>> libget(List<String> names) {
+		List<List<LibGet>> results = new ArrayList<>();
+		for (String name : names)
+			results.add(libget(name));
+		return results;
+	}
 	public abstract boolean use(String library);
 	public abstract boolean unuse(String library);
 	public abstract List<String> libraries();
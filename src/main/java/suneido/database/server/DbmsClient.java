@@ -11,6 +11,7 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.google.common.collect.ImmutableList;
@@ -32,6 +33,14 @@ public class DbmsClient extends Dbms {
 	public volatile long idleSince = 0; // used by TheDbms.closeIfIdle
 	private String sessionid = "";
 	private SuChannel io;
+	/** whether to request compression if the server offers it */
+	public static boolean compress = false;
+	/** incremented by changes so buffered rows can be discarded */
+	private int writes = 0;
+	/** the maximum number of rows to get at once with GETN */
+	public static int GETN_ROWS = 100;
+	/** GETN stops after this many bytes */
+	public static int GETN_BYTES = 32 * 1024;
 
 	public DbmsClient(String ip, int port) {
 		this(open(ip, port));
@@ -50,6 +59,10 @@ public class DbmsClient extends Dbms {
 		String msg = bufferToString(io.getBuffer(DbmsServer.helloSize));
 		if (! msg.startsWith("Suneido ") || msg.startsWith("Suneido Database Server"))
 			throw new SuException("invalid connect response: " + msg);
+		if (compress && msg.contains("\r\n" + DbmsServer.DEFLATE)) {
+			send(COMPRESS);
+			io = new SuChannel(new DeflateChannel(channel));
+		}
 		sessionid = sessionid("");
 	}
 
@@ -64,6 +77,10 @@ public class DbmsClient extends Dbms {
 	}
 
 	private void getResponse() {
+		getResponse(io);
+	}
+
+	private static void getResponse(Serializer io) {
 		if (! io.getBool()) {
 			String err = io.getString();
 			throw new SuException(err + " (from server)");
@@ -152,6 +169,10 @@ public class DbmsClient extends Dbms {
 
 	/** Does NOT clone the buffers, they will be invalid after the request  */
 	private List<LibGet> libgetResult() {
+		return libgetResult(io);
+	}
+
+	private static List<LibGet> libgetResult(Serializer io) {
 		int n = io.getInt();
 		String[] libs = new String[n];
 		int[] sizes = new int[n];
@@ -174,10 +195,14 @@ public class DbmsClient extends Dbms {
 	}
 
 	public HeaderAndRow rowResult(boolean withHeader) {
+		return rowResult(io, withHeader);
+	}
+
+	private static HeaderAndRow rowResult(Serializer io, boolean withHeader) {
 		if (! io.getBool())
 			return null;
 		int recadr = io.getInt();
-		Header header = withHeader ? headerResult() : null;
+		Header header = withHeader ? headerResult(io) : null;
 		ByteBuffer buf = io.getOwnedBuffer();
 		Record record = Dbpkg.record(recadr, buf);
 		Row row = new Row(record);
@@ -185,6 +210,10 @@ public class DbmsClient extends Dbms {
 	}
 
 	private Header headerResult() {
+		return headerResult(io);
+	}
+
+	private static Header headerResult(Serializer io) {
 		int n = io.getInt();
 		ImmutableList.Builder<String> fields = ImmutableList.builder();
 		ImmutableList.Builder<String> columns = ImmutableList.builder();
@@ -240,6 +269,17 @@ public class DbmsClient extends Dbms {
 		return io.getInt();
 	}
 
+	@Override
+	public int prepare(String query) {
+		send(PREPARE, query);
+		return io.getInt();
+	}
+
+	@Override
+	public void unprepare(int pn) {
+		send(UNPREPARE, pn);
+	}
+
 	@Override
 	public String dump(String table) {
 		send(DUMP, table);
@@ -264,6 +304,63 @@ public class DbmsClient extends Dbms {
 		return rowResult(true);
 	}
 
+	/** Sends a GET1 for each query in a single PIPELINE request */
+	@Override
+	public List<HeaderAndRow> get(Dir dir, List<String> queries, boolean one) {
+		Pipeline p = new Pipeline();
+		for (String query : queries)
+			p.add(GET1).putByte((byte) (one ? '1' : (dir == Dir.PREV ? '-' : '+')))
+					.put(NO_TRAN).put(query);
+		List<HeaderAndRow> results = new ArrayList<>();
+		for (SuChannel r : p.send()) {
+			getResponse(r);
+			results.add(rowResult(r, true));
+		}
+		return results;
+	}
+
+	/**
+	 * Sends several independent requests in a single PIPELINE request
+	 * to save round trips.
+	 * Each request is written to its own in memory SuChannel
+	 * and the responses are read from their own SuChannel
+	 * so the normal request and response code can be used.
+	 */
+	private class Pipeline {
+		private final List<MemChannel> channels = new ArrayList<>();
+		private final List<SuChannel> requests = new ArrayList<>();
+
+		/** @return The Serializer to put the rest of the request to */
+		Serializer add(Command cmd) {
+			MemChannel mc = new MemChannel();
+			SuChannel req = new SuChannel(mc);
+			channels.add(mc);
+			requests.add(req);
+			return req.putByte((byte) cmd.ordinal());
+		}
+
+		/**
+		 * @return A SuChannel for each response, in order.
+		 * The caller must check the response with getResponse.
+		 */
+		List<SuChannel> send() {
+			putCmd(PIPELINE).put(requests.size());
+			for (int i = 0; i < requests.size(); ++i) {
+				requests.get(i).write();
+				io.put(i).put(channels.get(i).output());
+			}
+			doRequest();
+			int n = io.getInt();
+			List<SuChannel> responses = new ArrayList<>(n);
+			for (int i = 0; i < n; ++i) {
+				int id = io.getInt();
+				assert id == i : "PIPELINE response out of order";
+				responses.add(new SuChannel(new MemChannel(io.getOwnedBuffer())));
+			}
+			return responses;
+		}
+	}
+
 	@Override
 	public SuContainer info() {
 		send(INFO);
@@ -282,6 +379,24 @@ public class DbmsClient extends Dbms {
 		return libgetResult();
 	}
 
+	/**
+	 * Sends a LIBGET for each name in a single PIPELINE request.
+	 * NOTE: Unlike libget(name) the buffers are owned by the caller
+	 * since each response has its own SuChannel.
+	 */
+	@Override
+	public List<List<LibGet>> libget(List<String> names) {
+		Pipeline p = new Pipeline();
+		for (String name : names)
+			p.add(LIBGET).put(name);
+		ImmutableList.Builder<List<LibGet>> builder = ImmutableList.builder();
+		for (SuChannel r : p.send()) {
+			getResponse(r);
+			builder.add(libgetResult(r));
+		}
+		return builder.build();
+	}
+
 	@Override
 	public List<String> libraries() {
 		send(LIBRARIES);
@@ -400,6 +515,7 @@ public class DbmsClient extends Dbms {
 
 		@Override
 		public void erase(int recadr) {
+			++writes;
 			send(ERASE, tn, recadr);
 		}
 
@@ -415,6 +531,15 @@ public class DbmsClient extends Dbms {
 			return new DbmsClientQuery(io.getInt());
 		}
 
+		@Override
+		public DbmsQuery execute(int pn, List<Object> args) {
+			Serializer req = putCmd(EXECUTE).put(tn).put(pn).put(args.size());
+			for (Object arg : args)
+				req.putPacked(arg);
+			doRequest();
+			return new DbmsClientQuery(io.getInt());
+		}
+
 		@Override
 		public int readCount() {
 			send(READCOUNT, tn);
@@ -423,12 +548,14 @@ public class DbmsClient extends Dbms {
 
 		@Override
 		public int request(String s) {
+			++writes;
 			send(REQUEST, tn, s);
 			return io.getInt();
 		}
 
 		@Override
 		public int update(int recadr, Record rec) {
+			++writes;
 			send(UPDATE, tn, recadr, rec);
 			return io.getInt();
 		}
@@ -452,10 +579,28 @@ public class DbmsClient extends Dbms {
 
 	//--------------------------------------------------------------------------
 
+	/**
+	 * Rows are fetched in batches with GETN and buffered.
+	 * The batch size starts at one and doubles up to GETN_ROWS
+	 * so queries that only read a few rows don't fetch extra.
+	 * <p>
+	 * The server query is positioned after the last buffered row.
+	 * If the buffer is discarded with rows still in it
+	 * (direction change, different transaction, or writes)
+	 * the next GETN skips back over them.
+	 */
 	private class DbmsClientQuery implements DbmsQuery {
 		protected final int qn;
 		private List<List<String>> keys; // cache
 		private Header header; // cache
+		private final ArrayList<Row> rows = new ArrayList<>();
+		private int pos = 0;
+		/** whether the buffered rows end at eof */
+		private boolean eof = false;
+		private Dir bufDir;
+		private int bufTran;
+		private int bufWrites;
+		private int batch = 1;
 
 		DbmsClientQuery(int qn) {
 			this.qn = qn;
@@ -487,21 +632,86 @@ public class DbmsClient extends Dbms {
 
 		@Override
 		public Row get(Dir dir) {
-			send(GET, (dir == Dir.NEXT ? '+' : '-'), getTran(), qn);
-			HeaderAndRow hr = rowResult(false);
-			return hr == null ? null : hr.row;
+			int tn = getTran();
+			int skip = 0;
+			if (buffered() > 0) {
+				if (dir == bufDir && tn == bufTran && writes == bufWrites)
+					return next();
+				skip = (bufDir == Dir.NEXT) ? -buffered() : buffered();
+				if (dir != bufDir)
+					batch = 1;
+			}
+			fetch(dir, tn, skip);
+			return next();
+		}
+
+		private int buffered() {
+			return rows.size() - pos + (eof ? 1 : 0);
+		}
+
+		private Row next() {
+			if (pos < rows.size())
+				return rows.get(pos++);
+			clear(); // consumed eof
+			return null;
+		}
+
+		private void fetch(Dir dir, int tn, int skip) {
+			clear();
+			putCmd(GETN).putByte((byte) (dir == Dir.NEXT ? '+' : '-'))
+					.put(tn).put(qn).put(skip).put(batch).put(GETN_BYTES);
+			doRequest();
+			int n = io.getInt();
+			for (int i = 0; i < n; ++i) {
+				int recadr = io.getInt();
+				Record rec = Dbpkg.record(recadr, io.getOwnedBuffer());
+				rows.add(new Row(rec));
+			}
+			eof = io.getBool();
+			bufDir = dir;
+			bufTran = tn;
+			bufWrites = writes;
+			batch = Math.min(2 * batch, GETN_ROWS);
+		}
+
+		private void clear() {
+			rows.clear();
+			pos = 0;
+			eof = false;
 		}
 
 		@Override
 		public void rewind() {
+			clear();
+			batch = 1;
 			send(REWIND, qn, c_or_q());
 		}
 
 		@Override
 		public void output(Record rec) {
+			++writes;
 			send(OUTPUT, qn, rec.getBuffer());
 		}
 
+		@Override
+		public List<String> output(List<Record> recs, boolean stopOnError) {
+			++writes;
+			Serializer req = putCmd(OUTPUTS).put(qn).put(stopOnError)
+					.put(recs.size());
+			for (Record rec : recs)
+				req.put(rec.getBuffer());
+			doRequest();
+			List<String> errors = new ArrayList<>(recs.size());
+			for (int i = 0; i < recs.size(); ++i)
+				errors.add(null);
+			int n = io.getInt();
+			for (int i = 0; i < n; ++i) {
+				int j = io.getInt();
+				errors.set(j, io.getString());
+			}
+			return errors;
+		}
+
 		@Override
 		public void setTransaction(DbmsTran tran) {
 			// used by DbmsClientCursor
@@ -522,6 +732,7 @@ public class DbmsClient extends Dbms {
 
 		@Override
 		public void close() {
+			clear();
 			send(CLOSE, qn, c_or_q());
 		}
 
@@ -546,6 +757,11 @@ public class DbmsClient extends Dbms {
 			throw SuInternalError.unreachable();
 		}
 
+		@Override
+		public List<String> output(List<Record> recs, boolean stopOnError) {
+			throw SuInternalError.unreachable();
+		}
+
 		@Override
 		public void setTransaction(DbmsTran tran) {
 			tn = tran == null ? NO_TRAN : ((DbmsClientTran) tran).tn;
@@ -4,7 +4,7 @@
 
 package suneido.database.server;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -14,6 +14,7 @@ import suneido.*;
 import suneido.compiler.Compiler;
 import suneido.database.immudb.*;
 import suneido.database.query.CompileQuery;
+import suneido.database.query.PreparedQuery;
 import suneido.database.query.Query.Dir;
 import suneido.database.query.Request;
 import suneido.runtime.builtin.ServerEval;
@@ -24,13 +25,16 @@ public class DbmsLocal extends Dbms {
 	private final Database db;
 	private static final List<String> libraries =
 			new CopyOnWriteArrayList<String>(new String[] { "stdlib" });
+	private final LibGetCache libcache;
 
 	public DbmsLocal(Database db) {
 		this.db = db;
+		libcache = new LibGetCache(db);
 	}
 
 	@Override
 	public void admin(String s) {
+		libcache.clear(); // in case it alters a library table
 		Request.execute(db, ServerData.forThread(), s);
 	}
 
@@ -51,6 +55,23 @@ public class DbmsLocal extends Dbms {
 		}
 	}
 
+	@Override
+	public int prepare(String query) {
+		ServerData serverData = ServerData.forThread();
+		Transaction t = db.readTransaction();
+		try {
+			return serverData.addPrepared(
+					new PreparedQuery(t, serverData, query));
+		} finally {
+			t.complete();
+		}
+	}
+
+	@Override
+	public void unprepare(int pn) {
+		ServerData.forThread().endPrepared(pn);
+	}
+
 	@Override
 	public SuContainer connections() {
 		return Suneido.server == null ? SuContainer.EMPTY
@@ -97,27 +118,12 @@ public class DbmsLocal extends Dbms {
 
 	@Override
 	public List<LibGet> libget(String name) {
-		List<LibGet> srcs = new ArrayList<>();
-		Record key = new RecordBuilder().add(name).add(-1).build();
-		Transaction tran = db.readTransaction();
-		try {
-			for (String lib : libraries) {
-				Table table = tran.getTable(lib);
-				if (table == null)
-					continue;
-				List<String> flds = table.getFields();
-				int group_fld = flds.indexOf("group");
-				int text_fld = flds.indexOf("text");
-				if (group_fld < 0 || text_fld < 0)
-					continue; // library is invalid, ignore it
-				Record rec = tran.lookup(table.num(), "name,group", key);
-				if (rec != null)
-					srcs.add(new LibGet(lib, rec.getRaw(text_fld)));
-			}
-		} finally {
-			tran.complete();
-		}
-		return srcs;
+		return libcache.get(libraries, Collections.singletonList(name)).get(0);
+	}
+
+	@Override
+	public List<List<LibGet>> libget(List<String> names) {
+		return libcache.get(libraries, names);
 	}
 
 	@Override
@@ -167,6 +173,9 @@ public class DbmsLocal extends Dbms {
 		info.put("maxUpdateTranSec", Suneido.cmdlineoptions.max_update_tran_sec);
 		info.put("maxWritesPerTran", Suneido.cmdlineoptions.max_writes_per_tran);
 		info.put("currentSize", size());
+		info.put("quotas", ServerData.quotas());
+		if (Suneido.server != null)
+			info.put("sessions", new SuContainer(Suneido.server.usage()));
 		return info;
 	}
 
@@ -30,6 +30,17 @@ public interface DbmsQuery {
 	/** Only for queries, not cursors. */
 	void output(Record rec);
 
+	/**
+	 * Output a batch of records. Only for queries, not cursors.
+	 * If stopOnError, the first error is thrown
+	 * (the records before it have been output)
+	 * otherwise records that fail are skipped.
+	 * But if a record fails after it was written, e.g. in its trigger,
+	 * the transaction is aborted and the error is thrown.
+	 * @return A list with the error, or null if successful, for each record
+	 */
+	List<String> output(List<Record> recs, boolean stopOnError);
+
 	/** Only for cursors. Should be called before update. */
 	void setTransaction(DbmsTran tran);
 
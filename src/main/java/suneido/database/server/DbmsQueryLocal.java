@@ -4,24 +4,46 @@
 
 package suneido.database.server;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import suneido.SuException;
 import suneido.database.immudb.Record;
+import suneido.database.immudb.Transaction;
 import suneido.database.query.Header;
 import suneido.database.query.Query;
 import suneido.database.query.Query.Dir;
 import suneido.database.query.Row;
+import suneido.database.query.SlowQueryLog;
+import suneido.util.Metrics;
+import suneido.util.Metrics.Counter;
 
 public class DbmsQueryLocal implements DbmsQuery {
+	static final Counter rowsReturned =
+			Metrics.counter("suneido_query_rows_returned_total",
+					"Rows returned by queries");
 	private final Query q;
+	/** used by output(List, boolean), null for cursors */
+	private final Transaction tran;
+	/** e.g. to release a {@link suneido.database.query.PreparedQuery} plan */
+	private final Runnable onClose;
 
 	public DbmsQueryLocal(Query q) {
+		this(q, null, null);
+	}
+
+	DbmsQueryLocal(Query q, Transaction tran, Runnable onClose) {
 		this.q = q;
+		this.tran = tran;
+		this.onClose = onClose;
 	}
 
 	@Override
 	public Row get(Dir dir) {
-		return q.get(dir);
+		Row row = q.get(dir);
+		if (row != null)
+			rowsReturned.inc();
+		return row;
 	}
 
 	@Override
@@ -44,6 +66,30 @@ public class DbmsQueryLocal implements DbmsQuery {
 		q.output(rec);
 	}
 
+	@Override
+	public List<String> output(List<Record> recs, boolean stopOnError) {
+		List<String> errors = new ArrayList<>(recs.size());
+		for (Record rec : recs) {
+			int writes = (tran == null) ? 0 : tran.writeCount();
+			try {
+				q.output(rec);
+				errors.add(null);
+			} catch (SuException e) {
+				if (stopOnError)
+					throw e;
+				// foreign key and duplicate key errors are detected
+				// before anything is written, but the trigger runs after
+				// and may have written, so the record can't just be skipped
+				if (tran != null && tran.writeCount() != writes) {
+					tran.abort();
+					throw new SuException("output aborted transaction: " + e, e);
+				}
+				errors.add(e.toString());
+			}
+		}
+		return errors;
+	}
+
 	@Override
 	public void rewind() {
 		q.rewind();
@@ -72,6 +118,9 @@ public class DbmsQueryLocal implements DbmsQuery {
 	@Override
 	public void close() {
 		q.close();
+		SlowQueryLog.finish(q);
+		if (onClose != null)
+			onClose.run();
 	}
 
 }
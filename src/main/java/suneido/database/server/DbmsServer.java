@@ -13,20 +13,15 @@ import java.nio.channels.Channel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.*;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 import java.util.function.BiConsumer;
 
 import suneido.util.NotThreadSafe;
 import suneido.util.ThreadSafe;
 
 import com.google.common.base.Strings;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import suneido.SuContainer;
 import suneido.Suneido;
-import suneido.SuException;
-import suneido.util.Errlog;
 import suneido.util.ServerBySelect;
 import suneido.util.ServerBySelect.Handler;
 
@@ -40,6 +35,8 @@ public class DbmsServer {
 	public final ServerDataSet serverDataSet = new ServerDataSet();
 	private final ServerBySelect server;
 	public static final int helloSize = 50; // must match cSuneido
+	/** added to the hello to offer COMPRESS, after the line cSuneido checks */
+	public static final String DEFLATE = "deflate";
 
 	public DbmsServer(int idleTimeoutMin) {
 		server = new ServerBySelect(
@@ -66,15 +63,12 @@ public class DbmsServer {
 	 */
 	@NotThreadSafe
 	static class DbmsServerHandler implements Handler {
-		private final ThreadFactory threadFactory =
-				new ThreadFactoryBuilder().setNameFormat("DbmsServer-thread-%d").build();
-		private final Executor executor = Executors.newCachedThreadPool(threadFactory);
-		private static final ThreadLocal<ByteBuffer> tlbuf =
-				ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(SuChannel.BUFSIZE));
 		// avoid calling values every time since it clones
 		private static final Command[] commands = Command.values();
 		private final ServerDataSet serverDataSet;
 		private final ServerData serverData;
+		/** set after COMPRESS */
+		private DeflateChannel deflate = null;
 		private static class InitOnce {
 			static final ByteBuffer hello = hello();
 		}
@@ -101,7 +95,7 @@ public class DbmsServer {
 		}
 
 		private static ByteBuffer hello() {
-			String hello = "Suneido " + Suneido.built + "\r\n";
+			String hello = "Suneido " + Suneido.built + "\r\n" + DEFLATE;
 			assert hello.length() < helloSize;
 			return stringToBuffer(Strings.padEnd(hello, helloSize, '\000'));
 		}
@@ -109,27 +103,32 @@ public class DbmsServer {
 		@Override
 		public void request(Channel channel,
 				BiConsumer<Channel, Handler> reregister) {
-			executor.execute(() -> handleRequest(channel, reregister));
+			Runnable request = () -> handleRequest(channel, reregister);
+			long delay = serverData.throttle(System.nanoTime());
+			if (delay == 0)
+				executor().execute(request);
+			else
+				executor().executeAfter(delay, request);
 		}
 
 		void handleRequest(Channel channel,
 				BiConsumer<Channel, Handler> reregister) {
+			ServerExecutor executor = executor();
+			ByteBuffer buf = executor.getBuffer();
 			try {
 				// create a new SuChannel for each request
-				SuChannel io = new SuChannel(channel, tlbuf.get());
+				SuChannel io = new SuChannel(
+						(deflate == null) ? channel : deflate, buf);
 				int icmd = io.getByte();
 				Command cmd = commands[icmd];
+				long t = System.nanoTime();
 				ServerData.threadLocal.set(serverData);
-				try {
-					cmd.execute(io);
-				} catch (Throwable e) {
-					Class<? extends Throwable> c = e.getClass();
-					if (c != RuntimeException.class && c != SuException.class)
-						Errlog.error("DbmsServerBySelect.run", e);
-					io.clear();
-					io.put(false).put(e.toString());
-				}
+				cmd.execute(io, "DbmsServerBySelect.run");
 				io.write();
+				if (serverData.compress && deflate == null)
+					deflate = new DeflateChannel(channel);
+				executor.record(cmd, System.nanoTime() - t);
+				executor.putBuffer(buf);
 				reregister.accept(channel, this);
 			} catch (Throwable e) {
 				try {
@@ -174,6 +173,13 @@ public class DbmsServer {
 			return list;
 		}
 
+		synchronized List<SuContainer> usage() {
+			List<SuContainer> list = new ArrayList<>();
+			for (ServerData sd : data)
+				list.add(sd.usage());
+			return list;
+		}
+
 		synchronized int killConnections(String sessionId) {
 			int nkilled = 0;
 			Iterator<ServerData> iter = data.iterator();
@@ -197,6 +203,24 @@ public class DbmsServer {
 		return serverDataSet.connections();
 	}
 
+	/** @return The resource usage of each connection, for {@link Dbms#info} */
+	public List<SuContainer> usage() {
+		return serverDataSet.usage();
+	}
+
+	private static class Workers {
+		static final ServerExecutor executor =
+				new ServerExecutor(ServerExecutor.MAX_THREADS);
+		static {
+			executor.registerMetrics();
+		}
+	}
+
+	/** @return The executor shared by all the connections */
+	public static ServerExecutor executor() {
+		return Workers.executor;
+	}
+
 	public int killConnections(String sessionId) {
 		return serverDataSet.killConnections(sessionId);
 	}
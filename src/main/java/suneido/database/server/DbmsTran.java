@@ -4,6 +4,8 @@
 
 package suneido.database.server;
 
+import java.util.List;
+
 import suneido.database.immudb.Record;
 import suneido.database.query.Query.Dir;
 import suneido.database.server.Dbms.HeaderAndRow;
@@ -22,6 +24,9 @@ public interface DbmsTran {
 
 	DbmsQuery query(String s);
 
+	/** Like query, but for a query from {@link Dbms#prepare} */
+	DbmsQuery execute(int pn, List<Object> args);
+
 	void erase(int recadr);
 
 	int update(int recadr, Record rec);
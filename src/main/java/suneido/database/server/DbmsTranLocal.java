@@ -4,14 +4,18 @@
 
 package suneido.database.server;
 
+import java.util.List;
+
 import suneido.SuException;
 import suneido.database.immudb.Record;
 import suneido.database.immudb.Transaction;
 import suneido.database.query.CompileQuery;
+import suneido.database.query.PreparedQuery;
 import suneido.database.query.Query;
 import suneido.database.query.Query.Dir;
 import suneido.database.query.QueryAction;
 import suneido.database.query.Row;
+import suneido.database.query.SlowQueryLog;
 import suneido.database.server.Dbms.HeaderAndRow;
 
 public class DbmsTranLocal implements DbmsTran {
@@ -39,21 +43,33 @@ public class DbmsTranLocal implements DbmsTran {
 
 	@Override
 	public DbmsQuery query(String s) {
-		return new DbmsQueryLocal(CompileQuery.query(t, ServerData.forThread(), s));
+		return new DbmsQueryLocal(
+				CompileQuery.query(t, ServerData.forThread(), s), t, null);
+	}
+
+	@Override
+	public DbmsQuery execute(int pn, List<Object> args) {
+		ServerData serverData = ServerData.forThread();
+		PreparedQuery pq = serverData.getPrepared(pn);
+		Query q = pq.execute(t, serverData, args);
+		return new DbmsQueryLocal(q, t, () -> pq.release(q));
 	}
 
 	@Override
 	public HeaderAndRow get(Dir dir, String query, boolean one) {
 		Query q = CompileQuery.query(t, ServerData.forThread(), query);
 		try {
+			q.limit(one ? 2 : 1);
 			Row row = q.get(dir);
 			if (row == null)
 				return null;
 			if (one && q.get(dir) != null)
 				throw new SuException("Query1 not unique: " + query);
+			DbmsQueryLocal.rowsReturned.inc();
 			return new HeaderAndRow(q.header(), row);
 		} finally {
 			q.close();
+			SlowQueryLog.finish(q);
 		}
 	}
 
@@ -54,6 +54,16 @@ public class DbmsUnauth extends Dbms {
 		throw notauth;
 	}
 
+	@Override
+	public int prepare(String query) {
+		throw notauth;
+	}
+
+	@Override
+	public void unprepare(int pn) {
+		throw notauth;
+	}
+
 	@Override
 	public void disableTrigger(String table) {
 		throw notauth;
@@ -99,6 +109,11 @@ public class DbmsUnauth extends Dbms {
 		return dbms.libget(name);
 	}
 
+	@Override
+	public List<List<LibGet>> libget(List<String> names) {
+		return dbms.libget(names);
+	}
+
 	@Override
 	public List<String> libraries() {
 		return dbms.libraries();
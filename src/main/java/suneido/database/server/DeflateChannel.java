@@ -0,0 +1,198 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import suneido.util.NotThreadSafe;
+
+/**
+ * Wraps a blocking channel to compress the client-server protocol.
+ * Enabled by {@link Command#COMPRESS} if the server hello offers it.
+ * <p>
+ * Each write (i.e. each request or response from {@link SuChannel})
+ * is sent as a frame: a flag byte, a four byte length, and the data.
+ * Messages smaller than {@link #THRESHOLD} are sent as is.
+ * Larger ones are deflated with SYNC_FLUSH
+ * using a single stream for the life of the connection,
+ * so later messages benefit from the earlier ones.
+ * The stream starts with a dictionary of common Suneido text.
+ */
+@NotThreadSafe
+public class DeflateChannel implements ReadableByteChannel, GatheringByteChannel {
+	/** messages smaller than this are not compressed */
+	static int THRESHOLD = 256;
+	private static final byte RAW = 0;
+	private static final byte DEFLATED = 1;
+	private static final byte[] DICTIONARY = (
+			"function (class : this.super.New(return true false " +
+			"if (else for (foreach while (Object(Record( isnt and or not " +
+			"catch (try throw .Size() .Members() .Add( .Has?( " +
+			"Transaction(read: update: QueryFirst( Query1( QueryApply( " +
+			"where sort project rename extend summarize join leftjoin " +
+			"_num _name _date _lower! _TS group text name num ")
+			.getBytes(StandardCharsets.ISO_8859_1);
+	private static final AtomicLong rawBytes = new AtomicLong();
+	private static final AtomicLong sentBytes = new AtomicLong();
+	private final Channel channel;
+	private final Deflater deflater = new Deflater();
+	private final Inflater inflater = new Inflater();
+	private byte[] out = new byte[1024];
+	/** data that has been received but not yet read */
+	private ByteBuffer pending = ByteBuffer.allocate(0);
+
+	DeflateChannel(Channel channel) {
+		this.channel = channel;
+		deflater.setDictionary(DICTIONARY);
+	}
+
+	// write -------------------------------------------------------------------
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		return (int) write(new ByteBuffer[] { src }, 0, 1);
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs) throws IOException {
+		return write(srcs, 0, srcs.length);
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs, int offset, int length)
+			throws IOException {
+		int n = 0;
+		for (int i = offset; i < offset + length; ++i)
+			n += srcs[i].remaining();
+		byte[] data = new byte[n];
+		for (int i = offset, pos = 0; i < offset + length; ++i) {
+			int m = srcs[i].remaining();
+			srcs[i].get(data, pos, m);
+			pos += m;
+		}
+		if (n < THRESHOLD)
+			send(RAW, data, n);
+		else {
+			int len = deflate(data);
+			send(DEFLATED, out, len);
+		}
+		rawBytes.addAndGet(n);
+		return n;
+	}
+
+	private int deflate(byte[] data) {
+		deflater.setInput(data);
+		int len = 0;
+		while (true) {
+			len += deflater.deflate(out, len, out.length - len,
+					Deflater.SYNC_FLUSH);
+			if (len < out.length)
+				return len;
+			out = Arrays.copyOf(out, 2 * out.length);
+		}
+	}
+
+	private void send(byte flag, byte[] data, int n) throws IOException {
+		ByteBuffer hdr = ByteBuffer.allocate(5).put(flag).putInt(n);
+		hdr.flip();
+		ByteBuffer[] bufs = { hdr, ByteBuffer.wrap(data, 0, n) };
+		while (bufs[1].hasRemaining())
+			((GatheringByteChannel) channel).write(bufs);
+		sentBytes.addAndGet(5 + n);
+	}
+
+	// read --------------------------------------------------------------------
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		if (! pending.hasRemaining() && ! receive())
+			return -1;
+		int n = Math.min(pending.remaining(), dst.remaining());
+		ByteBuffer src = pending.duplicate();
+		src.limit(src.position() + n);
+		dst.put(src);
+		pending.position(pending.position() + n);
+		return n;
+	}
+
+	/** @return false at end of stream */
+	private boolean receive() throws IOException {
+		ByteBuffer hdr = ByteBuffer.allocate(5);
+		if (! readFully(hdr))
+			return false;
+		hdr.flip();
+		byte flag = hdr.get();
+		int n = hdr.getInt();
+		ByteBuffer data = ByteBuffer.allocate(n);
+		if (! readFully(data))
+			return false;
+		data.flip();
+		pending = (flag == DEFLATED) ? inflate(data) : data;
+		return true;
+	}
+
+	private boolean readFully(ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining())
+			if (((ReadableByteChannel) channel).read(buf) < 0)
+				return false;
+		return true;
+	}
+
+	private ByteBuffer inflate(ByteBuffer data) throws IOException {
+		inflater.setInput(data.array(), 0, data.limit());
+		byte[] result = new byte[Math.max(1024, 4 * data.limit())];
+		int len = 0;
+		try {
+			while (true) {
+				len += inflater.inflate(result, len, result.length - len);
+				if (inflater.needsDictionary())
+					inflater.setDictionary(DICTIONARY);
+				else if ((inflater.needsInput() && len < result.length) ||
+						inflater.finished())
+					break;
+				else if (len == result.length)
+					result = Arrays.copyOf(result, 2 * result.length);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("DeflateChannel bad data", e);
+		}
+		return ByteBuffer.wrap(result, 0, len);
+	}
+
+	// -------------------------------------------------------------------------
+
+	/** @return The total bytes before compression, for all connections */
+	public static long rawBytes() {
+		return rawBytes.get();
+	}
+
+	/** @return The total bytes actually written, for all connections */
+	public static long sentBytes() {
+		return sentBytes.get();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		deflater.end();
+		inflater.end();
+		channel.close();
+	}
+
+}
@@ -0,0 +1,135 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import suneido.database.immudb.Database;
+import suneido.database.immudb.Record;
+import suneido.database.immudb.RecordBuilder;
+import suneido.database.immudb.Table;
+import suneido.database.immudb.Transaction;
+import suneido.database.server.Dbms.LibGet;
+import suneido.util.Metrics;
+import suneido.util.Metrics.Counter;
+import suneido.util.ThreadSafe;
+
+/**
+ * Server side cache of library definitions for {@link DbmsLocal#libget}
+ * so clients loading the same names don't each require a transaction
+ * and a btree lookup in every library.
+ * <p>
+ * Each library has its own cache, tagged with {@link Database#tableVersion}.
+ * A commit to the library table changes its version
+ * and the next lookup discards the old cache.
+ * The version is checked before the transaction is started
+ * so a cache can only hold definitions newer than its version, never older.
+ * <p>
+ * Names that are not found in a library are cached as well
+ * since most names are only defined in one library.
+ */
+@ThreadSafe
+class LibGetCache {
+	private static final ByteBuffer NOT_FOUND = ByteBuffer.allocate(0);
+	private static final Counter hits = Metrics.counter(
+			"suneido_libget_cache_total", "Library lookups", "result", "hit");
+	private static final Counter misses = Metrics.counter(
+			"suneido_libget_cache_total", "Library lookups", "result", "miss");
+	private final Database db;
+	private final ConcurrentHashMap<String, LibCache> libs =
+			new ConcurrentHashMap<>();
+
+	LibGetCache(Database db) {
+		this.db = db;
+	}
+
+	private static class LibCache {
+		final Object version;
+		final ConcurrentHashMap<String, ByteBuffer> defs =
+				new ConcurrentHashMap<>();
+
+		LibCache(Object version) {
+			this.version = version;
+		}
+	}
+
+	/** @return The definitions of each of the names, in library order */
+	List<List<LibGet>> get(List<String> libraries, List<String> names) {
+		List<String> libnames = new ArrayList<>();
+		List<LibCache> caches = new ArrayList<>();
+		for (String lib : libraries) {
+			LibCache c = cache(lib);
+			if (c != null) {
+				libnames.add(lib);
+				caches.add(c);
+			}
+		}
+		List<List<LibGet>> results = new ArrayList<>(names.size());
+		Transaction tran = null; // only if we need it
+		try {
+			for (String name : names) {
+				List<LibGet> srcs = new ArrayList<>();
+				for (int i = 0; i < caches.size(); ++i) {
+					String lib = libnames.get(i);
+					LibCache c = caches.get(i);
+					ByteBuffer text = c.defs.get(name);
+					if (text != null)
+						hits.inc();
+					else {
+						misses.inc();
+						if (tran == null)
+							tran = db.readTransaction();
+						text = lookup(tran, lib, name);
+						c.defs.put(name, text);
+					}
+					if (text != NOT_FOUND)
+						// duplicate because sending changes the position
+						srcs.add(new LibGet(lib, text.duplicate()));
+				}
+				results.add(srcs);
+			}
+		} finally {
+			if (tran != null)
+				tran.complete();
+		}
+		return results;
+	}
+
+	/** @return The cache for a library, or null if the table doesn't exist */
+	private LibCache cache(String lib) {
+		Object version = db.tableVersion(lib);
+		if (version == null)
+			return null;
+		LibCache c = libs.get(lib);
+		if (c == null || c.version != version) {
+			c = new LibCache(version);
+			libs.put(lib, c);
+		}
+		return c;
+	}
+
+	private static ByteBuffer lookup(Transaction tran, String lib, String name) {
+		Table table = tran.getTable(lib);
+		if (table == null)
+			return NOT_FOUND;
+		List<String> flds = table.getFields();
+		int group_fld = flds.indexOf("group");
+		int text_fld = flds.indexOf("text");
+		if (group_fld < 0 || text_fld < 0)
+			return NOT_FOUND; // library is invalid, ignore it
+		Record key = new RecordBuilder().add(name).add(-1).build();
+		Record rec = tran.lookup(table.num(), "name,group", key);
+		return rec == null ? NOT_FOUND : rec.getRaw(text_fld);
+	}
+
+	/** Used when the schema changes e.g. a library table is altered */
+	void clear() {
+		libs.clear();
+	}
+
+}
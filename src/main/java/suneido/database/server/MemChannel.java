@@ -0,0 +1,84 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.server;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * An in memory channel so {@link SuChannel} can be used
+ * to read and write the individual requests and responses
+ * within a {@link Command#PIPELINE} request.
+ * Reads come from the supplied buffer, writes are accumulated.
+ */
+class MemChannel implements ReadableByteChannel, GatheringByteChannel {
+	private final ByteBuffer input;
+	private ByteBuffer output = ByteBuffer.allocate(256);
+
+	MemChannel() {
+		this(ByteBuffer.allocate(0));
+	}
+
+	MemChannel(ByteBuffer input) {
+		this.input = input.duplicate();
+	}
+
+	@Override
+	public int read(ByteBuffer dst) {
+		if (! input.hasRemaining())
+			return -1;
+		int n = Math.min(input.remaining(), dst.remaining());
+		ByteBuffer src = input.duplicate();
+		src.limit(src.position() + n);
+		dst.put(src);
+		input.position(input.position() + n);
+		return n;
+	}
+
+	@Override
+	public int write(ByteBuffer src) {
+		int n = src.remaining();
+		if (n > output.remaining()) {
+			ByteBuffer buf = ByteBuffer.allocate(
+					Math.max(2 * output.capacity(), output.position() + n));
+			output.flip();
+			buf.put(output);
+			output = buf;
+		}
+		output.put(src);
+		return n;
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs) {
+		return write(srcs, 0, srcs.length);
+	}
+
+	@Override
+	public long write(ByteBuffer[] srcs, int offset, int length) {
+		long n = 0;
+		for (int i = offset; i < offset + length; ++i)
+			n += write(srcs[i]);
+		return n;
+	}
+
+	/** @return What has been written, ready to read */
+	ByteBuffer output() {
+		ByteBuffer buf = output.duplicate();
+		buf.flip();
+		return buf;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return true;
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
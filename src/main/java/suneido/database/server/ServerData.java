@@ -8,21 +8,43 @@ import static suneido.util.Verify.verify;
 
 import java.io.Closeable;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
+import suneido.SuContainer;
+import suneido.SuException;
+import suneido.database.query.PreparedQuery;
 import suneido.util.NotThreadSafe;
 
 import suneido.util.Errlog;
 
 /**
  * Each connection/session has its own ServerData instance
+ * <p>
+ * Also enforces the per session quotas
+ * so one client can't use up the shared limits
+ * e.g. {@link suneido.database.immudb.Transactions} MAX_ACTIVE.
+ * A limit of 0 means no limit.
  */
 @NotThreadSafe
 public class ServerData {
+	/** concurrent transactions per session */
+	public static int MAX_TRANSACTIONS = 50;
+	/** open cursors per session */
+	public static int MAX_CURSORS = 100;
+	/** total TempIndex memory budget per session */
+	public static long MAX_TEMP_INDEX_MEMORY = 256L * 1024 * 1024;
+	/** a temp index always gets at least this much, it will just spill more */
+	static final long MIN_TEMP_INDEX_MEMORY = 1024 * 1024;
+	/** prepared queries per session */
+	public static int MAX_PREPARED = 100;
+	/** requests per second per session, a one second burst is allowed */
+	public static int MAX_REQUESTS_PER_SEC = 0;
 	private int next = 0;
 	private final Map<Integer, DbmsTran> trans = new HashMap<>();
 	private final Map<Integer, List<Integer>> tranqueries = new HashMap<>();
 	private final Map<Integer, DbmsQuery> queries = new HashMap<>();
 	private final Map<Integer, DbmsQuery> cursors = new HashMap<>();
+	private final Map<Integer, PreparedQuery> prepared = new HashMap<>();
 	private final Map<String, String> sviews = new HashMap<>();
 	private final Stack<String> viewnest = new Stack<>();
 	private String sessionId = "127.0.0.1";
@@ -30,6 +52,14 @@ public class ServerData {
 	public boolean textmode = true;
 	private byte[] nonce = null;
 	public boolean auth;
+	/** set by COMPRESS, DbmsServer then wraps the channel */
+	public boolean compress = false;
+	/** may be released by a different thread e.g. kill */
+	private final AtomicLong tempIndexMemory = new AtomicLong();
+	/** the earliest time (System.nanoTime) for the next request */
+	private long nextRequest = Long.MIN_VALUE;
+	private long nthrottled = 0;
+	private long nrejected = 0;
 
 	/** for tests */
 	public ServerData() {
@@ -94,6 +124,24 @@ public class ServerData {
 		verify(cursors.remove(qn) != null);
 	}
 
+	public int addPrepared(PreparedQuery pq) {
+		checkQuota(prepared.size(), MAX_PREPARED, "prepared queries");
+		prepared.put(next, pq);
+		return next++;
+	}
+
+	public PreparedQuery getPrepared(int pn) {
+		PreparedQuery pq = prepared.get(pn);
+		if (pq == null)
+			throw new SuException("prepared query not found");
+		return pq;
+	}
+
+	public void endPrepared(int pn) {
+		if (prepared.remove(pn) == null)
+			throw new SuException("prepared query not found");
+	}
+
 	public DbmsTran getTransaction(int tn) {
 		return trans.get(tn);
 	}
@@ -135,6 +183,88 @@ public class ServerData {
 		return cursors.size();
 	}
 
+	// quotas ------------------------------------------------------------------
+
+	/** Called by {@link Command#TRANSACTION} before starting a transaction */
+	void checkTransactionQuota() {
+		checkQuota(trans.size(), MAX_TRANSACTIONS, "transactions");
+	}
+
+	/** Called by {@link Command#CURSOR} before opening a cursor */
+	void checkCursorQuota() {
+		checkQuota(cursors.size(), MAX_CURSORS, "cursors");
+	}
+
+	private void checkQuota(int n, int max, String what) {
+		if (max > 0 && n >= max) {
+			++nrejected;
+			throw new SuException("too many " + what + " for session " +
+					sessionId + " (limit " + max + ")");
+		}
+	}
+
+	/**
+	 * Called by {@link DbmsServer} for each request.
+	 * Requests over the rate are delayed, not rejected.
+	 * @return The delay in nanoseconds before the request should execute
+	 */
+	long throttle(long now) {
+		if (MAX_REQUESTS_PER_SEC <= 0)
+			return 0;
+		long interval = 1_000_000_000L / MAX_REQUESTS_PER_SEC;
+		long t = Math.max(nextRequest, now - 1_000_000_000L);
+		nextRequest = t + interval;
+		if (t <= now)
+			return 0;
+		++nthrottled;
+		return t - now;
+	}
+
+	/**
+	 * Used by {@link suneido.database.query.TempIndex}
+	 * @return The memory budget to use, at most the requested amount.
+	 * Must be returned with releaseTempIndexMemory.
+	 */
+	public long reserveTempIndexMemory(long want) {
+		while (true) {
+			long used = tempIndexMemory.get();
+			long n = MAX_TEMP_INDEX_MEMORY <= 0 ? want
+					: Math.max(MIN_TEMP_INDEX_MEMORY,
+						Math.min(want, MAX_TEMP_INDEX_MEMORY - used));
+			if (tempIndexMemory.compareAndSet(used, used + n))
+				return n;
+		}
+	}
+
+	public void releaseTempIndexMemory(long n) {
+		tempIndexMemory.addAndGet(-n);
+	}
+
+	/** @return The resource usage of this session, for {@link Dbms#info} */
+	SuContainer usage() {
+		SuContainer c = new SuContainer();
+		c.put("session", sessionId);
+		c.put("transactions", trans.size());
+		c.put("cursors", cursors.size());
+		c.put("queries", queries.size());
+		c.put("prepared", prepared.size());
+		c.put("tempIndexMb", (int) (tempIndexMemory.get() >> 20));
+		c.put("throttled", (int) nthrottled);
+		c.put("rejected", (int) nrejected);
+		return c;
+	}
+
+	/** @return The quotas, for {@link Dbms#info} */
+	static SuContainer quotas() {
+		SuContainer c = new SuContainer();
+		c.put("maxTransactions", MAX_TRANSACTIONS);
+		c.put("maxCursors", MAX_CURSORS);
+		c.put("maxPrepared", MAX_PREPARED);
+		c.put("maxTempIndexMb", (int) (MAX_TEMP_INDEX_MEMORY >> 20));
+		c.put("maxRequestsPerSec", MAX_REQUESTS_PER_SEC);
+		return c;
+	}
+
 	public String getSessionId() {
 		return sessionId;
 	}
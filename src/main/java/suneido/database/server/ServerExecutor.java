@@ -0,0 +1,148 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import suneido.util.Metrics;
+import suneido.util.Metrics.Histogram;
+import suneido.util.ThreadSafe;
+
+/**
+ * The single executor shared by all the {@link DbmsServer} connections.
+ * <p>
+ * The number of worker threads is bounded by {@link #MAX_THREADS}.
+ * Additional requests wait in a FIFO queue.
+ * Since each connection has at most one request outstanding
+ * (the channel is not reregistered until the response is written)
+ * the queue is fair between connections.
+ * <p>
+ * Also pools the direct buffers used for requests
+ * so they are not tied to threads
+ * and keeps per command latency histograms.
+ */
+@ThreadSafe
+public class ServerExecutor implements Executor {
+	/** maximum number of worker threads, set from the command line */
+	public static int MAX_THREADS = 256;
+	private static final Command[] commands = Command.values();
+	private final ThreadPoolExecutor pool;
+	private final ConcurrentLinkedQueue<ByteBuffer> buffers =
+			new ConcurrentLinkedQueue<>();
+	private final Histogram[] latency = new Histogram[commands.length];
+
+	ServerExecutor(int nthreads) {
+		pool = new ThreadPoolExecutor(nthreads, nthreads,
+				60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+				new ThreadFactoryBuilder()
+						.setNameFormat("DbmsServer-thread-%d")
+						.setDaemon(true)
+						.build());
+		pool.allowCoreThreadTimeOut(true);
+		for (int c = 0; c < commands.length; ++c)
+			latency[c] = new Histogram();
+	}
+
+	/** Add the statistics to {@link Metrics} */
+	void registerMetrics() {
+		Metrics.gauge("suneido_requests_queued",
+				"Requests waiting for a worker thread", this::queued);
+		Metrics.gauge("suneido_requests_active",
+				"Worker threads executing requests", this::active);
+		Metrics.gauge("suneido_request_threads",
+				"Current number of worker threads", this::threads);
+		for (Command cmd : commands)
+			Metrics.register("suneido_request_seconds",
+					"Server request latency by command",
+					latency[cmd.ordinal()], "command", cmd.name());
+	}
+
+	@Override
+	public void execute(Runnable request) {
+		pool.execute(request);
+	}
+
+	/**
+	 * Execute a request after a delay, used to throttle sessions.
+	 * The timer thread only hands the request to the pool.
+	 */
+	void executeAfter(long nanos, Runnable request) {
+		Timer.timer.schedule(() -> pool.execute(request),
+				nanos, TimeUnit.NANOSECONDS);
+	}
+
+	private static class Timer {
+		static final ScheduledExecutorService timer =
+				Executors.newSingleThreadScheduledExecutor(
+						new ThreadFactoryBuilder()
+								.setNameFormat("DbmsServer-throttle")
+								.setDaemon(true)
+								.build());
+	}
+
+	/** @return A cleared direct buffer of SuChannel.BUFSIZE */
+	ByteBuffer getBuffer() {
+		ByteBuffer buf = buffers.poll();
+		if (buf == null)
+			return ByteBuffer.allocateDirect(SuChannel.BUFSIZE);
+		buf.clear();
+		return buf;
+	}
+
+	/** Return a buffer from getBuffer to the pool */
+	void putBuffer(ByteBuffer buf) {
+		buffers.add(buf);
+	}
+
+	void record(Command cmd, long nanos) {
+		latency[cmd.ordinal()].record(nanos);
+	}
+
+	// statistics --------------------------------------------------------------
+
+	/** @return The number of requests waiting for a worker thread */
+	public int queued() {
+		return pool.getQueue().size();
+	}
+
+	/** @return The number of worker threads executing requests */
+	public int active() {
+		return pool.getActiveCount();
+	}
+
+	/** @return The current number of worker threads */
+	public int threads() {
+		return pool.getPoolSize();
+	}
+
+	/** @return The number of requests executed for a command */
+	public long count(Command cmd) {
+		return latency[cmd.ordinal()].count();
+	}
+
+	/** @return The total time in nanoseconds spent executing a command */
+	public long totalNanos(Command cmd) {
+		return latency[cmd.ordinal()].totalNanos();
+	}
+
+	/**
+	 * @return The approximate latency in microseconds
+	 * that fraction q of the requests for a command were under,
+	 * or 0 if there have been no requests
+	 */
+	public long quantile(Command cmd, double q) {
+		return latency[cmd.ordinal()].quantile(q);
+	}
+
+}
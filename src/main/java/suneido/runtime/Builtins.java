@@ -22,7 +22,7 @@ public class Builtins {
 
 	static {
 		builtins = new ImmutableMap.Builder<String,Object>()
-			.put("Suneido", new SuContainer())
+			.put("Suneido", new SuContainer().setConcurrent())
 			.put("Adler32", Adler32.clazz)
 			.put("AssertionError",
 						function(suneido.runtime.builtin.AssertionError.class))
@@ -83,9 +83,11 @@ public class Builtins {
 			.put("Object?", function(ObjectQ.class))
 			.put("OperatingSystem", function(OperatingSystem.class))
 			.put("Pack", function(suneido.runtime.builtin.Pack.class))
+			.put("Preload", function(Preload.class))
 			.put("PrintStdout", function(PrintStdout.class))
 			.put("Query1", new Query1())
 			.put("QueryFirst", new QueryFirst())
+			.put("QueryFirsts", function(QueryFirsts.class))
 			.put("QueryLast", new QueryLast())
 			.put("QueryScanner", QueryScanner.clazz)
 			.put("Random", function(Random.class))
@@ -106,6 +108,7 @@ public class Builtins {
 			.put("Sha1", new Digest.Clazz("SHA-1", "Sha1"))
 			.put("Sha256", new Digest.Clazz("SHA-256", "Sha256"))
 			.put("Sleep", function(Sleep.class))
+			.put("SlowQueries", function(SlowQueries.class))
 			.put("SocketClient", SocketClient.clazz)
 			.put("SocketServer", SocketServer.singleton)
 			.put("Spawn", function(Spawn.class))
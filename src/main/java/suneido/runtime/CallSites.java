@@ -0,0 +1,511 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.runtime;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.*;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.util.Collections;
+
+import suneido.SuContainer;
+import suneido.SuDate;
+import suneido.SuInternalError;
+import suneido.SuRecord;
+import suneido.SuValue;
+import suneido.util.Dnum;
+import suneido.util.ThreadSafe;
+
+/**
+ * Bootstrap methods for the invokedynamic call sites
+ * generated by {@link suneido.compiler.ClassGen}
+ * for method calls (x.Name(...)) and global calls (Name(...)).
+ * <p>
+ * Method call sites have an inline cache of up to {@link #MAX_DEPTH}
+ * receiver types, each a guard and the looked up method.
+ * The receiver type is the class of an instance, the class itself,
+ * or the Java class for builtin types whose methods don't depend on the value.
+ * Other receivers are not cached and do a full lookup each time.
+ * A call site that sees too many types goes "megamorphic"
+ * and uses {@link Ops#invoke} like it did before invokedynamic.
+ * <p>
+ * Global call sites cache the value of the global.
+ * Globals are referenced by name, the slot is found when the site is linked,
+ * so the generated code does not depend on the context's slot numbers.
+ * <p>
+ * Inlined global function calls have a guard call site
+ * that caches whether the global is still the inlined function.
+ * <p>
+ * Member access (x.name and x.name = value) call sites cache
+ * the {@link Layout} slot for the class of an instance.
+ * Slots never change so these don't need to be invalidated.
+ * <p>
+ * Cached lookups depend on globals (class bases, user defined methods)
+ * so everything is guarded by a SwitchPoint that is invalidated
+ * by {@link #invalidate} when {@link Context} values are cleared or replaced
+ * e.g. by Unload, Use, Unuse, and LibraryOverride.
+ * After that the call sites relink as they are used.
+ */
+@ThreadSafe
+public class CallSites {
+	/** the maximum number of receiver types cached per method call site */
+	static final int MAX_DEPTH = 4;
+	private static volatile SwitchPoint switchPoint = new SwitchPoint();
+
+	private CallSites() {
+	}
+
+	/** Invalidate all the call site caches */
+	public static synchronized void invalidate() {
+		SwitchPoint old = switchPoint;
+		switchPoint = new SwitchPoint();
+		SwitchPoint.invalidateAll(new SwitchPoint[] { old });
+	}
+
+	// method calls ------------------------------------------------------------
+
+	private static class MethodSite extends MutableCallSite {
+		final String method;
+		final boolean argsArray;
+		final MethodHandle fallback;
+		MethodHandle chain;
+		SwitchPoint sp;
+		int depth;
+
+		MethodSite(MethodType type, String method) {
+			super(type);
+			this.method = method;
+			argsArray = type.parameterCount() == 2 &&
+					type.parameterType(1) == Object[].class;
+			fallback = METHOD_FALLBACK.bindTo(this)
+					.asCollector(Object[].class, type.parameterCount())
+					.asType(type);
+			setTarget(fallback);
+		}
+	}
+
+	/**
+	 * Bootstrap for method calls.
+	 * The type is (Object self, Object... args) Object
+	 * with either up to four args or an Object[] of arguments.
+	 * The method name is passed as an extra argument
+	 * since Suneido method names may not be valid Java names.
+	 */
+	public static CallSite method(Lookup lookup, String name, MethodType type,
+			String method) {
+		return new MethodSite(type, method);
+	}
+
+	@SuppressWarnings("unused") // via METHOD_FALLBACK
+	private static Object methodFallback(MethodSite site, Object[] all) {
+		Object self = all[0];
+		SwitchPoint sp = switchPoint; // before lookup so we don't miss a change
+		SuValue m = Ops.target(self).lookup(site.method);
+		link(site, self, m, sp);
+		if (site.argsArray)
+			return m.eval(self, (Object[]) all[1]);
+		switch (all.length) {
+		case 1: return m.eval0(self);
+		case 2: return m.eval1(self, all[1]);
+		case 3: return m.eval2(self, all[1], all[2]);
+		case 4: return m.eval3(self, all[1], all[2], all[3]);
+		case 5: return m.eval4(self, all[1], all[2], all[3], all[4]);
+		default: throw SuInternalError.unreachable();
+		}
+	}
+
+	private static void link(MethodSite site, Object self, SuValue m,
+			SwitchPoint sp) {
+		MethodHandle test = guard(self);
+		if (test == null)
+			return; // not cacheable, stays on fallback
+		MethodType type = site.type();
+		synchronized (site) {
+			if (sp.hasBeenInvalidated())
+				return; // m may be stale, the next call will relink
+			if (site.sp != sp) {
+				site.sp = sp;
+				site.chain = site.fallback;
+				site.depth = 0;
+			}
+			if (site.depth >= MAX_DEPTH) {
+				site.setTarget(sp.guardWithTest(
+						megamorphic(site), site.fallback));
+				return;
+			}
+			test = MethodHandles.dropArguments(test, 1,
+					type.parameterList().subList(1, type.parameterCount()));
+			MethodHandle target = evalHandle(site, m);
+			site.chain = MethodHandles.guardWithTest(test, target, site.chain);
+			++site.depth;
+			site.setTarget(sp.guardWithTest(site.chain, site.fallback));
+		}
+	}
+
+	/** @return A (Object) boolean test for the receiver type, or null */
+	private static MethodHandle guard(Object x) {
+		if (x == null)
+			return null;
+		Class<?> c = x.getClass();
+		if (c == SuInstance.class)
+			return IS_INSTANCE_OF.bindTo(((SuInstance) x).myclass);
+		if (c == SuClass.class)
+			return IS_CLASS.bindTo(x);
+		if (c == String.class || c == Integer.class || c == Dnum.class ||
+				c == SuContainer.class || c == SuRecord.class ||
+				c == SuDate.class)
+			return IS_JAVA_CLASS.bindTo(c);
+		return null;
+	}
+
+	@SuppressWarnings("unused") // via IS_INSTANCE_OF
+	private static boolean isInstanceOf(SuClass c, Object x) {
+		// not subclasses, they may override lookup, get, or put
+		return x != null && x.getClass() == SuInstance.class &&
+				((SuInstance) x).myclass == c;
+	}
+
+	@SuppressWarnings("unused") // via IS_CLASS
+	private static boolean isClass(Object c, Object x) {
+		return x == c;
+	}
+
+	@SuppressWarnings("unused") // via IS_JAVA_CLASS
+	private static boolean isJavaClass(Class<?> c, Object x) {
+		return x != null && x.getClass() == c;
+	}
+
+	private static MethodHandle evalHandle(MethodSite site, SuValue m) {
+		MethodHandle mh = site.argsArray ? EVAL
+				: EVALN[site.type().parameterCount() - 1];
+		return mh.bindTo(m).asType(site.type());
+	}
+
+	private static MethodHandle megamorphic(MethodSite site) {
+		MethodHandle mh = site.argsArray ? INVOKE
+				: INVOKEN[site.type().parameterCount() - 1];
+		return MethodHandles.insertArguments(mh, 1, site.method)
+				.asType(site.type());
+	}
+
+	// global calls ------------------------------------------------------------
+
+	private static class GlobalSite extends MutableCallSite {
+		final String global;
+		final boolean argsArray;
+		final MethodHandle fallback;
+
+		GlobalSite(MethodType type, String global) {
+			super(type);
+			this.global = global;
+			argsArray = type.parameterCount() == 2 &&
+					type.parameterType(1) == Object[].class;
+			fallback = GLOBAL_FALLBACK.bindTo(this)
+					.asCollector(Object[].class, type.parameterCount())
+					.asType(type);
+			setTarget(fallback);
+		}
+	}
+
+	/**
+	 * Bootstrap for global references.
+	 * For "call" the type is (SuCallable caller, Object... args) Object
+	 * with either up to four args or an Object[] of arguments.
+	 * For "get" the type is (SuCallable caller) Object
+	 * and the site is linked to {@link SuCallable#contextGet} with the slot.
+	 * The caller is used to get the context.
+	 */
+	public static CallSite global(Lookup lookup, String name, MethodType type,
+			String global) {
+		if (name.equals("get")) {
+			MutableCallSite site = new MutableCallSite(type);
+			site.setTarget(MethodHandles.insertArguments(
+					GET_GLOBAL_FALLBACK, 0, site, global));
+			return site;
+		}
+		return new GlobalSite(type, global);
+	}
+
+	@SuppressWarnings("unused") // via GET_GLOBAL_FALLBACK
+	private static Object getGlobalFallback(MutableCallSite site, String global,
+			SuCallable caller) {
+		int slot = caller.context.slotForName(global);
+		site.setTarget(MethodHandles.insertArguments(CONTEXT_GET, 1, slot));
+		return caller.contextGet(slot);
+	}
+
+	@SuppressWarnings("unused") // via GLOBAL_FALLBACK
+	private static Object globalFallback(GlobalSite site, Object[] all) {
+		SuCallable caller = (SuCallable) all[0];
+		SwitchPoint sp = switchPoint; // before get so we don't miss a change
+		SuValue f = (SuValue) caller.contextGet(
+				caller.context.slotForName(site.global));
+		link(site, caller.context, f, sp);
+		if (site.argsArray)
+			return f.call((Object[]) all[1]);
+		switch (all.length) {
+		case 1: return f.call0();
+		case 2: return f.call1(all[1]);
+		case 3: return f.call2(all[1], all[2]);
+		case 4: return f.call3(all[1], all[2], all[3]);
+		case 5: return f.call4(all[1], all[2], all[3], all[4]);
+		default: throw SuInternalError.unreachable();
+		}
+	}
+
+	private static void link(GlobalSite site, Context context, SuValue f,
+			SwitchPoint sp) {
+		MethodType type = site.type();
+		MethodHandle test = MethodHandles.dropArguments(
+				HAS_CONTEXT.bindTo(context), 1,
+				type.parameterList().subList(1, type.parameterCount()));
+		MethodHandle mh = site.argsArray ? CALL
+				: CALLN[type.parameterCount() - 1];
+		MethodHandle target = MethodHandles.dropArguments(
+				mh.bindTo(f), 0, type.parameterType(0)).asType(type);
+		site.setTarget(sp.guardWithTest(
+				MethodHandles.guardWithTest(test, target, site.fallback),
+				site.fallback));
+	}
+
+	@SuppressWarnings("unused") // via HAS_CONTEXT
+	private static boolean hasContext(Context context, SuCallable caller) {
+		return caller.context == context;
+	}
+
+	// inline guards -----------------------------------------------------------
+
+	private static class InlinedSite extends MutableCallSite {
+		final String global;
+		final String source;
+		final MethodHandle fallback;
+
+		InlinedSite(MethodType type, String global, String source) {
+			super(type);
+			this.global = global;
+			this.source = source;
+			fallback = INLINED_FALLBACK.bindTo(this);
+			setTarget(fallback);
+		}
+	}
+
+	/**
+	 * Bootstrap for the guard on a global function call
+	 * that the compiler has inlined (see suneido.compiler.AstInline).
+	 * The type is (SuCallable caller) boolean.
+	 * The result is whether the global is still a function with the source
+	 * that was inlined.
+	 * Like global call sites it is relinked when globals change.
+	 */
+	public static CallSite inlined(Lookup lookup, String name, MethodType type,
+			String global, String source) {
+		return new InlinedSite(type, global, source);
+	}
+
+	@SuppressWarnings("unused") // via INLINED_FALLBACK
+	private static boolean inlinedFallback(InlinedSite site, SuCallable caller) {
+		SwitchPoint sp = switchPoint; // before get so we don't miss a change
+		Object f = caller.contextGet(caller.context.slotForName(site.global));
+		boolean same = f instanceof SuCompiledCallable &&
+				site.source.equals(((SuCallable) f).sourceCode());
+		MethodHandle target = MethodHandles.dropArguments(
+				MethodHandles.constant(boolean.class, same), 0, SuCallable.class);
+		site.setTarget(sp.guardWithTest(
+				MethodHandles.guardWithTest(HAS_CONTEXT.bindTo(caller.context),
+						target, site.fallback),
+				site.fallback));
+		return same;
+	}
+
+	// member access -----------------------------------------------------------
+
+	private static class MemberSite extends MutableCallSite {
+		final String member;
+		final boolean put;
+		final MethodHandle fallback;
+		MethodHandle chain;
+		int depth;
+
+		MemberSite(MethodType type, String member) {
+			super(type);
+			this.member = member;
+			put = type.returnType() == void.class;
+			chain = fallback = (put ? PUT_FALLBACK : GET_FALLBACK)
+					.bindTo(this).asType(type);
+			setTarget(fallback);
+		}
+	}
+
+	/**
+	 * Bootstrap for member access with a constant member name.
+	 * The name is "get" with type (Object self, Object member) Object
+	 * or "put" with type (Object self, Object member, Object value) void.
+	 * The member is on the stack as well as being passed as an extra argument
+	 * so the code generation for lvalues (e.g. x.name += 1) is unchanged.
+	 */
+	public static CallSite member(Lookup lookup, String name, MethodType type,
+			String member) {
+		return new MemberSite(type, member);
+	}
+
+	/**
+	 * Bootstrap for the slot of a dynamic variable, type () int.
+	 * Slots are per process so they can't be in the code (see CodeCache)
+	 * but they never change so the call site is constant.
+	 */
+	public static CallSite dynamic(Lookup lookup, String name, MethodType type,
+			String variable) {
+		return new ConstantCallSite(
+				MethodHandles.constant(int.class, Dynamic.slot(variable)));
+	}
+
+	@SuppressWarnings("unused") // via GET_FALLBACK
+	private static Object getFallback(MemberSite site, Object self,
+			Object member) {
+		if (self != null && self.getClass() == SuInstance.class) {
+			// don't assign a slot for members that are only read
+			// e.g. class members and methods
+			SuClass c = ((SuInstance) self).myclass;
+			int slot = c.layout.slot(site.member);
+			if (slot >= 0)
+				link(site, c, slot);
+		}
+		return Ops.get(self, member);
+	}
+
+	@SuppressWarnings("unused") // via PUT_FALLBACK
+	private static void putFallback(MemberSite site, Object self,
+			Object member, Object value) {
+		if (self != null && self.getClass() == SuInstance.class) {
+			SuClass c = ((SuInstance) self).myclass;
+			int slot = c.layout.slotFor(site.member);
+			if (slot >= 0)
+				link(site, c, slot);
+		}
+		Ops.put(self, member, value);
+	}
+
+	private static void link(MemberSite site, SuClass c, int slot) {
+		MethodType type = site.type();
+		synchronized (site) {
+			if (site.depth >= MAX_DEPTH) {
+				site.setTarget((site.put ? PUT : GET).asType(type));
+				return;
+			}
+			MethodHandle test = MethodHandles.dropArguments(
+					IS_INSTANCE_OF.bindTo(c), 1,
+					type.parameterList().subList(1, type.parameterCount()));
+			MethodHandle target = site.put
+					? MethodHandles.insertArguments(PUT_SLOT, 0, slot)
+					: MethodHandles.insertArguments(GET_SLOT, 0, slot);
+			site.chain = MethodHandles.guardWithTest(test,
+					target.asType(type), site.chain);
+			++site.depth;
+			site.setTarget(site.chain);
+		}
+	}
+
+	@SuppressWarnings("unused") // via GET_SLOT
+	private static Object getSlot(int slot, Object self, Object member) {
+		Object x = ((SuInstance) self).getSlot(slot);
+		return x != null ? x : Ops.get(self, member); // e.g. class member
+	}
+
+	@SuppressWarnings("unused") // via PUT_SLOT
+	private static void putSlot(int slot, Object self, Object member,
+			Object value) {
+		((SuInstance) self).putSlot(slot, value);
+	}
+
+	// method handles ----------------------------------------------------------
+
+	private static final MethodHandle METHOD_FALLBACK;
+	private static final MethodHandle GLOBAL_FALLBACK;
+	private static final MethodHandle GET_GLOBAL_FALLBACK;
+	private static final MethodHandle CONTEXT_GET;
+	private static final MethodHandle INLINED_FALLBACK;
+	private static final MethodHandle GET_FALLBACK;
+	private static final MethodHandle PUT_FALLBACK;
+	private static final MethodHandle GET;
+	private static final MethodHandle PUT;
+	private static final MethodHandle GET_SLOT;
+	private static final MethodHandle PUT_SLOT;
+	private static final MethodHandle IS_INSTANCE_OF;
+	private static final MethodHandle IS_CLASS;
+	private static final MethodHandle IS_JAVA_CLASS;
+	private static final MethodHandle HAS_CONTEXT;
+	private static final MethodHandle EVAL;
+	private static final MethodHandle[] EVALN = new MethodHandle[5];
+	private static final MethodHandle CALL;
+	private static final MethodHandle[] CALLN = new MethodHandle[5];
+	private static final MethodHandle INVOKE;
+	private static final MethodHandle[] INVOKEN = new MethodHandle[5];
+	static {
+		Lookup lookup = MethodHandles.lookup();
+		try {
+			METHOD_FALLBACK = lookup.findStatic(CallSites.class,
+					"methodFallback", methodType(Object.class,
+							MethodSite.class, Object[].class));
+			GLOBAL_FALLBACK = lookup.findStatic(CallSites.class,
+					"globalFallback", methodType(Object.class,
+							GlobalSite.class, Object[].class));
+			GET_GLOBAL_FALLBACK = lookup.findStatic(CallSites.class,
+					"getGlobalFallback", methodType(Object.class,
+							MutableCallSite.class, String.class,
+							SuCallable.class));
+			CONTEXT_GET = lookup.findVirtual(SuCallable.class, "contextGet",
+					methodType(Object.class, int.class));
+			INLINED_FALLBACK = lookup.findStatic(CallSites.class,
+					"inlinedFallback", methodType(boolean.class,
+							InlinedSite.class, SuCallable.class));
+			GET_FALLBACK = lookup.findStatic(CallSites.class, "getFallback",
+					methodType(Object.class, MemberSite.class, Object.class,
+							Object.class));
+			PUT_FALLBACK = lookup.findStatic(CallSites.class, "putFallback",
+					methodType(void.class, MemberSite.class, Object.class,
+							Object.class, Object.class));
+			GET = lookup.findStatic(Ops.class, "get",
+					methodType(Object.class, Object.class, Object.class));
+			PUT = lookup.findStatic(Ops.class, "put", methodType(void.class,
+					Object.class, Object.class, Object.class));
+			GET_SLOT = lookup.findStatic(CallSites.class, "getSlot",
+					methodType(Object.class, int.class, Object.class,
+							Object.class));
+			PUT_SLOT = lookup.findStatic(CallSites.class, "putSlot",
+					methodType(void.class, int.class, Object.class,
+							Object.class, Object.class));
+			IS_INSTANCE_OF = lookup.findStatic(CallSites.class, "isInstanceOf",
+					methodType(boolean.class, SuClass.class, Object.class));
+			IS_CLASS = lookup.findStatic(CallSites.class, "isClass",
+					methodType(boolean.class, Object.class, Object.class));
+			IS_JAVA_CLASS = lookup.findStatic(CallSites.class, "isJavaClass",
+					methodType(boolean.class, Class.class, Object.class));
+			HAS_CONTEXT = lookup.findStatic(CallSites.class, "hasContext",
+					methodType(boolean.class, Context.class, SuCallable.class));
+			EVAL = lookup.findVirtual(SuValue.class, "eval", methodType(
+					Object.class, Object.class, Object[].class))
+					.asFixedArity();
+			CALL = lookup.findVirtual(SuValue.class, "call",
+					methodType(Object.class, Object[].class)).asFixedArity();
+			INVOKE = lookup.findStatic(Ops.class, "invoke",
+					methodType(Object.class, Object.class, String.class,
+							Object[].class)).asFixedArity();
+			for (int n = 0; n <= 4; ++n) {
+				Class<?>[] args = Collections.nCopies(n, Object.class)
+						.toArray(new Class<?>[0]);
+				EVALN[n] = lookup.findVirtual(SuValue.class, "eval" + n,
+						methodType(Object.class, Object.class, args));
+				CALLN[n] = lookup.findVirtual(SuValue.class, "call" + n,
+						methodType(Object.class, args));
+				INVOKEN[n] = lookup.findStatic(Ops.class, "invoke" + n,
+						methodType(Object.class, Object.class, args)
+								.insertParameterTypes(1, String.class));
+			}
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new SuInternalError("CallSites init", e);
+		}
+	}
+
+}
@@ -14,6 +14,8 @@ public class ConcurrentValue extends SuValue {
 	private final SuValue value;
 
 	public ConcurrentValue(SuValue value) {
+		// toContainer exposes a container so it must lock itself
+		SuContainer.setConcurrent(value);
 		this.value = value;
 	}
 
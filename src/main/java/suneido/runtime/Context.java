@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import suneido.util.ThreadSafe;
 
@@ -18,6 +19,11 @@ import suneido.SuException;
  * Names are assigned unique integer slots.
  * A context knows how to lookup the value for a name.
  * Values are cached.<p>
+ * Reading a cached value, i.e. {@link #get(int)} from compiled code,
+ * does not lock. Fetching, assigning slots, and clearing are synchronized.
+ * Writes replace the array elements, and the array itself is only replaced
+ * (when it grows) under the lock, so a reader sees either the old or new
+ * value, the same as if it had run before or after the change.<p>
  * Derived classes must define fetch(name)
  *
  * @see ContextLayered - the current system
@@ -28,9 +34,13 @@ public abstract class Context {
 	private final Contexts contexts;
 	private final Map<String, Integer> nameToSlot = new HashMap<>();
 	private final List<String> names = new ArrayList<>(1000);
-	private final List<Object> values = new ArrayList<>(1000);
+	/** indexed by slot, null means not fetched yet */
+	private volatile AtomicReferenceArray<Object> values =
+			new AtomicReferenceArray<>(1000);
 	private final Map<String, String> override = new HashMap<>();
 	private static final Object nonExistent = new Object();
+	/** marks a slot being fetched, other threads wait for the lock */
+	private static final Object fetching = new Object();
 
 	// protected so we can derive a trivial context for testing purposes
 	protected Context(Contexts contexts) {
@@ -38,7 +48,6 @@ public abstract class Context {
 		contexts.addContext(this);
 		// don't use slot 0
 		names.add(null);
-		values.add(null);
 	}
 
 	/**
@@ -47,20 +56,29 @@ public abstract class Context {
 	 */
 	public final synchronized int slotForName(String name) {
 		return nameToSlot.computeIfAbsent(name, (key) -> {
-			assert names.size() == values.size();
 			int slot = names.size();
 			names.add(name);
-			values.add(null);
+			if (slot >= values.length())
+				grow();
 			return slot;
 			});
 	}
 
-	public final synchronized Object get(String name) {
+	private void grow() {
+		AtomicReferenceArray<Object> old = values;
+		AtomicReferenceArray<Object> a =
+				new AtomicReferenceArray<>(2 * old.length());
+		for (int i = 0; i < old.length(); ++i)
+			a.set(i, old.get(i));
+		values = a;
+	}
+
+	public final Object get(String name) {
 		return get(slotForName(name));
 	}
 
 	/** Called by compiled code to get the value of a global */
-	public final synchronized Object get(int slot) {
+	public final Object get(int slot) {
 		Object value = tryget(slot);
 		if (value == null)
 			throw new SuException("can't find " + nameForSlot(slot));
@@ -68,20 +86,47 @@ public abstract class Context {
 	}
 
 	/** Called for rules and triggers and UserDefined */
-	public synchronized final Object tryget(String name) {
+	public final Object tryget(String name) {
 		return tryget(slotForName(name));
 	}
 
-	private synchronized final Object tryget(int slot) {
+	/**
+	 * Used by the compiler to inline calls.
+	 * @return The value if it has already been loaded, otherwise null.
+	 * Unlike get and tryget it does not load the value.
+	 */
+	public final Object peek(String name) {
+		Object value = values.get(slotForName(name));
+		return value == fetching || value == nonExistent ? null : value;
+	}
+
+	private Object tryget(int slot) {
+		Object value = values.get(slot); // racy single check, no lock
+		if (value == null || value == fetching)
+			value = fetch(slot);
+		return value == nonExistent ? null : value;
+	}
+
+	private synchronized Object fetch(int slot) {
 		Object value = values.get(slot);
-		if (value == null) {
-			values.set(slot, nonExistent); // in case fetch fails
+		if (value == fetching)
+			return nonExistent; // recursive reference while fetching
+		if (value != null)
+			return value; // fetched by another thread while we waited
+		values.set(slot, fetching);
+		value = nonExistent; // in case fetch fails
+		try {
 			String name = nameForSlot(slot);
-			value = name.contains("@") ? contexts.fetchExplicit(name) : fetch(name);
-			values.set(slot, value == null ? nonExistent : value);
+			Object x = name.contains("@")
+					? contexts.fetchExplicit(name) : fetch(name);
+			if (x != null)
+				value = x;
 			// nonExistent is used to avoid repeating failing fetches
+		} finally {
+			// if cleared while fetching, leave it cleared
+			values.compareAndSet(slot, fetching, value);
 		}
-		return value == nonExistent ? null : value;
+		return value;
 	}
 
 	public synchronized final String nameForSlot(int slot) {
@@ -93,13 +138,17 @@ public abstract class Context {
 
 	/** Remove the cached value for a slot. Called by Unload */
 	public synchronized final void clear(String name) {
-		values.set(slotForName(name), null);
+		int slot = slotForName(name); // before values since it may grow
+		values.set(slot, null);
+		CallSites.invalidate();
 	}
 
 	/** Remove the cached values for all slots. Called by Use & Unuse */
 	public synchronized final void clearAll() {
-		for (int i = 0; i < values.size(); ++i)
-			values.set(i, null);
+		AtomicReferenceArray<Object> a = values;
+		for (int i = 0; i < a.length(); ++i)
+			a.set(i, null);
+		CallSites.invalidate();
 	}
 
 	/** Add or remove an override of specific record. Called by LibraryOverride */
@@ -131,7 +180,10 @@ public abstract class Context {
 	 * Also used by tests which is why it is public.
 	 */
 	public synchronized final void set(String name, Object value) {
-		values.set(slotForName(name), value);
+		int slot = slotForName(name); // before values since it may grow
+		Object prev = values.getAndSet(slot, value);
+		if (prev != null && prev != fetching)
+			CallSites.invalidate(); // only replacing could affect call sites
 	}
 
 }
@@ -4,9 +4,14 @@
 
 package suneido.runtime;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import suneido.SuException;
 import suneido.TheDbms;
-import suneido.compiler.Compiler;
+import suneido.compiler.CodeCache;
 import suneido.database.server.Dbms.LibGet;
 
 /**
@@ -18,6 +23,8 @@ import suneido.database.server.Dbms.LibGet;
  */
 public class ContextLayered extends Context {
 	private static int overload = 0;
+	/** set by preload, guarded by this */
+	private Map<String, List<LibGet>> preloaded = null;
 
 	public ContextLayered(Contexts contexts) {
 		super(contexts);
@@ -37,12 +44,15 @@ public class ContextLayered extends Context {
 			return null;
 		// System.out.println("LOAD " + name);
 		Object result = null;
-		for (LibGet libget : TheDbms.dbms().libget(name)) {
+		List<LibGet> list = (preloaded == null) ? null : preloaded.remove(name);
+		if (list == null)
+			list = TheDbms.dbms().libget(name);
+		for (LibGet libget : list) {
 			String src = getOverride(libget.library, name);
 			if (src == null)
 				src = (String) Pack.unpack(libget.text);
 			try {
-				result = Compiler.compile(libget.library, name, src, this);
+				result = CodeCache.compile(libget.library, name, src, this);
 				// needed inside loop for overloading references
 				set(name, result);
 			} catch (Exception e) {
@@ -52,6 +62,34 @@ public class ContextLayered extends Context {
 		return result;
 	}
 
+	/**
+	 * Load definitions that will be needed, e.g. at startup,
+	 * getting their text with a single bulk libget
+	 * rather than a request per name. Called by Preload
+	 */
+	public void preload(List<String> names) {
+		if (! TheDbms.isAvailable())
+			return;
+		List<String> todo = new ArrayList<>();
+		for (String name : names)
+			if (Builtins.get(name) == null && peek(name) == null)
+				todo.add(name);
+		if (todo.isEmpty())
+			return;
+		List<List<LibGet>> lists = TheDbms.dbms().libget(todo);
+		synchronized (this) {
+			preloaded = new HashMap<>();
+			for (int i = 0; i < todo.size(); ++i)
+				preloaded.put(todo.get(i), lists.get(i));
+			try {
+				for (String name : todo)
+					tryget(name);
+			} finally {
+				preloaded = null;
+			}
+		}
+	}
+
 	/** Called by AstCompile for classes that inherit from _Name */
 	public synchronized String overload(String base) {
 		assert base.startsWith("_");
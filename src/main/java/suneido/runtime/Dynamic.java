@@ -4,46 +4,134 @@
 
 package suneido.runtime;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import suneido.SuException;
 
-/** runtime support for dynamic _variables */
+/**
+ * Runtime support for dynamic _variables
+ * <p>
+ * Uses shallow binding. Each thread has an {@link Env}
+ * with the current value of each dynamic variable in an array
+ * indexed by a slot assigned per name (see {@link #slot}).
+ * Setting a variable saves its previous value in an undo log
+ * (once per variable per frame) and pop restores them.
+ * So get is an array access and push and pop don't allocate.
+ * <p>
+ * Compiled code gets the Env once per call and the slots are constants
+ * (see ClassGen dynamicEnv and {@link CallSites#dynamic})
+ */
 public class Dynamic {
-	private final static ThreadLocal<Deque<Map<String,Object>>> stack =
-			ThreadLocal.withInitial(ArrayDeque::new);
+	private final static ThreadLocal<Env> env = ThreadLocal.withInitial(Env::new);
+	private final static Map<String, Integer> slots = new ConcurrentHashMap<>();
+	private static volatile String[] names = new String[0];
+
+	/** @return The slot for a dynamic variable name, adding it if necessary */
+	public static int slot(String name) {
+		Integer slot = slots.get(name);
+		return slot != null ? slot : addSlot(name);
+	}
+
+	private static synchronized int addSlot(String name) {
+		Integer slot = slots.get(name);
+		if (slot != null)
+			return slot;
+		int n = names.length;
+		String[] newNames = Arrays.copyOf(names, n + 1);
+		newNames[n] = name;
+		names = newNames;
+		slots.put(name, n);
+		return n;
+	}
+
+	public static Env env() {
+		return env.get();
+	}
 
 	public static void put(String name, Object value) {
-		stack.get().peek().put(name, value);
+		env().put(slot(name), value);
 	}
 
 	public static Object get(String name) {
-		Object value = getOrNull(name);
-		if (value == null)
-			throw new SuException("uninitialized " + name);
-		return value;
+		return env().get(slot(name));
 	}
 
 	static Object getOrNull(String name) {
-		for (Map<String,Object> map : stack.get()) {
-			Object value = map.get(name);
-			if (value != null)
-				return value;
-		}
-		return null;
+		return env().getOrNull(slot(name));
 	}
 
-	/** called at the start of functions that set dynamic variables */
-	public static void push() {
-		stack.get().push(new HashMap<String,Object>());
-	}
+	/** The dynamic variables for one thread */
+	public static final class Env {
+		private Object[] values = new Object[16];
+		/** the frame depth when each variable was last saved */
+		private int[] savedAt = new int[16];
+		/** the undo log size at the start of each frame */
+		private int[] frames = new int[16];
+		private int depth = 0;
+		private int[] undoSlots = new int[16];
+		private Object[] undoValues = new Object[16];
+		private int[] undoSavedAt = new int[16];
+		private int nundo = 0;
+
+		private Env() {
+		}
 
-	/** called at the end of functions that set dynamic variables */
-	public static void pop() {
-		stack.get().pop();
+		public Object get(int slot) {
+			Object value = getOrNull(slot);
+			if (value == null)
+				throw new SuException("uninitialized " + names[slot]);
+			return value;
+		}
+
+		Object getOrNull(int slot) {
+			return slot < values.length ? values[slot] : null;
+		}
+
+		public void put(int slot, Object value) {
+			if (slot >= values.length) {
+				int n = Math.max(slot + 1, 2 * values.length);
+				values = Arrays.copyOf(values, n);
+				savedAt = Arrays.copyOf(savedAt, n);
+			}
+			if (savedAt[slot] != depth) {
+				save(slot);
+				savedAt[slot] = depth;
+			}
+			values[slot] = value;
+		}
+
+		private void save(int slot) {
+			if (nundo >= undoSlots.length) {
+				int n = 2 * undoSlots.length;
+				undoSlots = Arrays.copyOf(undoSlots, n);
+				undoValues = Arrays.copyOf(undoValues, n);
+				undoSavedAt = Arrays.copyOf(undoSavedAt, n);
+			}
+			undoSlots[nundo] = slot;
+			undoValues[nundo] = values[slot];
+			undoSavedAt[nundo] = savedAt[slot];
+			++nundo;
+		}
+
+		/** called at the start of functions that set dynamic variables */
+		public void push() {
+			if (depth >= frames.length)
+				frames = Arrays.copyOf(frames, 2 * frames.length);
+			frames[depth++] = nundo;
+		}
+
+		/** called at the end of functions that set dynamic variables */
+		public void pop() {
+			int mark = frames[--depth];
+			while (nundo > mark) {
+				int slot = undoSlots[--nundo];
+				values[slot] = undoValues[nundo];
+				savedAt[slot] = undoSavedAt[nundo];
+				undoValues[nundo] = null;
+			}
+		}
 	}
 
 }
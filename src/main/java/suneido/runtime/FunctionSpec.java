@@ -192,6 +192,20 @@ public class FunctionSpec {
 		return paramNames[index];
 	}
 
+	public boolean isAtParam() {
+		return atParam;
+	}
+
+	/** @return The dynamic parameters (without the underscore) or null */
+	public String[] getDynParams() {
+		return dynParams;
+	}
+
+	/** @return The default values for the trailing parameters */
+	public Object[] getDefaults() {
+		return defaults;
+	}
+
 	/** used by Args to ensure room in args array for locals */
 	public int getAllLocalsCount() {
 		return getParamCount();
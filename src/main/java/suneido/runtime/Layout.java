@@ -0,0 +1,70 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.runtime;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import suneido.util.ThreadSafe;
+
+/**
+ * Assigns the member slots for the instances of a {@link SuClass}
+ * so {@link SuInstance} can store its members in an array instead of a map.
+ * <p>
+ * Slots are assigned as members are first assigned
+ * and never change, so they can be cached by compiled code
+ * (see {@link CallSites}).
+ * Once there are {@link #MAX_SLOTS} the remaining members are not given slots
+ * so instances used with lots of dynamic keys don't grow the layout
+ * for every instance. Instances keep those in a map.
+ * <p>
+ * Lookups are lock free, adding slots is copy on write.
+ */
+@ThreadSafe
+class Layout {
+	static final int MAX_SLOTS = 64;
+	private volatile Map<String, Integer> slots = Collections.emptyMap();
+	private volatile String[] names = new String[0];
+
+	/** @return The slot for name or -1 if it doesn't have one */
+	int slot(String name) {
+		Integer i = slots.get(name);
+		return i == null ? -1 : i;
+	}
+
+	/** @return The slot for name, adding one if necessary, or -1 if full */
+	int slotFor(String name) {
+		Integer i = slots.get(name);
+		return i != null ? i : add(name);
+	}
+
+	private synchronized int add(String name) {
+		Integer i = slots.get(name);
+		if (i != null)
+			return i;
+		int n = names.length;
+		if (n >= MAX_SLOTS)
+			return -1;
+		// names must be updated before slots makes the new slot visible
+		String[] newNames = Arrays.copyOf(names, n + 1);
+		newNames[n] = name;
+		names = newNames;
+		Map<String, Integer> newSlots = new HashMap<>(slots);
+		newSlots.put(name, n);
+		slots = newSlots;
+		return n;
+	}
+
+	String name(int slot) {
+		return names[slot];
+	}
+
+	int size() {
+		return names.length;
+	}
+
+}
@@ -208,45 +208,87 @@ public final class Ops {
 		return x instanceof CharSequence;
 	}
 
+	// Integer overflow is detected by doing the arithmetic in long
+	// rather than catching ArithmeticException from Math.addExact etc.
+	// because exceptions are slow when e.g. totals cross the int range.
+
 	public static Number add(Object x, Object y) {
 		if (x instanceof Integer && y instanceof Integer)
-			try {
-				return Math.addExact((Integer) x, (Integer) y);
-			} catch (ArithmeticException unused) {
-				// fall through
-			}
+			return narrow((long) (int) x + (int) y);
 		return Dnum.add(toDnum(x), toDnum(y));
 	}
 
 	public static Number sub(Object x, Object y) {
 		if (x instanceof Integer && y instanceof Integer)
-			try {
-				return Math.subtractExact((Integer) x, (Integer) y);
-			} catch (ArithmeticException unused) {
-				// fall through
-			}
+			return narrow((long) (int) x - (int) y);
 		return Dnum.sub(toDnum(x), toDnum(y));
 	}
 
-	private static final Integer one = 1;
-
 	public static Number add1(Object x) {
-		return add(x, one);
+		if (x instanceof Integer && (int) x != Integer.MAX_VALUE)
+			return box((int) x + 1);
+		return add(x, 1);
 	}
+
 	public static Number sub1(Object x) {
-		return sub(x, one);
+		if (x instanceof Integer && (int) x != Integer.MIN_VALUE)
+			return box((int) x - 1);
+		return sub(x, 1);
 	}
 
 	public static Number mul(Object x, Object y) {
-		if (x instanceof Integer && y instanceof Integer)
-			try {
-				return Math.multiplyExact((Integer) x, (Integer) y);
-			} catch (ArithmeticException unused) {
-				// fall through
-			}
+		if (x instanceof Integer && y instanceof Integer) {
+			long n = (long) (int) x * (int) y;
+			if (n == (int) n)
+				return box((int) n);
+		}
 		return Dnum.mul(toDnum(x), toDnum(y));
 	}
 
+	// Used by compiled code when the right operand is an integer literal
+	// to avoid loading a boxed constant and testing its type
+
+	public static Number addInt(Object x, int y) {
+		if (x instanceof Integer)
+			return narrow((long) (int) x + y);
+		return Dnum.add(toDnum(x), Dnum.from(y));
+	}
+
+	public static Number subInt(Object x, int y) {
+		if (x instanceof Integer)
+			return narrow((long) (int) x - y);
+		return Dnum.sub(toDnum(x), Dnum.from(y));
+	}
+
+	public static Number mulInt(Object x, int y) {
+		if (x instanceof Integer) {
+			long n = (long) (int) x * y;
+			if (n == (int) n)
+				return box((int) n);
+		}
+		return Dnum.mul(toDnum(x), Dnum.from(y));
+	}
+
+	/** @return An Integer if n fits, else a Dnum */
+	private static Number narrow(long n) {
+		return n == (int) n ? box((int) n) : Dnum.from(n);
+	}
+
+	/**
+	 * Larger than Integer.valueOf's cache
+	 * so e.g. loop counters and small totals don't allocate
+	 */
+	private static final Integer[] ints = new Integer[1024];
+	static {
+		for (int i = 0; i < ints.length; ++i)
+			ints[i] = i;
+	}
+
+	/** @return A cached Integer for small non-negative values */
+	public static Integer box(int n) {
+		return 0 <= n && n < ints.length ? ints[n] : Integer.valueOf(n);
+	}
+
 	public static Number div(Object x, Object y) {
 		if (x instanceof Integer && y instanceof Integer &&
 				(int) y != 0 && (int) x % (int) y == 0)
@@ -119,30 +119,6 @@ public class SuCallable extends SuValue implements Showable {
 		return context.get(slot);
 	}
 
-	public final Object invoke(int slot, Object... args) {
-		return ((SuValue) contextGet(slot)).call(args);
-	}
-
-	public final Object invoke0(int slot) {
-		return ((SuValue) contextGet(slot)).call0();
-	}
-
-	public final Object invoke1(int slot, Object a) {
-		return ((SuValue) contextGet(slot)).call1(a);
-	}
-
-	public final Object invoke2(int slot, Object a, Object b) {
-		return ((SuValue) contextGet(slot)).call2(a, b);
-	}
-
-	public final Object invoke3(int slot, Object a, Object b, Object c) {
-		return ((SuValue) contextGet(slot)).call3(a, b, c);
-	}
-
-	public final Object invoke4(int slot, Object a, Object b, Object c, Object d) {
-		return ((SuValue) contextGet(slot)).call4(a, b, c, d);
-	}
-
 	public static boolean isBlock(Object x) {
 		return x instanceof SuCallable && ((SuCallable) x).callableType.isBlock();
 	}
@@ -21,6 +21,8 @@ import suneido.runtime.builtin.ContainerMethods;
  * Suneido classes are instances of SuClass
  * with the methods stored in members.
  * The methods are instances of generated classes derived from {@link SuCallable})
+ * Until they are first used, methods may be a {@link Lazy} stub
+ * that is replaced by the compiled method.
  * Suneido instances are instances of {@link SuInstance}
  */
 public class SuClass extends SuValue implements Showable {
@@ -28,6 +30,8 @@ public class SuClass extends SuValue implements Showable {
 	private final String name;
 	private final String baseGlobal; // TODO could be int slot
 	private final Map<String, Object> members; // must be synchronized
+	/** the member slots for instances of this class, see {@link SuInstance} */
+	final Layout layout = new Layout();
 	private boolean hasGet_ = true; // till we know different
 	private static final Map<String, SuCallable> basicMethods =
 			BuiltinMethods.methods("class", SuClass.class);
@@ -90,7 +94,7 @@ public class SuClass extends SuValue implements Showable {
 	}
 
 	Object get2(Object member) {
-		Object value = members.get(member);
+		Object value = member(member);
 		return (value != null || baseGlobal == null)
 			? value
 			: base().get2(member);
@@ -292,8 +296,10 @@ public class SuClass extends SuValue implements Showable {
 		return ((SuClass) self).hasMember(a);
 	}
 
+	/** doesn't use get2 so it doesn't compile lazy methods */
 	boolean hasMember(Object k) {
-		return get2(k) != null;
+		return members.get(k) != null ||
+				(baseGlobal != null && base().hasMember(k));
 	}
 
 	@Params("key")
@@ -306,7 +312,7 @@ public class SuClass extends SuValue implements Showable {
 	}
 
 	private Object methodClass(String method) {
-		Object value = members.get(method);
+		Object value = member(method);
 		if (value instanceof SuCallable)
 			return this;
 		if (value == null && baseGlobal != null)
@@ -353,6 +359,54 @@ public class SuClass extends SuValue implements Showable {
 		return name;
 	}
 
+	public String library() {
+		return library;
+	}
+
+	/** @return The name of the base class global, or null if none */
+	public String baseGlobal() {
+		return baseGlobal;
+	}
+
+	/**
+	 * Compiles any lazy methods.
+	 * @return A read-only view of the members (methods and data)
+	 */
+	public Map<String, Object> members() {
+		for (var e : members.entrySet())
+			if (e.getValue() instanceof Lazy)
+				member(e.getKey());
+		return Collections.unmodifiableMap(members);
+	}
+
+	/** @return The member value, compiling it if it is a lazy method */
+	private Object member(Object key) {
+		Object value = members.get(key);
+		if (value instanceof Lazy) {
+			value = ((Lazy) value).get();
+			// replacing the value of an existing key is not a structural change
+			members.put((String) key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * A method that is compiled the first time it is used.
+	 * Class loading and metaspace then depend on the methods actually used.
+	 * Compile errors are thrown on each use until it succeeds.
+	 */
+	public abstract static class Lazy {
+		private Object value = null;
+
+		protected abstract Object compile();
+
+		synchronized Object get() {
+			if (value == null)
+				value = compile();
+			return value;
+		}
+	}
+
 	@Override
 	public String display() {
 		StringBuilder sb = new StringBuilder();
@@ -382,7 +436,7 @@ public class SuClass extends SuValue implements Showable {
 		for (var key : keys) {
 			sb.append(sep).append(key);
 			var val = members.get(key);
-			if (val instanceof SuCallable)
+			if (val instanceof SuCallable || val instanceof Lazy)
 				sb.append("()");
 			else
 				sb.append(": ").append(val);
@@ -4,6 +4,8 @@
 
 package suneido.runtime;
 
+import suneido.SuContainer;
+
 /**
  * <p>
  * A block in which some of the local variables are "upvalues" that belong to
@@ -27,6 +29,13 @@ public class SuClosure extends SuWrappingCallable {
 		this.locals = locals;
 	}
 
+	/** Called when the block is shared with another thread e.g. by Thread */
+	public void setConcurrent() {
+		SuContainer.setConcurrent(self);
+		for (Object x : locals)
+			SuContainer.setConcurrent(x);
+	}
+
 	@Override
 	public Object call(Object... args) {
 		return eval(self, args);
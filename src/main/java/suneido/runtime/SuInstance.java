@@ -7,7 +7,10 @@ package suneido.runtime;
 import static suneido.runtime.FunctionSpec.NA;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import suneido.SuContainer;
@@ -26,23 +29,116 @@ import suneido.util.PairStack;
  * instances are represented by {@code SuObject}s. See, <em>eg</em>
  * {@code SuObject::myclass}.
  * </p>
+ * <p>
+ * Members are stored in an array indexed by the slots
+ * assigned by the class's {@link Layout}.
+ * A null slot means the member is not present.
+ * Members that don't get a slot because the layout is full
+ * are stored in a map that is only created when needed.
+ * </p>
  */
 // FIXME: Deal with thread safety issues
 public class SuInstance extends SuValue {
 	final SuClass myclass;
-	private final Map<String, Object> ivars;
+	private Object[] slots;
+	private Map<String, Object> ivars; // null until needed
+	/** see {@link #setConcurrent} */
+	private boolean concurrent = false;
+	private static final Object[] NO_SLOTS = new Object[0];
 	private static final Map<String, SuCallable> methods =
 			BuiltinMethods.methods("object", SuInstance.class);
 
 	public SuInstance(SuClass myclass) {
 		this.myclass = myclass;
-		this.ivars = new HashMap<>();
+		int n = myclass.layout.size();
+		this.slots = n == 0 ? NO_SLOTS : new Object[n];
 	}
 
 	/** copy constructor */
 	public SuInstance(SuInstance other) {
 		myclass = other.myclass;
-		ivars = new HashMap<>(other.ivars);
+		slots = other.slots.clone();
+		if (other.ivars != null)
+			ivars = new HashMap<>(other.ivars);
+	}
+
+	/** @return The value of the member or null if it's not present */
+	private Object getIvar(Object member) {
+		String key = ivarKey(member);
+		if (key == null)
+			return null;
+		int slot = myclass.layout.slot(key);
+		if (slot >= 0)
+			return getSlot(slot);
+		return ivars == null ? null : ivars.get(key);
+	}
+
+	private static String ivarKey(Object member) {
+		return member instanceof String ? (String) member
+				: Ops.isString(member) ? member.toString() : null;
+	}
+
+	/** Used by {@link CallSites} with slots from {@link Layout} */
+	Object getSlot(int slot) {
+		return slot < slots.length ? slots[slot] : null;
+	}
+
+	/** Used by {@link CallSites} with slots from {@link Layout} */
+	void putSlot(int slot, Object value) {
+		if (concurrent)
+			SuContainer.setConcurrent(value);
+		if (slot >= slots.length)
+			slots = Arrays.copyOf(slots,
+					Math.max(slot + 1, myclass.layout.size()));
+		slots[slot] = value;
+	}
+
+	/**
+	 * Makes the values of the members concurrent
+	 * (see {@link SuContainer#setConcurrent}) when the instance is shared
+	 * e.g. as this for a block passed to Thread.
+	 * Values stored in members afterwards are also made concurrent.
+	 * NOTE: The instance itself does not lock.
+	 */
+	public void setConcurrent() {
+		if (concurrent)
+			return;
+		concurrent = true;
+		for (Object x : slots)
+			SuContainer.setConcurrent(x);
+		if (ivars != null)
+			for (Object x : ivars.values())
+				SuContainer.setConcurrent(x);
+	}
+
+	private void removeIvar(Object member) {
+		String key = ivarKey(member);
+		if (key == null)
+			return;
+		int slot = myclass.layout.slot(key);
+		if (slot >= 0) {
+			if (slot < slots.length)
+				slots[slot] = null;
+		} else if (ivars != null)
+			ivars.remove(key);
+	}
+
+	private List<String> ivarNames() {
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < slots.length; ++i)
+			if (slots[i] != null)
+				names.add(myclass.layout.name(i));
+		if (ivars != null)
+			names.addAll(ivars.keySet());
+		return names;
+	}
+
+	private int ivarCount() {
+		int n = ivars == null ? 0 : ivars.size();
+		for (Object x : slots)
+			if (x != null)
+				++n;
+		return n;
 	}
 
 	@Override
@@ -105,10 +201,13 @@ public class SuInstance extends SuValue {
 	public static Object Delete(Object self, Object key, Object all) {
 		if ((key == NA) == (all == NA))
 			throw new SuException("usage: object.Delete(field) or object.Delete(all:)");
+		SuInstance x = (SuInstance) self;
 		if (key != NA)
-			((SuInstance) self).ivars.remove(key);
-		else // all:
-			((SuInstance) self).ivars.clear();
+			x.removeIvar(key);
+		else { // all:
+			Arrays.fill(x.slots, null);
+			x.ivars = null;
+		}
 		return self;
 	}
 
@@ -126,7 +225,7 @@ public class SuInstance extends SuValue {
 	}
 
 	private Object getDefault(Object k, Object b) {
-		Object x = ivars.get(k);
+		Object x = getIvar(k);
 		if (x != null)
 			return x;
 		return myclass.getDefault(this, k, b);
@@ -138,14 +237,14 @@ public class SuInstance extends SuValue {
 	}
 
 	private boolean hasMember(Object key) {
-		if (ivars.containsKey(key))
+		if (getIvar(key) != null)
 			return true;
 		return myclass.hasMember(key);
 	}
 
 	@Params("all=false")
 	public static SuContainer Members(Object self, Object all) {
-		SuContainer c = new SuContainer(((SuInstance) self).ivars.keySet());
+		SuContainer c = new SuContainer(((SuInstance) self).ivarNames());
 		if (all == Boolean.TRUE) {
 			((SuInstance) self).myclass.members2(c, true);
 			c.sort(false);
@@ -159,7 +258,7 @@ public class SuInstance extends SuValue {
 	}
 
 	public static Object Size(Object self) {
-		return ((SuInstance) self).ivars.size();
+		return ((SuInstance) self).ivarCount();
 	}
 
 	@Override
@@ -186,7 +285,7 @@ public class SuInstance extends SuValue {
 
 	@Override
 	public Object get(Object member) {
-		Object value = ivars.get(member);
+		Object value = getIvar(member);
 		if (value != null)
 			return value;
 		return myclass.get(this, member);
@@ -197,7 +296,17 @@ public class SuInstance extends SuValue {
 		if (! Ops.isString(member))
 			throw new SuException("non-string member name: "
 					+ Ops.typeName(member));
-		ivars.put(member.toString(), value);
+		String key = member.toString();
+		int slot = myclass.layout.slotFor(key);
+		if (slot >= 0)
+			putSlot(slot, value);
+		else {
+			if (ivars == null)
+				ivars = new HashMap<>();
+			if (concurrent)
+				SuContainer.setConcurrent(value);
+			ivars.put(key, value);
+		}
 	}
 
 	public Object classGet(Object member) {
@@ -215,7 +324,7 @@ public class SuInstance extends SuValue {
 
 	// avoid infinite recursion from self-reference
 	public static boolean equals2(SuInstance x, SuInstance y, PairStack stack) {
-		if (x.myclass != y.myclass || x.ivars.size() != y.ivars.size())
+		if (x.myclass != y.myclass || x.ivarCount() != y.ivarCount())
 			return false;
 		if (stack == null)
 			stack = new PairStack();
@@ -223,8 +332,8 @@ public class SuInstance extends SuValue {
 			return true; // comparison is already in progress
 		stack.push(x, y);
 		try {
-			for (Map.Entry<String, Object> e : x.ivars.entrySet())
-				if (! SuContainer.equals3(e.getValue(), y.ivars.get(e.getKey()), stack))
+			for (String key : x.ivarNames())
+				if (! SuContainer.equals3(x.getIvar(key), y.getIvar(key), stack))
 					return false;
 			return true;
 		} finally {
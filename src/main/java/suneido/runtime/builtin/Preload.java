@@ -0,0 +1,35 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.runtime.builtin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import suneido.SuContainer;
+import suneido.SuException;
+import suneido.Suneido;
+import suneido.runtime.Ops;
+import suneido.runtime.Params;
+
+/**
+ * Preload(names) loads a list of global names, e.g. at startup,
+ * with a single request to the server
+ * rather than one each as they are referenced.
+ */
+public class Preload {
+
+	@Params("names")
+	public static Object Preload(Object a) {
+		SuContainer c = Ops.toContainer(a);
+		if (c == null)
+			throw new SuException("usage: Preload(names)");
+		List<String> names = new ArrayList<>(c.vecSize());
+		for (Object x : c.vec)
+			names.add(Ops.toStr(x));
+		Suneido.context.preload(names);
+		return null;
+	}
+
+}
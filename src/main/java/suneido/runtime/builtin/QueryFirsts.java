@@ -0,0 +1,43 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.runtime.builtin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import suneido.SuContainer;
+import suneido.SuException;
+import suneido.SuRecord;
+import suneido.TheDbms;
+import suneido.database.query.Query.Dir;
+import suneido.database.server.Dbms.HeaderAndRow;
+import suneido.runtime.Ops;
+import suneido.runtime.Params;
+
+/**
+ * QueryFirsts(queries) is like QueryFirst for each of the queries
+ * but as a client they are sent to the server in one round trip
+ * e.g. for the independent lookups when loading a form.
+ * Returns an object with the record, or false, for each query.
+ */
+public class QueryFirsts {
+
+	@Params("queries")
+	public static Object QueryFirsts(Object a) {
+		SuContainer c = Ops.toContainer(a);
+		if (c == null)
+			throw new SuException("usage: QueryFirsts(queries)");
+		List<String> queries = new ArrayList<>(c.vecSize());
+		for (Object x : c.vec)
+			queries.add(Ops.toStr(x));
+		List<HeaderAndRow> hrs = TheDbms.dbms().get(Dir.NEXT, queries, false);
+		SuContainer result = new SuContainer(hrs.size());
+		for (HeaderAndRow hr : hrs)
+			result.add(hr == null ? false
+					: new SuRecord(hr.row, hr.header, (SuTransaction) null));
+		return result;
+	}
+
+}
@@ -0,0 +1,36 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.runtime.builtin;
+
+import suneido.SuContainer;
+import suneido.SuDate;
+import suneido.SuRecord;
+import suneido.database.query.SlowQueryLog;
+import suneido.util.Dnum;
+
+/**
+ * Returns the recent entries from the {@link SlowQueryLog}, oldest first.
+ * On a client use ServerEval("SlowQueries") since the log is on the server.
+ */
+public class SlowQueries {
+
+	public static Object SlowQueries() {
+		SuContainer list = new SuContainer();
+		for (SlowQueryLog.Entry e : SlowQueryLog.recent()) {
+			SuRecord rec = new SuRecord();
+			rec.put("date", SuDate.fromTime(e.time));
+			rec.put("session", e.session);
+			rec.put("query", e.query);
+			rec.put("plan", e.plan);
+			rec.put("ms", Dnum.from(e.nanos / 1_000_000));
+			rec.put("setup_ms", Dnum.from(e.setupNanos / 1_000_000));
+			rec.put("rows", Dnum.from(e.rows));
+			rec.put("operations", new SuContainer(e.operations));
+			list.add(rec);
+		}
+		return list;
+	}
+
+}
@@ -177,6 +177,8 @@ public class SocketServer extends SuClass {
 		Master(SuClass serverClass, Object[] args) {
 			super(serverClass);
 			super.lookup("New").eval(this, args);
+			// the members are shared by the connection threads (see dup)
+			setConcurrent();
 		}
 		Instance dup(Socket socket, int nconn) {
 			try {
@@ -13,6 +13,8 @@ import suneido.SuContainer;
 import suneido.SuException;
 import suneido.SuRecord;
 import suneido.SuValue;
+import suneido.database.immudb.Record;
+import suneido.database.query.Header;
 import suneido.database.query.Query.Dir;
 import suneido.database.query.Row;
 import suneido.database.server.DbmsQuery;
@@ -127,6 +129,32 @@ public class SuQuery extends SuValue {
 		return null;
 	}
 
+	/**
+	 * Output a list of records in one request.
+	 * @return An object with the errors, indexed by the position of the record
+	 */
+	@Params("records, stopOnError = false")
+	public static Object OutputAll(Object self, Object a, Object b) {
+		SuContainer recs = Ops.toContainer(a);
+		if (recs == null)
+			throw new SuException("can't convert " + Ops.typeName(a) + " to object");
+		DbmsQuery q = ((SuQuery) self).q;
+		Header hdr = q.header();
+		List<Record> list = new ArrayList<>(recs.vecSize());
+		for (Object x : recs.vec) {
+			SuContainer rec = Ops.toContainer(x);
+			if (rec == null)
+				throw new SuException("can't convert " + Ops.typeName(x) + " to object");
+			list.add(rec.toDbRecord(hdr));
+		}
+		List<String> errors = q.output(list, Ops.toBoolean_(b));
+		SuContainer result = new SuContainer();
+		for (int i = 0; i < errors.size(); ++i)
+			if (errors.get(i) != null)
+				result.put(i, errors.get(i));
+		return result;
+	}
+
 	public static Object Order(Object self) {
 		return new SuContainer(((SuQuery) self).q.ordering());
 	}
@@ -40,12 +40,27 @@ public class SuThread extends BuiltinClass {
 		return null;
 	}
 
+	/**
+	 * Makes what the callable references concurrent
+	 * since it will be shared with the new thread.
+	 * e.g. Thread({ ... }) or Thread(instance.Method)
+	 */
+	static void setConcurrent(Object callable) {
+		if (callable instanceof SuClosure)
+			((SuClosure) callable).setConcurrent();
+		else if (callable instanceof SuBoundMethod)
+			SuContainer.setConcurrent(((SuBoundMethod) callable).instance);
+		else // e.g. an instance with a Call method
+			SuContainer.setConcurrent(callable);
+	}
+
 	private static class Callable implements Runnable {
 		private final Object callable;
 		private final byte[] token;
 
 		public Callable(Object callable) {
 			// runs in the parent thread
+			setConcurrent(callable);
 			this.callable = callable;
 			// NOTE: getting token here will keep parent connection alive
 			token = TheDbms.dbms().token();
@@ -0,0 +1,246 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A registry of server wide counters, gauges, and latency histograms,
+ * output in Prometheus text format by {@link #prometheus()}
+ * (served as /metrics by HttpServerMonitor).
+ * <p>
+ * Metrics are identified by name plus optional label name/value pairs.
+ * Registering the same name and labels again returns the existing metric
+ * so callers can either keep a reference (for hot paths)
+ * or look it up each time (for rare events).
+ * <p>
+ * Counters and histograms use LongAdder
+ * so updating them from many threads is cheap.
+ */
+@ThreadSafe
+public class Metrics {
+	private static final ConcurrentSkipListMap<String, Family> families =
+			new ConcurrentSkipListMap<>();
+
+	private Metrics() {
+	}
+
+	/** @return The counter with this name and labels, created if necessary */
+	public static Counter counter(String name, String help, String... labels) {
+		return (Counter) family(name, help, "counter")
+				.metrics.computeIfAbsent(labels(labels), k -> new Counter());
+	}
+
+	/** @return The histogram with this name and labels, created if necessary */
+	public static Histogram histogram(String name, String help,
+			String... labels) {
+		return register(name, help, new Histogram(), labels);
+	}
+
+	/**
+	 * Register an existing histogram e.g. one owned by another object.
+	 * @return The histogram that is registered,
+	 * which may be a previously registered one.
+	 */
+	public static Histogram register(String name, String help,
+			Histogram h, String... labels) {
+		return (Histogram) family(name, help, "histogram")
+				.metrics.computeIfAbsent(labels(labels), k -> h);
+	}
+
+	/**
+	 * Register a gauge whose value is computed when the metrics are output.
+	 * Replaces any previous gauge with the same name and labels.
+	 */
+	public static void gauge(String name, String help, LongSupplier value,
+			String... labels) {
+		family(name, help, "gauge").metrics.put(labels(labels), new Gauge(value));
+	}
+
+	private static Family family(String name, String help, String type) {
+		Family f = families.computeIfAbsent(name, k -> new Family(help, type));
+		if (! f.type.equals(type))
+			throw new IllegalArgumentException("metric " + name +
+					" is a " + f.type + " not a " + type);
+		return f;
+	}
+
+	/** @return The labels in Prometheus format e.g. {a="x",b="y"} */
+	private static String labels(String[] labels) {
+		if (labels.length == 0)
+			return "";
+		assert labels.length % 2 == 0 : "labels must be name/value pairs";
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < labels.length; i += 2) {
+			if (i > 0)
+				sb.append(',');
+			sb.append(labels[i]).append("=\"")
+					.append(labels[i + 1].replace("\\", "\\\\")
+							.replace("\"", "\\\"").replace("\n", "\\n"))
+					.append('"');
+		}
+		return sb.append('}').toString();
+	}
+
+	/** @return All the metrics in Prometheus text exposition format */
+	public static String prometheus() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Family> e : families.entrySet()) {
+			String name = e.getKey();
+			Family f = e.getValue();
+			sb.append("# HELP ").append(name).append(' ').append(f.help)
+					.append('\n');
+			sb.append("# TYPE ").append(name).append(' ').append(f.type)
+					.append('\n');
+			for (Map.Entry<String, Metric> m : f.metrics.entrySet())
+				m.getValue().write(sb, name, m.getKey());
+		}
+		return sb.toString();
+	}
+
+	private static class Family {
+		final String help;
+		final String type;
+		final ConcurrentSkipListMap<String, Metric> metrics =
+				new ConcurrentSkipListMap<>();
+
+		Family(String help, String type) {
+			this.help = help;
+			this.type = type;
+		}
+	}
+
+	// metric types ------------------------------------------------------------
+
+	private interface Metric {
+		void write(StringBuilder sb, String name, String labels);
+	}
+
+	public static class Counter implements Metric {
+		private final LongAdder n = new LongAdder();
+
+		public void inc() {
+			n.increment();
+		}
+
+		public void add(long x) {
+			n.add(x);
+		}
+
+		public long get() {
+			return n.sum();
+		}
+
+		@Override
+		public void write(StringBuilder sb, String name, String labels) {
+			sb.append(name).append(labels).append(' ').append(get()).append('\n');
+		}
+	}
+
+	private static class Gauge implements Metric {
+		private final LongSupplier value;
+
+		Gauge(LongSupplier value) {
+			this.value = value;
+		}
+
+		@Override
+		public void write(StringBuilder sb, String name, String labels) {
+			sb.append(name).append(labels).append(' ')
+					.append(value.getAsLong()).append('\n');
+		}
+	}
+
+	/**
+	 * A latency histogram with power of two microsecond buckets.
+	 * Like HdrHistogram the relative (not absolute) error is bounded,
+	 * but with one bucket per power of two
+	 * so recording is a few instructions and the memory is fixed.
+	 * Values are recorded in nanoseconds and output in seconds.
+	 */
+	public static class Histogram implements Metric {
+		/** the last bucket is open, i.e. over about 8 seconds */
+		public static final int NBUCKETS = 24;
+		private final LongAdder[] counts = new LongAdder[NBUCKETS];
+		private final LongAdder totalNanos = new LongAdder();
+
+		public Histogram() {
+			for (int b = 0; b < NBUCKETS; ++b)
+				counts[b] = new LongAdder();
+		}
+
+		public void record(long nanos) {
+			totalNanos.add(nanos);
+			counts[bucket(nanos)].increment();
+		}
+
+		/** @return The bucket for a value, 0 for under 1us, 1 for 1us, ... */
+		static int bucket(long nanos) {
+			long us = nanos / 1000;
+			int b = 64 - Long.numberOfLeadingZeros(us);
+			return Math.min(b, NBUCKETS - 1);
+		}
+
+		/** @return The upper bound of a bucket in microseconds */
+		static long bucketLimit(int b) {
+			return 1L << b;
+		}
+
+		/** @return The number of values recorded */
+		public long count() {
+			long n = 0;
+			for (LongAdder c : counts)
+				n += c.sum();
+			return n;
+		}
+
+		/** @return The sum of the values recorded, in nanoseconds */
+		public long totalNanos() {
+			return totalNanos.sum();
+		}
+
+		/**
+		 * @return The approximate value in microseconds
+		 * that fraction q of the values were under,
+		 * or 0 if nothing has been recorded
+		 */
+		public long quantile(double q) {
+			long n = count();
+			if (n == 0)
+				return 0;
+			long target = (long) Math.ceil(q * n);
+			long sum = 0;
+			for (int b = 0; b < NBUCKETS; ++b) {
+				sum += counts[b].sum();
+				if (sum >= target)
+					return bucketLimit(b);
+			}
+			return bucketLimit(NBUCKETS - 1);
+		}
+
+		@Override
+		public void write(StringBuilder sb, String name, String labels) {
+			String sep = labels.isEmpty() ? "{" :
+					labels.substring(0, labels.length() - 1) + ",";
+			long sum = 0;
+			for (int b = 0; b < NBUCKETS; ++b) {
+				sum += counts[b].sum();
+				String le = (b == NBUCKETS - 1) ? "+Inf"
+						: Double.toString(bucketLimit(b) / 1e6);
+				sb.append(name).append("_bucket").append(sep)
+						.append("le=\"").append(le).append("\"} ")
+						.append(sum).append('\n');
+			}
+			sb.append(name).append("_sum").append(labels).append(' ')
+					.append(totalNanos() / 1e9).append('\n');
+			sb.append(name).append("_count").append(labels).append(' ')
+					.append(sum).append('\n');
+		}
+	}
+
+}
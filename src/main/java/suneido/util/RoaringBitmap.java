@@ -0,0 +1,315 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.util;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of ints, e.g. record addresses,
+ * in the style of Roaring bitmaps.
+ * <p>
+ * The high 16 bits of each value select a container
+ * which holds the low 16 bits, either as a sorted array of chars
+ * (up to {@link #ARRAY_MAX} values) or as a 64k bit bitmap.
+ * Values are treated as unsigned.
+ * <p>
+ * add mutates, and and or return new sets.
+ * Not thread safe.
+ */
+public class RoaringBitmap {
+	static final int ARRAY_MAX = 4096;
+	private char[] keys = new char[4];
+	private Container[] containers = new Container[4];
+	private int n = 0;
+
+	public void add(int x) {
+		char hi = (char) (x >>> 16);
+		int i = find(hi);
+		if (i < 0) {
+			i = -i - 1;
+			insert(i, hi, new ArrayContainer());
+		}
+		containers[i] = containers[i].add((char) x);
+	}
+
+	public boolean contains(int x) {
+		int i = find((char) (x >>> 16));
+		return i >= 0 && containers[i].contains((char) x);
+	}
+
+	public int cardinality() {
+		int card = 0;
+		for (int i = 0; i < n; ++i)
+			card += containers[i].cardinality();
+		return card;
+	}
+
+	public boolean isEmpty() {
+		return n == 0;
+	}
+
+	/** @return A new set with the values in both this and other */
+	public RoaringBitmap and(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		for (int i = 0, j = 0; i < n && j < other.n; ) {
+			if (keys[i] < other.keys[j])
+				++i;
+			else if (keys[i] > other.keys[j])
+				++j;
+			else {
+				Container c = containers[i].and(other.containers[j]);
+				if (c.cardinality() > 0)
+					result.append(keys[i], c);
+				++i;
+				++j;
+			}
+		}
+		return result;
+	}
+
+	/** @return A new set with the values in either this or other */
+	public RoaringBitmap or(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < n || j < other.n) {
+			if (j >= other.n || (i < n && keys[i] < other.keys[j])) {
+				result.append(keys[i], containers[i].copy());
+				++i;
+			} else if (i >= n || keys[i] > other.keys[j]) {
+				result.append(other.keys[j], other.containers[j].copy());
+				++j;
+			} else {
+				result.append(keys[i], containers[i].or(other.containers[j]));
+				++i;
+				++j;
+			}
+		}
+		return result;
+	}
+
+	private int find(char hi) {
+		return Arrays.binarySearch(keys, 0, n, hi);
+	}
+
+	private void insert(int i, char hi, Container c) {
+		grow();
+		System.arraycopy(keys, i, keys, i + 1, n - i);
+		System.arraycopy(containers, i, containers, i + 1, n - i);
+		keys[i] = hi;
+		containers[i] = c;
+		++n;
+	}
+
+	private void append(char hi, Container c) {
+		grow();
+		keys[n] = hi;
+		containers[n] = c;
+		++n;
+	}
+
+	private void grow() {
+		if (n < keys.length)
+			return;
+		keys = Arrays.copyOf(keys, 2 * n);
+		containers = Arrays.copyOf(containers, 2 * n);
+	}
+
+	@Override
+	public String toString() {
+		return "RoaringBitmap(" + cardinality() + ")";
+	}
+
+	// containers --------------------------------------------------------------
+
+	private abstract static class Container {
+		/** @return This container or a replacement if it changed type */
+		abstract Container add(char x);
+		abstract boolean contains(char x);
+		abstract int cardinality();
+		abstract Container and(Container other);
+		abstract Container or(Container other);
+		abstract Container copy();
+	}
+
+	private static class ArrayContainer extends Container {
+		char[] values;
+		int card;
+
+		ArrayContainer() {
+			this(new char[4], 0);
+		}
+
+		ArrayContainer(char[] values, int card) {
+			this.values = values;
+			this.card = card;
+		}
+
+		@Override
+		Container add(char x) {
+			int i = Arrays.binarySearch(values, 0, card, x);
+			if (i >= 0)
+				return this;
+			if (card >= ARRAY_MAX)
+				return toBitmap().add(x);
+			i = -i - 1;
+			if (card >= values.length)
+				values = Arrays.copyOf(values, Math.min(2 * card, ARRAY_MAX));
+			System.arraycopy(values, i, values, i + 1, card - i);
+			values[i] = x;
+			++card;
+			return this;
+		}
+
+		@Override
+		boolean contains(char x) {
+			return Arrays.binarySearch(values, 0, card, x) >= 0;
+		}
+
+		@Override
+		int cardinality() {
+			return card;
+		}
+
+		@Override
+		Container and(Container other) {
+			char[] result = new char[card];
+			int k = 0;
+			if (other instanceof BitmapContainer) {
+				for (int i = 0; i < card; ++i)
+					if (other.contains(values[i]))
+						result[k++] = values[i];
+			} else {
+				ArrayContainer that = (ArrayContainer) other;
+				for (int i = 0, j = 0; i < card && j < that.card; ) {
+					if (values[i] < that.values[j])
+						++i;
+					else if (values[i] > that.values[j])
+						++j;
+					else {
+						result[k++] = values[i];
+						++i;
+						++j;
+					}
+				}
+			}
+			return new ArrayContainer(result, k);
+		}
+
+		@Override
+		Container or(Container other) {
+			if (other instanceof BitmapContainer)
+				return other.or(this);
+			ArrayContainer that = (ArrayContainer) other;
+			char[] result = new char[card + that.card];
+			int k = 0;
+			int i = 0;
+			int j = 0;
+			while (i < card || j < that.card) {
+				if (j >= that.card || (i < card && values[i] < that.values[j]))
+					result[k++] = values[i++];
+				else if (i >= card || values[i] > that.values[j])
+					result[k++] = that.values[j++];
+				else {
+					result[k++] = values[i++];
+					++j;
+				}
+			}
+			ArrayContainer c = new ArrayContainer(result, k);
+			return (k > ARRAY_MAX) ? c.toBitmap() : c;
+		}
+
+		@Override
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(values, card), card);
+		}
+
+		BitmapContainer toBitmap() {
+			BitmapContainer b = new BitmapContainer();
+			for (int i = 0; i < card; ++i)
+				b.add(values[i]);
+			return b;
+		}
+	}
+
+	private static class BitmapContainer extends Container {
+		final long[] words;
+		int card;
+
+		BitmapContainer() {
+			this(new long[1024], 0);
+		}
+
+		BitmapContainer(long[] words, int card) {
+			this.words = words;
+			this.card = card;
+		}
+
+		@Override
+		Container add(char x) {
+			long bit = 1L << x;
+			if ((words[x >>> 6] & bit) == 0) {
+				words[x >>> 6] |= bit;
+				++card;
+			}
+			return this;
+		}
+
+		@Override
+		boolean contains(char x) {
+			return (words[x >>> 6] & (1L << x)) != 0;
+		}
+
+		@Override
+		int cardinality() {
+			return card;
+		}
+
+		@Override
+		Container and(Container other) {
+			if (other instanceof ArrayContainer)
+				return other.and(this);
+			BitmapContainer that = (BitmapContainer) other;
+			long[] result = new long[1024];
+			int k = 0;
+			for (int i = 0; i < 1024; ++i)
+				k += Long.bitCount(result[i] = words[i] & that.words[i]);
+			BitmapContainer c = new BitmapContainer(result, k);
+			return (k <= ARRAY_MAX) ? c.toArray() : c;
+		}
+
+		@Override
+		Container or(Container other) {
+			BitmapContainer result = (BitmapContainer) copy();
+			if (other instanceof ArrayContainer) {
+				ArrayContainer that = (ArrayContainer) other;
+				for (int i = 0; i < that.card; ++i)
+					result.add(that.values[i]);
+			} else {
+				BitmapContainer that = (BitmapContainer) other;
+				int k = 0;
+				for (int i = 0; i < 1024; ++i)
+					k += Long.bitCount(result.words[i] |= that.words[i]);
+				result.card = k;
+			}
+			return result;
+		}
+
+		@Override
+		Container copy() {
+			return new BitmapContainer(words.clone(), card);
+		}
+
+		ArrayContainer toArray() {
+			char[] values = new char[card];
+			int k = 0;
+			for (int i = 0; i < 1024; ++i)
+				for (long w = words[i]; w != 0; w &= w - 1)
+					values[k++] = (char) (i * 64 + Long.numberOfTrailingZeros(w));
+			return new ArrayContainer(values, k);
+		}
+	}
+
+}
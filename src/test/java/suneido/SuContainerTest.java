@@ -11,6 +11,7 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static suneido.runtime.Pack.pack;
 import static suneido.runtime.Pack.unpack;
+import static suneido.util.testing.Benchmark.benchmark;
 
 import java.nio.ByteBuffer;
 
@@ -18,7 +19,12 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import suneido.compiler.Compiler;
+import suneido.runtime.Builtins;
+import suneido.runtime.Concats;
 import suneido.runtime.Ops;
+import suneido.runtime.SuClosure;
+import suneido.runtime.SuInstance;
 import suneido.util.ByteBuffers;
 import suneido.util.Dnum;
 
@@ -219,4 +225,131 @@ public class SuContainerTest {
 				"back\\slash", true, "double\"s", true, "single's", true, "plain", true);
 	}
 
+	@Test
+	public void small_map() {
+		SuContainer c = new SuContainer();
+		for (int i = 0; i < 20; ++i) {
+			c.put("k" + i, i);
+			c.put(Dnum.from(100 + i), i);
+			for (int j = 0; j <= i; ++j) {
+				assertEquals(j, c.get(new Concats("k", String.valueOf(j))));
+				assertEquals(j, c.get(100 + j));
+			}
+			assertEquals(2 * (i + 1), c.mapSize());
+		}
+		c.put("k3", "three");
+		assertEquals("three", c.get("k3"));
+		assertTrue(c.delete("k3"));
+		assertFalse(c.containsKey("k3"));
+
+		c = SuContainer.of("a", "b");
+		c.put("x", 1);
+		c.put(3, 3);
+		c.put(2, 2); // migrates 2 and 3 to vec
+		assertEquals(4, c.vecSize());
+		assertEquals(1, c.mapSize());
+
+		c = new SuContainer();
+		c.put("a", 1);
+		c.put("b", 2);
+		c.put("c", 3);
+		var iter = c.mapEntrySet().iterator();
+		iter.next();
+		iter.remove();
+		iter.next().setValue(22);
+		assertEquals("#(b: 22, c: 3)", c.toString());
+		SuContainer d = new SuContainer(c);
+		d.put("c", 33);
+		assertEquals(3, c.get("c"));
+	}
+
+	@Test
+	public void hashCode_member_order() {
+		SuContainer one = new SuContainer();
+		SuContainer two = new SuContainer();
+		for (int i = 0; i < 5; ++i) {
+			one.put("m" + i, i);
+			two.put("m" + (4 - i), 4 - i);
+		}
+		assertEquals(one, two);
+		assertEquals(one.hashCode(), two.hashCode());
+	}
+
+	@Test
+	public void concurrent() {
+		SuContainer nested = new SuContainer();
+		SuContainer c = SuContainer.of(nested);
+		assertFalse(c.isConcurrent());
+		c.setConcurrent();
+		assertTrue(c.isConcurrent());
+		assertTrue(nested.isConcurrent());
+		SuContainer added = new SuContainer();
+		c.put("a", added);
+		assertTrue(added.isConcurrent());
+		assertTrue(((SuContainer) Builtins.get("Suneido")).isConcurrent());
+	}
+
+	/** e.g. Thread({ ... }) in a method */
+	@Test
+	public void concurrent_instance() {
+		Suneido.context.set("CtCls", Compiler.compile("CtCls",
+				"class { New() { .Ob = Object(); .Nested = Object(Object()) } " +
+				"Block() { x = Object(); return { .Ob.Add(x); x } } }"));
+		SuInstance inst = (SuInstance) Ops.call(Suneido.context.get("CtCls"));
+		Object block = Ops.invoke(inst, "Block");
+		((SuClosure) block).setConcurrent();
+		assertTrue(((SuContainer) inst.get("Ob")).isConcurrent());
+		SuContainer nested = (SuContainer) inst.get("Nested");
+		assertTrue(((SuContainer) nested.get(0)).isConcurrent());
+		assertTrue(((SuContainer) Ops.call(block)).isConcurrent());
+		inst.put("later", new SuContainer());
+		assertTrue(((SuContainer) inst.get("later")).isConcurrent());
+		Suneido.context.clear("CtCls");
+	}
+
+	@Test
+	public void concurrent_threads() throws InterruptedException {
+		SuContainer c = new SuContainer().setConcurrent();
+		int nthreads = 4;
+		int n = 10_000;
+		Thread[] threads = new Thread[nthreads];
+		for (int t = 0; t < nthreads; ++t) {
+			String prefix = "t" + t + "_";
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < n; ++i) {
+					c.add(i);
+					c.put(prefix + i, i);
+					c.get(prefix + (i / 2));
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads)
+			t.join();
+		assertEquals(nthreads * n, c.vecSize());
+		assertEquals(nthreads * n, c.mapSize());
+	}
+
+	private static final String BUILD = "function (n) { for (i = 0; i < n; ++i) " +
+			"{ x = Object(name: 'fred', age: i, city: 'Saskatoon'); " +
+			"x.Add(i); x.Add(i + 1); x.total = x.age + x[0]; x.name } }";
+
+	@Test
+	public void benchmark_build_object() {
+		SuValue f = (SuValue) Compiler.compile("Build", BUILD);
+		f.call1(1000); // warmup
+		benchmark("build object", (long nreps) -> f.call1((int) nreps));
+	}
+
+	@Test
+	public void benchmark_get() {
+		SuContainer c = new SuContainer();
+		for (int i = 0; i < 5; ++i)
+			c.put("member" + i, i);
+		benchmark("container get", (long nreps) -> {
+			while (--nreps >= 0)
+				c.get("member3");
+		});
+	}
+
 }
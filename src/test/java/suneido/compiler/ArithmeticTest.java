@@ -0,0 +1,79 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static suneido.compiler.Compiler.eval;
+import static suneido.util.testing.Benchmark.benchmark;
+
+import org.junit.Test;
+
+import suneido.SuValue;
+import suneido.util.Dnum;
+
+/** Compiled arithmetic, including the int literal fast path */
+public class ArithmeticTest {
+
+	@Test
+	public void int_literals() {
+		assertEquals(11, eval("x = 10; x + 1"));
+		assertEquals(9, eval("x = 10; x - 1"));
+		assertEquals(100, eval("x = 10; x * 10"));
+		assertEquals(15, eval("x = 10; x += 5; x"));
+		assertEquals(-5, eval("x = 10; x -= 15; x"));
+		assertEquals(30, eval("x = 10; x *= 3; x"));
+		assertEquals(Dnum.parse("1.5"), eval("x = .5; x + 1"));
+		assertEquals(1, eval("x = 1; x + 0"));
+	}
+
+	@Test
+	public void overflow() {
+		assertEquals(Dnum.from(2147483648L), eval("x = 2147483647; x + 1"));
+		assertEquals(Dnum.from(2147483648L), eval("x = 2147483647; ++x"));
+		assertEquals(Dnum.from(-2147483649L), eval("x = -2147483647; x - 2"));
+		assertEquals(Dnum.from(4294967294L), eval("x = 2147483647; x *= 2"));
+		// back into int range
+		assertEquals(Dnum.from(2147483647),
+				eval("x = 2147483647; x += 1; x - 1"));
+	}
+
+	private static final String SUM = "function (n) " +
+			"{ sum = 0; for (i = 0; i < n; ++i) sum += i % 1000; sum }";
+
+	/** int operands with results in cents outside the int range */
+	private static final String CENTS = "function (n) " +
+			"{ base = 2147483000; t = 0; " +
+			"for (i = 0; i < n; ++i) t = base + (i % 1000 + 1000) * 100; t }";
+
+	private static final String MUL = "function (n) " +
+			"{ x = 0; for (i = 0; i < n; ++i) x += i * 3 - i * 2; x }";
+
+	@Test
+	public void loops() {
+		assertEquals(499500, ((SuValue) Compiler.compile("Sum", SUM)).call1(1000));
+		assertEquals(Dnum.from(2147483000L + 1999 * 100),
+				((SuValue) Compiler.compile("Cents", CENTS)).call1(1000));
+		assertEquals(499500, ((SuValue) Compiler.compile("Mul", MUL)).call1(1000));
+	}
+
+	@Test
+	public void benchmark_int_loop() {
+		SuValue f = (SuValue) Compiler.compile("Sum", SUM);
+		benchmark("int loop", (long nreps) -> f.call1((int) nreps));
+	}
+
+	@Test
+	public void benchmark_overflow_loop() {
+		SuValue f = (SuValue) Compiler.compile("Cents", CENTS);
+		benchmark("overflow loop", (long nreps) -> f.call1((int) nreps));
+	}
+
+	@Test
+	public void benchmark_mul_loop() {
+		SuValue f = (SuValue) Compiler.compile("Mul", MUL);
+		benchmark("mul loop", (long nreps) -> f.call1((int) nreps));
+	}
+
+}
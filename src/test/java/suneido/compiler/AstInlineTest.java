@@ -0,0 +1,96 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static suneido.compiler.Compiler.eval;
+import static suneido.compiler.ExecuteTest.def;
+import static suneido.util.testing.Benchmark.benchmark;
+
+import org.junit.Test;
+
+import suneido.SuValue;
+import suneido.Suneido;
+
+public class AstInlineTest {
+
+	@Test
+	public void inlinable() {
+		inlinable("function (x, y) { x > y ? x : y }");
+		inlinable("function (x, y) { return x < y ? x : y }");
+		inlinable("function (x) { (x < 0) ? -x : x }");
+		inlinable("function (s, t) { s is '' ? '' : s $ t; }");
+		inlinable("function (a, b) { a and not b or a + b * 2 > 10 }");
+		inlinable("function () { 123 }");
+
+		not("function (x, y) { Max(x, y) }"); // call
+		not("function (x) { x.Size() }");
+		not("function (x) { x.y }");
+		not("function (x) { x[0] }");
+		not("function (x) { y = x; y }");
+		not("function (x) { x; x }");
+		not("function (x) { Z }"); // global
+		not("function (x) { _x }");
+		not("function (x) { this }");
+		not("function (x = 0) { x }");
+		not("function (@x) { x }");
+		not("function (_x) { x }");
+		not("function (a, b, c, d, e) { a }");
+		not("function (x) { { x } }");
+		not("function (x) { x+x+x+x+x+x+x+x+x+x+x+x+x+x+x+x }");
+		not("class { }");
+		assertNull(AstInline.inlinable(123));
+	}
+
+	private static void inlinable(String src) {
+		assertNotNull(src, AstInline.inlinable(Compiler.compile("Test", src)));
+	}
+
+	private static void not(String src) {
+		assertNull(src, AstInline.inlinable(Compiler.compile("Test", src)));
+	}
+
+	@Test
+	public void inline() {
+		def("AiMax", "function (x, y) { x > y ? x : y }");
+		long n = AstInline.count();
+		def("AiCall", "function (a, b) { AiMax(a, b) }");
+		assertEquals(n + 1, AstInline.count());
+		assertEquals(5, eval("AiCall(5, 3)"));
+		assertEquals(5, eval("AiCall(3, 5)"));
+		assertEquals("b", eval("AiCall('a', 'b')"));
+		// arguments are evaluated once, in order
+		assertEquals("[3, \"12\"]", eval("s = ''; " +
+				"x = AiMax({ s $= 1; 2 }(), { s $= 2; 3 }()); Display([x, s])"));
+		assertEquals("missing argument(s)",
+				eval("try AiMax(1) catch (e) return e").toString());
+	}
+
+	@Test
+	public void guard() {
+		def("AiMin", "function (x, y) { x < y ? x : y }");
+		def("AiCall", "function (a, b) { AiMin(a, b) }");
+		assertEquals(3, eval("AiCall(5, 3)"));
+		def("AiMin", "function (x, y) { 'changed' }");
+		assertEquals("changed", eval("AiCall(5, 3)"));
+		def("AiMin", "function (x, y) { x < y ? x : y }");
+		assertEquals(3, eval("AiCall(5, 3)"));
+		Suneido.context.clear("AiMin");
+		def("AiMin", "function (@args) { 'varargs' }");
+		assertEquals("varargs", eval("AiCall(5, 3)"));
+	}
+
+	@Test
+	public void benchmark_inline() {
+		def("AiMax", "function (x, y) { x > y ? x : y }");
+		SuValue f = (SuValue) eval("function (n) " +
+				"{ m = 0; for (i = 0; i < n; ++i) m = AiMax(m, i); m }");
+		f.call1(1000); // warmup
+		benchmark("inlined call", (long nreps) -> f.call1((int) nreps));
+	}
+
+}
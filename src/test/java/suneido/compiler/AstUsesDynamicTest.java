@@ -0,0 +1,34 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.compiler;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AstUsesDynamicTest {
+
+	@Test
+	public void test() {
+		test(false, "");
+		test(false, "x = 5");
+		test(false, "_Global()");
+		test(false, "f = function () { _x }");
+		test(false, "c = class { f() { _x = 5 } }");
+		test(false, "b = { _x }");
+
+		test(true, "_x");
+		test(true, "f(_x)");
+		test(true, "_x = 5");
+		test(true, "++_x");
+		test(true, "_x += 5");
+	}
+
+	public static void test(boolean result, String s) {
+		AstNode ast = Compiler.parse("function () { " + s + "\n}");
+		assertEquals(result, AstUsesDynamic.check(ast));
+	}
+
+}
@@ -0,0 +1,33 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.compiler;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AstUsesOverloadTest {
+
+	@Test
+	public void test() {
+		test(false, "");
+		test(false, "Global()");
+		test(false, "_x");
+		test(false, "c = class : Base { F() { Global() } }");
+
+		test(true, "_Global()");
+		test(true, "b = { _Global }");
+		test(true, "f = function () { _Global }");
+		test(true, "c = class { F() { _Global() } }");
+		test(true, "c = class : _Base { }");
+		test(true, "x = #(a: class { F() { _Global } })");
+	}
+
+	public static void test(boolean result, String s) {
+		AstNode ast = Compiler.parse("function () { " + s + "\n}");
+		assertEquals(s, result, AstUsesOverload.check(ast));
+	}
+
+}
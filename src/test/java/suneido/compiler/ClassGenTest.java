@@ -0,0 +1,127 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static suneido.compiler.Compiler.eval;
+import static suneido.compiler.ExecuteTest.def;
+import static suneido.util.testing.Benchmark.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+
+import org.junit.Test;
+
+import suneido.SuContainer;
+import suneido.SuValue;
+import suneido.Suneido;
+import suneido.runtime.Ops;
+import suneido.runtime.SuClass;
+
+public class ClassGenTest {
+
+	/** sibling blocks have the same name but share a loader */
+	@Test
+	public void one_loader_per_definition() {
+		String src = "function () { Object({ 1 }, { 2 }) }";
+		SuValue f = (SuValue) Compiler.compile("CgBlocks", src);
+		SuContainer blocks = (SuContainer) f.call0();
+		Class<?> b1 = blocks.get(0).getClass();
+		Class<?> b2 = blocks.get(1).getClass();
+		assertNotEquals(b1.getName(), b2.getName());
+		assertSame(f.getClass().getClassLoader(), b1.getClassLoader());
+		assertSame(f.getClass().getClassLoader(), b2.getClassLoader());
+		assertEquals(2, Ops.call(blocks.get(1)));
+		Object g = Compiler.compile("CgBlocks", src);
+		assertNotSame(f.getClass().getClassLoader(),
+				g.getClass().getClassLoader());
+	}
+
+	/** reloading a definition must not grow loaders or metaspace */
+	@Test
+	public void reload() throws InterruptedException {
+		String src = "class { F(x) { b = { it + x }; c = { it * x }; b(c(2)) } }";
+		def("CgReload", src);
+		gc();
+		int loaders = ClassGen.classLoaders();
+		long metaspace = metaspace();
+		int n = 10_000;
+		long classes = ClassGen.generatedClasses();
+		for (int i = 0; i < n; ++i) {
+			def("CgReload", src);
+			((SuClass) Suneido.context.get("CgReload")).members(); // compile
+		}
+		assertEquals(9, eval("CgReload.F(3)"));
+		assertTrue(ClassGen.generatedClasses() - classes >= 3 * n);
+		gc();
+		assertTrue("loaders " + loaders + " => " + ClassGen.classLoaders(),
+				ClassGen.classLoaders() < loaders + n / 10);
+		long growth = metaspace() - metaspace;
+		assertTrue("metaspace grew by " + growth, growth < 10_000_000);
+		Suneido.context.clear("CgReload");
+	}
+
+	@Test
+	public void lazy_methods() {
+		long classes = ClassGen.generatedClasses();
+		SuClass c = (SuClass) Compiler.compile("CgLazy",
+				"class { F() { 'f' }; G(x) { b = { x * 2 }; b() }; " +
+				"H() { .F() $ .G(3) }; N: 123 }");
+		assertEquals(123, c.get("N"));
+		assertEquals(true, SuClass.MemberQ(c, "F"));
+		assertEquals("class{F(); G(); H(); N: 123}", c.show());
+		assertEquals(classes, ClassGen.generatedClasses());
+		assertEquals("f", Ops.invoke0(c, "F"));
+		assertEquals(classes + 1, ClassGen.generatedClasses());
+		assertEquals("f6", Ops.invoke0(c, "H"));
+		classes = ClassGen.generatedClasses();
+		assertEquals("f6", Ops.invoke0(c, "H"));
+		assertEquals(classes, ClassGen.generatedClasses()); // cached
+	}
+
+	@Test
+	public void lazy_method_errors() {
+		def("CgLazy", "class { F() { Foo = 1 } }");
+		for (int i = 0; i < 2; ++i)
+			assertEquals("globals are read-only",
+					eval("try CgLazy.F() catch (e) return e").toString());
+		Suneido.context.clear("CgLazy");
+	}
+
+	/** class loading only compiles the methods that are used */
+	@Test
+	public void benchmark_class_load() {
+		StringBuilder sb = new StringBuilder("class {\n");
+		for (int i = 0; i < 50; ++i)
+			sb.append("M" + i + "(a, b) { x = Object(a, b); " +
+					"x.Each({ Print(it) }); x.Size() + " + i + " }\n");
+		String src = sb.append("}").toString();
+		benchmark("class load", (long nreps) -> {
+			while (--nreps >= 0)
+				((SuClass) Compiler.compile("CgBench", src)).get("M1");
+		});
+	}
+
+	private static void gc() throws InterruptedException {
+		int prev = Integer.MAX_VALUE;
+		for (int i = 0; i < 20 && ClassGen.classLoaders() < prev; ++i) {
+			prev = ClassGen.classLoaders();
+			System.gc();
+			Thread.sleep(50);
+		}
+	}
+
+	private static long metaspace() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getName().equals("Metaspace"))
+				return pool.getUsage().getUsed();
+		return 0;
+	}
+
+}
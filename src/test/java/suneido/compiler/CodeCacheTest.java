@@ -0,0 +1,151 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static suneido.compiler.ExecuteTest.def;
+import static suneido.util.testing.Benchmark.benchmark;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import suneido.SuValue;
+import suneido.Suneido;
+import suneido.runtime.Ops;
+import suneido.runtime.SuCallable;
+
+public class CodeCacheTest {
+	private Path dir;
+
+	@Before
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("codecache");
+	}
+
+	@After
+	public void teardown() throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+			for (Path f : files)
+				Files.delete(f);
+		}
+		Files.delete(dir);
+	}
+
+	private static final String FN = "function (x, y = 2, _z = 3) {\n" +
+			"c = #(1, a: 'x')\n" +
+			"b = { |a| if a > 10 { return 'big' } a * y }\n" +
+			"n = 0; add = { n += it }\n" +
+			"for (i = 1; i <= 3; ++i) add(b(i * x))\n" +
+			"return Object(n, z, c.a, CcGlobal, CcGlobal(x)) }";
+
+	private static final String CLASS = "class {\n" +
+			"New(.n) { }\n" +
+			"Get() { .n * .M }\n" +
+			"M: 2\n" +
+			"Nested: class { F() { 'nested' } }\n" +
+			"Blk() { b = { .Get() + 1 }; b() }\n" +
+			"}";
+
+	@Test
+	public void function() {
+		def("CcGlobal", "function (x) { x + 100 }");
+		CodeCache cc = new CodeCache(dir);
+		Object f1 = cc.get("lib", "Fn", FN, Suneido.context);
+		assertEquals(1, cc.misses.get());
+		cc = new CodeCache(dir);
+		Object f2 = cc.get("lib", "Fn", FN, Suneido.context);
+		assertEquals(1, cc.hits.get());
+		assertNotSame(f1, f2);
+		assertEquals(Ops.display(Ops.call1(f1, 1)), Ops.display(Ops.call1(f2, 1)));
+		assertEquals("#(12, 3, \"x\", CcGlobal /* function */, 101)",
+				Ops.display(Ops.call1(f2, 1)));
+		assertEquals("big", Ops.call1(f2, 5));
+		assertEquals("(x,y=2,_z=3)",
+				((SuCallable) f2).getParams().params());
+	}
+
+	@Test
+	public void suClass() {
+		CodeCache cc = new CodeCache(dir);
+		cc.get("lib", "Cls", CLASS, Suneido.context);
+		cc = new CodeCache(dir);
+		Object c = cc.get("lib", "Cls", CLASS, Suneido.context);
+		assertEquals(1, cc.hits.get());
+		Object x = Ops.call1(c, 5);
+		assertEquals(10, Ops.invoke0(x, "Get"));
+		assertEquals(11, Ops.invoke0(x, "Blk"));
+		assertEquals("nested", Ops.invoke0(Ops.get(c, "Nested"), "F"));
+	}
+
+	/** block return ids must not collide between loads */
+	@Test
+	public void block_return() {
+		String src = "function (f) { f({|@x| return 'outer' }); 'fell through' }";
+		CodeCache cc = new CodeCache(dir);
+		cc.get("lib", "Br", src, Suneido.context);
+		SuValue f1 = (SuValue) cc.get("lib", "Br", src, Suneido.context);
+		SuValue f2 = (SuValue) cc.get("lib", "Br", src, Suneido.context);
+		assertEquals(2, cc.hits.get());
+		// f1's block is called inside f2 and must return from f1, not f2
+		Suneido.context.set("CcF2", f2);
+		assertEquals("outer", f1.call1(Compiler.compile(
+				"function (b) { CcF2(b); 'wrong' }")));
+	}
+
+	@Test
+	public void not_cached() {
+		CodeCache cc = new CodeCache(dir);
+		String src = "function () { _CcGlobal }";
+		def("CcGlobal", "123");
+		cc.get("lib", "Ov", src, Suneido.context);
+		cc.get("lib", "Ov", src, Suneido.context);
+		assertEquals(0, cc.hits.get() + cc.misses.get());
+		// can't pack a function inside an object
+		src = "#(function () { })";
+		cc.get("lib", "Fo", src, Suneido.context);
+		cc.get("lib", "Fo", src, Suneido.context);
+		assertEquals(2, cc.misses.get());
+	}
+
+	@Test
+	public void bad_entry() throws IOException {
+		CodeCache cc = new CodeCache(dir);
+		cc.get("lib", "Cls", CLASS, Suneido.context);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+			for (Path f : files)
+				Files.write(f, new byte[] { 1, 2, 3 });
+		}
+		Object c = cc.get("lib", "Cls", CLASS, Suneido.context);
+		assertEquals(2, cc.misses.get());
+		assertEquals(6, Ops.invoke0(Ops.call1(c, 3), "Get"));
+		cc.get("lib", "Cls", CLASS, Suneido.context);
+		assertEquals(1, cc.hits.get());
+	}
+
+	@Test
+	public void benchmark_load() {
+		def("CcGlobal", "function (x) { x + 100 }");
+		CodeCache cc = new CodeCache(dir);
+		cc.get("lib", "Cls", CLASS, Suneido.context);
+		benchmark("compile class", (long nreps) -> {
+			while (nreps-- > 0)
+				Compiler.compile("lib", "Cls", CLASS, Suneido.context);
+		});
+		benchmark("load class from cache", (long nreps) -> {
+			while (nreps-- > 0)
+				cc.get("lib", "Cls", CLASS, Suneido.context);
+		});
+		assertTrue(cc.hits.get() > 0);
+	}
+
+}
@@ -10,15 +10,12 @@ import static suneido.util.testing.Throwing.assertThrew;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.junit.Test;
 import org.objectweb.asm.Type;
 
 import suneido.PortTests;
 import suneido.SuException;
-import suneido.Suneido;
 import suneido.runtime.*;
 import suneido.runtime.builtin.ObjectClass;
 import suneido.runtime.builtin.RecordClass;
@@ -128,9 +125,9 @@ public class CompileTest {
 		test("a[b] *= c;;",
 				"a, b, DUP2, getMem, c, mul, putMem");
 		test("a[b + 1]",
-				"a, b, 1, add, getMem, ARETURN");
+				"a, b, 1, addInt, getMem, ARETURN");
 		test("a[b + 1];;",
-				"a, b, 1, add, getMem, POP");
+				"a, b, 1, addInt, getMem, POP");
 		test("a[++b];;",
 				"a, &b, DUP2, AALOAD, add1, DUP_X2, AASTORE, getMem, POP");
 		test("a[++b] = c;;",
@@ -202,7 +199,7 @@ public class CompileTest {
 		test("a(b = c, c)",
 				"a, &b, c, DUP_X2, AASTORE, c, call, ARETURN");
 		test("G()",
- 				"this, G, global call, ARETURN");
+ 				"this, global call G, ARETURN");
 		test("a(@b)",
  				"a, EACH, b, call, ARETURN");
 		test("a(@+1b)",
@@ -211,19 +208,19 @@ public class CompileTest {
  				"&a, b, call, null?, AASTORE");
 
 		test("a.Size()",
-				"a, 'Size', invoke0, ARETURN");
+				"a, invoke 'Size', ARETURN");
 		test("(a = b).F()",
-				"&a, b, DUP_X2, AASTORE, 'F', invoke0, ARETURN");
+				"&a, b, DUP_X2, invoke 'F', ARETURN");
 		test("return a.Size()",
-				"a, 'Size', invoke0, ARETURN");
+				"a, invoke 'Size', ARETURN");
 		test("a['Size']()",
 				"a, 'Size', toMethodString, invoke0, ARETURN");
 		test("a.Substr(b, c)",
-				"a, 'Substr', b, c, invoke2, ARETURN");
+				"a, b, c, invoke 'Substr', ARETURN");
 		test(".f()",
-				"self, 'f', invoke0, ARETURN");
+				"self, invoke 'f', ARETURN");
 		test("this.f()",
-				"self, 'f', invoke0, ARETURN");
+				"self, invoke 'f', ARETURN");
 		test("this[a]()",
 				"self, a, toMethodString, invoke0, ARETURN");
 		test("a(123, x: 456)",
@@ -231,7 +228,7 @@ public class CompileTest {
 		test("a(99: 'x')",
 				"a, NAMED, 99, 'x', call, ARETURN");
 		test("A().B()",
-				"this, A, global call, 'B', invoke0, ARETURN");
+				"this, global call A, invoke 'B', ARETURN");
 
 		test("super.F()",
 				"this, self, 'F', superInvoke, ARETURN");
@@ -448,7 +445,7 @@ public class CompileTest {
 		test("x(a: 1, b: 2, c: 3, d: 4, e: 5, V: a, f: 6, g: 7, h: 8, i: 9, j: 10, k: 11)",
 			"x, NAMED, 'V', a, EACH, const0, call, ARETURN");
 		test("A(a: 1, b: 2, c: 3, d: 4, e: 5, f: 6, g: 7, h: 8, i: 9, j: 10, k: 11)",
-			"this, A, EACH, const0, global call, ARETURN");
+			"this, EACH, const0, global call A, ARETURN");
 		test("[a: 1, b: 2, c: 3, d: 4, e: 5, V: a, f: 6, g: 7, h: 8, i: 9, j: 10, k: 11]",
 				"NAMED, 'V', a, EACH, const0, Record, ARETURN");
 	}
@@ -531,6 +528,15 @@ public class CompileTest {
 		r = r.replace("\n", ", ");
 		r = r.replace('"', '\'');
 		r = r.replaceAll(" +", " ");
+		r = r.replaceAll("INVOKEDYNAMIC method\\([^\\]]*arguments:, ('[^']*'), \\]",
+				"invoke $1");
+		r = r.replaceAll("INVOKEDYNAMIC get\\([^\\]]*CallSites.member[^\\]]*\\]",
+				"getMem");
+		r = r.replaceAll("INVOKEDYNAMIC put\\([^\\]]*\\]", "putMem");
+		r = r.replaceAll("INVOKEDYNAMIC get\\([^\\]]*arguments:, '([^']*)', \\]",
+				"$1, global");
+		r = r.replaceAll("INVOKEDYNAMIC call\\([^\\]]*arguments:, '([^']*)', \\]",
+				"global call $1");
 		String[][] simplify = {
 			{ "Ljava/lang/", "" },
 			{ "ALOAD 0", "this" },
@@ -568,6 +574,7 @@ public class CompileTest {
 			{ " (Object;)Boolean;", "" },
 			{ " (Object;Object;)Z", "" },
 			{ " (Object;Object;)Number;", "" },
+			{ " (Object;I)Number;", "" },
 			{ " (Object;Object;)String;", "" },
 			{ " (Object;Object;)Boolean;", "" },
 			{ " (Object;Object;)Object;", "" },
@@ -641,20 +648,9 @@ public class CompileTest {
 		for (String[] simp : simplify)
 			r = r.replace(simp[0], simp[1]);
 		r = r.replaceAll("[0-9]+, blockReturn", "blockReturn");
-		r = globalSlotToName(r);
 		return r;
 	}
 
-	private static String globalSlotToName(String r) {
-		Pattern p = Pattern.compile("this, ([0-9]+), (EACH, const0, )?global");
-		Matcher m = p.matcher(r);
-		if (! m.find())
-			return r;
-		int i = Integer.valueOf(m.group(1));
-		String name = Suneido.context.nameForSlot(i);
-		return r.substring(0, m.start(1)) + name + r.substring(m.end(1));
-	}
-
 	private static String after(String r, String s) {
 		int i = r.indexOf(s);
 		assertTrue(0 <= i);
@@ -594,6 +594,21 @@ public class BtreeTest {
 				closeTo(0, .01));
 	}
 
+	@Test
+	public void splitKeys() {
+		assertThat(btree.splitKeys(4).size(), equalTo(0));
+		for (int i = 10; i < 1034; i += 4)
+			btree.add(key(i));
+		List<Record> splits = btree.splitKeys(4);
+		assertThat(splits.size(), equalTo(3));
+		for (int i = 0; i < splits.size(); ++i) {
+			if (i > 0)
+				assertThat(splits.get(i).compareTo(splits.get(i - 1)), greaterThan(0));
+			assertThat((double) btree.rangefrac(Record.EMPTY, splits.get(i)),
+					closeTo((i + 1) / 4.0, .1));
+		}
+	}
+
 	@Test
 	public void rangefrac_multiple_small_nodes() {
 		for (int i = 10; i < 1034; i += 4)
@@ -0,0 +1,124 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import suneido.database.immudb.Record;
+import suneido.database.immudb.RecordBuilder;
+
+public class ExternalSortTest {
+	private static final int NKEYS = 5000;
+	private final Random rand = new Random(31337);
+
+	@Test
+	public void in_memory() {
+		check(Long.MAX_VALUE, false);
+	}
+
+	@Test
+	public void spilled() {
+		check(20_000, true);
+	}
+
+	private void check(long budget, boolean spills) {
+		List<Record> keys = new ArrayList<>();
+		ExternalSort sort = new ExternalSort(budget);
+		for (int i = 0; i < NKEYS; ++i) {
+			Record key = key(rand.nextInt(NKEYS), i);
+			keys.add(key);
+			sort.add(key);
+		}
+		Collections.sort(keys);
+		try {
+			ExternalSort.Iter iter = sort.iter();
+			assertEquals(spills, sort.spills() > 1);
+
+			List<Record> fwd = new ArrayList<>();
+			for (Record x; null != (x = iter.next()); )
+				fwd.add(x);
+			assertEquals(keys, fwd);
+
+			List<Record> rev = new ArrayList<>();
+			for (Record x; null != (x = iter.prev()); )
+				rev.add(x);
+			Collections.reverse(rev);
+			assertEquals(keys, rev);
+
+			for (int i = 0; i < 100; ++i) {
+				int k = rand.nextInt(NKEYS);
+				// seekFirst is before the first key >= k
+				iter.seekFirst(key(k));
+				int pos = lowerBound(keys, key(k));
+				Record x = iter.next();
+				if (pos == keys.size())
+					assertNull(x);
+				else {
+					assertEquals(keys.get(pos), x);
+					// change direction
+					if (pos > 0)
+						assertEquals(keys.get(pos - 1), iter.prev());
+				}
+				// seekLast is after the last key < k + 1
+				iter.seekLast(key(k + 1));
+				x = iter.prev();
+				if (pos == 0 && x != null)
+					assertTrue(x.compareTo(key(k + 1)) < 0);
+				if (x != null) {
+					int j = keys.indexOf(x);
+					assertTrue(j + 1 == keys.size() ||
+							keys.get(j + 1).compareTo(key(k + 1)) >= 0);
+					if (j + 1 < keys.size())
+						assertEquals(keys.get(j + 1), iter.next());
+				}
+			}
+		} finally {
+			sort.close();
+		}
+	}
+
+	@Test
+	public void deleteLeftovers() throws IOException {
+		File old = File.createTempFile("sutemp", ".sort");
+		File recent = File.createTempFile("sutemp", ".sort");
+		try {
+			old.setLastModified(System.currentTimeMillis() - 2 * 24 * 60 * 60 * 1000);
+			ExternalSort.deleteLeftovers();
+			assertFalse(old.exists());
+			assertTrue(recent.exists());
+		} finally {
+			old.delete();
+			recent.delete();
+		}
+	}
+
+	private static Record key(int k) {
+		return new RecordBuilder().add(k).build();
+	}
+
+	private static Record key(int k, int i) {
+		return new RecordBuilder().add(k).add(i).build();
+	}
+
+	private static int lowerBound(List<Record> keys, Record key) {
+		int i = 0;
+		while (i < keys.size() && keys.get(i).compareTo(key) < 0)
+			++i;
+		return i;
+	}
+
+}
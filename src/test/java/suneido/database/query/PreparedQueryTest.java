@@ -0,0 +1,173 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.query;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import suneido.SuException;
+import suneido.database.immudb.Transaction;
+import suneido.database.query.Query.Dir;
+
+public class PreparedQueryTest extends TestBase {
+
+	@Test
+	public void rebind() {
+		makeDB();
+		PreparedQuery pq = prepare("customer where id >= $1 and id <= $2");
+		assertEquals(2, pq.nparams());
+		Transaction t = db.readTransaction();
+		try {
+			Query q = pq.execute(t, serverData, asList("b", "e"));
+			String plan = q.toString();
+			assertEquals(asList("c", "e"), ids(q));
+			q.close();
+			pq.release(q);
+
+			Query q2 = pq.execute(t, serverData, asList("a", "c"));
+			assertSame(q, q2);
+			assertEquals(plan, q2.toString());
+			assertEquals(asList("a", "c"), ids(q2));
+
+			// in use, so a second plan is made
+			Query q3 = pq.execute(t, serverData, asList("i", "z"));
+			assertNotSame(q2, q3);
+			assertEquals(asList("i"), ids(q3));
+			pq.release(q2);
+			pq.release(q3);
+
+			// conflicting values
+			q = pq.execute(t, serverData, asList("e", "c"));
+			assertEquals(asList(), ids(q));
+			pq.release(q);
+			q = pq.execute(t, serverData, asList("", "z"));
+			assertEquals(asList("a", "c", "e", "i"), ids(q));
+		} finally {
+			t.complete();
+		}
+	}
+
+	@Test
+	public void summarize() {
+		makeDB();
+		PreparedQuery pq = prepare("hist where id is $1 summarize count");
+		Transaction t = db.readTransaction();
+		try {
+			Query q = pq.execute(t, serverData, asList("e"));
+			assertEquals(2, q.get(Dir.NEXT).getval(q.header(), "count"));
+			pq.release(q);
+			q = pq.execute(t, serverData, asList("a"));
+			assertEquals(1, q.get(Dir.NEXT).getval(q.header(), "count"));
+		} finally {
+			t.complete();
+		}
+	}
+
+	/**
+	 * the plan is kept when the data changes
+	 * but must be remade if the table is altered
+	 */
+	@Test
+	public void alter() {
+		makeDB();
+		PreparedQuery pq = prepare("hist2 where id is $1");
+		Transaction t = db.readTransaction();
+		Query q;
+		try {
+			q = pq.execute(t, serverData, asList("e"));
+			assertThat(q.toString(), containsString("^(id)"));
+			assertEquals(asList("e", "e"), ids(q));
+			q.close();
+			pq.release(q);
+		} finally {
+			t.complete();
+		}
+		req("insert{date: 970104, item: \"pen\", id: \"e\", cost: 400} into hist2");
+		t = db.readTransaction();
+		try {
+			assertSame(q, pq.execute(t, serverData, asList("e")));
+			assertEquals(asList("e", "e", "e"), ids(q));
+			q.close();
+			pq.release(q);
+		} finally {
+			t.complete();
+		}
+		adm("alter hist2 drop index(id)");
+		t = db.readTransaction();
+		try {
+			Query q2 = pq.execute(t, serverData, asList("e"));
+			assertNotSame(q, q2);
+			assertThat(q2.toString(), not(containsString("^(id)")));
+			assertEquals(asList("e", "e", "e"), ids(q2));
+			q2.close();
+			pq.release(q2);
+			// unchanged, so the new plan is reused
+			assertSame(q2, pq.execute(t, serverData, asList("a")));
+		} finally {
+			t.complete();
+		}
+	}
+
+	@Test
+	public void errors() {
+		makeDB();
+		bad("customer where id is $2", "missing parameter $1");
+		bad("delete customer where id is $1", "only queries");
+		try {
+			CompileQuery.parse(db, serverData, "customer where id is $1");
+			fail();
+		} catch (SuException e) {
+			assertThat(e.toString(), containsString("require prepare"));
+		}
+		PreparedQuery pq = prepare("customer where id is $1");
+		Transaction t = db.readTransaction();
+		try {
+			pq.execute(t, serverData, asList());
+			fail();
+		} catch (SuException e) {
+			assertThat(e.toString(), containsString("expected 1 parameters"));
+		} finally {
+			t.complete();
+		}
+	}
+
+	private void bad(String query, String expected) {
+		try {
+			prepare(query);
+			fail();
+		} catch (SuException e) {
+			assertThat(e.toString(), containsString(expected));
+		}
+	}
+
+	private PreparedQuery prepare(String query) {
+		Transaction t = db.readTransaction();
+		try {
+			return new PreparedQuery(t, serverData, query);
+		} finally {
+			t.complete();
+		}
+	}
+
+	private static List<Object> ids(Query q) {
+		List<Object> ids = new ArrayList<>();
+		Header hdr = q.header();
+		for (Row row; null != (row = q.get(Dir.NEXT)); )
+			ids.add(row.getval(hdr, "id"));
+		return ids;
+	}
+
+}
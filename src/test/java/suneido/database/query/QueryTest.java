@@ -7,16 +7,22 @@ package suneido.database.query;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static suneido.database.query.Query.Dir.NEXT;
+import static suneido.database.query.Query.Dir.PREV;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 import org.junit.Test;
 
 import com.google.common.collect.Lists;
 
+import suneido.database.immudb.RecordBuilder;
 import suneido.database.immudb.Transaction;
 import suneido.database.query.Query.Dir;
 import suneido.runtime.Ops;
@@ -267,6 +273,169 @@ public class QueryTest extends TestBase {
 				"'i'	'intercon'	'saskatoon'\n");
 	}
 
+	@Test
+	public void parallel_summarize() {
+		adm("create par (k, g, v) key(k)");
+		Transaction t = db.updateTransaction();
+		for (int i = 0; i < 5000; ++i)
+			t.addRecord("par", new RecordBuilder().add(i).add(i % 7).add(i).build());
+		t.ck_complete();
+		int threshold = SummarizeStrategyPar.THRESHOLD;
+		try {
+			for (String query : new String[] {
+					"par summarize count, total v, max v, min v, average v",
+					"par summarize g, count, total v",
+					"par summarize v, count" }) {
+				SummarizeStrategyPar.THRESHOLD = 0;
+				String expected = run(query, "SUMMARIZE-PAR", false);
+				SummarizeStrategyPar.THRESHOLD = 1;
+				assertEquals(expected, run(query, "SUMMARIZE-PAR", true));
+			}
+		} finally {
+			SummarizeStrategyPar.THRESHOLD = threshold;
+		}
+	}
+
+	@Test
+	public void map_summarize() {
+		adm("create big (k, g, v) key(k)");
+		Transaction t = db.updateTransaction();
+		for (int i = 0; i < 1000; ++i)
+			t.addRecord("big", new RecordBuilder()
+					.add(i).add(999 - i).add(Integer.MAX_VALUE - i).build());
+		t.ck_complete();
+		test1("big summarize g, total v where g < 2",
+				"g	total_v\n" +
+				"0	2147482648\n" +
+				"1	2147482649\n");
+		test1("big summarize count, total v, average v, min v, max v",
+				"count	total_v	average_v	min_v	max_v\n" +
+				"1000	2147483147500	2147483147.5	2147482648	2147483647\n");
+		test1("big summarize g, count where g in (5, 998)",
+				"g	count\n" +
+				"5	1\n" +
+				"998	1\n");
+	}
+
+	@Test
+	public void sort_limit() {
+		adm("create top (k, v) key(k)");
+		Transaction t = db.updateTransaction();
+		for (int i = 0; i < 500; ++i)
+			t.addRecord("top", new RecordBuilder()
+					.add(i).add((i * 7919) % 500).build());
+		t.ck_complete();
+		limit("top sort v", NEXT, 1, "[0,0]");
+		limit("top sort v", PREV, 1, "[321,499]");
+		limit("top sort reverse v", NEXT, 1, "[321,499]");
+		limit("top sort v", NEXT, 2, "[0,0]");
+		limit("top where v > 100 sort v", NEXT, 1, "[79,101]");
+	}
+
+	@Test
+	public void select_filter() {
+		adm("create flt (k, a, b, c) key(k) index(a) index(b)");
+		Transaction t = db.updateTransaction();
+		String pad = "xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx";
+		for (int i = 0; i < 5000; ++i)
+			t.addRecord("flt", new RecordBuilder()
+					.add(i).add(i % 50).add(i % 70).add(pad).build());
+		t.ck_complete();
+		filter("flt where a = 3 and b = 5", "%(", 5000, i -> i % 50 == 3 && i % 70 == 5);
+		filter("flt where a = 3 or b = 5", "%((a)|(b))", 5000,
+				i -> i % 50 == 3 || i % 70 == 5);
+		filter("flt where a in (1, 2) or b > 65", "%((a)|(b))", 5000,
+				i -> i % 50 == 1 || i % 50 == 2 || i % 70 > 65);
+		filter("flt where a = 3 or c = 'x'", null, 5000, i -> i % 50 == 3);
+	}
+
+	/** filters are a snapshot so they aren't used by update transactions */
+	@Test
+	public void select_filter_update() {
+		adm("create flt (k, a, b, c) key(k) index(a) index(b)");
+		Transaction t = db.updateTransaction();
+		for (int i = 0; i < 5000; ++i)
+			t.addRecord("flt", new RecordBuilder()
+					.add(i).add(i % 50).add(i % 70).add("").build());
+		t.ck_complete();
+		t = db.updateTransaction();
+		try {
+			Query q = CompileQuery.query(t, serverData, "flt where a = 3 and b = 5");
+			assertEquals(0, count(q));
+			q.output(new RecordBuilder().add(9999).add(3).add(5).add("").build());
+			q.rewind();
+			assertEquals(1, count(q));
+		} finally {
+			t.complete();
+		}
+	}
+
+	private static int count(Query q) {
+		int n = 0;
+		while (q.get(NEXT) != null)
+			++n;
+		return n;
+	}
+
+	private void filter(String query, String strategy, int n,
+			IntPredicate pred) {
+		Transaction t = db.readTransaction();
+		try {
+			Query q = CompileQuery.query(t, serverData, query);
+			String s = q.toString();
+			if (strategy == null)
+				assertFalse(s, s.contains("%("));
+			else
+				assertTrue(s, s.contains(strategy));
+			List<Object> expected = Lists.newArrayList();
+			for (int i = 0; i < n; ++i)
+				if (pred.test(i))
+					expected.add(i);
+			for (Dir dir : Dir.values()) {
+				List<Object> keys = Lists.newArrayList();
+				Header hdr = q.header();
+				for (Row row; null != (row = q.get(dir)); )
+					keys.add(row.getval(hdr, "k"));
+				if (dir == PREV)
+					Collections.reverse(keys);
+				keys.sort((x, y) -> Ops.cmp(x, y));
+				assertEquals(expected, keys);
+				q.rewind();
+			}
+		} finally {
+			t.complete();
+		}
+	}
+
+	private void limit(String query, Dir dir, int n, String expected) {
+		Transaction t = db.readTransaction();
+		try {
+			Query q = CompileQuery.query(t, serverData, query);
+			q.limit(n);
+			Row row = q.get(dir);
+			Header hdr = q.header();
+			assertEquals(expected,
+					"[" + row.getval(hdr, "k") + "," + row.getval(hdr, "v") + "]");
+			assertTrue(q.toString(), q.toString().contains("TOP " + n));
+			if (n > 1)
+				assertNotNull(q.get(dir));
+		} finally {
+			t.complete();
+		}
+	}
+
+	private String run(String query, String strategy, boolean expected) {
+		Transaction t = db.readTransaction();
+		try {
+			Query q = CompileQuery.query(t, serverData, query);
+			Object result = execute(NEXT, q);
+			assertEquals(q.toString(), expected, q.toString().contains(strategy));
+			return result.toString();
+		} finally {
+			t.complete();
+		}
+	}
+
 	private void test1(String query, String result) {
 		one_way(Dir.NEXT, query, result);
 		one_way(Dir.PREV, query, result);
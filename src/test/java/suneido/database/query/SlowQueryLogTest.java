@@ -0,0 +1,83 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Test;
+
+import suneido.database.immudb.Transaction;
+import suneido.database.query.Query.Dir;
+
+public class SlowQueryLogTest extends TestBase {
+
+	@Test
+	public void disabled() {
+		makeDB();
+		Query q = query("customer");
+		assertNull(q.stats);
+	}
+
+	@Test
+	public void slow() throws Exception {
+		makeDB();
+		File file = File.createTempFile("slowquery", ".log");
+		String filename = SlowQueryLog.FILENAME;
+		SlowQueryLog.FILENAME = file.getPath();
+		SlowQueryLog.THRESHOLD_MS = 1000;
+		SlowQueryLog.clear();
+		try {
+			Query q = query("customer where city = 'saskatoon'");
+			while (q.get(Dir.NEXT) != null)
+				;
+			SlowQueryLog.finish(q);
+			assertEquals(0, SlowQueryLog.recent().size()); // not slow
+
+			q = query("customer where city = 'saskatoon'");
+			while (q.get(Dir.NEXT) != null)
+				;
+			q.stats.nanos += 2_000_000_000L; // pretend it was slow
+			SlowQueryLog.finish(q);
+			List<SlowQueryLog.Entry> recent = SlowQueryLog.recent();
+			assertEquals(1, recent.size());
+			SlowQueryLog.Entry e = recent.get(0);
+			assertEquals("customer where city = 'saskatoon'", e.query);
+			assertEquals(q.toString(), e.plan);
+			assertEquals(serverData.getSessionId(), e.session);
+			assertEquals(2, e.rows);
+			assertEquals(2, e.operations.size());
+			assertTrue(e.operations.get(0).startsWith("Select in 4 out 2 "));
+			assertTrue(e.operations.get(1).startsWith("  Table customer"));
+			assertTrue(e.operations.get(1).contains(" out 4 "));
+
+			SlowQueryLog.finish(q); // only logged once
+			assertEquals(1, SlowQueryLog.recent().size());
+
+			List<String> lines = Files.readAllLines(file.toPath());
+			assertEquals(1, lines.size());
+			assertTrue(lines.get(0).contains(
+					"\"query\":\"customer where city = 'saskatoon'\""));
+		} finally {
+			SlowQueryLog.THRESHOLD_MS = 0;
+			SlowQueryLog.FILENAME = filename;
+			SlowQueryLog.clear();
+			file.delete();
+		}
+	}
+
+	private Query query(String s) {
+		Transaction tran = db.readTransaction();
+		Query q = CompileQuery.query(tran, serverData, s);
+		q.setTransaction(tran);
+		return q;
+	}
+
+}
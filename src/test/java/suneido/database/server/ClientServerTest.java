@@ -4,13 +4,20 @@
 
 package suneido.database.server;
 
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.core.StringStartsWith.startsWith;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
 import suneido.SuContainer;
+import suneido.SuException;
 import suneido.TheDbms;
 import suneido.database.immudb.Dbpkg;
 import suneido.database.immudb.Record;
@@ -28,6 +35,33 @@ public class ClientServerTest {
 	private TestChannel channel;
 	private DbmsServer.DbmsServerHandler handler;
 
+	@Test
+	public void pipeline_errors() {
+		pipelineError(Command.PIPELINE, "can't be nested");
+		pipelineError(Command.COMPRESS, "can't contain COMPRESS");
+		pipelineError(null, "empty request");
+	}
+
+	/** @param cmd The sub-request, null for an empty one */
+	private static void pipelineError(Command cmd, String expected) {
+		MemChannel sub = new MemChannel();
+		if (cmd != null) {
+			SuChannel subio = new SuChannel(sub);
+			subio.putByte((byte) cmd.ordinal());
+			subio.write();
+		}
+		MemChannel req = new MemChannel();
+		SuChannel reqio = new SuChannel(req);
+		reqio.put(1).put(0).put(sub.output());
+		reqio.write();
+		try {
+			Command.PIPELINE.execute(new SuChannel(new MemChannel(req.output())));
+			fail();
+		} catch (SuException e) {
+			assertThat(e.toString(), containsString(expected));
+		}
+	}
+
 	@Test
 	public void test() {
 		TheDbms.set(Dbpkg.testdb()); // local dbms for server, used by Command
@@ -81,6 +115,24 @@ public class ClientServerTest {
 		hr = dbmsClient.get(Dir.NEXT, "tables where table = 999", false);
 		assertThat(hr, equalTo(null));
 
+		// PIPELINE of GET1
+		List<HeaderAndRow> hrs = dbmsClient.get(Dir.NEXT,
+				asList("tables", "tables where table = 999", "columns"), false);
+		assertThat(hrs.size(), equalTo(3));
+		assertThat(hrs.get(0).row.toString(), startsWith("[1,\"tables\"]"));
+		assertThat(hrs.get(1), equalTo(null));
+		assertThat(hrs.get(2).header.columns().toString(),
+				equalTo("[table, field, column]"));
+		try {
+			dbmsClient.get(Dir.NEXT, asList("tables", "nonexistent"), false);
+			fail();
+		} catch (SuException e) {
+			assertThat(e.toString(), containsString("nonexistent"));
+		}
+		// connection still usable
+		assertThat(dbmsClient.get(Dir.NEXT, "tables", false).row.toString(),
+				startsWith("[1,\"tables\"]"));
+
 		// GET1 with transaction, READCOUNT
 		t = dbmsClient.transaction(true);
 		hr = t.get(Dir.NEXT, "tables where tablename = 'tmp'", true);
@@ -118,6 +170,10 @@ public class ClientServerTest {
 		// LIBGET
 		assertThat(dbmsClient.libget("non-existant").toString(), equalTo("[]"));
 
+		// PIPELINE of LIBGET
+		assertThat(dbmsClient.libget(asList("foo", "bar")).toString(),
+				equalTo("[[], []]"));
+
 		// LIBRARIES
 		assertThat(dbmsClient.libraries().toString(), equalTo("[stdlib]"));
 
@@ -142,6 +198,28 @@ public class ClientServerTest {
 		hr = dbmsClient.get(Dir.NEXT, "tmp", false);
 		assertThat(hr.row.toString(), startsWith("[123,\"foo\"]"));
 
+		// OUTPUTS
+		t = dbmsClient.transaction(true);
+		q = t.query("tmp");
+		List<String> errors = q.output(asList(
+				new RecordBuilder().add(1).add("one").build(),
+				new RecordBuilder().add(123).add("dup").build(),
+				new RecordBuilder().add(2).add("two").build()), false);
+		assertThat(errors.size(), equalTo(3));
+		assertThat(errors.get(0), equalTo(null));
+		assertThat(errors.get(1), containsString("duplicate key"));
+		assertThat(errors.get(2), equalTo(null));
+		try {
+			q.output(asList(
+					new RecordBuilder().add(3).add("three").build(),
+					new RecordBuilder().add(1).add("dup").build()), true);
+			fail();
+		} catch (SuException e) {
+			assertThat(e.toString(), containsString("duplicate key"));
+		}
+		assertThat(t.writeCount(), equalTo(3));
+		t.abort();
+
 		// REQUEST
 		t = dbmsClient.transaction(true);
 		assertThat(t.request("update tmp set b = 'bar'"), equalTo(1));
@@ -174,6 +252,186 @@ public class ClientServerTest {
 		assertThat(hr.row.toString(), startsWith("[456,\"up\"]"));
 	}
 
+	@Test
+	public void getn() {
+		TheDbms.set(Dbpkg.testdb());
+		channel = new TestChannel(this::serverHandler);
+		handler = new DbmsServer.DbmsServerHandler(channel, new ServerDataSet());
+		DbmsClient dbmsClient = new DbmsClient(channel);
+
+		dbmsClient.admin("create many (a) key(a)");
+		DbmsTran t = dbmsClient.transaction(true);
+		DbmsQuery q = t.query("many");
+		for (int i = 0; i < 10; ++i)
+			q.output(new RecordBuilder().add(i).build());
+		assertThat(t.complete(), equalTo(null));
+
+		// batched rows with direction changes and eof
+		t = dbmsClient.transaction(false);
+		q = t.query("many");
+		getn(q, "++++++--+++++++++-----+--");
+		q.rewind();
+		getn(q, "---+++++++++++++--");
+		t.abort();
+
+		// a cursor in different transactions
+		q = dbmsClient.cursor("many");
+		for (int i = 0; i < 4; ++i) {
+			t = dbmsClient.transaction(false);
+			q.setTransaction(t);
+			assertThat(a(q.get(Dir.NEXT)), equalTo(i));
+			t.abort();
+		}
+		q.close();
+
+		// output discards buffered rows, server skips back over them
+		t = dbmsClient.transaction(true);
+		q = t.query("many");
+		assertThat(a(q.get(Dir.NEXT)), equalTo(0));
+		assertThat(a(q.get(Dir.NEXT)), equalTo(1));
+		q.output(new RecordBuilder().add(100).build());
+		for (int i = 2; i < 10; ++i)
+			assertThat(a(q.get(Dir.NEXT)), equalTo(i));
+		assertThat(q.get(Dir.NEXT), equalTo(null));
+		t.abort();
+	}
+
+	@Test
+	public void compressed() {
+		TheDbms.set(Dbpkg.testdb());
+		channel = new TestChannel(this::serverHandler);
+		handler = new DbmsServer.DbmsServerHandler(channel, new ServerDataSet());
+		int threshold = DeflateChannel.THRESHOLD;
+		DbmsClient.compress = true;
+		DeflateChannel.THRESHOLD = 20; // compress most requests
+		try {
+			long raw = DeflateChannel.rawBytes();
+			long sent = DeflateChannel.sentBytes();
+			DbmsClient dbmsClient = new DbmsClient(channel);
+			dbmsClient.admin("create tmp (a,b,C) key(a)");
+			DbmsTran t = dbmsClient.transaction(true);
+			DbmsQuery q = t.query("tmp");
+			for (int i = 0; i < 100; ++i)
+				q.output(new RecordBuilder().add(i)
+						.add("the quick brown fox " + i).build());
+			assertThat(t.complete(), equalTo(null));
+			t = dbmsClient.transaction(false);
+			q = t.query("tmp");
+			for (int i = 0; i < 100; ++i)
+				assertThat(q.get(Dir.NEXT).firstData().getString(1),
+						equalTo("the quick brown fox " + i));
+			assertThat(q.get(Dir.NEXT), equalTo(null));
+			t.abort();
+			raw = DeflateChannel.rawBytes() - raw;
+			sent = DeflateChannel.sentBytes() - sent;
+			assertThat(sent > 0 && sent < raw, equalTo(true));
+		} finally {
+			DbmsClient.compress = false;
+			DeflateChannel.THRESHOLD = threshold;
+		}
+	}
+
+	@Test
+	public void quotas() {
+		TheDbms.set(Dbpkg.testdb());
+		channel = new TestChannel(this::serverHandler);
+		handler = new DbmsServer.DbmsServerHandler(channel, new ServerDataSet());
+		DbmsClient dbmsClient = new DbmsClient(channel);
+		dbmsClient.admin("create tmp (a) key(a)");
+		int maxTrans = ServerData.MAX_TRANSACTIONS;
+		int maxCursors = ServerData.MAX_CURSORS;
+		ServerData.MAX_TRANSACTIONS = 2;
+		ServerData.MAX_CURSORS = 1;
+		try {
+			DbmsTran t1 = dbmsClient.transaction(false);
+			DbmsTran t2 = dbmsClient.transaction(false);
+			try {
+				dbmsClient.transaction(false);
+				fail();
+			} catch (SuException e) {
+				assertThat(e.toString(), containsString(
+						"too many transactions for session"));
+			}
+			t1.abort();
+			dbmsClient.transaction(false).abort(); // ok after one ends
+			t2.abort();
+
+			DbmsQuery c = dbmsClient.cursor("tmp");
+			try {
+				dbmsClient.cursor("tmp");
+				fail();
+			} catch (SuException e) {
+				assertThat(e.toString(), containsString("too many cursors"));
+			}
+			// the connection is still usable
+			assertThat(dbmsClient.cursors(), equalTo(1));
+			c.close();
+		} finally {
+			ServerData.MAX_TRANSACTIONS = maxTrans;
+			ServerData.MAX_CURSORS = maxCursors;
+		}
+	}
+
+	@Test
+	public void prepared() {
+		TheDbms.set(Dbpkg.testdb());
+		channel = new TestChannel(this::serverHandler);
+		handler = new DbmsServer.DbmsServerHandler(channel, new ServerDataSet());
+		DbmsClient dbmsClient = new DbmsClient(channel);
+		dbmsClient.admin("create many (a) key(a)");
+		DbmsTran t = dbmsClient.transaction(true);
+		DbmsQuery q = t.query("many");
+		for (int i = 0; i < 10; ++i)
+			q.output(new RecordBuilder().add(i).build());
+		assertThat(t.complete(), equalTo(null));
+
+		int pn = dbmsClient.prepare("many where a > $1 and a < $2");
+		for (int i = 0; i < 3; ++i) {
+			t = dbmsClient.transaction(false);
+			q = t.execute(pn, Arrays.asList(i, i + 3));
+			assertThat(a(q.get(Dir.NEXT)), equalTo(i + 1));
+			assertThat(a(q.get(Dir.NEXT)), equalTo(i + 2));
+			assertThat(q.get(Dir.NEXT), equalTo(null));
+			q.close();
+			t.complete();
+		}
+		t = dbmsClient.transaction(false);
+		try {
+			t.execute(pn, Arrays.asList(1));
+			fail();
+		} catch (SuException e) {
+			assertThat(e.toString(), containsString("expected 2 parameters"));
+		}
+		dbmsClient.unprepare(pn);
+		try {
+			t.execute(pn, Arrays.asList(1, 2));
+			fail();
+		} catch (SuException e) {
+			assertThat(e.toString(), containsString("prepared query not found"));
+		}
+		t.abort();
+	}
+
+	/** compare with single row semantics where eof rewinds */
+	private static void getn(DbmsQuery q, String dirs) {
+		Integer cur = null;
+		for (char c : dirs.toCharArray()) {
+			Dir dir = (c == '+') ? Dir.NEXT : Dir.PREV;
+			if (dir == Dir.NEXT)
+				cur = (cur == null) ? 0 : cur + 1;
+			else
+				cur = (cur == null) ? 9 : cur - 1;
+			if (cur < 0 || cur > 9)
+				cur = null;
+			Row row = q.get(dir);
+			assertThat(row == null ? null : a(row), equalTo(cur));
+		}
+	}
+
+	private static int a(Row row) {
+		return row.firstData().getInt(0);
+	}
+
 	private void serverHandler() {
 		// not request because we don't want threads
 		if (handler != null) // needed to handle initial greeting
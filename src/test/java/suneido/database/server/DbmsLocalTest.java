@@ -4,16 +4,29 @@
 
 package suneido.database.server;
 
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static suneido.util.testing.Throwing.assertThrew;
+
+import java.util.List;
 
 import org.junit.Test;
 
+import suneido.SuException;
+import suneido.Suneido;
+import suneido.compiler.Compiler;
 import suneido.database.immudb.Dbpkg;
+import suneido.database.immudb.Record;
 import suneido.database.immudb.RecordBuilder;
 import suneido.database.query.Header;
 import suneido.database.query.Query.Dir;
 import suneido.database.query.Row;
 import suneido.database.server.Dbms.HeaderAndRow;
+import suneido.database.server.Dbms.LibGet;
+import suneido.runtime.Pack;
 
 public class DbmsLocalTest {
 	@Test
@@ -38,4 +51,69 @@ public class DbmsLocalTest {
 		t2.complete();
 		assertEquals(6, row.getval(hdr, "c"));
 	}
+
+	@Test
+	public void libget() {
+		Dbms dbms = new DbmsLocal(Dbpkg.testdb());
+		dbms.admin("create stdlib (name, group, text) key(name, group)");
+		DbmsTran t = dbms.transaction(true);
+		t.request("insert { name: 'Foo', group: -1, text: 'one' } into stdlib");
+		t.complete();
+
+		assertEquals("[stdlib one]", libget(dbms, "Foo"));
+		assertEquals("[]", libget(dbms, "Bar"));
+		assertEquals("[stdlib one]", libget(dbms, "Foo")); // cached
+
+		// commit to library table invalidates the cache
+		t = dbms.transaction(true);
+		t.request("update stdlib where name = 'Foo' set text = 'two'");
+		t.request("insert { name: 'Bar', group: -1, text: 'three' } into stdlib");
+		t.complete();
+		assertEquals("[stdlib two]", libget(dbms, "Foo"));
+
+		List<List<LibGet>> lists = dbms.libget(asList("Foo", "Baz", "Bar"));
+		assertEquals(3, lists.size());
+		assertEquals("[stdlib two]", toString(lists.get(0)));
+		assertEquals("[]", toString(lists.get(1)));
+		assertEquals("[stdlib three]", toString(lists.get(2)));
+	}
+
+	@Test
+	public void output_trigger_error() {
+		Dbms dbms = new DbmsLocal(Dbpkg.testdb());
+		dbms.admin("create otest (a) key(a)");
+		Suneido.context.set("Trigger_otest", Compiler.compile("Trigger_otest",
+				"function (t, oldrec, newrec) { if newrec.a is 3 throw 'bad' }"));
+		try {
+			DbmsTran t = dbms.transaction(true);
+			DbmsQuery q = t.query("otest");
+			// duplicate key is detected before writing so it is skipped
+			List<String> errors = q.output(asList(rec(1), rec(1), rec(2)), false);
+			assertNull(errors.get(0));
+			assertTrue(errors.get(1).contains("duplicate key"));
+			assertNull(errors.get(2));
+			// trigger fails after writing so the transaction is aborted
+			assertThrew(() -> q.output(asList(rec(4), rec(3)), false), SuException.class,
+					"output aborted transaction");
+			assertTrue(t.isEnded());
+			assertNull(dbms.get(Dir.NEXT, "otest", false));
+		} finally {
+			Suneido.context.clear("Trigger_otest");
+		}
+	}
+
+	private static Record rec(int a) {
+		return new RecordBuilder().add(a).build();
+	}
+
+	private static String libget(Dbms dbms, String name) {
+		return toString(dbms.libget(name));
+	}
+
+	private static String toString(List<LibGet> list) {
+		return list.stream()
+				.map(x -> x.library + " " + Pack.unpack(x.text))
+				.collect(toList()).toString();
+	}
+
 }
@@ -0,0 +1,57 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.server;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ServerDataTest {
+	private final int maxRequests = ServerData.MAX_REQUESTS_PER_SEC;
+	private final long maxTempIndex = ServerData.MAX_TEMP_INDEX_MEMORY;
+
+	@After
+	public void restore() {
+		ServerData.MAX_REQUESTS_PER_SEC = maxRequests;
+		ServerData.MAX_TEMP_INDEX_MEMORY = maxTempIndex;
+	}
+
+	@Test
+	public void throttle() {
+		ServerData sd = new ServerData();
+		ServerData.MAX_REQUESTS_PER_SEC = 0;
+		for (int i = 0; i < 100; ++i)
+			assertEquals(0, sd.throttle(0));
+
+		ServerData.MAX_REQUESTS_PER_SEC = 10; // 100 ms apart
+		long now = 5_000_000_000L;
+		for (int i = 0; i < 11; ++i) // the current one plus a one second burst
+			assertEquals(0, sd.throttle(now));
+		assertEquals(100_000_000L, sd.throttle(now));
+		assertEquals(200_000_000L, sd.throttle(now));
+		// after idling the burst is available again
+		now += 2_000_000_000L;
+		assertEquals(0, sd.throttle(now));
+		assertEquals(2, sd.usage().get("throttled"));
+	}
+
+	@Test
+	public void tempIndexMemory() {
+		ServerData sd = new ServerData();
+		long mb = 1024 * 1024;
+		ServerData.MAX_TEMP_INDEX_MEMORY = 100 * mb;
+		assertEquals(64 * mb, sd.reserveTempIndexMemory(64 * mb));
+		assertEquals(36 * mb, sd.reserveTempIndexMemory(64 * mb));
+		// over quota still gets the minimum
+		assertEquals(ServerData.MIN_TEMP_INDEX_MEMORY,
+				sd.reserveTempIndexMemory(64 * mb));
+		sd.releaseTempIndexMemory(64 * mb);
+		sd.releaseTempIndexMemory(36 * mb);
+		sd.releaseTempIndexMemory(ServerData.MIN_TEMP_INDEX_MEMORY);
+		assertEquals(0, sd.usage().get("tempIndexMb"));
+	}
+
+}
@@ -0,0 +1,44 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.database.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ServerExecutorTest {
+
+	@Test
+	public void latency() {
+		ServerExecutor executor = new ServerExecutor(1);
+		assertEquals(0, executor.quantile(Command.GET, .5));
+		for (int i = 0; i < 90; ++i)
+			executor.record(Command.GET, 100_000); // 100 us
+		for (int i = 0; i < 10; ++i)
+			executor.record(Command.GET, 10_000_000); // 10 ms
+		assertEquals(100, executor.count(Command.GET));
+		assertEquals(0, executor.count(Command.GET1));
+		assertEquals(90 * 100_000L + 10 * 10_000_000L,
+				executor.totalNanos(Command.GET));
+		assertEquals(128, executor.quantile(Command.GET, .5));
+		assertEquals(16384, executor.quantile(Command.GET, .99));
+	}
+
+	@Test
+	public void buffers() {
+		ServerExecutor executor = new ServerExecutor(1);
+		ByteBuffer buf = executor.getBuffer();
+		assertEquals(SuChannel.BUFSIZE, buf.capacity());
+		buf.put((byte) 1);
+		executor.putBuffer(buf);
+		ByteBuffer buf2 = executor.getBuffer();
+		assertSame(buf, buf2);
+		assertEquals(0, buf2.position());
+	}
+
+}
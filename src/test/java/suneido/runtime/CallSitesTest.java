@@ -0,0 +1,138 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static suneido.compiler.Compiler.eval;
+import static suneido.compiler.ExecuteTest.def;
+import static suneido.util.testing.Benchmark.benchmark;
+
+import org.junit.Test;
+
+import suneido.SuValue;
+import suneido.Suneido;
+
+public class CallSitesTest {
+
+	/** one call site that sees more receiver types than it caches */
+	@Test
+	public void polymorphic() {
+		int n = CallSites.MAX_DEPTH + 2;
+		for (int i = 0; i < n; ++i)
+			def("Cs" + i, "class { M(x) { " + i + " + x } }");
+		def("CsCall", "function (x) { x.M(100) }");
+		for (int rep = 0; rep < 3; ++rep)
+			for (int i = 0; i < n; ++i) {
+				assertEquals(100 + i, eval("CsCall(Cs" + i + "())"));
+				assertEquals(100 + i, eval("CsCall(Cs" + i + ")"));
+			}
+	}
+
+	@Test
+	public void builtin() {
+		def("CsSize", "function (x) { x.Size() }");
+		for (int rep = 0; rep < 2; ++rep) {
+			assertEquals(3, eval("CsSize('abc')"));
+			assertEquals(2, eval("CsSize(#(1, 2))"));
+			assertEquals(1, eval("CsSize(#{a: 1})"));
+			assertEquals(0, eval("CsSize('')"));
+		}
+	}
+
+	@Test
+	public void default_method() {
+		def("CsDef", "class { Default(@args) { args[0] } }");
+		def("CsCall", "function (x) { x.Foo() }");
+		assertEquals("Foo", eval("CsCall(CsDef())"));
+		assertEquals("Foo", eval("CsCall(CsDef())"));
+	}
+
+	/** changing a base class must relink callers of derived classes */
+	@Test
+	public void invalidate_method() {
+		def("CsBase", "class { M() { 1 } }");
+		def("CsDerived", "CsBase { }");
+		def("CsCall", "function (x) { x.M() }");
+		assertEquals(1, eval("CsCall(CsDerived())"));
+		assertEquals(1, eval("CsCall(CsDerived())"));
+		def("CsBase", "class { M() { 2 } }");
+		assertEquals(2, eval("CsCall(CsDerived())"));
+		Suneido.context.clear("CsBase");
+		def("CsBase", "class { M() { 3 } }");
+		assertEquals(3, eval("CsCall(CsDerived())"));
+	}
+
+	@Test
+	public void invalidate_global() {
+		def("CsG", "function (x) { x + 1 }");
+		def("CsCall", "function () { CsG(1) }");
+		assertEquals(2, eval("CsCall()"));
+		assertEquals(2, eval("CsCall()"));
+		def("CsG", "function (x) { x + 2 }");
+		assertEquals(3, eval("CsCall()"));
+	}
+
+	/** subclasses of SuInstance may override lookup and get */
+	@Test
+	public void instance_subclass() {
+		def("CsCls", "class { M() { 'plain' } }");
+		def("CsOther", "class { M() { 'override' } }");
+		SuValue f = (SuValue) eval("function (x) { x.M() $ ' ' $ x.y }");
+		SuClass c = (SuClass) Suneido.context.get("CsCls");
+		SuInstance plain = new SuInstance(c);
+		plain.put("y", "plain");
+		SuInstance sub = new SuInstance(c) {
+			@Override
+			public SuValue lookup(String method) {
+				return method.equals("M")
+						? ((SuClass) Suneido.context.get("CsOther")).lookup(method)
+						: super.lookup(method);
+			}
+			@Override
+			public Object get(Object member) {
+				return "override";
+			}
+		};
+		for (int rep = 0; rep < 2; ++rep) {
+			assertEquals("plain plain", f.call1(plain));
+			assertEquals("override override", f.call1(sub));
+		}
+	}
+
+	@Test
+	public void members() {
+		int n = CallSites.MAX_DEPTH + 2;
+		for (int i = 0; i < n; ++i)
+			def("Cs" + i, "class { New() { .b = " + i + "; .a = 0 } " +
+					"K: 'k' Get() { .a += .b; ++.a; .a } }");
+		for (int rep = 0; rep < 3; ++rep)
+			for (int i = 0; i < n; ++i) {
+				assertEquals(1 + i, eval("Cs" + i + "().Get()"));
+				assertEquals("k", eval("Cs" + i + "().K"));
+			}
+		def("CsM", "function (x) { x.a }");
+		assertEquals(123, eval("CsM(#(a: 123))"));
+		assertEquals(456, eval("CsM(Object(a: 456))"));
+	}
+
+	@Test
+	public void benchmark_member() {
+		def("CsBench", "class { New() { .x = 0 } " +
+				"M(n) { for (i = 0; i < n; ++i) .x = .x + 1 } }");
+		Object x = eval("CsBench()");
+		benchmark("member get and put", (long nreps) ->
+				Ops.invoke1(x, "M", (int) nreps));
+	}
+
+	@Test
+	public void benchmark_method() {
+		def("CsBench", "class { M(x) { x } }");
+		SuValue f = (SuValue) eval("function (x, n) " +
+				"{ for (i = 0; i < n; ++i) x.M(i) }");
+		Object x = eval("CsBench()");
+		benchmark("method call", (long nreps) -> f.call2(x, (int) nreps));
+	}
+
+}
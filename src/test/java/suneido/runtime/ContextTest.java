@@ -0,0 +1,159 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static suneido.util.testing.Benchmark.benchmark;
+import static suneido.util.testing.Throwing.assertThrew;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.Test;
+
+import suneido.SuException;
+
+public class ContextTest {
+
+	/** values are the name plus the number of times it has been fetched */
+	private static class TestContext extends Context {
+		int nfetch = 0;
+		CountDownLatch fetching;
+		CountDownLatch proceed;
+
+		TestContext() {
+			super(new Contexts());
+		}
+
+		@Override
+		protected Object fetch(String name) {
+			++nfetch;
+			if (fetching != null) {
+				fetching.countDown();
+				try {
+					proceed.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			if (name.startsWith("Missing"))
+				return null;
+			if (name.startsWith("Recurse"))
+				return tryget(name) == null ? name : "wrong";
+			return name + nfetch;
+		}
+	}
+
+	@Test
+	public void cache() {
+		TestContext c = new TestContext();
+		int slot = c.slotForName("Foo");
+		assertEquals(slot, c.slotForName("Foo"));
+		assertEquals("Foo1", c.get(slot));
+		assertEquals("Foo1", c.get("Foo"));
+		assertEquals(1, c.nfetch);
+		c.clear("Foo");
+		assertEquals("Foo2", c.get(slot));
+		c.clearAll();
+		assertEquals("Foo3", c.get(slot));
+		c.set("Foo", "bar");
+		assertEquals("bar", c.get(slot));
+	}
+
+	@Test
+	public void missing() {
+		TestContext c = new TestContext();
+		assertNull(c.tryget("Missing"));
+		assertThrew(() -> c.get("Missing"), SuException.class,
+				"can't find Missing");
+		assertEquals(1, c.nfetch); // failure is cached
+	}
+
+	@Test
+	public void recursive() {
+		TestContext c = new TestContext();
+		assertEquals("Recurse", c.get("Recurse"));
+	}
+
+	@Test
+	public void grow() {
+		TestContext c = new TestContext();
+		int first = c.slotForName("A");
+		assertEquals("A1", c.get(first));
+		for (int i = 0; i < 5000; ++i)
+			assertEquals("X" + i + (i + 2), c.get("X" + i));
+		assertEquals("A1", c.get(first));
+	}
+
+	/** other threads must wait for a fetch, not see it as missing */
+	@Test
+	public void concurrent_fetch() throws Exception {
+		TestContext c = new TestContext();
+		int slot = c.slotForName("Foo");
+		c.fetching = new CountDownLatch(1);
+		c.proceed = new CountDownLatch(1);
+		ExecutorService exec = Executors.newFixedThreadPool(2);
+		try {
+			Future<Object> f1 = exec.submit(() -> c.get(slot));
+			c.fetching.await();
+			Future<Object> f2 = exec.submit(() -> c.get(slot));
+			Thread.sleep(10);
+			c.proceed.countDown();
+			assertEquals("Foo1", f1.get());
+			assertEquals("Foo1", f2.get());
+			assertEquals(1, c.nfetch);
+		} finally {
+			exec.shutdown();
+		}
+	}
+
+	private static final int NTHREADS = 16;
+	private static final int NGLOBALS = 100;
+
+	/**
+	 * Many threads reading cached globals, the common case.
+	 * Each rep is one get by each of the threads,
+	 * so with no contention and enough cores
+	 * it should be about the same as a single get.
+	 */
+	@Test
+	public void benchmark_contention() {
+		TestContext c = new TestContext();
+		int[] slots = new int[NGLOBALS];
+		for (int i = 0; i < NGLOBALS; ++i)
+			c.get(slots[i] = c.slotForName("G" + i));
+		ThreadPoolExecutor exec =
+				(ThreadPoolExecutor) Executors.newFixedThreadPool(NTHREADS);
+		exec.prestartAllCoreThreads();
+		try {
+			benchmark("context get, " + NTHREADS + " threads", (long nreps) -> {
+				List<Future<?>> fs = new ArrayList<>();
+				for (int t = 0; t < NTHREADS; ++t)
+					fs.add(exec.submit(() -> {
+						int nfound = 0;
+						for (long n = nreps; n > 0; --n)
+							if (c.get(slots[(int) (n % NGLOBALS)]) != null)
+								++nfound;
+						return nfound;
+					}));
+				for (Future<?> f : fs)
+					try {
+						f.get();
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+			});
+		} finally {
+			exec.shutdownNow();
+		}
+	}
+
+}
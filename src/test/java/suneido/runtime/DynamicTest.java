@@ -0,0 +1,84 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static suneido.compiler.Compiler.eval;
+import static suneido.compiler.ExecuteTest.def;
+import static suneido.util.testing.Benchmark.benchmark;
+
+import org.junit.Test;
+
+import suneido.SuValue;
+
+public class DynamicTest {
+
+	@Test
+	public void env() {
+		Dynamic.Env env = Dynamic.env();
+		int a = Dynamic.slot("_dta");
+		int b = Dynamic.slot("_dtb");
+		assertEquals(a, Dynamic.slot("_dta"));
+		env.push();
+		env.put(a, 1);
+		env.put(a, 2); // only saved once per frame
+		env.push();
+		env.put(a, 3);
+		env.put(b, 4);
+		assertEquals(3, env.get(a));
+		env.pop();
+		assertEquals(2, env.get(a));
+		assertNull(env.getOrNull(b));
+		env.put(a, 5);
+		env.push();
+		env.pop();
+		assertEquals(5, env.get(a));
+		env.pop();
+		assertNull(env.getOrNull(a));
+	}
+
+	@Test
+	public void compiled() {
+		def("DtGet", "function () { _dtx }");
+		def("DtSet", "function (x) { _dtx = x; DtGet() }");
+		assertEquals(12, eval("_dtx = 1; DtSet(12) + _dtx - 1"));
+		assertEquals("uninitialized _dtx",
+				eval("try return DtGet() catch (e) return e").toString());
+		// popped when an exception is thrown
+		def("DtThrow", "function () { _dtx = 2; throw 'x' }");
+		assertEquals(1, eval("_dtx = 1; try DtThrow() catch ; _dtx"));
+		// set in a block, visible to the functions it calls
+		assertEquals(3, eval("_dtx = 1; b = { _dtx = 3; DtGet() }; b()"));
+		assertEquals(4, eval("_dtx = 4; b = { DtGet() }; b()"));
+		assertEquals(6, eval("_dtx = 1; _dtx += 4; ++_dtx; _dtx--"));
+	}
+
+	private static final int DEPTH = 20;
+
+	@Test
+	public void benchmark_get() {
+		def("DtDeep", "function (n, reps) " +
+				"{ if n > 0 { return DtDeep(n - 1, reps) } " +
+				"for (i = 0; i < reps; ++i) _dt1; _dt1 }");
+		StringBuilder sb = new StringBuilder("function (reps) {\n");
+		for (int i = 1; i <= 10; ++i)
+			sb.append("_dt" + i + " = " + i + "\n");
+		sb.append("DtDeep(" + DEPTH + ", reps) }");
+		SuValue f = (SuValue) eval(sb.toString());
+		assertEquals(1, f.call1(1));
+		benchmark("dynamic get", (long nreps) -> f.call1((int) nreps));
+	}
+
+	@Test
+	public void benchmark_push_pop() {
+		def("DtSet2", "function () { _dtx = 1; _dty = 2 }");
+		SuValue f = (SuValue) eval("function (n) " +
+				"{ for (i = 0; i < n; ++i) DtSet2() }");
+		f.call1(1000); // warmup
+		benchmark("dynamic push/set/pop", (long nreps) -> f.call1((int) nreps));
+	}
+
+}
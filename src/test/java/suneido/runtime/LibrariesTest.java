@@ -4,12 +4,19 @@
 
 package suneido.runtime;
 
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import org.junit.Test;
 
 import suneido.Suneido;
+import suneido.TheDbms;
 import suneido.compiler.Compiler;
+import suneido.database.immudb.Dbpkg;
+import suneido.database.server.Dbms;
+import suneido.database.server.DbmsTran;
 import suneido.runtime.Ops;
 
 public class LibrariesTest {
@@ -30,4 +37,36 @@ public class LibrariesTest {
 		assertEquals(123, x);
 	}
 
+	/** methods that use _Name can't be compiled lazily */
+	@Test
+	public void overload_method() {
+		// simulate loading Y from two libraries like ContextLayered.libget
+		Suneido.context.set("Y", Compiler.compile("Y",
+				"class { CallClass() { 'base' } }"));
+		Object c = Compiler.compile("Y", "class { F() { _Y() $ '+override' } }");
+		Suneido.context.set("Y", c);
+		assertEquals("base+override", Ops.invoke(c, "F"));
+		Suneido.context.clear("Y");
+	}
+
+	@Test
+	public void preload() {
+		TheDbms.set(Dbpkg.testdb());
+		Dbms dbms = TheDbms.dbms();
+		dbms.admin("create stdlib (name, group, text) key(name, group)");
+		DbmsTran t = dbms.transaction(true);
+		t.request("insert { name: 'PreA', group: -1, " +
+				"text: 'function () { PreB() + 1 }' } into stdlib");
+		t.request("insert { name: 'PreB', group: -1, " +
+				"text: 'function () { 122 }' } into stdlib");
+		t.complete();
+		ContextLayered context = new ContextLayered(new Contexts());
+		context.preload(asList("PreA", "PreB", "PreC", "Object"));
+		assertNotNull(context.peek("PreA"));
+		assertNotNull(context.peek("PreB"));
+		assertNull(context.peek("PreC"));
+		assertNull(context.peek("Object")); // builtin
+		assertEquals(123, Ops.call(context.get("PreA")));
+	}
+
 }
@@ -241,6 +241,16 @@ public class OpsTest {
 		assertEquals(Dnum.from(Integer.MAX_VALUE + 1L), add(Integer.MAX_VALUE, 1));
 		assertEquals(Dnum.from(Integer.MAX_VALUE + 1L), sub(Integer.MAX_VALUE, -1));
 		assertEquals(Dnum.from(Integer.MAX_VALUE * 10L), mul(Integer.MAX_VALUE, 10));
+		assertEquals(Dnum.from(Integer.MIN_VALUE - 1L), sub(Integer.MIN_VALUE, 1));
+		assertEquals(Dnum.from(Integer.MAX_VALUE + 1L), add1(Integer.MAX_VALUE));
+		assertEquals(Dnum.from(Integer.MIN_VALUE - 1L), sub1(Integer.MIN_VALUE));
+		assertEquals(Dnum.from(Integer.MAX_VALUE + 1L), addInt(Integer.MAX_VALUE, 1));
+		assertEquals(Dnum.from(Integer.MIN_VALUE - 1L), subInt(Integer.MIN_VALUE, 1));
+		assertEquals(Dnum.from(Integer.MIN_VALUE * 2L), mulInt(Integer.MIN_VALUE, 2));
+		assertEquals(Integer.MAX_VALUE, add(Integer.MAX_VALUE - 1, 1));
+		assertEquals(Integer.MIN_VALUE, addInt(Integer.MIN_VALUE + 1, -1));
+		assertEquals(Dnum.parse("1.5"), addInt(Dnum.parse(".5"), 1));
+		assertEquals(add("", 1), addInt("", 1));
 	}
 
 	private static final Object p1 = Dnum.from(1);
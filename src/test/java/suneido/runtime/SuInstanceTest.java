@@ -5,9 +5,13 @@
 package suneido.runtime;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 
 import org.junit.Test;
 
+import suneido.SuContainer;
+
 /**
  * Test for {@link SuInstance}.
  *
@@ -29,4 +33,50 @@ public class SuInstanceTest {
 		assertEquals(a1, a2);
 		assertEquals(a1.hashCode(), a2.hashCode());
 	}
+
+	@Test
+	public void slots() {
+		SuClass c = new SuClass("", "c", null, null);
+		SuInstance x = new SuInstance(c);
+		x.put("a", 1);
+		x.put("b", 2);
+		assertEquals(2, c.layout.size());
+		assertEquals(1, x.get("a"));
+		SuInstance y = new SuInstance(c);
+		assertNull(y.getSlot(c.layout.slot("b")));
+		y.put("b", 2);
+		y.put("a", 1);
+		assertEquals(2, c.layout.size());
+		assertEquals(x, y);
+		SuInstance.Delete(y, "a", FunctionSpec.NA);
+		assertEquals(1, SuInstance.Size(y));
+		assertEquals(false, SuInstance.MemberQ(y, "a"));
+		assertNotEquals(x, y);
+		SuInstance z = new SuInstance(x);
+		z.put("a", 3);
+		assertEquals(1, x.get("a"));
+		assertEquals(3, z.get("a"));
+	}
+
+	/** members past the layout limit are kept in a map */
+	@Test
+	public void overflow() {
+		SuClass c = new SuClass("", "c", null, null);
+		SuInstance x = new SuInstance(c);
+		int n = Layout.MAX_SLOTS + 10;
+		for (int i = 0; i < n; ++i)
+			x.put("m" + i, i);
+		assertEquals(Layout.MAX_SLOTS, c.layout.size());
+		assertEquals(n, SuInstance.Size(x));
+		for (int i = 0; i < n; ++i)
+			assertEquals(i, x.get("m" + i));
+		SuContainer members = SuInstance.Members(x, false);
+		assertEquals(n, members.size());
+		SuInstance.Delete(x, "m" + (n - 1), FunctionSpec.NA);
+		SuInstance.Delete(x, "m0", FunctionSpec.NA);
+		assertEquals(n - 2, SuInstance.Size(x));
+		SuInstance.Delete(x, FunctionSpec.NA, true);
+		assertEquals(0, SuInstance.Size(x));
+	}
+
 }
@@ -0,0 +1,25 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.runtime.builtin;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import suneido.TheDbms;
+import suneido.compiler.Compiler;
+import suneido.database.immudb.Dbpkg;
+
+public class QueryFirstsTest {
+
+	@Test
+	public void test() {
+		TheDbms.set(Dbpkg.testdb());
+		assertEquals("#([table: 1, tablename: \"tables\"], false)",
+				Compiler.eval("QueryFirsts(#('tables', " +
+						"'tables where table = 999'))").toString());
+	}
+
+}
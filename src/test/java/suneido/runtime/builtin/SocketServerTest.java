@@ -0,0 +1,26 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.runtime.builtin;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import suneido.SuContainer;
+import suneido.compiler.Compiler;
+import suneido.runtime.SuClass;
+
+public class SocketServerTest {
+
+	/** the master's members are shared by the connection threads */
+	@Test
+	public void master_concurrent() {
+		SuClass c = (SuClass) Compiler.compile("SocketServerTestCls",
+				"class { New() { .Ob = Object() } }");
+		SocketServer.Master m = new SocketServer.Master(c, new Object[0]);
+		assertTrue(((SuContainer) m.get("Ob")).isConcurrent());
+	}
+
+}
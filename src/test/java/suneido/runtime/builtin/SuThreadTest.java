@@ -0,0 +1,33 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.runtime.builtin;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import suneido.SuContainer;
+import suneido.Suneido;
+import suneido.compiler.Compiler;
+import suneido.runtime.SuBoundMethod;
+import suneido.runtime.SuInstance;
+
+public class SuThreadTest {
+
+	@Test
+	public void setConcurrent_bound_method() {
+		Suneido.context.set("ThreadTestCls", Compiler.compile("ThreadTestCls",
+				"class { New() { .Ob = Object() } Run() { .Ob.Add(1) } }"));
+		try {
+			SuBoundMethod bm = (SuBoundMethod) Compiler.eval("ThreadTestCls().Run");
+			SuThread.setConcurrent(bm);
+			SuInstance x = (SuInstance) bm.instance;
+			assertTrue(((SuContainer) x.get("Ob")).isConcurrent());
+		} finally {
+			Suneido.context.clear("ThreadTestCls");
+		}
+	}
+
+}
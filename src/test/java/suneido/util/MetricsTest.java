@@ -0,0 +1,73 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import suneido.util.Metrics.Counter;
+import suneido.util.Metrics.Histogram;
+
+public class MetricsTest {
+
+	@Test
+	public void bucket() {
+		assertEquals(0, Histogram.bucket(0));
+		assertEquals(0, Histogram.bucket(999));
+		assertEquals(1, Histogram.bucket(1000));
+		assertEquals(2, Histogram.bucket(2000));
+		assertEquals(2, Histogram.bucket(3999));
+		assertEquals(Histogram.NBUCKETS - 1, Histogram.bucket(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void counter() {
+		Counter c = Metrics.counter("test_counter_total", "a test", "x", "1");
+		c.inc();
+		c.add(2);
+		assertSame(c, Metrics.counter("test_counter_total", "a test", "x", "1"));
+		assertEquals(3, c.get());
+		Metrics.counter("test_counter_total", "a test", "x", "2").inc();
+		String s = Metrics.prometheus();
+		assertTrue(s.contains("# HELP test_counter_total a test\n" +
+				"# TYPE test_counter_total counter\n" +
+				"test_counter_total{x=\"1\"} 3\n" +
+				"test_counter_total{x=\"2\"} 1\n"));
+	}
+
+	@Test
+	public void gauge() {
+		Metrics.gauge("test_gauge", "a gauge", () -> 123);
+		assertTrue(Metrics.prometheus().contains("\ntest_gauge 123\n"));
+	}
+
+	@Test
+	public void histogram() {
+		Histogram h = Metrics.histogram("test_seconds", "latency", "op", "a\"b");
+		assertEquals(0, h.quantile(.5));
+		h.record(1500); // 1.5 us
+		h.record(3_000_000); // 3 ms
+		assertEquals(2, h.count());
+		assertEquals(2, h.quantile(.5));
+		assertEquals(4096, h.quantile(1));
+		String s = Metrics.prometheus();
+		assertTrue(s.contains("# TYPE test_seconds histogram\n" +
+				"test_seconds_bucket{op=\"a\\\"b\",le=\"1.0E-6\"} 0\n" +
+				"test_seconds_bucket{op=\"a\\\"b\",le=\"2.0E-6\"} 1\n"));
+		assertTrue(s.contains("test_seconds_bucket{op=\"a\\\"b\",le=\"+Inf\"} 2\n" +
+				"test_seconds_sum{op=\"a\\\"b\"} 0.0030015\n" +
+				"test_seconds_count{op=\"a\\\"b\"} 2\n"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void type_mismatch() {
+		Metrics.counter("test_mismatch", "x");
+		Metrics.histogram("test_mismatch", "x");
+	}
+
+}
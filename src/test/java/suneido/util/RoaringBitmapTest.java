@@ -0,0 +1,98 @@
+/* Copyright 2026 (c) Suneido Software Corp. All rights reserved.
+ * Licensed under GPLv2.
+ */
+
+package suneido.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class RoaringBitmapTest {
+	private final Random rand = new Random(1234);
+
+	@Test
+	public void empty() {
+		RoaringBitmap rb = new RoaringBitmap();
+		assertTrue(rb.isEmpty());
+		assertEquals(0, rb.cardinality());
+		assertFalse(rb.contains(0));
+		assertTrue(rb.and(rb).isEmpty());
+		assertTrue(rb.or(rb).isEmpty());
+	}
+
+	@Test
+	public void add_contains() {
+		RoaringBitmap rb = new RoaringBitmap();
+		rb.add(5);
+		rb.add(5);
+		rb.add(-1); // unsigned so in the last container
+		rb.add(1 << 20);
+		assertEquals(3, rb.cardinality());
+		assertTrue(rb.contains(5));
+		assertTrue(rb.contains(-1));
+		assertTrue(rb.contains(1 << 20));
+		assertFalse(rb.contains(6));
+		assertFalse(rb.contains((1 << 20) + 5));
+	}
+
+	@Test
+	public void sparse() {
+		check(2000, Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void dense() {
+		// enough values per container to use bitmaps
+		check(50_000, 1 << 18);
+	}
+
+	@Test
+	public void mixed() {
+		check(20_000, 1 << 17);
+	}
+
+	private void check(int n, int range) {
+		Set<Integer> set1 = new HashSet<>();
+		Set<Integer> set2 = new HashSet<>();
+		RoaringBitmap rb1 = new RoaringBitmap();
+		RoaringBitmap rb2 = new RoaringBitmap();
+		for (int i = 0; i < n; ++i) {
+			int x = rand.nextInt(range);
+			set1.add(x);
+			rb1.add(x);
+			x = rand.nextInt(range / 2);
+			set2.add(x);
+			rb2.add(x);
+		}
+		assertEquals(set1.size(), rb1.cardinality());
+		assertEquals(set2.size(), rb2.cardinality());
+
+		Set<Integer> and = new HashSet<>(set1);
+		and.retainAll(set2);
+		Set<Integer> or = new HashSet<>(set1);
+		or.addAll(set2);
+		RoaringBitmap rband = rb1.and(rb2);
+		RoaringBitmap rbor = rb1.or(rb2);
+		assertEquals(and.size(), rband.cardinality());
+		assertEquals(or.size(), rbor.cardinality());
+		for (int i = 0; i < 10_000; ++i) {
+			int x = rand.nextInt(range);
+			assertEquals(set1.contains(x), rb1.contains(x));
+			assertEquals(and.contains(x), rband.contains(x));
+			assertEquals(or.contains(x), rbor.contains(x));
+		}
+		for (int x : set1) {
+			assertTrue(rb1.contains(x));
+			assertTrue(rbor.contains(x));
+			assertEquals(set2.contains(x), rband.contains(x));
+		}
+	}
+
+}